@@ -1,6 +1,27 @@
 -- 创建 pgvector 扩展（向量数据库支持）
 CREATE EXTENSION IF NOT EXISTS vector;
 
+create table public.account_usage_ledger (
+                                             id bigserial primary key not null,
+                                             user_id character varying(64) not null, -- 用户ID
+                                             agent_id character varying(64), -- Agent ID
+                                             session_id character varying(64), -- 会话ID
+                                             model_id character varying(128), -- 模型标识（调用端点）
+                                             input_tokens integer not null default 0,
+                                             output_tokens integer not null default 0,
+                                             cost numeric(20,8) not null default 0.00000000, -- 本次调用费用
+                                             charged boolean not null default false, -- 是否已从账户扣除
+                                             charged_at timestamp without time zone, -- 扣除时间
+                                             created_at timestamp without time zone default CURRENT_TIMESTAMP
+);
+create index idx_account_usage_ledger_user_time on account_usage_ledger using btree (user_id, created_at);
+create index idx_account_usage_ledger_uncharged on account_usage_ledger using btree (user_id, id) where charged = false and cost > 0;
+comment on table public.account_usage_ledger is '用量流水表，每次模型调用追加一条，只有扣费状态会被对账任务更新';
+comment on column public.account_usage_ledger.model_id is '模型标识（调用端点）';
+comment on column public.account_usage_ledger.cost is '本次调用费用';
+comment on column public.account_usage_ledger.charged is '是否已从账户扣除，余额不足时为 false，由对账任务补扣';
+comment on column public.account_usage_ledger.charged_at is '扣除时间';
+
 create table public.accounts (
                                  id character varying(64) primary key not null,
                                  user_id character varying(64) not null, -- 用户ID
@@ -18,6 +39,7 @@ comment on column public.accounts.balance is '账户余额';
 comment on column public.accounts.credit is '信用额度';
 comment on column public.accounts.total_consumed is '总消费金额';
 comment on column public.accounts.last_transaction_at is '最后交易时间';
+create unique index accounts_user_id_key on accounts using btree (user_id) where deleted_at is null;
 
 create table public.agent_execution_details (
                                                 id bigserial primary key not null,
@@ -98,6 +120,31 @@ comment on column public.agent_execution_summary.total_tokens is '总Token数';
 comment on column public.agent_execution_summary.tool_call_count is '工具调用总次数';
 comment on column public.agent_execution_summary.total_cost is '总成本费用';
 comment on column public.agent_execution_summary.execution_success is '执行是否成功';
+create index idx_agent_exec_summary_user_agent_time on agent_execution_summary using btree (user_id, agent_id, execution_start_time);
+
+create table public.agent_execution_daily_stats (
+                                                    user_id character varying(64) not null, -- 用户ID
+                                                    agent_id character varying(64) not null, -- Agent ID
+                                                    stat_date date not null, -- 统计日期，按汇总记录的执行开始时间归日
+                                                    execution_count integer not null default 0, -- 执行次数（汇总记录数）
+                                                    success_count integer not null default 0, -- 成功次数
+                                                    total_input_tokens bigint not null default 0,
+                                                    total_output_tokens bigint not null default 0,
+                                                    total_tokens bigint not null default 0,
+                                                    tool_call_count bigint not null default 0,
+                                                    total_execution_time bigint not null default 0, -- 总执行时间(毫秒)
+                                                    last_execution_time timestamp without time zone, -- 当日最后一次执行的开始时间
+                                                    last_execution_success boolean, -- 当日最后一次执行是否成功
+                                                    updated_at timestamp without time zone default CURRENT_TIMESTAMP,
+                                                    primary key (user_id, agent_id, stat_date)
+);
+comment on table public.agent_execution_daily_stats is 'Agent执行统计日汇总表，随追踪写入增量维护';
+comment on column public.agent_execution_daily_stats.stat_date is '统计日期，按汇总记录的执行开始时间归日';
+comment on column public.agent_execution_daily_stats.execution_count is '执行次数（汇总记录数）';
+comment on column public.agent_execution_daily_stats.success_count is '成功次数';
+comment on column public.agent_execution_daily_stats.total_execution_time is '总执行时间(毫秒)';
+comment on column public.agent_execution_daily_stats.last_execution_time is '当日最后一次执行的开始时间';
+comment on column public.agent_execution_daily_stats.last_execution_success is '当日最后一次执行是否成功';
 
 create table public.agent_tasks (
                                     id character varying(36) primary key not null, -- 任务ID
@@ -398,6 +445,9 @@ comment on column public.document_unit.page is '页码';
 comment on column public.document_unit.content is '当前页内容';
 comment on column public.document_unit.flag is '标记';
 comment on column public.document_unit.is_vector is '是否进行了向量化';
+create index idx_document_unit_file_page on document_unit using btree (file_id, page);
+create extension if not exists pg_trgm;
+create index idx_document_unit_content_trgm on document_unit using gin (content gin_trgm_ops);
 
 create table public.file_detail (
                                     id character varying(64) primary key not null, -- 文件id
@@ -164,6 +164,7 @@ export interface RagSearchRequest {
   candidateMultiplier?: number; // 搜索候选结果倍数，默认2，范围1-5
   timeoutSeconds?: number; // 搜索超时时间（秒），默认30，范围1-300
   enableQueryExpansion?: boolean; // 是否启用查询扩展，默认false
+  enableHybridSearch?: boolean; // 是否启用混合检索（向量 + 字面匹配），默认false
 }
 
 // 文档单元响应（对应 DocumentUnitDTO）
@@ -0,0 +1,190 @@
+package org.lucas.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** 评测语料
+ *
+ * 自带语料在 {@code benchmark/corpus.json}：若干数据集下的文档分片，以及带标注的问题。每个问题有改写/扩展后的变体
+ * （代替 LLM 查询扩展的输出）和相关分片ID。语料本身很小，测延迟时用 {@link #withFiller} 按同一词表补充干扰分片，
+ * 干扰分片不会被标注为相关。
+ *
+ * @author shilong.zang */
+public class BenchmarkCorpus {
+
+    private static final String RESOURCE = "/benchmark/corpus.json";
+
+    private static final Pattern TOKEN = Pattern.compile("[A-Za-z0-9_\\-.]+|\\p{IsHan}{2}");
+
+    private List<Document> documents = new ArrayList<>();
+
+    private List<Query> queries = new ArrayList<>();
+
+    /** 读取自带语料 */
+    public static BenchmarkCorpus load() throws IOException {
+        try (InputStream input = BenchmarkCorpus.class.getResourceAsStream(RESOURCE)) {
+            if (input == null) {
+                throw new IllegalStateException("找不到评测语料: " + RESOURCE);
+            }
+            return new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                    .readValue(input, BenchmarkCorpus.class);
+        }
+    }
+
+    /** 按语料词表补充干扰分片，平均分到各数据集
+     *
+     * @param count 干扰分片数量
+     * @param seed 随机种子，相同种子生成相同的分片
+     * @return 包含原有分片和干扰分片的新语料 */
+    public BenchmarkCorpus withFiller(int count, long seed) {
+        List<String> vocabulary = new ArrayList<>(vocabulary());
+        List<String> datasetIds = documents.stream().map(Document::getDatasetId).distinct().toList();
+        Random random = new Random(seed);
+
+        BenchmarkCorpus corpus = new BenchmarkCorpus();
+        corpus.documents.addAll(documents);
+        corpus.queries.addAll(queries);
+        for (int i = 0; i < count; i++) {
+            StringBuilder content = new StringBuilder();
+            int length = 12 + random.nextInt(24);
+            for (int j = 0; j < length; j++) {
+                content.append(vocabulary.get(random.nextInt(vocabulary.size()))).append(j % 6 == 5 ? "，" : " ");
+            }
+            Document filler = new Document();
+            filler.setId("filler-" + i);
+            filler.setFileId("filler-file-" + i / 20);
+            filler.setDatasetId(datasetIds.get(i % datasetIds.size()));
+            filler.setPage(i % 20 + 1);
+            filler.setContent(content.toString());
+            corpus.documents.add(filler);
+        }
+        return corpus;
+    }
+
+    private Set<String> vocabulary() {
+        Set<String> vocabulary = new LinkedHashSet<>();
+        for (Document document : documents) {
+            Matcher matcher = TOKEN.matcher(document.getContent());
+            while (matcher.find()) {
+                vocabulary.add(matcher.group());
+            }
+        }
+        return vocabulary;
+    }
+
+    public List<Document> getDocuments() {
+        return documents;
+    }
+
+    public void setDocuments(List<Document> documents) {
+        this.documents = documents;
+    }
+
+    public List<Query> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<Query> queries) {
+        this.queries = queries;
+    }
+
+    /** 文档分片 */
+    public static class Document {
+        private String id;
+        private String fileId;
+        private String datasetId;
+        private Integer page;
+        private String content;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getFileId() {
+            return fileId;
+        }
+
+        public void setFileId(String fileId) {
+            this.fileId = fileId;
+        }
+
+        public String getDatasetId() {
+            return datasetId;
+        }
+
+        public void setDatasetId(String datasetId) {
+            this.datasetId = datasetId;
+        }
+
+        public Integer getPage() {
+            return page;
+        }
+
+        public void setPage(Integer page) {
+            this.page = page;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public void setContent(String content) {
+            this.content = content;
+        }
+    }
+
+    /** 带标注的问题 */
+    public static class Query {
+        private String datasetId;
+        private String question;
+        private List<String> variants = new ArrayList<>();
+        private List<String> relevant = new ArrayList<>();
+
+        public String getDatasetId() {
+            return datasetId;
+        }
+
+        public void setDatasetId(String datasetId) {
+            this.datasetId = datasetId;
+        }
+
+        public String getQuestion() {
+            return question;
+        }
+
+        public void setQuestion(String question) {
+            this.question = question;
+        }
+
+        /** 改写/扩展后的查询，代替 LLM 查询扩展的输出 */
+        public List<String> getVariants() {
+            return variants;
+        }
+
+        public void setVariants(List<String> variants) {
+            this.variants = variants;
+        }
+
+        /** 相关分片ID */
+        public List<String> getRelevant() {
+            return relevant;
+        }
+
+        public void setRelevant(List<String> relevant) {
+            this.relevant = relevant;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.lucas.benchmark;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/** 基于特征哈希的本地嵌入模型
+ *
+ * 基准测试不能依赖外部嵌入服务：结果要可复现，延迟也不能混进网络耗时。这里把文本切成特征
+ * （英文数字按词，中文按单字和相邻两字），每个特征哈希到一个维度并带正负号，最后做 L2 归一化。
+ * 同样的文本总是得到同样的向量，字面重合越多余弦相似度越高，足以比较检索链路各个改动的相对效果，
+ * 但不代表真实模型的语义召回水平。
+ *
+ * @author shilong.zang */
+public class HashingEmbeddingModel implements EmbeddingModel {
+
+    private static final HashFunction HASH = Hashing.murmur3_32_fixed();
+
+    private final int dimension;
+
+    public HashingEmbeddingModel(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        return Response.from(textSegments.stream().map(segment -> Embedding.from(vector(segment.text()))).toList());
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    /** 计算文本向量
+     *
+     * @param text 文本
+     * @return 归一化后的向量；文本为空时为零向量 */
+    public float[] vector(String text) {
+        float[] vector = new float[dimension];
+        if (text == null || text.isBlank()) {
+            return vector;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        char previousCjk = 0;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (isWordChar(c)) {
+                word.append(c);
+                previousCjk = 0;
+                continue;
+            }
+            flushWord(vector, word);
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                addFeature(vector, String.valueOf(c), 0.5f);
+                if (previousCjk != 0) {
+                    addFeature(vector, new String(new char[] {previousCjk, c}), 1.0f);
+                }
+                previousCjk = c;
+            } else {
+                previousCjk = 0;
+            }
+        }
+        flushWord(vector, word);
+        normalize(vector);
+        return vector;
+    }
+
+    private void flushWord(float[] vector, StringBuilder word) {
+        if (word.length() > 0) {
+            addFeature(vector, word.toString(), 1.0f);
+            word.setLength(0);
+        }
+    }
+
+    private void addFeature(float[] vector, String feature, float weight) {
+        int hash = HASH.hashString(feature, StandardCharsets.UTF_8).asInt();
+        int index = Math.floorMod(hash, dimension);
+        vector[index] += (hash & 0x80000000) == 0 ? weight : -weight;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+    }
+
+    private static void normalize(float[] vector) {
+        double norm = 0.0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0.0) {
+            return;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+}
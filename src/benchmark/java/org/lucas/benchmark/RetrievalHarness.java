@@ -0,0 +1,264 @@
+package org.lucas.benchmark;
+
+import static org.lucas.domain.rag.constant.MetadataConstant.DATA_SET_ID;
+import static org.lucas.domain.rag.constant.MetadataConstant.DOCUMENT_ID;
+import static org.lucas.domain.rag.constant.MetadataConstant.FILE_ID;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.lucas.infrastructure.rag.config.EmbeddingProperties;
+import org.lucas.infrastructure.rag.service.RetrievalFanOutExecutor;
+import org.lucas.infrastructure.rag.utils.DiversityLimiter;
+import org.lucas.infrastructure.rag.utils.LexicalQueryParser;
+import org.lucas.infrastructure.rag.utils.ReciprocalRankFusion;
+
+/** 检索链路端到端评测
+ *
+ * 用 {@link HashingEmbeddingModel} 和内存向量库复现数据集问答的检索步骤，对自带语料报告每种检索方式的
+ * p50/p99 延迟和 recall@k：
+ * <ul>
+ * <li>dense：单查询向量检索（按 DATA_SET_ID 过滤），取 2k 条候选后按文件做多样性截断；</li>
+ * <li>multi-query：原问题加变体一次批量向量化，经 {@link RetrievalFanOutExecutor} 并发检索，RRF 融合；</li>
+ * <li>hybrid：向量检索与关键词字面匹配并发执行，RRF 融合。</li>
+ * </ul>
+ * 融合、截断、关键词提取用的都是线上代码。不包含重排（外部服务）和 PostgreSQL/pgvector 本身的耗时，
+ * 延迟数字只用于比较进程内改动，召回率只用于比较检索策略的相对好坏。
+ *
+ * <p>参数（均可省略）：{@code --filler 2000 --iterations 5 --k 5 --dimension 1024 --seed 42}
+ *
+ * @author shilong.zang */
+public class RetrievalHarness {
+
+    private static final String[] MODES = {"dense", "multi-query", "hybrid"};
+
+    private final BenchmarkCorpus corpus;
+
+    private final HashingEmbeddingModel embeddingModel;
+
+    private final InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+
+    private final Map<String, BenchmarkCorpus.Document> documentsById = new HashMap<>();
+
+    private final EmbeddingProperties properties = new EmbeddingProperties();
+
+    private final RetrievalFanOutExecutor fanOutExecutor = new RetrievalFanOutExecutor(properties);
+
+    private final int k;
+
+    public RetrievalHarness(BenchmarkCorpus corpus, int dimension, int k) {
+        this.corpus = corpus;
+        this.embeddingModel = new HashingEmbeddingModel(dimension);
+        this.k = k;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int filler = Integer.parseInt(options.getOrDefault("filler", "2000"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+        int k = Integer.parseInt(options.getOrDefault("k", "5"));
+        int dimension = Integer.parseInt(options.getOrDefault("dimension", "1024"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        BenchmarkCorpus corpus = BenchmarkCorpus.load().withFiller(filler, seed);
+        RetrievalHarness harness = new RetrievalHarness(corpus, dimension, k);
+        long ingestStart = System.nanoTime();
+        harness.ingest();
+        System.out.printf(Locale.ROOT, "corpus: %d chunks, %d queries, dimension=%d, ingest=%.0fms%n",
+                corpus.getDocuments().size(), corpus.getQueries().size(), dimension,
+                (System.nanoTime() - ingestStart) / 1e6);
+
+        try {
+            System.out.printf(Locale.ROOT, "%-12s %10s %10s %10s %10s %10s%n", "mode", "recall@" + k, "hit@" + k,
+                    "p50(ms)", "p99(ms)", "mean(ms)");
+            // 所有方式先各跑一轮预热，不计入结果，避免先测的方式替后测的方式预热了共用代码
+            for (String mode : MODES) {
+                harness.run(mode, 1);
+            }
+            for (String mode : MODES) {
+                harness.run(mode, iterations).print(mode);
+            }
+        } finally {
+            harness.fanOutExecutor.shutdown();
+        }
+    }
+
+    /** 把语料写入内存向量库，元数据与线上入库一致 */
+    public void ingest() {
+        List<TextSegment> segments = new ArrayList<>();
+        for (BenchmarkCorpus.Document document : corpus.getDocuments()) {
+            documentsById.put(document.getId(), document);
+            Metadata metadata = new Metadata();
+            metadata.put(FILE_ID, document.getFileId());
+            metadata.put(DOCUMENT_ID, document.getId());
+            metadata.put(DATA_SET_ID, document.getDatasetId());
+            segments.add(TextSegment.from(document.getContent(), metadata));
+        }
+        store.addAll(embeddingModel.embedAll(segments).content(), segments);
+    }
+
+    /** 按指定方式检索全部问题若干轮
+     *
+     * @param mode 检索方式
+     * @param iterations 轮数
+     * @return 延迟与召回统计 */
+    public Result run(String mode, int iterations) {
+        Result result = new Result(k);
+        for (int i = 0; i < iterations; i++) {
+            for (BenchmarkCorpus.Query query : corpus.getQueries()) {
+                long start = System.nanoTime();
+                List<String> retrieved = retrieve(mode, query);
+                result.record(System.nanoTime() - start, retrieved, query.getRelevant());
+            }
+        }
+        return result;
+    }
+
+    private List<String> retrieve(String mode, BenchmarkCorpus.Query query) {
+        List<String> datasetIds = List.of(query.getDatasetId());
+        int candidates = k * 2;
+        List<String> fused = switch (mode) {
+            case "dense" -> dense(datasetIds, embeddingModel.vector(query.getQuestion()), candidates);
+            case "multi-query" -> multiQuery(datasetIds, query, candidates);
+            case "hybrid" -> hybrid(datasetIds, query.getQuestion(), candidates);
+            default -> throw new IllegalArgumentException("未知的检索方式: " + mode);
+        };
+        return DiversityLimiter.limitPerKey(fused, id -> documentsById.get(id).getFileId(), k, 2);
+    }
+
+    private List<String> dense(List<String> datasetIds, float[] vector, int limit) {
+        return store.search(EmbeddingSearchRequest.builder().filter(new IsIn(DATA_SET_ID, datasetIds))
+                .queryEmbedding(Embedding.from(vector)).maxResults(limit).minScore(0.0).build()).matches().stream()
+                .map(RetrievalHarness::documentIdOf).toList();
+    }
+
+    private List<String> multiQuery(List<String> datasetIds, BenchmarkCorpus.Query query, int limit) {
+        List<TextSegment> texts = new ArrayList<>();
+        texts.add(TextSegment.from(query.getQuestion()));
+        query.getVariants().forEach(variant -> texts.add(TextSegment.from(variant)));
+        List<Embedding> embeddings = embeddingModel.embedAll(texts).content();
+
+        List<Supplier<List<String>>> searches = new ArrayList<>();
+        embeddings.forEach(embedding -> searches.add(() -> dense(datasetIds, embedding.vector(), limit)));
+        return fuse(fanOutExecutor.invokeAll(searches), limit);
+    }
+
+    private List<String> hybrid(List<String> datasetIds, String question, int limit) {
+        float[] vector = embeddingModel.vector(question);
+        List<String> terms = LexicalQueryParser.extractTerms(question,
+                properties.getRetrieval().getLexicalMaxTerms());
+        if (terms.isEmpty()) {
+            return dense(datasetIds, vector, limit);
+        }
+        List<Supplier<List<String>>> searches = List.of(() -> dense(datasetIds, vector, limit),
+                () -> lexical(datasetIds, terms, limit));
+        return fuse(fanOutExecutor.invokeAll(searches), limit);
+    }
+
+    /** 与 DocumentUnitRepository.selectByLexicalMatch 相同的排序：命中关键词数多的在前，其次内容短的在前 */
+    private List<String> lexical(List<String> datasetIds, List<String> terms, int limit) {
+        Set<String> scope = new HashSet<>(datasetIds);
+        List<String> lowerTerms = terms.stream().map(term -> term.toLowerCase(Locale.ROOT)).toList();
+        Map<BenchmarkCorpus.Document, Integer> hits = new LinkedHashMap<>();
+        for (BenchmarkCorpus.Document document : corpus.getDocuments()) {
+            if (!scope.contains(document.getDatasetId())) {
+                continue;
+            }
+            String content = document.getContent().toLowerCase(Locale.ROOT);
+            int count = (int) lowerTerms.stream().filter(content::contains).count();
+            if (count > 0) {
+                hits.put(document, count);
+            }
+        }
+        Comparator<BenchmarkCorpus.Document> order = Comparator
+                .comparing((BenchmarkCorpus.Document document) -> hits.get(document)).reversed()
+                .thenComparingInt(document -> document.getContent().length());
+        return hits.keySet().stream().sorted(order).limit(limit).map(BenchmarkCorpus.Document::getId).toList();
+    }
+
+    private List<String> fuse(List<List<String>> rankings, int limit) {
+        return ReciprocalRankFusion.fuse(rankings, id -> id, properties.getRetrieval().getRrfK()).keySet().stream()
+                .limit(limit).toList();
+    }
+
+    private static String documentIdOf(EmbeddingMatch<TextSegment> match) {
+        return match.embedded().metadata().getString(DOCUMENT_ID);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("参数格式: --name value，实际: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    /** 一种检索方式的统计结果 */
+    public static final class Result {
+        private final int k;
+        private final List<Long> latencies = new ArrayList<>();
+        private double recallSum;
+        private int hits;
+
+        private Result(int k) {
+            this.k = k;
+        }
+
+        private void record(long latencyNanos, List<String> retrieved, List<String> relevant) {
+            latencies.add(latencyNanos);
+            long found = retrieved.stream().limit(k).filter(relevant::contains).count();
+            recallSum += relevant.isEmpty() ? 1.0 : (double) found / relevant.size();
+            if (found > 0) {
+                hits++;
+            }
+        }
+
+        /** 平均 recall@k */
+        public double getRecall() {
+            return latencies.isEmpty() ? 0 : recallSum / latencies.size();
+        }
+
+        /** 至少召回一个相关分片的问题占比 */
+        public double getHitRate() {
+            return latencies.isEmpty() ? 0 : (double) hits / latencies.size();
+        }
+
+        /** 延迟分位数(毫秒) */
+        public double percentileMillis(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+
+        public double getMeanMillis() {
+            return latencies.stream().mapToLong(Long::longValue).average().orElse(0) / 1e6;
+        }
+
+        private void print(String mode) {
+            System.out.printf(Locale.ROOT, "%-12s %10.3f %10.3f %10.2f %10.2f %10.2f%n", mode, getRecall(),
+                    getHitRate(), percentileMillis(50), percentileMillis(99), getMeanMillis());
+        }
+    }
+}
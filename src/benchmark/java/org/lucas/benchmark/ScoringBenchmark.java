@@ -0,0 +1,126 @@
+package org.lucas.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.lucas.domain.rag.model.DocumentUnitEntity;
+import org.lucas.infrastructure.rag.utils.DiversityLimiter;
+import org.lucas.infrastructure.rag.utils.ReciprocalRankFusion;
+import org.lucas.infrastructure.rag.utils.VectorSimilarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** 检索链路进程内计算的微基准
+ *
+ * 覆盖问答链路里不走网络的几步：余弦相似度、快照文档多查询打分排序（filterAndRankSnapshotDocumentsMulti 的内层）、
+ * RRF 融合、按文件的多样性截断。输入为固定种子生成的随机向量和候选，维度与候选数可用 -p 调整。
+ *
+ * @author shilong.zang */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ScoringBenchmark {
+
+    /** 向量维度 */
+    @Param({"1024"})
+    private int dimension;
+
+    /** 候选分片数 */
+    @Param({"60"})
+    private int candidates;
+
+    /** 查询数（原问题 + 改写 + 扩展） */
+    @Param({"4"})
+    private int queries;
+
+    private float[][] queryVectors;
+
+    private float[][] candidateVectors;
+
+    private List<DocumentUnitEntity> candidateDocuments;
+
+    private List<List<DocumentUnitEntity>> rankings;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        queryVectors = new float[queries][];
+        for (int i = 0; i < queries; i++) {
+            queryVectors[i] = randomVector(random);
+        }
+        candidateVectors = new float[candidates][];
+        candidateDocuments = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            candidateVectors[i] = randomVector(random);
+            DocumentUnitEntity document = new DocumentUnitEntity();
+            document.setId("doc-" + i);
+            // 约 1/4 的候选来自同一批文件，多样性截断才有事可做
+            document.setFileId("file-" + random.nextInt(Math.max(1, candidates / 4)));
+            candidateDocuments.add(document);
+        }
+        // 每个查询的结果是候选的一个随机排列的前半部分，模拟多查询之间部分重叠
+        rankings = new ArrayList<>();
+        for (int i = 0; i < queries; i++) {
+            List<DocumentUnitEntity> ranking = new ArrayList<>(candidateDocuments);
+            Collections.shuffle(ranking, random);
+            rankings.add(ranking.subList(0, candidates / 2));
+        }
+    }
+
+    @Benchmark
+    public double cosineSimilarity() {
+        return VectorSimilarity.cosine(queryVectors[0], candidateVectors[0]);
+    }
+
+    /** 每个候选取各查询中的最高相似度，再按分数排序 */
+    @Benchmark
+    public List<DocumentUnitEntity> rankCandidatesByMaxSimilarity() {
+        double[] scores = new double[candidates];
+        for (int i = 0; i < candidates; i++) {
+            double best = 0.0;
+            for (float[] queryVector : queryVectors) {
+                best = Math.max(best, VectorSimilarity.cosine(queryVector, candidateVectors[i]));
+            }
+            scores[i] = best;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+        return order.stream().map(candidateDocuments::get).toList();
+    }
+
+    @Benchmark
+    public Object reciprocalRankFusion() {
+        return ReciprocalRankFusion.fuse(rankings, DocumentUnitEntity::getId, ReciprocalRankFusion.DEFAULT_K);
+    }
+
+    @Benchmark
+    public List<DocumentUnitEntity> diversityLimit() {
+        return DiversityLimiter.limitPerKey(candidateDocuments, DocumentUnitEntity::getFileId, 15, 2);
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,40 @@
+package org.lucas.application.account.listener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.lucas.domain.trace.event.ModelCalledEvent;
+import org.lucas.domain.trace.model.ModelCallInfo;
+import org.lucas.domain.trace.model.TraceContext;
+import org.lucas.domain.user.service.UsageBillingDomainService;
+
+/** 用量计费监听器 每次模型调用成功后按Token用量记一条流水并扣费 */
+@Component
+public class UsageBillingListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageBillingListener.class);
+
+    private final UsageBillingDomainService usageBillingDomainService;
+
+    public UsageBillingListener(UsageBillingDomainService usageBillingDomainService) {
+        this.usageBillingDomainService = usageBillingDomainService;
+    }
+
+    /** 处理模型调用事件 */
+    @EventListener
+    public void handleModelCalled(ModelCalledEvent event) {
+        ModelCallInfo callInfo = event.getModelCallInfo();
+        if (callInfo == null || !Boolean.TRUE.equals(callInfo.getSuccess())) {
+            return;
+        }
+        TraceContext traceContext = event.getTraceContext();
+        try {
+            usageBillingDomainService.recordModelUsage(traceContext.getUserId(), traceContext.getAgentId(),
+                    traceContext.getSessionId(), callInfo.getModelEndpoint(), callInfo.getInputTokens(),
+                    callInfo.getOutputTokens());
+        } catch (Exception e) {
+            logger.error("记录模型用量失败 - TraceId: {}", traceContext.getTraceId(), e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.lucas.application.account.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.lucas.domain.user.service.UsageBillingDomainService;
+import org.lucas.infrastructure.config.BillingProperties;
+
+/** 用量对账服务 定时补扣余额不足时记为未扣费的用量流水 */
+@Service
+public class UsageReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageReconciliationService.class);
+
+    private final UsageBillingDomainService usageBillingDomainService;
+    private final BillingProperties properties;
+
+    public UsageReconciliationService(UsageBillingDomainService usageBillingDomainService,
+            BillingProperties properties) {
+        this.usageBillingDomainService = usageBillingDomainService;
+        this.properties = properties;
+    }
+
+    /** 定时对账，间隔由 billing.reconciliation.interval-ms 配置 */
+    @Scheduled(fixedDelayString = "${billing.reconciliation.interval-ms:300000}")
+    public void reconcile() {
+        if (!properties.isEnabled() || !properties.getReconciliation().isEnabled()) {
+            return;
+        }
+        try {
+            usageBillingDomainService.reconcile();
+        } catch (Exception e) {
+            logger.error("用量对账任务执行失败", e);
+        }
+    }
+}
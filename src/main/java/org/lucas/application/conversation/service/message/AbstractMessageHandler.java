@@ -226,6 +226,9 @@ public abstract class AbstractMessageHandler {
             }
         });
 
+        // 当前这段正文是否已出现非空白字符，工具调用切段时随 messageBuilder 一起重置
+        AtomicBoolean hasVisibleText = new AtomicBoolean(false);
+
         // 部分响应处理
         tokenStream.onPartialResponse(reply -> {
             // 正文开始意味着思考结束。有些模型不回调 onCompleteReasoning，
@@ -234,9 +237,12 @@ public abstract class AbstractMessageHandler {
                 transport.sendMessage(connection, AgentChatResponse.build("", MessageType.THINKING_END));
             }
             messageBuilder.get().append(reply);
-            // 删除换行后消息为空字符串
-            if (messageBuilder.get().toString().trim().isEmpty()) {
-                return;
+            // 删除换行后消息为空字符串。只看本分片，不把累计的消息整个转成字符串再 trim（每个分片都复制一遍是平方级）
+            if (!hasVisibleText.get()) {
+                if (reply.trim().isEmpty()) {
+                    return;
+                }
+                hasVisibleText.set(true);
             }
             transport.sendMessage(connection, AgentChatResponse.build(reply, MessageType.TEXT));
         });
@@ -277,6 +283,7 @@ public abstract class AbstractMessageHandler {
                 messageDomainService.saveMessageAndUpdateContext(Collections.singletonList(llmEntity),
                         chatContext.getContextEntity());
                 messageBuilder.set(new StringBuilder());
+                hasVisibleText.set(false);
             }
             String message = "执行工具：" + toolExecution.request().name();
             MessageEntity toolMessage = createLlmMessage(chatContext);
@@ -50,6 +50,9 @@ public class RagSearchRequest {
     /** 是否启用查询扩展，默认false */
     private Boolean enableQueryExpansion = false;
 
+    /** 是否启用混合检索（向量 + 字面匹配），默认false。问题里带编号、错误码、SKU 时召回更准 */
+    private Boolean enableHybridSearch = false;
+
     /** 获取智能调整后的相似度阈值 根据查询长度自动调整：短查询提高阈值，长查询降低阈值
      * @return 调整后的相似度阈值 */
     public Double getAdjustedMinScore() {
@@ -152,4 +155,12 @@ public class RagSearchRequest {
     public void setEnableQueryExpansion(Boolean enableQueryExpansion) {
         this.enableQueryExpansion = enableQueryExpansion;
     }
-}
\ No newline at end of file
+
+    public Boolean getEnableHybridSearch() {
+        return enableHybridSearch;
+    }
+
+    public void setEnableHybridSearch(Boolean enableHybridSearch) {
+        this.enableHybridSearch = enableHybridSearch;
+    }
+}
@@ -4,24 +4,27 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.chat.response.ChatResponse;
-import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.dromara.streamquery.stream.core.stream.Steam;
 import org.slf4j.Logger;
@@ -48,7 +51,6 @@ import org.lucas.domain.llm.service.HighAvailabilityDomainService;
 import org.lucas.domain.llm.service.LLMDomainService;
 import org.lucas.domain.rag.constant.FileProcessingStatusEnum;
 import org.lucas.domain.rag.message.RagDocSyncOcrMessage;
-import org.lucas.domain.rag.message.RagDocSyncStorageMessage;
 import org.lucas.domain.rag.model.DocumentUnitEntity;
 import org.lucas.domain.rag.model.FileDetailEntity;
 import org.lucas.domain.rag.model.ModelConfig;
@@ -61,12 +63,18 @@ import org.lucas.domain.rag.repository.FileDetailRepository;
 import org.lucas.domain.rag.repository.UserRagFileRepository;
 import org.lucas.domain.rag.service.*;
 import org.lucas.domain.user.service.UserSettingsDomainService;
+import org.lucas.infrastructure.config.SseProperties;
 import org.lucas.infrastructure.exception.BusinessException;
 import org.lucas.infrastructure.llm.LLMServiceFactory;
 import org.lucas.infrastructure.mq.enums.EventType;
 import org.lucas.infrastructure.mq.events.RagDocSyncOcrEvent;
-import org.lucas.infrastructure.mq.events.RagDocSyncStorageEvent;
 import org.lucas.infrastructure.rag.factory.EmbeddingModelFactory;
+import org.lucas.infrastructure.rag.service.QueryEmbeddingCache;
+import org.lucas.infrastructure.rag.service.RagAnswerCache;
+import org.lucas.infrastructure.rag.utils.DiversityLimiter;
+import org.lucas.infrastructure.rag.utils.VectorSimilarity;
+import org.lucas.infrastructure.transport.CoalescingSseEmitter;
+import org.lucas.infrastructure.transport.CoalescingSseMessageTransport;
 
 /** RAG数据集应用服务
  * @author shilong.zang
@@ -97,6 +105,19 @@ public class RagQaDatasetAppService {
         return thread;
     });
 
+    /** 检索前阶段线程池：意图识别、语义改写、查询扩展这几次 LLM 调用在这里并行发起。
+     *
+     * 不能复用 ragStreamExecutor：问答任务本身占着那边的线程等待子任务，池满时会互相等死。 */
+    private final ExecutorService ragStageExecutor = Executors.newFixedThreadPool(16, runnable -> {
+        Thread thread = new Thread(runnable, "rag-pre-retrieval");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** 阶段耗时在 SSE 事件中的显示名 */
+    private static final Map<String, String> STAGE_LABELS = Map.of("answerCache", "答案缓存", "intent", "意图识别",
+            "relevance", "相关性判断", "rewrite", "语义改写", "expand", "查询扩展", "retrieval", "检索");
+
     private final RagQaDatasetDomainService ragQaDatasetDomainService;
     private final FileDetailDomainService fileDetailDomainService;
     private final DocumentUnitRepository documentUnitRepository;
@@ -118,6 +139,10 @@ public class RagQaDatasetAppService {
     private final RagModelConfigService ragModelConfigService;
     private final EmbeddingModelFactory embeddingModelFactory;
     private final UserRagFileRepository userRagFileRepository;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final RagAnswerCache ragAnswerCache;
+    private final CoalescingSseMessageTransport coalescingSseTransport;
+    private final SseProperties sseProperties;
 
     public RagQaDatasetAppService(RagQaDatasetDomainService ragQaDatasetDomainService,
             FileDetailDomainService fileDetailDomainService, DocumentUnitRepository documentUnitRepository,
@@ -129,7 +154,9 @@ public class RagQaDatasetAppService {
             RagMarketAppService ragMarketAppService, RagVersionDomainService ragVersionDomainService,
             UserRagDomainService userRagDomainService, RagDataAccessDomainService ragDataAccessService,
             RagModelConfigService ragModelConfigService, EmbeddingModelFactory embeddingModelFactory,
-            UserRagFileRepository userRagFileRepository) {
+            UserRagFileRepository userRagFileRepository, QueryEmbeddingCache queryEmbeddingCache,
+            RagAnswerCache ragAnswerCache, CoalescingSseMessageTransport coalescingSseTransport,
+            SseProperties sseProperties) {
         this.ragQaDatasetDomainService = ragQaDatasetDomainService;
         this.fileDetailDomainService = fileDetailDomainService;
         this.documentUnitRepository = documentUnitRepository;
@@ -149,6 +176,10 @@ public class RagQaDatasetAppService {
         this.ragModelConfigService = ragModelConfigService;
         this.embeddingModelFactory = embeddingModelFactory;
         this.userRagFileRepository = userRagFileRepository;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.ragAnswerCache = ragAnswerCache;
+        this.coalescingSseTransport = coalescingSseTransport;
+        this.sseProperties = sseProperties;
     }
 
     /** 创建数据集
@@ -268,12 +299,7 @@ public class RagQaDatasetAppService {
 
         // 删除所有RAG发布版本
         for (RagVersionDTO version : versions) {
-            try {
-                ragVersionDomainService.deleteRagVersion(version.getId(), userId);
-            } catch (Exception e) {
-                // 如果版本不存在，忽略异常
-                log.debug("Failed to delete RAG version {}, may not exist", version.getId());
-            }
+            ragVersionDomainService.deleteRagVersion(version.getId(), userId);
         }
 
         // 先删除数据集下的所有文件
@@ -281,6 +307,7 @@ public class RagQaDatasetAppService {
 
         // 再删除数据集
         ragQaDatasetDomainService.deleteDataset(datasetId, userId);
+        ragAnswerCache.invalidateDataset(datasetId);
     }
 
     /** 获取数据集详情
@@ -494,6 +521,7 @@ public class RagQaDatasetAppService {
 
         // 删除文件
         fileDetailDomainService.deleteFile(fileId, userId);
+        ragAnswerCache.invalidateDataset(datasetId);
     }
 
     /** 分页查询数据集文件
@@ -537,6 +565,8 @@ public class RagQaDatasetAppService {
 
         // 验证文件存在性和权限
         FileDetailEntity fileEntity = fileDetailDomainService.getFileById(request.getFileId(), userId);
+        // 语料和向量即将被清理或重建，基于旧内容的缓存答案失效
+        ragAnswerCache.invalidateDataset(request.getDatasetId());
 
         if (request.getProcessType() == 1) {
             // OCR预处理 - 检查是否可以启动预处理
@@ -575,22 +605,9 @@ public class RagQaDatasetAppService {
                 throw new IllegalStateException("文件没有找到可用于向量化的语料数据");
             }
 
-            // 为每个DocumentUnit发送单独的向量化MQ消息
-            for (DocumentUnitEntity documentUnit : documentUnits) {
-                RagDocSyncStorageMessage storageMessage = new RagDocSyncStorageMessage();
-                storageMessage.setId(documentUnit.getId());
-                storageMessage.setFileId(request.getFileId());
-                storageMessage.setFileName(fileEntity.getOriginalFilename());
-                storageMessage.setPage(documentUnit.getPage());
-                storageMessage.setContent(documentUnit.getContent());
-                storageMessage.setVector(true);
-                storageMessage.setDatasetId(request.getDatasetId()); // 设置数据集ID
-
-                RagDocSyncStorageEvent<RagDocSyncStorageMessage> storageEvent = new RagDocSyncStorageEvent<>(
-                        storageMessage, EventType.DOC_SYNC_RAG);
-                storageEvent.setDescription("文件向量化处理任务 - 页面 " + documentUnit.getPage());
-                applicationEventPublisher.publishEvent(storageEvent);
-            }
+            // 投递向量化MQ消息（批量模式下按批分组）
+            embeddingDomainService.publishVectorization(fileEntity, request.getDatasetId(), documentUnits,
+                    ragModelConfigService.getUserEmbeddingModelConfig(userId), "文件向量化处理任务");
 
         } else {
             throw new IllegalArgumentException("不支持的处理类型: " + request.getProcessType());
@@ -641,6 +658,7 @@ public class RagQaDatasetAppService {
 
         // 验证文件存在性和权限
         FileDetailEntity fileEntity = fileDetailDomainService.getFileById(request.getFileId(), userId);
+        ragAnswerCache.invalidateDataset(request.getDatasetId());
 
         if (request.getProcessType() == 1) {
             // 强制重新OCR预处理
@@ -689,28 +707,14 @@ public class RagQaDatasetAppService {
                 throw new IllegalStateException("文件没有找到可用于向量化的语料数据");
             }
 
-            // 重置所有文档单元的向量化状态
-            for (DocumentUnitEntity documentUnit : documentUnits) {
-                documentUnit.setIsVector(false);
-                documentUnitRepository.updateById(documentUnit);
-            }
+            // 重置所有文档单元的向量化状态；增量模式下指纹未变的分片在向量化时直接沿用已有向量
+            documentUnitRepository.update(Wrappers.lambdaUpdate(DocumentUnitEntity.class)
+                    .eq(DocumentUnitEntity::getFileId, request.getFileId()).eq(DocumentUnitEntity::getIsOcr, true)
+                    .set(DocumentUnitEntity::getIsVector, false));
 
-            // 为每个DocumentUnit发送向量化MQ消息
-            for (DocumentUnitEntity documentUnit : documentUnits) {
-                RagDocSyncStorageMessage storageMessage = new RagDocSyncStorageMessage();
-                storageMessage.setId(documentUnit.getId());
-                storageMessage.setFileId(request.getFileId());
-                storageMessage.setFileName(fileEntity.getOriginalFilename());
-                storageMessage.setPage(documentUnit.getPage());
-                storageMessage.setContent(documentUnit.getContent());
-                storageMessage.setVector(true);
-                storageMessage.setDatasetId(request.getDatasetId());
-
-                RagDocSyncStorageEvent<RagDocSyncStorageMessage> storageEvent = new RagDocSyncStorageEvent<>(
-                        storageMessage, EventType.DOC_SYNC_RAG);
-                storageEvent.setDescription("文件强制重新向量化处理任务 - 页面 " + documentUnit.getPage());
-                applicationEventPublisher.publishEvent(storageEvent);
-            }
+            // 投递向量化MQ消息（批量模式下按批分组）
+            embeddingDomainService.publishVectorization(fileEntity, request.getDatasetId(), documentUnits,
+                    ragModelConfigService.getUserEmbeddingModelConfig(userId), "文件强制重新向量化处理任务");
 
         } else {
             throw new IllegalArgumentException("不支持的处理类型: " + request.getProcessType());
@@ -718,6 +722,8 @@ public class RagQaDatasetAppService {
     }
 
     /** 清理文件的已有语料和向量数据
+     *
+     * 增量入库模式下只删除语料，向量保留到重新向量化时按指纹复用，没有被复用的在文件向量化完成后清理。
      * @param fileId 文件ID */
     private void cleanupExistingDocumentUnits(String fileId) {
         try {
@@ -733,7 +739,9 @@ public class RagQaDatasetAppService {
                 // 删除所有文档单元（包括语料和向量数据）
                 documentUnitRepository.deleteByIds(documentUnitEntities);
 
-                embeddingDomainService.deleteEmbedding(Collections.singletonList(fileId));
+                if (!embeddingDomainService.isIncrementalIngestion()) {
+                    embeddingDomainService.deleteEmbedding(Collections.singletonList(fileId));
+                }
                 log.info("Successfully cleaned up document units for file: {}", fileId);
             } else {
                 log.debug("No existing document units found for file: {}", fileId);
@@ -807,7 +815,8 @@ public class RagQaDatasetAppService {
                 request.getMaxResults(), adjustedMinScore, // 使用智能调整的相似度阈值
                 request.getEnableRerank(), adjustedCandidateMultiplier, // 使用智能调整的候选结果倍数
                 embeddingConfig, // 传入嵌入模型配置
-                request.getEnableQueryExpansion()); // 传递查询扩展参数
+                request.getEnableQueryExpansion(), // 传递查询扩展参数
+                request.getEnableHybridSearch()); // 是否混合检索
 
         // 转换为DTO并返回
         return DocumentUnitAssembler.toDTOs(entities);
@@ -854,14 +863,17 @@ public class RagQaDatasetAppService {
             // REFERENCE类型：搜索实时数据
             entities = embeddingDomainService.ragDoc(List.of(actualDatasetId), request.getQuestion(),
                     request.getMaxResults(), adjustedMinScore, request.getEnableRerank(), adjustedCandidateMultiplier,
-                    embeddingConfig, request.getEnableQueryExpansion());
+                    embeddingConfig, request.getEnableQueryExpansion(), request.getEnableHybridSearch());
+        } else if (ragDataAccessService.hasSnapshotVectors(userRagId)) {
+            // SNAPSHOT类型：在快照版本的向量分区内检索
+            entities = ragDataAccessService.searchUserSnapshot(userRagId, sourceInfo.getVersionId(),
+                    request.getQuestion(), request.getMaxResults(), adjustedMinScore, request.getEnableRerank(),
+                    adjustedCandidateMultiplier, embeddingConfig);
         } else {
-            // SNAPSHOT类型：搜索版本快照数据
+            // SNAPSHOT类型（发布时未复制向量的旧版本）：读取快照分片进程内打分
             List<DocumentUnitEntity> snapshotDocuments = ragDataAccessService.getRagDocuments(userId, userRagId);
-            // 对快照数据进行向量搜索（这里可能需要特殊处理，暂时使用相同逻辑）
-            entities = embeddingDomainService.ragDoc(List.of(actualDatasetId), request.getQuestion(),
-                    request.getMaxResults(), adjustedMinScore, request.getEnableRerank(), adjustedCandidateMultiplier,
-                    embeddingConfig, request.getEnableQueryExpansion());
+            entities = filterAndRankSnapshotDocuments(snapshotDocuments, request.getQuestion(),
+                    request.getMaxResults(), embeddingConfig);
         }
 
         // 转换为DTO并返回
@@ -873,7 +885,7 @@ public class RagQaDatasetAppService {
      * @param userId 用户ID
      * @return SSE流式响应 */
     public SseEmitter ragStreamChat(RagStreamChatRequest request, String userId) {
-        SseEmitter emitter = new SseEmitter(RAG_STREAM_TIMEOUT_MS);
+        SseEmitter emitter = createStreamEmitter();
 
         // 设置连接关闭回调
         emitter.onCompletion(() -> log.info("RAG stream chat completed for user: {}", userId));
@@ -913,7 +925,11 @@ public class RagQaDatasetAppService {
 
             // 发送检索开始信号
             sendSseData(emitter, AgentChatResponse.build("开始检索相关文档...", MessageType.RAG_RETRIEVAL_START));
-            Thread.sleep(500);
+
+            // 意图识别只依赖问题本身，最先发起，与后面的校验、相关性判断重叠执行
+            StageTimer timer = new StageTimer(ragStageExecutor);
+            CompletableFuture<IntentResult> intentFuture = timer.async("intent",
+                    () -> classifyIntent(request.getQuestion(), userId));
 
             // 确定检索范围
             List<String> searchDatasetIds = new ArrayList<>();
@@ -939,33 +955,44 @@ public class RagQaDatasetAppService {
             ModelConfig embeddingModelConfig = ragModelConfigService.getUserEmbeddingModelConfig(userId);
             EmbeddingModelFactory.EmbeddingConfig embeddingConfig = toEmbeddingConfig(embeddingModelConfig);
 
+            // 语义答案缓存：相似问题在数据集内容未变化时直接回放
+            String answerCacheKey = null;
+            float[] questionVector = null;
+            if (ragAnswerCache.isEnabled()) {
+                String scope = searchFileIds.isEmpty() ? "datasets" : "file:" + request.getFileId();
+                answerCacheKey = ragAnswerCache.partitionKey(scope, searchDatasetIds,
+                        answerCacheSignature(request, embeddingConfig, userId));
+                questionVector = timer.time("answerCache",
+                        () -> queryEmbeddingCache.embed(embeddingConfig, request.getQuestion()));
+                RagAnswerCache.CachedAnswer cached = ragAnswerCache.lookup(answerCacheKey, questionVector);
+                if (cached != null) {
+                    intentFuture.cancel(true);
+                    replayCachedAnswer(emitter, cached, timer, userId);
+                    return;
+                }
+            }
+
             // 意图识别与语义改写（基于相关性判断）
-            // 下面这几步都是同步的 LLM 调用，每步之间补发进度事件，否则前端会一直停在上一条
-            // "正在检索..." 上，看起来像卡死。
+            // 意图识别已在后台进行；相关性判断在当前线程执行，相关时改写与扩展同时发起。
+            // 每步补发进度事件，否则前端会一直停在上一条 "正在检索..." 上，看起来像卡死。
             sendSseData(emitter, AgentChatResponse.build("正在理解问题意图...", MessageType.RAG_RETRIEVAL_PROGRESS));
-            IntentResult intentResult = classifyIntent(request.getQuestion(), userId);
-            RelevanceCheckResult relevance = checkRelevanceForDatasets(searchDatasetIds, request.getQuestion(),
-                    embeddingConfig);
-            String effectiveQuestion = request.getQuestion();
-            QueryExpansionResult expansion = QueryExpansionResult.empty();
-            if (relevance.isRelevant) {
-                sendSseData(emitter, AgentChatResponse.build("正在改写检索查询...", MessageType.RAG_RETRIEVAL_PROGRESS));
-                effectiveQuestion = rewriteQuestion(request.getQuestion(), relevance.documents, userId);
-                expansion = expandQueries(request.getQuestion(), relevance.documents, userId);
-            }
-            sendIntentRewriteToClient(emitter, intentResult, request.getQuestion(), effectiveQuestion, relevance,
-                    expansion);
+            RelevanceCheckResult relevance = timer.time("relevance",
+                    () -> checkRelevanceForDatasets(searchDatasetIds, request.getQuestion(), embeddingConfig));
+            QueryPlan plan = planQueries(request.getQuestion(), userId, intentFuture, relevance, timer, emitter);
+            String effectiveQuestion = plan.effectiveQuestion;
 
             // 执行RAG检索
             List<DocumentUnitEntity> retrievedDocuments;
             if (request.getFileId() != null && !request.getFileId().trim().isEmpty()) {
-                retrievedDocuments = retrieveFromFile(request.getFileId(), effectiveQuestion,
-                        request.getMaxResults(), embeddingConfig);
+                retrievedDocuments = timer.time("retrieval", () -> retrieveFromFile(request.getFileId(),
+                        effectiveQuestion, request.getMaxResults(), embeddingConfig));
             } else {
-                List<String> queries = buildQueryList(request.getQuestion(), effectiveQuestion, expansion);
-                retrievedDocuments = retrieveWithMultipleQueries(searchDatasetIds, queries, request.getMaxResults(),
-                        request.getMinScore(), request.getEnableRerank(), embeddingConfig);
+                List<String> queries = buildQueryList(request.getQuestion(), effectiveQuestion, plan.expansion);
+                retrievedDocuments = timer.time("retrieval",
+                        () -> retrieveWithMultipleQueries(searchDatasetIds, queries, request.getMaxResults(),
+                                request.getMinScore(), request.getEnableRerank(), embeddingConfig));
             }
+            sendStageTimings(emitter, timer, userId);
 
             // 构建检索结果
             List<RetrievedDocument> retrievedDocs = new ArrayList<>();
@@ -987,11 +1014,9 @@ public class RagQaDatasetAppService {
                 log.error("Failed to serialize retrieved documents", e);
             }
             sendSseData(emitter, retrievalEndResponse);
-            Thread.sleep(1000);
 
             // 第二阶段：生成回答
             sendSseData(emitter, AgentChatResponse.build("开始生成回答...", MessageType.RAG_ANSWER_START));
-            Thread.sleep(500);
 
             // 构建LLM上下文
             String context = buildContextFromDocuments(retrievedDocuments);
@@ -999,7 +1024,12 @@ public class RagQaDatasetAppService {
 
             // 调用流式LLM - 使用同步等待确保流式处理完成
             String fullAnswer = generateStreamAnswerAndWait(prompt, userId, emitter);
-            sendEvidenceCoverage(emitter, fullAnswer, retrievedDocuments, embeddingConfig);
+            String coverage = sendEvidenceCoverage(emitter, fullAnswer, retrievedDocuments, embeddingConfig);
+            if (answerCacheKey != null) {
+                ragAnswerCache.put(answerCacheKey, questionVector,
+                        retrievedDocuments.stream().map(DocumentUnitEntity::getId).toList(),
+                        retrievalEndResponse.getPayload(), fullAnswer, coverage);
+            }
 
             // 在LLM流式处理完成后发送完成信号
             sendSseData(emitter, AgentChatResponse.buildEndMessage("回答生成完成", MessageType.RAG_ANSWER_END));
@@ -1012,6 +1042,36 @@ public class RagQaDatasetAppService {
         }
     }
 
+    /** 影响检索和生成结果的参数（嵌入模型、对话模型、检索参数），作为语义答案缓存分区键的一部分 */
+    private String answerCacheSignature(RagStreamChatRequest request,
+            EmbeddingModelFactory.EmbeddingConfig embeddingConfig, String userId) {
+        return String.join("#", embeddingConfig.getBaseUrl(), embeddingConfig.getModelName(),
+                String.valueOf(userSettingsDomainService.getUserDefaultModelId(userId)),
+                String.valueOf(request.getMaxResults()), String.valueOf(request.getMinScore()),
+                String.valueOf(request.getEnableRerank()));
+    }
+
+    /** 回放语义答案缓存命中的阶段耗时、检索结果、答案和证据覆盖，事件序列与正常生成一致 */
+    private void replayCachedAnswer(SseEmitter emitter, RagAnswerCache.CachedAnswer cached, StageTimer timer,
+            String userId) {
+        sendStageTimings(emitter, timer, userId);
+
+        AgentChatResponse retrievalEndResponse = AgentChatResponse.build(
+                String.format("检索完成，找到 %d 个相关文档（命中答案缓存）", cached.getDocumentIds().size()),
+                MessageType.RAG_RETRIEVAL_END);
+        retrievalEndResponse.setPayload(cached.getRetrievalPayload());
+        sendSseData(emitter, retrievalEndResponse);
+
+        sendSseData(emitter, AgentChatResponse.build("开始生成回答...", MessageType.RAG_ANSWER_START));
+        sendSseData(emitter, AgentChatResponse.build("开始思考...", MessageType.RAG_THINKING_START));
+        sendSseData(emitter, AgentChatResponse.build("思考完成", MessageType.RAG_THINKING_END));
+        sendSseData(emitter, AgentChatResponse.build(cached.getAnswer(), MessageType.RAG_ANSWER_PROGRESS));
+        if (cached.getCoverage() != null) {
+            sendSseData(emitter, AgentChatResponse.build(cached.getCoverage(), MessageType.RAG_THINKING_PROGRESS));
+        }
+        sendSseData(emitter, AgentChatResponse.buildEndMessage("回答生成完成", MessageType.RAG_ANSWER_END));
+    }
+
     /** 从指定文件中检索相关文档 */
     private List<DocumentUnitEntity> retrieveFromFile(String fileId, String question, Integer maxResults,
             EmbeddingModelFactory.EmbeddingConfig embeddingConfig) {
@@ -1225,6 +1285,18 @@ JSON 示例：
         }
     }
 
+    private RelevanceCheckResult checkRelevanceForSnapshotVectors(String userRagId, String ragVersionId,
+            String question, EmbeddingModelFactory.EmbeddingConfig embeddingConfig) {
+        try {
+            List<DocumentUnitEntity> docs = ragDataAccessService.searchUserSnapshot(userRagId, ragVersionId, question,
+                    RAG_RELEVANCE_MAX_RESULTS, RAG_RELEVANCE_MIN_SCORE, false, 1, embeddingConfig);
+            return toRelevanceResult(docs);
+        } catch (Exception e) {
+            log.warn("Snapshot relevance check failed: {}", e.getMessage());
+            return new RelevanceCheckResult(false, 0.0, 0, new ArrayList<>());
+        }
+    }
+
     private RelevanceCheckResult toRelevanceResult(List<DocumentUnitEntity> docs) {
         double maxScore = 0.0;
         for (DocumentUnitEntity doc : docs) {
@@ -1339,57 +1411,29 @@ JSON 示例：
         return String.join("\n", parts);
     }
 
+    /** 多查询检索：各查询并发检索、RRF 融合并只重排一次，再做多样性截断 */
     private List<DocumentUnitEntity> retrieveWithMultipleQueries(List<String> datasetIds, List<String> queries,
             Integer maxResults, Double minScore, Boolean enableRerank,
             EmbeddingModelFactory.EmbeddingConfig embeddingConfig) {
+        return mergeMultiQueryResults(queries, maxResults, candidates -> embeddingDomainService
+                .ragDocMultiQuery(datasetIds, queries, candidates, minScore, enableRerank, 2, embeddingConfig));
+    }
+
+    /** 多查询检索结果合并：数据集和快照版本分区共用。检索端已按 RRF 融合并重排，这里只做多样性截断；
+     * 截断会丢掉同一文件的多余分片，所以向检索端多要一倍候选留出余量
+     * @param retriever 候选数 -> 融合后的检索结果 */
+    private List<DocumentUnitEntity> mergeMultiQueryResults(List<String> queries, Integer maxResults,
+            Function<Integer, List<DocumentUnitEntity>> retriever) {
         if (queries == null || queries.isEmpty()) {
             return new ArrayList<>();
         }
-        java.util.Map<String, DocumentUnitEntity> merged = new java.util.HashMap<>();
-        for (String query : queries) {
-            List<DocumentUnitEntity> docs = embeddingDomainService.ragDoc(datasetIds, query, maxResults, minScore,
-                    enableRerank, 2, embeddingConfig, false);
-            for (DocumentUnitEntity doc : docs) {
-                String id = doc.getId();
-                double score = doc.getSimilarityScore() != null ? doc.getSimilarityScore() : 0.0;
-                DocumentUnitEntity existing = merged.get(id);
-                if (existing == null) {
-                    merged.put(id, doc);
-                } else {
-                    double existingScore = existing.getSimilarityScore() != null ? existing.getSimilarityScore() : 0.0;
-                    if (score > existingScore) {
-                        existing.setSimilarityScore(score);
-                    }
-                }
-            }
-        }
-        List<DocumentUnitEntity> mergedList = new ArrayList<>(merged.values());
-        mergedList.sort((a, b) -> Double.compare(
-                b.getSimilarityScore() != null ? b.getSimilarityScore() : 0.0,
-                a.getSimilarityScore() != null ? a.getSimilarityScore() : 0.0));
-        return applyDiversityLimit(mergedList, maxResults);
+        Integer candidates = maxResults != null ? maxResults * 2 : null;
+        return applyDiversityLimit(retriever.apply(candidates), maxResults);
     }
 
+    /** 每个文件最多保留两个分片 */
     private List<DocumentUnitEntity> applyDiversityLimit(List<DocumentUnitEntity> documents, Integer maxResults) {
-        if (documents == null || documents.isEmpty()) {
-            return new ArrayList<>();
-        }
-        java.util.Map<String, Integer> perFileCount = new java.util.HashMap<>();
-        List<DocumentUnitEntity> result = new ArrayList<>();
-        int limit = maxResults != null ? maxResults : documents.size();
-        for (DocumentUnitEntity doc : documents) {
-            if (result.size() >= limit) {
-                break;
-            }
-            String fileId = doc.getFileId();
-            int count = perFileCount.getOrDefault(fileId, 0);
-            if (count >= 2) {
-                continue;
-            }
-            result.add(doc);
-            perFileCount.put(fileId, count + 1);
-        }
-        return result;
+        return DiversityLimiter.limitPerKey(documents, DocumentUnitEntity::getFileId, maxResults, 2);
     }
 
     private List<DocumentUnitEntity> filterAndRankSnapshotDocumentsMulti(List<DocumentUnitEntity> documents,
@@ -1398,37 +1442,34 @@ JSON 示例：
             return new ArrayList<>();
         }
         try {
-            EmbeddingModel embeddingModel = embeddingModelFactory.createEmbeddingModel(embeddingConfig);
-            List<Embedding> queryEmbeddings = new ArrayList<>();
+            List<float[]> queryVectors = new ArrayList<>();
             for (String query : queries) {
                 if (query == null || query.isBlank()) {
                     continue;
                 }
-                queryEmbeddings.add(embeddingModel.embed(query).content());
+                queryVectors.add(queryEmbeddingCache.embed(embeddingConfig, query));
             }
-            if (queryEmbeddings.isEmpty()) {
+            if (queryVectors.isEmpty()) {
                 return new ArrayList<>();
             }
 
+            // 分片向量一次批量读出，不再逐条调用嵌入服务
+            Map<String, float[]> docVectors = embeddingDomainService.loadDocumentVectors(documents, embeddingConfig,
+                    queryVectors.get(0).length);
             List<DocumentWithScore> documentsWithScores = new ArrayList<>();
             for (DocumentUnitEntity doc : documents) {
-                try {
-                    Embedding docEmbedding = embeddingModel.embed(doc.getContent()).content();
-                    double best = 0.0;
-                    for (Embedding queryEmbedding : queryEmbeddings) {
-                        double similarity = cosineSimilarity(queryEmbedding.vectorAsList(),
-                                docEmbedding.vectorAsList());
+                float[] docVector = docVectors.get(doc.getId());
+                double best = 0.0;
+                if (docVector != null) {
+                    for (float[] queryVector : queryVectors) {
+                        double similarity = VectorSimilarity.cosine(queryVector, docVector);
                         if (similarity > best) {
                             best = similarity;
                         }
                     }
-                    doc.setSimilarityScore(best);
-                    documentsWithScores.add(new DocumentWithScore(doc, best));
-                } catch (Exception e) {
-                    log.warn("计算文档相似度失败: {}", e.getMessage());
-                    doc.setSimilarityScore(0.0);
-                    documentsWithScores.add(new DocumentWithScore(doc, 0.0));
                 }
+                doc.setSimilarityScore(best);
+                documentsWithScores.add(new DocumentWithScore(doc, best));
             }
 
             documentsWithScores.sort((a, b) -> Double.compare(b.score, a.score));
@@ -1445,40 +1486,34 @@ JSON 示例：
         }
     }
 
-    private void sendEvidenceCoverage(SseEmitter emitter, String answer, List<DocumentUnitEntity> documents,
+    /** 评估回答句子被检索片段覆盖的比例并发送
+     * @return 发送的证据覆盖摘要，未发送时为 null */
+    private String sendEvidenceCoverage(SseEmitter emitter, String answer, List<DocumentUnitEntity> documents,
             EmbeddingModelFactory.EmbeddingConfig embeddingConfig) {
         if (answer == null || answer.isBlank() || documents == null || documents.isEmpty()) {
-            return;
+            return null;
         }
         try {
-            EmbeddingModel embeddingModel = embeddingModelFactory.createEmbeddingModel(embeddingConfig);
             List<DocumentUnitEntity> topDocs = documents.stream().limit(5).collect(Collectors.toList());
-            List<Embedding> docEmbeddings = new ArrayList<>();
-            for (DocumentUnitEntity doc : topDocs) {
-                String content = doc.getContent();
-                if (content == null || content.isBlank()) {
-                    docEmbeddings.add(null);
-                    continue;
-                }
-                docEmbeddings.add(embeddingModel.embed(content).content());
-            }
 
-            String[] sentences = answer.split("[。！？!?\\n]");
-            int total = 0;
+            List<String> sentences = Arrays.stream(answer.split("[。！？!?\\n]")).map(String::trim)
+                    .filter(sentence -> !sentence.isBlank()).collect(Collectors.toList());
+            int total = sentences.size();
             int covered = 0;
-            for (String sentence : sentences) {
-                String trimmed = sentence.trim();
-                if (trimmed.isBlank()) {
-                    continue;
-                }
-                total++;
-                Embedding sentEmbedding = embeddingModel.embed(trimmed).content();
+            // 回答里的句子只算这一次，不进查询向量缓存，一次 embedAll 批量算完
+            List<float[]> sentVectors = queryEmbeddingCache.embedAllUncached(embeddingConfig, sentences);
+            List<float[]> docVectors = List.of();
+            if (!sentVectors.isEmpty()) {
+                // 检索结果的分片向量已在入库时算过，直接读回
+                Map<String, float[]> stored = embeddingDomainService.loadDocumentVectors(topDocs, embeddingConfig,
+                        sentVectors.get(0).length);
+                docVectors = topDocs.stream().map(doc -> stored.get(doc.getId())).filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+            }
+            for (float[] sentVector : sentVectors) {
                 double best = 0.0;
-                for (Embedding docEmbedding : docEmbeddings) {
-                    if (docEmbedding == null) {
-                        continue;
-                    }
-                    double sim = cosineSimilarity(sentEmbedding.vectorAsList(), docEmbedding.vectorAsList());
+                for (float[] docVector : docVectors) {
+                    double sim = VectorSimilarity.cosine(sentVector, docVector);
                     if (sim > best) {
                         best = sim;
                     }
@@ -1488,7 +1523,7 @@ JSON 示例：
                 }
             }
             if (total == 0) {
-                return;
+                return null;
             }
             double ratio = (double) covered / total * 100.0;
             // 前导换行是必需的：前端把所有 PROGRESS 分片直接拼成一段 Markdown，
@@ -1498,8 +1533,10 @@ JSON 示例：
             // 「证据覆盖评估」是进度标签，不是思考内容。用 PROGRESS 发会被拼进正文，
             // 这正是上面那行黏连的来源。标签不再单独下发，标题已由 summary 表达。
             sendSseData(emitter, AgentChatResponse.build(summary, MessageType.RAG_THINKING_PROGRESS));
+            return summary;
         } catch (Exception e) {
             log.warn("Evidence coverage failed: {}", e.getMessage());
+            return null;
         }
     }
     private String extractJsonObject(String raw) {
@@ -1538,6 +1575,91 @@ JSON 示例：
         sendSseData(emitter, AgentChatResponse.build("完成", MessageType.RAG_THINKING_END));
     }
 
+    /** 根据相关性判断生成检索查询
+     *
+     * 相关时语义改写与查询扩展同时发起，二者互不依赖；意图识别只用于展示，到这里才等待它的结果。
+     * 各步骤内部都有降级，失败时退回原问题。 */
+    private QueryPlan planQueries(String question, String userId, CompletableFuture<IntentResult> intentFuture,
+            RelevanceCheckResult relevance, StageTimer timer, SseEmitter emitter) {
+        String effectiveQuestion = question;
+        QueryExpansionResult expansion = QueryExpansionResult.empty();
+        if (relevance.isRelevant) {
+            sendSseData(emitter, AgentChatResponse.build("正在改写检索查询...", MessageType.RAG_RETRIEVAL_PROGRESS));
+            CompletableFuture<String> rewriteFuture = timer.async("rewrite",
+                    () -> rewriteQuestion(question, relevance.documents, userId));
+            expansion = timer.time("expand", () -> expandQueries(question, relevance.documents, userId));
+            effectiveQuestion = rewriteFuture.join();
+        }
+        sendIntentRewriteToClient(emitter, intentFuture.join(), question, effectiveQuestion, relevance, expansion);
+        return new QueryPlan(effectiveQuestion, expansion);
+    }
+
+    /** 发送检索前各阶段耗时（SSE 进度事件 + 日志） */
+    private void sendStageTimings(SseEmitter emitter, StageTimer timer, String userId) {
+        Map<String, Long> timings = timer.snapshot();
+        long totalMillis = timer.totalMillis();
+        log.info("RAG stage timings for user {}: {} total={}ms", userId, timings, totalMillis);
+
+        String detail = timings.entrySet().stream()
+                .map(entry -> STAGE_LABELS.getOrDefault(entry.getKey(), entry.getKey()) + " " + entry.getValue() + "ms")
+                .collect(Collectors.joining(" · "));
+        AgentChatResponse response = AgentChatResponse.build(
+                String.format("检索阶段耗时：%s，共 %dms", detail, totalMillis), MessageType.RAG_RETRIEVAL_PROGRESS);
+        try {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("stages", timings);
+            payload.put("totalMs", totalMillis);
+            response.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (Exception e) {
+            log.warn("Failed to serialize stage timings", e);
+        }
+        sendSseData(emitter, response);
+    }
+
+    /** 检索前阶段的计时器，一次问答一个实例；异步阶段在 ragStageExecutor 上执行 */
+    private static final class StageTimer {
+        private final ExecutorService executor;
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Long> elapsedMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        StageTimer(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        <T> CompletableFuture<T> async(String stage, Supplier<T> task) {
+            return CompletableFuture.supplyAsync(() -> time(stage, task), executor);
+        }
+
+        <T> T time(String stage, Supplier<T> task) {
+            long start = System.nanoTime();
+            try {
+                return task.get();
+            } finally {
+                elapsedMillis.put(stage, (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+
+        long totalMillis() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        Map<String, Long> snapshot() {
+            synchronized (elapsedMillis) {
+                return new LinkedHashMap<>(elapsedMillis);
+            }
+        }
+    }
+
+    private static class QueryPlan {
+        public final String effectiveQuestion;
+        public final QueryExpansionResult expansion;
+
+        QueryPlan(String effectiveQuestion, QueryExpansionResult expansion) {
+            this.effectiveQuestion = effectiveQuestion;
+            this.expansion = expansion;
+        }
+    }
+
     private static class IntentResult {
         public String intent;
         public double confidence;
@@ -1764,9 +1886,22 @@ JSON 示例：
         return AiServices.builder(Agent.class).streamingChatModel(streamingClient).chatMemory(memory).build();
     }
 
+    /** 创建流式问答连接，开启片段合并时答案、思考进度片段按 sse.coalescing 配置合并发送 */
+    private SseEmitter createStreamEmitter() {
+        if (!sseProperties.getCoalescing().isEnabled()) {
+            return new SseEmitter(RAG_STREAM_TIMEOUT_MS);
+        }
+        return coalescingSseTransport.createEmitter(RAG_STREAM_TIMEOUT_MS,
+                response -> SseEmitter.event().data(objectMapper.writeValueAsString(response)));
+    }
+
     /** 发送SSE数据（带状态检查） */
     private void sendSseData(SseEmitter emitter, AgentChatResponse response) {
         try {
+            if (emitter instanceof CoalescingSseEmitter coalescingEmitter) {
+                coalescingEmitter.sendResponse(response);
+                return;
+            }
             String jsonData = objectMapper.writeValueAsString(response);
             emitter.send(SseEmitter.event().data(jsonData));
         } catch (Exception e) {
@@ -1878,7 +2013,7 @@ JSON 示例：
      * @param userId 用户ID
      * @return SSE流式响应 */
     public SseEmitter ragStreamChatByUserRag(RagStreamChatRequest request, String userRagId, String userId) {
-        SseEmitter emitter = new SseEmitter(RAG_STREAM_TIMEOUT_MS);
+        SseEmitter emitter = createStreamEmitter();
 
         // 设置连接关闭回调
         emitter.onCompletion(
@@ -1926,66 +2061,89 @@ JSON 示例：
             log.info("Starting RAG stream chat by userRag: {}, user: {}, question: '{}', install type: {}", userRagId,
                     userId, request.getQuestion(), dataSourceInfo.getInstallType());
 
-            // 意图识别与语义改写
             // 第一阶段：检索文档
             sendSseData(emitter, AgentChatResponse.build("开始检索相关文档...", MessageType.RAG_RETRIEVAL_START));
-            Thread.sleep(500);
+
+            // 意图识别只依赖问题本身，最先发起，与数据源准备、相关性判断重叠执行
+            StageTimer timer = new StageTimer(ragStageExecutor);
+            CompletableFuture<IntentResult> intentFuture = timer.async("intent",
+                    () -> classifyIntent(request.getQuestion(), userId));
 
             // 获取用户的嵌入模型配置
             ModelConfig embeddingModelConfig = ragModelConfigService.getUserEmbeddingModelConfig(userId);
             EmbeddingModelFactory.EmbeddingConfig embeddingConfig = toEmbeddingConfig(embeddingModelConfig);
 
+            // 语义答案缓存：引用安装与直接问数据集共用分区；快照安装的检索结果带安装内的文件ID，按安装和版本分区
+            String answerCacheKey = null;
+            float[] questionVector = null;
+            if (ragAnswerCache.isEnabled()) {
+                boolean realTime = Boolean.TRUE.equals(dataSourceInfo.getIsRealTime());
+                String scope = realTime ? "datasets" : "snapshot:" + userRagId + "@" + dataSourceInfo.getVersionId();
+                answerCacheKey = ragAnswerCache.partitionKey(scope,
+                        realTime ? List.of(dataSourceInfo.getOriginalRagId()) : List.of(),
+                        answerCacheSignature(request, embeddingConfig, userId));
+                questionVector = timer.time("answerCache",
+                        () -> queryEmbeddingCache.embed(embeddingConfig, request.getQuestion()));
+                RagAnswerCache.CachedAnswer cached = ragAnswerCache.lookup(answerCacheKey, questionVector);
+                if (cached != null) {
+                    intentFuture.cancel(true);
+                    replayCachedAnswer(emitter, cached, timer, userId);
+                    return;
+                }
+            }
+
             List<DocumentUnitEntity> retrievedDocuments;
-            String effectiveQuestion = request.getQuestion();
-            // 同上：意图识别是同步 LLM 调用，先发进度事件再调用
             sendSseData(emitter, AgentChatResponse.build("正在理解问题意图...", MessageType.RAG_RETRIEVAL_PROGRESS));
-            IntentResult intentResult = classifyIntent(request.getQuestion(), userId);
             RelevanceCheckResult relevance;
-            QueryExpansionResult expansion = QueryExpansionResult.empty();
+            QueryPlan plan;
 
             // 根据RAG类型选择不同的数据源
             if (dataSourceInfo.getIsRealTime()) {
                 // REFERENCE类型：使用原始RAG的数据集进行向量搜索
                 List<String> ragDatasetIds = List.of(dataSourceInfo.getOriginalRagId());
-                relevance = checkRelevanceForDatasets(ragDatasetIds, request.getQuestion(), embeddingConfig);
-                if (relevance.isRelevant) {
-                    sendSseData(emitter,
-                            AgentChatResponse.build("正在改写检索查询...", MessageType.RAG_RETRIEVAL_PROGRESS));
-                    effectiveQuestion = rewriteQuestion(request.getQuestion(), relevance.documents, userId);
-                    expansion = expandQueries(request.getQuestion(), relevance.documents, userId);
-                }
-                sendIntentRewriteToClient(emitter, intentResult, request.getQuestion(), effectiveQuestion, relevance,
-                        expansion);
-
-                List<String> queries = buildQueryList(request.getQuestion(), effectiveQuestion, expansion);
-                retrievedDocuments = retrieveWithMultipleQueries(ragDatasetIds, queries, request.getMaxResults(),
-                        request.getMinScore(), request.getEnableRerank(), embeddingConfig);
+                relevance = timer.time("relevance",
+                        () -> checkRelevanceForDatasets(ragDatasetIds, request.getQuestion(), embeddingConfig));
+                plan = planQueries(request.getQuestion(), userId, intentFuture, relevance, timer, emitter);
+
+                List<String> queries = buildQueryList(request.getQuestion(), plan.effectiveQuestion, plan.expansion);
+                retrievedDocuments = timer.time("retrieval",
+                        () -> retrieveWithMultipleQueries(ragDatasetIds, queries, request.getMaxResults(),
+                                request.getMinScore(), request.getEnableRerank(), embeddingConfig));
+            } else if (ragDataAccessService.hasSnapshotVectors(userRagId)) {
+                // SNAPSHOT类型：在快照版本的向量分区内检索，不再把快照分片全部读进内存
+                String versionId = dataSourceInfo.getVersionId();
+                relevance = timer.time("relevance", () -> checkRelevanceForSnapshotVectors(userRagId, versionId,
+                        request.getQuestion(), embeddingConfig));
+                plan = planQueries(request.getQuestion(), userId, intentFuture, relevance, timer, emitter);
+
+                List<String> queries = buildQueryList(request.getQuestion(), plan.effectiveQuestion, plan.expansion);
+                retrievedDocuments = timer.time("retrieval", () -> mergeMultiQueryResults(queries,
+                        request.getMaxResults(), candidates -> ragDataAccessService.searchUserSnapshot(userRagId,
+                                versionId, queries, candidates, request.getMinScore(), request.getEnableRerank(), 2,
+                                embeddingConfig)));
             } else {
-                // SNAPSHOT类型：使用用户快照数据进行检索
-                retrievedDocuments = ragDataAccessService.getRagDocuments(userId, userRagId);
+                // SNAPSHOT类型（发布时未复制向量的旧版本）：使用用户快照数据进行检索
+                List<DocumentUnitEntity> snapshotDocuments = ragDataAccessService.getRagDocuments(userId, userRagId);
 
                 // 如果快照数据为空，返回空结果
-                if (retrievedDocuments.isEmpty()) {
+                if (snapshotDocuments.isEmpty()) {
                     log.info("用户RAG [{}] 的快照数据为空，无法进行检索", userRagId);
                     relevance = new RelevanceCheckResult(false, 0.0, 0, new ArrayList<>());
-                    sendIntentRewriteToClient(emitter, intentResult, request.getQuestion(), effectiveQuestion,
-                            relevance, expansion);
+                    plan = planQueries(request.getQuestion(), userId, intentFuture, relevance, timer, emitter);
+                    retrievedDocuments = snapshotDocuments;
                 } else {
-                    relevance = checkRelevanceForSnapshot(retrievedDocuments, request.getQuestion(), embeddingConfig);
-                    if (relevance.isRelevant) {
-                        sendSseData(emitter,
-                                AgentChatResponse.build("正在改写检索查询...", MessageType.RAG_RETRIEVAL_PROGRESS));
-                        effectiveQuestion = rewriteQuestion(request.getQuestion(), relevance.documents, userId);
-                        expansion = expandQueries(request.getQuestion(), relevance.documents, userId);
-                    }
-                    sendIntentRewriteToClient(emitter, intentResult, request.getQuestion(), effectiveQuestion,
-                            relevance, expansion);
+                    relevance = timer.time("relevance",
+                            () -> checkRelevanceForSnapshot(snapshotDocuments, request.getQuestion(), embeddingConfig));
+                    plan = planQueries(request.getQuestion(), userId, intentFuture, relevance, timer, emitter);
                     // 对快照文档进行相关性过滤和排序
-                    List<String> queries = buildQueryList(request.getQuestion(), effectiveQuestion, expansion);
-                    retrievedDocuments = filterAndRankSnapshotDocumentsMulti(retrievedDocuments, queries,
-                            request.getMaxResults(), embeddingConfig);
+                    List<String> queries = buildQueryList(request.getQuestion(), plan.effectiveQuestion,
+                            plan.expansion);
+                    retrievedDocuments = timer.time("retrieval", () -> filterAndRankSnapshotDocumentsMulti(
+                            snapshotDocuments, queries, request.getMaxResults(), embeddingConfig));
                 }
             }
+            String effectiveQuestion = plan.effectiveQuestion;
+            sendStageTimings(emitter, timer, userId);
 
             // 构建检索结果
             List<RetrievedDocument> retrievedDocs = new ArrayList<>();
@@ -2022,11 +2180,8 @@ JSON 示例：
             }
             sendSseData(emitter, retrievalEndResponse);
 
-            Thread.sleep(500);
-
             // 第二阶段：生成回答
             sendSseData(emitter, AgentChatResponse.build("开始生成回答...", MessageType.RAG_ANSWER_START));
-            Thread.sleep(500);
 
             // 构建LLM上下文
             String context = buildContextFromDocuments(retrievedDocuments);
@@ -2034,7 +2189,12 @@ JSON 示例：
 
             // 调用流式LLM - 使用同步等待确保流式处理完成
             String fullAnswer = generateStreamAnswerAndWait(prompt, userId, emitter);
-            sendEvidenceCoverage(emitter, fullAnswer, retrievedDocuments, embeddingConfig);
+            String coverage = sendEvidenceCoverage(emitter, fullAnswer, retrievedDocuments, embeddingConfig);
+            if (answerCacheKey != null) {
+                ragAnswerCache.put(answerCacheKey, questionVector,
+                        retrievedDocuments.stream().map(DocumentUnitEntity::getId).toList(),
+                        retrievalEndResponse.getPayload(), fullAnswer, coverage);
+            }
 
             // 在LLM流式处理完成后发送完成信号
             sendSseData(emitter, AgentChatResponse.buildEndMessage("回答生成完成", MessageType.RAG_ANSWER_END));
@@ -2060,32 +2220,23 @@ JSON 示例：
         }
 
         try {
-            // 获取嵌入模型
-            EmbeddingModel embeddingModel = embeddingModelFactory.createEmbeddingModel(embeddingConfig);
-
             // 计算问题的向量
-            Embedding questionEmbedding = embeddingModel.embed(question).content();
+            float[] questionVector = queryEmbeddingCache.embed(embeddingConfig, question);
+
+            // 批量读取文档分片向量（优先复用入库时已存的向量）
+            Map<String, float[]> docVectors = embeddingDomainService.loadDocumentVectors(documents, embeddingConfig,
+                    questionVector.length);
 
             // 为每个文档计算相似度
             List<DocumentWithScore> documentsWithScores = new ArrayList<>();
             for (DocumentUnitEntity doc : documents) {
-                try {
-                    // 计算文档内容的向量
-                    Embedding docEmbedding = embeddingModel.embed(doc.getContent()).content();
+                float[] docVector = docVectors.get(doc.getId());
+                // 拿不到向量的文档给最低分
+                double similarity = docVector != null ? VectorSimilarity.cosine(questionVector, docVector) : 0.0;
 
-                    // 计算余弦相似度
-                    double similarity = cosineSimilarity(questionEmbedding.vectorAsList(), docEmbedding.vectorAsList());
-
-                    // 设置相似度分数到文档实体
-                    doc.setSimilarityScore(similarity);
-                    documentsWithScores.add(new DocumentWithScore(doc, similarity));
-
-                } catch (Exception e) {
-                    log.warn("计算文档相似度失败: {}", e.getMessage());
-                    // 如果计算失败，设置较低的相似度分数
-                    doc.setSimilarityScore(0.0);
-                    documentsWithScores.add(new DocumentWithScore(doc, 0.0));
-                }
+                // 设置相似度分数到文档实体
+                doc.setSimilarityScore(similarity);
+                documentsWithScores.add(new DocumentWithScore(doc, similarity));
             }
 
             // 按相似度降序排序
@@ -2106,25 +2257,6 @@ JSON 示例：
         }
     }
 
-    /** 计算两个向量的余弦相似度 */
-    private double cosineSimilarity(List<Float> vectorA, List<Float> vectorB) {
-        if (vectorA.size() != vectorB.size()) {
-            return 0.0;
-        }
-
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-
-        for (int i = 0; i < vectorA.size(); i++) {
-            dotProduct += vectorA.get(i) * vectorB.get(i);
-            normA += Math.pow(vectorA.get(i), 2);
-            normB += Math.pow(vectorB.get(i), 2);
-        }
-
-        return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
-    }
-
     /** 文档与分数的内部类 */
     private static class DocumentWithScore {
         final DocumentUnitEntity document;
@@ -39,7 +39,7 @@ public interface HighAvailabilityGateway {
      * @param request 更新请求 */
     void updateApiInstance(String type, String businessId, ApiInstanceUpdateRequest request);
 
-    /** 上报调用结果
+    /** 上报调用结果，异步发送，不阻塞调用方
      * 
      * @param request 结果上报请求 */
     void reportResult(ReportResultRequest request);
@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.lucas.domain.highavailability.gateway.HighAvailabilityGateway;
 import org.lucas.domain.llm.event.ModelsBatchDeletedEvent;
@@ -36,12 +35,14 @@ public class HighAvailabilityDomainServiceImpl implements HighAvailabilityDomain
     private final HighAvailabilityProperties properties;
     private final HighAvailabilityGateway gateway;
     private final LLMDomainService llmDomainService;
+    private final ProviderRoutingTable routingTable;
 
     public HighAvailabilityDomainServiceImpl(HighAvailabilityProperties properties, HighAvailabilityGateway gateway,
-            LLMDomainService llmDomainService) {
+            LLMDomainService llmDomainService, ProviderRoutingTable routingTable) {
         this.properties = properties;
         this.gateway = gateway;
         this.llmDomainService = llmDomainService;
+        this.routingTable = routingTable;
     }
 
     @Override
@@ -124,6 +125,17 @@ public class HighAvailabilityDomainServiceImpl implements HighAvailabilityDomain
         }
 
         try {
+            if (properties.getRouting().isEnabled()) {
+                // 本地路由表选择，路由过期或实例都不健康时才请求网关
+                HighAvailabilityResult routed = routingTable.select(model, userId, sessionId, fallbackChain);
+                if (routed != null) {
+                    return routed;
+                }
+                // 网关不可用且没有旧路由，路由表已按退避窗口告警，这里直接降级，不再逐次打印堆栈
+                ProviderEntity provider = llmDomainService.getProvider(model.getProviderId());
+                return new HighAvailabilityResult(provider, model, null);
+            }
+
             // 构建选择实例请求
             SelectInstanceRequest request = new SelectInstanceRequest(userId, model.getModelId(), "MODEL");
 
@@ -173,13 +185,16 @@ public class HighAvailabilityDomainServiceImpl implements HighAvailabilityDomain
     }
 
     @Override
-    @Async
     public void reportCallResult(String instanceId, String modelId, boolean success, long latencyMs,
             String errorMessage) {
         if (!properties.isEnabled()) {
             return;
         }
 
+        if (properties.getRouting().isEnabled()) {
+            routingTable.record(instanceId, success, latencyMs);
+        }
+
         try {
             ReportResultRequest request = new ReportResultRequest();
             request.setInstanceId(instanceId);
@@ -191,7 +206,7 @@ public class HighAvailabilityDomainServiceImpl implements HighAvailabilityDomain
 
             gateway.reportResult(request);
 
-            logger.debug("成功上报调用结果: instanceId={}, modelId={}, success={}, latency={}ms", instanceId, modelId, success,
+            logger.debug("调用结果已提交上报: instanceId={}, modelId={}, success={}, latency={}ms", instanceId, modelId, success,
                     latencyMs);
 
         } catch (Exception e) {
@@ -0,0 +1,315 @@
+package org.lucas.domain.highavailability.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.lucas.domain.highavailability.gateway.HighAvailabilityGateway;
+import org.lucas.domain.llm.event.ModelDomainEvent;
+import org.lucas.domain.llm.event.ModelsBatchDeletedEvent;
+import org.lucas.domain.llm.model.HighAvailabilityResult;
+import org.lucas.domain.llm.model.ModelEntity;
+import org.lucas.domain.llm.model.ProviderEntity;
+import org.lucas.domain.llm.service.LLMDomainService;
+import org.lucas.infrastructure.config.HighAvailabilityProperties;
+import org.lucas.infrastructure.highavailability.constant.AffinityType;
+import org.lucas.infrastructure.highavailability.dto.request.SelectInstanceRequest;
+import org.lucas.infrastructure.highavailability.dto.response.ApiInstanceDTO;
+
+/** 本地路由表 缓存网关的选择结果，在进程内挑选实例
+ *
+ * 路由按（用户、模型、降级链）划分，记录网关在有效期内返回过的实例。有效期内按各实例调用结果的延迟、错误率 EWMA
+ * 加权随机挑选，会话优先沿用上次的实例；路由过期、本地实例都不健康时才请求网关。同一路由同时只有一个请求去网关刷新，
+ * 其他请求继续用旧路由。网关失败后暂停请求一段时间，期间继续使用未超过 staleTtlSeconds 的旧路由，
+ * 网关变慢或宕机不会拖住每一次对话。
+ *
+ * 路由里只记实例到模型业务ID的映射，模型和服务商每次按当前数据读取，服务商的密钥、状态变更立即生效；
+ * 模型变更事件到达时清掉指向它的实例。
+ *
+ * @author xhy
+ * @since 1.0.0 */
+@Component
+public class ProviderRoutingTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderRoutingTable.class);
+
+    private final HighAvailabilityProperties.Routing properties;
+    private final HighAvailabilityGateway gateway;
+    private final LLMDomainService llmDomainService;
+
+    /** 路由键 -> 路由 */
+    private final Cache<String, Route> routes;
+
+    /** 路由键|会话ID -> 实例ID */
+    private final Cache<String, String> affinities;
+
+    /** 实例ID -> 健康状态 */
+    private final Cache<String, InstanceHealth> healths;
+
+    /** 网关暂停请求的截止时间 */
+    private volatile long gatewayBlockedUntil;
+
+    /** 无可用路由告警的静默截止时间，一个退避窗口内只告警一次 */
+    private volatile long noRouteLoggedUntil;
+
+    public ProviderRoutingTable(HighAvailabilityProperties highAvailabilityProperties, HighAvailabilityGateway gateway,
+            LLMDomainService llmDomainService) {
+        this.properties = highAvailabilityProperties.getRouting();
+        this.gateway = gateway;
+        this.llmDomainService = llmDomainService;
+        int maxRoutes = Math.max(1, properties.getMaxRoutes());
+        this.routes = CacheBuilder.newBuilder().maximumSize(maxRoutes)
+                .expireAfterWrite(Math.max(1, properties.getStaleTtlSeconds()), TimeUnit.SECONDS).build();
+        this.affinities = CacheBuilder.newBuilder().maximumSize(maxRoutes * 4L)
+                .expireAfterAccess(Math.max(1, properties.getAffinityTtlMinutes()), TimeUnit.MINUTES).build();
+        this.healths = CacheBuilder.newBuilder().maximumSize(maxRoutes).expireAfterAccess(1, TimeUnit.HOURS).build();
+    }
+
+    /** 选择实例
+     *
+     * @param model 请求的模型
+     * @param userId 用户ID
+     * @param sessionId 会话ID，为空不做亲和
+     * @param fallbackChain 降级链
+     * @return 选择结果；网关不可用且没有可用的旧路由时为 null，由调用方降级 */
+    public HighAvailabilityResult select(ModelEntity model, String userId, String sessionId,
+            List<String> fallbackChain) {
+        String routeKey = userId + "|" + model.getModelId() + "|"
+                + (fallbackChain == null ? "" : String.join(",", fallbackChain));
+        String affinityKey = sessionId != null && !sessionId.trim().isEmpty() ? routeKey + "|" + sessionId : null;
+        long now = System.currentTimeMillis();
+
+        Route route = routes.getIfPresent(routeKey);
+        Candidate chosen = null;
+        boolean gatewayTried = false;
+        if (route == null) {
+            gatewayTried = true;
+            chosen = selectFromGateway(routeKey, model, userId, sessionId, fallbackChain, now);
+            route = routes.getIfPresent(routeKey);
+        } else if (now - route.refreshedAt > properties.getCacheTtlSeconds() * 1000L) {
+            // 路由过期：抢到刷新权的请求去网关，其他请求直接用旧路由
+            gatewayTried = true;
+            chosen = refreshRoute(route, routeKey, model, userId, sessionId, fallbackChain, now);
+        }
+        if (chosen == null && route != null) {
+            chosen = selectLocally(route, affinityKey, now, false);
+        }
+        if (chosen == null && !gatewayTried && route != null) {
+            // 已知实例都不健康，问一次网关；已有请求在问时不再重复
+            chosen = refreshRoute(route, routeKey, model, userId, sessionId, fallbackChain, now);
+        }
+        if (chosen == null && route != null) {
+            chosen = selectLocally(route, affinityKey, now, true);
+        }
+        if (chosen == null) {
+            logNoRoute(model, now);
+            return null;
+        }
+        if (affinityKey != null) {
+            affinities.put(affinityKey, chosen.instanceId);
+        }
+
+        ModelEntity target = llmDomainService.getModelById(chosen.businessId);
+        ProviderEntity provider = llmDomainService.getProvider(target.getProviderId(), userId);
+        logger.debug("本地路由选择实例: modelId={}, businessId={}, instanceId={}, sessionId={}", model.getId(),
+                chosen.businessId, chosen.instanceId, sessionId);
+        return new HighAvailabilityResult(provider, target, chosen.instanceId);
+    }
+
+    /** 记录一次调用结果，更新实例的延迟、错误率 EWMA
+     *
+     * @param instanceId 实例ID
+     * @param success 是否成功
+     * @param latencyMs 耗时(毫秒) */
+    public void record(String instanceId, boolean success, long latencyMs) {
+        if (instanceId == null) {
+            return;
+        }
+        healths.asMap().computeIfAbsent(instanceId, id -> new InstanceHealth()).record(success, latencyMs,
+                properties.getEwmaAlpha(), System.currentTimeMillis());
+    }
+
+    /** 模型变更后清掉指向它的路由实例 */
+    @EventListener
+    public void onModelChanged(ModelDomainEvent event) {
+        invalidate(event.getModelId());
+    }
+
+    @EventListener
+    public void onModelsBatchDeleted(ModelsBatchDeletedEvent event) {
+        event.getDeleteItems().forEach(item -> invalidate(item.getModelId()));
+    }
+
+    private void invalidate(String businessId) {
+        if (businessId == null) {
+            return;
+        }
+        routes.asMap().values().forEach(route -> route.candidates.values()
+                .removeIf(candidate -> businessId.equals(candidate.businessId)));
+    }
+
+    /** 单飞刷新：同一路由只有抢到刷新权的请求去网关，没抢到的返回 null 继续用旧路由 */
+    private Candidate refreshRoute(Route route, String routeKey, ModelEntity model, String userId, String sessionId,
+            List<String> fallbackChain, long now) {
+        if (!route.refreshing.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            return selectFromGateway(routeKey, model, userId, sessionId, fallbackChain, now);
+        } finally {
+            route.refreshing.set(false);
+        }
+    }
+
+    /** 没有可用路由时降级到默认服务商，一个退避窗口内只告警一次 */
+    private void logNoRoute(ModelEntity model, long now) {
+        if (now < noRouteLoggedUntil) {
+            logger.debug("没有可用的路由，降级到默认服务商: modelId={}", model.getId());
+            return;
+        }
+        noRouteLoggedUntil = now + Math.max(1, properties.getGatewayBackoffSeconds()) * 1000L;
+        logger.warn("没有可用的路由，降级到默认服务商，{} 秒内不再重复告警: modelId={}",
+                properties.getGatewayBackoffSeconds(), model.getId());
+    }
+
+    private Candidate selectFromGateway(String routeKey, ModelEntity model, String userId, String sessionId,
+            List<String> fallbackChain, long now) {
+        if (now < gatewayBlockedUntil) {
+            return null;
+        }
+        SelectInstanceRequest request = new SelectInstanceRequest(userId, model.getModelId(), "MODEL");
+        if (sessionId != null && !sessionId.trim().isEmpty()) {
+            request.setAffinityKey(sessionId);
+            request.setAffinityType(AffinityType.SESSION);
+        }
+        if (fallbackChain != null && !fallbackChain.isEmpty()) {
+            request.setFallbackChain(fallbackChain);
+        }
+        ApiInstanceDTO instance;
+        try {
+            instance = gateway.selectBestInstance(request);
+        } catch (Exception e) {
+            gatewayBlockedUntil = now + properties.getGatewayBackoffSeconds() * 1000L;
+            logger.warn("高可用网关选择实例失败，{} 秒内使用本地路由: modelId={}, error={}",
+                    properties.getGatewayBackoffSeconds(), model.getId(), e.getMessage());
+            return null;
+        }
+        Candidate candidate = new Candidate(instance.getId(), instance.getBusinessId(), now);
+        Route route = routes.asMap().computeIfAbsent(routeKey, key -> new Route());
+        long staleBefore = now - properties.getStaleTtlSeconds() * 1000L;
+        route.candidates.values().removeIf(existing -> existing.seenAt < staleBefore);
+        route.candidates.put(candidate.instanceId, candidate);
+        route.refreshedAt = now;
+        // 重新放入以刷新写入时间，否则路由从创建起 staleTtlSeconds 后就会过期
+        routes.put(routeKey, route);
+        return candidate;
+    }
+
+    /** 在路由已知的实例里挑选
+     *
+     * @param ignoreHealth 为 true 时不排除不健康的实例，直接取得分最高的 */
+    private Candidate selectLocally(Route route, String affinityKey, long now, boolean ignoreHealth) {
+        if (affinityKey != null) {
+            String instanceId = affinities.getIfPresent(affinityKey);
+            Candidate sticky = instanceId != null ? route.candidates.get(instanceId) : null;
+            if (sticky != null && (ignoreHealth || errorRate(sticky, now) < properties.getErrorRateThreshold())) {
+                return sticky;
+            }
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        double total = 0;
+        Candidate best = null;
+        double bestWeight = -1;
+        for (Candidate candidate : route.candidates.values()) {
+            double errorRate = errorRate(candidate, now);
+            if (!ignoreHealth && errorRate >= properties.getErrorRateThreshold()) {
+                continue;
+            }
+            InstanceHealth health = healths.getIfPresent(candidate.instanceId);
+            double latencyMs = health != null ? health.latencyMs : 0;
+            double weight = (1.0 - errorRate + 1e-3) / (1.0 + latencyMs / 1000.0);
+            candidates.add(candidate);
+            weights.add(weight);
+            total += weight;
+            if (weight > bestWeight) {
+                best = candidate;
+                bestWeight = weight;
+            }
+        }
+        if (candidates.isEmpty() || ignoreHealth) {
+            return best;
+        }
+        double pick = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < candidates.size(); i++) {
+            pick -= weights.get(i);
+            if (pick < 0) {
+                return candidates.get(i);
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+
+    private double errorRate(Candidate candidate, long now) {
+        InstanceHealth health = healths.getIfPresent(candidate.instanceId);
+        return health != null ? health.errorRate(now, properties.getErrorHalfLifeSeconds() * 1000L) : 0;
+    }
+
+    /** 一条路由：网关在有效期内返回过的实例 */
+    private static final class Route {
+        private final Map<String, Candidate> candidates = new ConcurrentHashMap<>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long refreshedAt;
+    }
+
+    /** 路由中的实例 */
+    private static final class Candidate {
+        private final String instanceId;
+        private final String businessId;
+        private final long seenAt;
+
+        private Candidate(String instanceId, String businessId, long seenAt) {
+            this.instanceId = instanceId;
+            this.businessId = businessId;
+            this.seenAt = seenAt;
+        }
+    }
+
+    /** 实例健康状态：延迟和错误率的 EWMA */
+    private static final class InstanceHealth {
+        private volatile double latencyMs;
+        private double errorRate;
+        private long updatedAt;
+        private boolean sampled;
+
+        private synchronized void record(boolean success, long latency, double alpha, long now) {
+            double error = success ? 0 : 1;
+            if (!sampled) {
+                latencyMs = latency;
+                errorRate = error;
+                sampled = true;
+            } else {
+                latencyMs = alpha * latency + (1 - alpha) * latencyMs;
+                errorRate = alpha * error + (1 - alpha) * errorRate;
+            }
+            updatedAt = now;
+        }
+
+        /** 没有新调用时错误率按半衰期衰减，不健康的实例过一段时间会重新被选中试探 */
+        private synchronized double errorRate(long now, long halfLifeMs) {
+            if (halfLifeMs <= 0 || now <= updatedAt) {
+                return errorRate;
+            }
+            return errorRate * Math.pow(0.5, (double) (now - updatedAt) / halfLifeMs);
+        }
+    }
+}
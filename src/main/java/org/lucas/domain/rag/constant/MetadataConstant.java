@@ -17,4 +17,13 @@ public interface MetadataConstant {
     /** 数据集id */
     String DATA_SET_ID = "DATA_SET_ID";
 
+    /** 版本快照id（版本向量分区的行才有） */
+    String RAG_VERSION_ID = "RAG_VERSION_ID";
+
+    /** 复制来源的文本id（版本向量分区的行才有） */
+    String ORIGINAL_DOCUMENT_ID = "ORIGINAL_DOCUMENT_ID";
+
+    /** 分片指纹：嵌入模型ID + 内容的 SHA-256，增量入库据此复用向量 */
+    String CONTENT_HASH = "CONTENT_HASH";
+
 }
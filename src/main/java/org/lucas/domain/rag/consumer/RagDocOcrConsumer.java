@@ -23,18 +23,17 @@ import org.springframework.amqp.rabbit.annotation.RabbitHandler;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.lucas.domain.rag.constant.FileProcessingStatusEnum;
 import org.lucas.domain.rag.message.RagDocSyncOcrMessage;
-import org.lucas.domain.rag.message.RagDocSyncStorageMessage;
 import org.lucas.domain.rag.model.DocumentUnitEntity;
 import org.lucas.domain.rag.model.FileDetailEntity;
 import org.lucas.domain.rag.repository.DocumentUnitRepository;
+import org.lucas.domain.rag.service.EmbeddingDomainService;
 import org.lucas.domain.rag.service.FileDetailDomainService;
 import org.lucas.domain.rag.straegy.RagDocSyncOcrStrategy;
 import org.lucas.domain.rag.straegy.context.RagDocSyncOcrContext;
 import org.lucas.infrastructure.exception.BusinessException;
-import org.lucas.infrastructure.mq.enums.EventType;
 import org.lucas.infrastructure.mq.events.RagDocSyncOcrEvent;
-import org.lucas.infrastructure.mq.events.RagDocSyncStorageEvent;
 import org.lucas.infrastructure.mq.model.MqMessage;
 import org.lucas.infrastructure.rag.service.UserModelConfigResolver;
 
@@ -52,15 +51,17 @@ public class RagDocOcrConsumer {
     private final DocumentUnitRepository documentUnitRepository;
     private final ApplicationEventPublisher applicationEventPublisher;
     private final UserModelConfigResolver userModelConfigResolver;
+    private final EmbeddingDomainService embeddingDomainService;
 
     public RagDocOcrConsumer(RagDocSyncOcrContext ragDocSyncOcrContext, FileDetailDomainService fileDetailDomainService,
             DocumentUnitRepository documentUnitRepository, ApplicationEventPublisher applicationEventPublisher,
-            UserModelConfigResolver userModelConfigResolver) {
+            UserModelConfigResolver userModelConfigResolver, EmbeddingDomainService embeddingDomainService) {
         this.ragDocSyncOcrContext = ragDocSyncOcrContext;
         this.fileDetailDomainService = fileDetailDomainService;
         this.documentUnitRepository = documentUnitRepository;
         this.applicationEventPublisher = applicationEventPublisher;
         this.userModelConfigResolver = userModelConfigResolver;
+        this.embeddingDomainService = embeddingDomainService;
     }
 
     @RabbitHandler
@@ -83,7 +84,13 @@ public class RagDocOcrConsumer {
                     fileEntity.getUserId());
 
             if (!startSuccess) {
-                throw new BusinessException("无法开始OCR处理，文件状态不允许");
+                // 进程在OCR中途崩溃后消息会重投，此时文件仍停在OCR处理中，从已落库的页继续
+                boolean resumable = Boolean.TRUE.equals(messageProperties.isRedelivered())
+                        && FileProcessingStatusEnum.OCR_PROCESSING.getCode().equals(fileEntity.getProcessingStatus());
+                if (!resumable) {
+                    throw new BusinessException("无法开始OCR处理，文件状态不允许");
+                }
+                log.info("Resuming interrupted OCR processing for redelivered file: {}", ocrMessage.getFileId());
             }
 
             // 获取文件扩展名并选择处理策略
@@ -158,26 +165,9 @@ public class RagDocOcrConsumer {
                 return;
             }
 
-            // 为每个DocumentUnit发送向量化MQ消息
-            for (DocumentUnitEntity documentUnit : documentUnits) {
-                RagDocSyncStorageMessage storageMessage = new RagDocSyncStorageMessage();
-                storageMessage.setId(documentUnit.getId());
-                storageMessage.setFileId(fileId);
-                storageMessage.setFileName(fileEntity.getOriginalFilename());
-                storageMessage.setPage(documentUnit.getPage());
-                storageMessage.setContent(documentUnit.getContent());
-                storageMessage.setVector(true);
-                storageMessage.setDatasetId(fileEntity.getDataSetId());
-                storageMessage.setUserId(fileEntity.getUserId());
-                // 获取用户的嵌入模型配置
-                storageMessage.setEmbeddingModelConfig(
-                        userModelConfigResolver.getUserEmbeddingModelConfig(fileEntity.getUserId()));
-
-                RagDocSyncStorageEvent<RagDocSyncStorageMessage> storageEvent = new RagDocSyncStorageEvent<>(
-                        storageMessage, EventType.DOC_SYNC_RAG);
-                storageEvent.setDescription("文件自动向量化处理任务 - 页面 " + documentUnit.getPage());
-                applicationEventPublisher.publishEvent(storageEvent);
-            }
+            // 投递向量化MQ消息（批量模式下按批分组）
+            embeddingDomainService.publishVectorization(fileEntity, fileEntity.getDataSetId(), documentUnits,
+                    userModelConfigResolver.getUserEmbeddingModelConfig(fileEntity.getUserId()), "文件自动向量化处理任务");
 
             log.info("Auto-vectorization started for file: {}, {} document units", fileId, documentUnits.size());
 
@@ -60,6 +60,19 @@ public class RagDocStorageConsumer {
         RagDocSyncStorageMessage mqRecordReqDTO = JSON.parseObject(JSON.toJSONString(mqMessageBody.getData()),
                 RagDocSyncStorageMessage.class);
         try {
+            if (mqRecordReqDTO.isBatch()) {
+                log.info("Current file {} batch of {} chunks ———— Starting vectorization",
+                        mqRecordReqDTO.getFileName(), mqRecordReqDTO.getDocumentIds().size());
+
+                // 批量向量化：整批只更新一次进度
+                int vectorized = embeddingService.syncStorageBatch(mqRecordReqDTO);
+                updateEmbeddingProgress(mqRecordReqDTO);
+
+                log.info("Current file {} batch ———— Vectorization finished, {}/{} chunks",
+                        mqRecordReqDTO.getFileName(), vectorized, mqRecordReqDTO.getDocumentIds().size());
+                return;
+            }
+
             log.info("Current file {} Page {} ———— Starting vectorization", mqRecordReqDTO.getFileName(),
                     mqRecordReqDTO.getPage());
 
@@ -83,20 +96,17 @@ public class RagDocStorageConsumer {
     private void updateEmbeddingProgress(RagDocSyncStorageMessage message) {
         try {
             String fileId = message.getFileId();
-            Integer pageIndex = message.getPage(); // 这是从0开始的页面索引
-
             // 获取文件总页数来计算进度
             var fileEntity = fileDetailDomainService.getFileByIdWithoutUserCheck(fileId);
             Integer totalPages = fileEntity.getFilePageSize();
 
             if (totalPages != null && totalPages > 0) {
-                // 查询已完成向量化的页面数量
+                // 查询已完成向量化的页面数量（syncStorage/syncStorageBatch 已先行置位 is_vector，已包含本次完成的分片）
                 long completedVectorPages = documentUnitRepository
                         .selectCount(Wrappers.<DocumentUnitEntity>lambdaQuery()
                                 .eq(DocumentUnitEntity::getFileId, fileId).eq(DocumentUnitEntity::getIsVector, true));
 
-                // 当前页面完成后的总完成页数
-                int currentCompletedPages = (int) (completedVectorPages + 1);
+                int currentCompletedPages = (int) completedVectorPages;
 
                 // 计算百分比：已完成的页数 / 总页数 * 100
                 double progress = ((double) currentCompletedPages / totalPages) * 100.0;
@@ -112,6 +122,8 @@ public class RagDocStorageConsumer {
                     // 通过状态机完成向量化处理
                     fileDetailDomainService.completeFileEmbeddingProcessing(fileId, fileEntity.getUserId());
                     log.info("All pages vectorized for file {}, marking as completed", fileId);
+                    // 增量入库：清理没有分片认领的旧向量
+                    embeddingService.removeOrphanEmbeddings(fileId);
                 }
             }
         } catch (Exception e) {
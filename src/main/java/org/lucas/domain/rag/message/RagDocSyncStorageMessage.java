@@ -2,6 +2,7 @@ package org.lucas.domain.rag.message;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.List;
 import org.lucas.domain.rag.model.ModelConfig;
 
 /** @author shilong.zang
@@ -37,6 +38,9 @@ public class RagDocSyncStorageMessage implements Serializable {
     /** 嵌入模型配置 */
     private ModelConfig embeddingModelConfig;
 
+    /** 批量向量化的文档单元ID列表，非空时按批处理，id/page/content 不再使用 */
+    private List<String> documentIds;
+
     public String getId() {
         return id;
     }
@@ -108,4 +112,17 @@ public class RagDocSyncStorageMessage implements Serializable {
     public void setEmbeddingModelConfig(ModelConfig embeddingModelConfig) {
         this.embeddingModelConfig = embeddingModelConfig;
     }
+
+    public List<String> getDocumentIds() {
+        return documentIds;
+    }
+
+    public void setDocumentIds(List<String> documentIds) {
+        this.documentIds = documentIds;
+    }
+
+    /** 是否为批量向量化消息 */
+    public boolean isBatch() {
+        return documentIds != null && !documentIds.isEmpty();
+    }
 }
@@ -40,6 +40,30 @@ public class DocumentUnitEntity extends BaseEntity implements Serializable {
     @TableField(exist = false)
     private Double similarityScore;
 
+    /** 快照分片对应的原始分片ID（非持久化字段，向量表按它记录 DOCUMENT_ID） */
+    @TableField(exist = false)
+    private String sourceDocumentId;
+
+    /** 向量表中的 embedding_id（非持久化字段，快照分片可能携带） */
+    @TableField(exist = false)
+    private String vectorId;
+
+    public String getSourceDocumentId() {
+        return sourceDocumentId;
+    }
+
+    public void setSourceDocumentId(String sourceDocumentId) {
+        this.sourceDocumentId = sourceDocumentId;
+    }
+
+    public String getVectorId() {
+        return vectorId;
+    }
+
+    public void setVectorId(String vectorId) {
+        this.vectorId = vectorId;
+    }
+
     public Double getSimilarityScore() {
         return similarityScore;
     }
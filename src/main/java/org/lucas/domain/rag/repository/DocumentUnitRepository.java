@@ -1,6 +1,10 @@
 package org.lucas.domain.rag.repository;
 
+import java.util.Collection;
+import java.util.List;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.lucas.domain.rag.model.DocumentUnitEntity;
 import org.lucas.infrastructure.repository.MyBatisPlusExtRepository;
 
@@ -10,4 +14,35 @@ import org.lucas.infrastructure.repository.MyBatisPlusExtRepository;
 @Mapper
 public interface DocumentUnitRepository extends MyBatisPlusExtRepository<DocumentUnitEntity> {
 
+    /** 一次查出命中分片及其同文件前后 window 页内已向量化的相邻分片
+     *
+     * 依赖 document_unit(file_id, page) 索引。
+     *
+     * @param ids 命中分片ID
+     * @param window 前后各扩展的页数
+     * @return 命中分片和相邻分片，无序 */
+    @Select({"<script>", "SELECT n.* FROM document_unit n WHERE n.deleted_at IS NULL AND EXISTS (",
+            "    SELECT 1 FROM document_unit m WHERE m.deleted_at IS NULL AND m.id IN ",
+            "    <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "    AND m.file_id = n.file_id AND n.page BETWEEN m.page - #{window} AND m.page + #{window}",
+            "    AND (n.id = m.id OR n.is_vector = true)", ")", "</script>"})
+    List<DocumentUnitEntity> selectWithNeighbours(@Param("ids") Collection<String> ids, @Param("window") int window);
+
+    /** 在指定数据集内做字面匹配，按命中的关键词个数排序
+     *
+     * 依赖 content 上的 pg_trgm GIN 索引，ILIKE '%term%' 可以走索引。
+     *
+     * @param dataSetIds 数据集ID
+     * @param patterns ILIKE 模式（已转义通配符）
+     * @param limit 最大返回数量
+     * @return 已向量化的命中分片，命中关键词多的在前 */
+    @Select({"<script>", "SELECT u.* FROM document_unit u JOIN file_detail f ON f.id = u.file_id",
+            "WHERE u.deleted_at IS NULL AND f.deleted_at IS NULL AND u.is_vector = true AND f.data_set_id IN ",
+            "<foreach collection='dataSetIds' item='dataSetId' open='(' separator=',' close=')'>#{dataSetId}</foreach>",
+            "AND (<foreach collection='patterns' item='pattern' separator=' OR '>u.content ILIKE #{pattern}</foreach>)",
+            "ORDER BY (<foreach collection='patterns' item='pattern' separator=' + '>",
+            "(u.content ILIKE #{pattern})::int</foreach>) DESC, length(u.content) ASC", "LIMIT #{limit}",
+            "</script>"})
+    List<DocumentUnitEntity> selectByLexicalMatch(@Param("dataSetIds") Collection<String> dataSetIds,
+            @Param("patterns") Collection<String> patterns, @Param("limit") int limit);
 }
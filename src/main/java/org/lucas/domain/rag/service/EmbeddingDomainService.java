@@ -13,14 +13,19 @@ import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
 import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
 import dev.langchain4j.store.embedding.filter.comparison.IsIn;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import org.dromara.streamquery.stream.core.stream.Steam;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,12 +37,22 @@ import org.lucas.domain.rag.constant.MetadataConstant;
 import org.lucas.domain.rag.message.RagDocSyncStorageMessage;
 import org.lucas.domain.rag.model.DocumentUnitEntity;
 import org.lucas.domain.rag.model.FileDetailEntity;
+import org.lucas.domain.rag.model.ModelConfig;
 import org.lucas.domain.rag.repository.DocumentUnitRepository;
 import org.lucas.domain.rag.repository.FileDetailRepository;
 import org.lucas.infrastructure.exception.BusinessException;
 import org.lucas.infrastructure.mq.enums.EventType;
 import org.lucas.infrastructure.mq.events.RagDocSyncStorageEvent;
+import org.lucas.infrastructure.rag.config.EmbeddingProperties;
 import org.lucas.infrastructure.rag.factory.EmbeddingModelFactory;
+import org.lucas.infrastructure.rag.service.QueryEmbeddingCache;
+import org.lucas.infrastructure.rag.service.RagAnswerCache;
+import org.lucas.infrastructure.rag.service.RetrievalFanOutExecutor;
+import org.lucas.infrastructure.rag.service.StoredEmbeddingCopier;
+import org.lucas.infrastructure.rag.service.StoredEmbeddingLookup;
+import org.lucas.infrastructure.rag.service.StoredEmbeddingReuse;
+import org.lucas.infrastructure.rag.utils.LexicalQueryParser;
+import org.lucas.infrastructure.rag.utils.ReciprocalRankFusion;
 
 /** 向量话存储
  *
@@ -61,16 +76,40 @@ public class EmbeddingDomainService implements MetadataConstant {
 
     private final RerankDomainService rerankService;
 
+    private final EmbeddingProperties embeddingProperties;
+
+    private final QueryEmbeddingCache queryEmbeddingCache;
+
+    private final StoredEmbeddingLookup storedEmbeddingLookup;
+
+    private final StoredEmbeddingCopier storedEmbeddingCopier;
+
+    private final RetrievalFanOutExecutor retrievalFanOutExecutor;
+
+    private final RagAnswerCache ragAnswerCache;
+
+    private final StoredEmbeddingReuse storedEmbeddingReuse;
+
     public EmbeddingDomainService(EmbeddingModelFactory embeddingModelFactory,
             EmbeddingStore<TextSegment> embeddingStore, FileDetailRepository fileDetailRepository,
             ApplicationContext applicationContext, DocumentUnitRepository documentUnitRepository,
-            RerankDomainService rerankService) {
+            RerankDomainService rerankService, EmbeddingProperties embeddingProperties,
+            QueryEmbeddingCache queryEmbeddingCache, StoredEmbeddingLookup storedEmbeddingLookup,
+            StoredEmbeddingCopier storedEmbeddingCopier, RetrievalFanOutExecutor retrievalFanOutExecutor,
+            RagAnswerCache ragAnswerCache, StoredEmbeddingReuse storedEmbeddingReuse) {
         this.embeddingModelFactory = embeddingModelFactory;
         this.embeddingStore = embeddingStore;
         this.fileDetailRepository = fileDetailRepository;
         this.applicationContext = applicationContext;
         this.documentUnitRepository = documentUnitRepository;
         this.rerankService = rerankService;
+        this.embeddingProperties = embeddingProperties;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.storedEmbeddingLookup = storedEmbeddingLookup;
+        this.storedEmbeddingCopier = storedEmbeddingCopier;
+        this.retrievalFanOutExecutor = retrievalFanOutExecutor;
+        this.ragAnswerCache = ragAnswerCache;
+        this.storedEmbeddingReuse = storedEmbeddingReuse;
     }
 
     /** RAG文档检索（支持高级参数和缓存优化）
@@ -87,6 +126,20 @@ public class EmbeddingDomainService implements MetadataConstant {
     public List<DocumentUnitEntity> ragDoc(List<String> dataSetId, String question, Integer maxResults, Double minScore,
             Boolean enableRerank, Integer candidateMultiplier, EmbeddingModelFactory.EmbeddingConfig embeddingConfig,
             Boolean enableQueryExpansion) {
+        return ragDoc(dataSetId, question, maxResults, minScore, enableRerank, candidateMultiplier, embeddingConfig,
+                enableQueryExpansion, false);
+    }
+
+    /** RAG文档检索，可选混合检索
+     *
+     * 混合检索时向量检索与字面匹配并发执行，按 RRF 融合成候选池。字面匹配能直接召回编号、错误码这类精确串，
+     * 候选池不再需要至少 30 条的兜底，按 maxResults × candidateMultiplier 截取后再重排。
+     *
+     * @param enableHybrid 是否启用混合检索（向量 + 字面匹配）
+     * @see #ragDoc(List, String, Integer, Double, Boolean, Integer, EmbeddingModelFactory.EmbeddingConfig, Boolean) */
+    public List<DocumentUnitEntity> ragDoc(List<String> dataSetId, String question, Integer maxResults, Double minScore,
+            Boolean enableRerank, Integer candidateMultiplier, EmbeddingModelFactory.EmbeddingConfig embeddingConfig,
+            Boolean enableQueryExpansion, Boolean enableHybrid) {
         // 参数验证和日志
         if (dataSetId == null || dataSetId.isEmpty()) {
             log.warn("Dataset IDs list is empty");
@@ -114,22 +167,25 @@ public class EmbeddingDomainService implements MetadataConstant {
         long startTime = System.currentTimeMillis();
 
         try {
-            // 创建嵌入模型实例
-            OpenAiEmbeddingModel embeddingModel = embeddingModelFactory.createEmbeddingModel(embeddingConfig);
+            // 问题向量（经查询向量缓存，回退检索复用同一个向量）
+            final Embedding queryEmbedding = Embedding.from(queryEmbeddingCache.embed(embeddingConfig, question));
 
-            // 向量搜索 - 根据是否启用重排序决定搜索数量
+            // 向量搜索 - 根据是否启用重排序决定搜索数量；混合检索召回更准，不再兜底 30 条
+            final boolean hybrid = Boolean.TRUE.equals(enableHybrid);
             int searchLimit = finalEnableRerank
-                    ? Math.max(finalMaxResults * finalCandidateMultiplier, 30)
+                    ? Math.max(finalMaxResults * finalCandidateMultiplier, hybrid ? finalMaxResults : 30)
                     : finalMaxResults;
 
             log.debug(
                     "Starting RAG search with params: datasets={}, question='{}', maxResults={}, minScore={}, rerank={}, searchLimit={}",
                     dataSetId, question, finalMaxResults, finalMinScore, finalEnableRerank, searchLimit);
 
-            // 向量查询
-            final EmbeddingSearchResult<TextSegment> textSegmentList = embeddingStore.search(EmbeddingSearchRequest
-                    .builder().filter(new IsIn(DATA_SET_ID, dataSetId)).maxResults(searchLimit).minScore(finalMinScore) // 使用可配置的相似度阈值
-                    .queryEmbedding(Embedding.from(embeddingModel.embed(question).content().vector())).build());
+            // 向量查询；混合检索时与字面匹配并发执行并融合
+            final EmbeddingSearchResult<TextSegment> textSegmentList = hybrid
+                    ? hybridSearch(dataSetId, question, queryEmbedding, searchLimit, finalMinScore)
+                    : embeddingStore.search(EmbeddingSearchRequest.builder().filter(new IsIn(DATA_SET_ID, dataSetId))
+                            .maxResults(searchLimit).minScore(finalMinScore) // 使用可配置的相似度阈值
+                            .queryEmbedding(queryEmbedding).build());
 
             List<EmbeddingMatch<TextSegment>> embeddingMatches;
 
@@ -152,7 +208,7 @@ public class EmbeddingDomainService implements MetadataConstant {
 
                 final EmbeddingSearchResult<TextSegment> fallbackResult = embeddingStore.search(EmbeddingSearchRequest
                         .builder().filter(new IsIn(DATA_SET_ID, dataSetId)).maxResults(searchLimit).minScore(0.3) // 降低阈值进行回退搜索
-                        .queryEmbedding(Embedding.from(embeddingModel.embed(question).content().vector())).build());
+                        .queryEmbedding(queryEmbedding).build());
 
                 embeddingMatches = fallbackResult.matches();
                 log.debug("Fallback search found {} matches with lower threshold", embeddingMatches.size());
@@ -176,52 +232,15 @@ public class EmbeddingDomainService implements MetadataConstant {
                 return new ArrayList<>();
             }
 
-            // 查询扩展：如果启用了查询扩展，添加相邻片段
-            List<String> finalDocumentIds = new ArrayList<>(documentIds);
+            // 查询扩展：启用时一次查询取回命中分片及相邻片段，否则只按ID取回命中分片
+            final List<DocumentUnitEntity> sortedResults = Boolean.TRUE.equals(enableQueryExpansion)
+                    ? loadWithNeighbours(documentIds, documentScores, finalMinScore * 0.8)
+                    : loadInOrder(documentIds, documentScores);
             if (Boolean.TRUE.equals(enableQueryExpansion)) {
-                // 获取初始匹配片段的详细信息
-                List<DocumentUnitEntity> initialDocs = documentUnitRepository.selectList(
-                        Wrappers.lambdaQuery(DocumentUnitEntity.class).in(DocumentUnitEntity::getId, documentIds));
-
-                // 收集所有需要的片段ID（使用LinkedHashSet保持顺序并去重）
-                Set<String> expandedIds = new LinkedHashSet<>(documentIds);
-
-                for (DocumentUnitEntity doc : initialDocs) {
-                    // 查询相邻页面片段（前一页、当前页、后一页）
-                    List<DocumentUnitEntity> adjacentChunks = documentUnitRepository.selectList(Wrappers
-                            .<DocumentUnitEntity>lambdaQuery().eq(DocumentUnitEntity::getFileId, doc.getFileId())
-                            .between(DocumentUnitEntity::getPage, Math.max(1, doc.getPage() - 1), doc.getPage() + 1)
-                            .eq(DocumentUnitEntity::getIsVector, true));
-
-                    adjacentChunks.forEach(chunk -> expandedIds.add(chunk.getId()));
-                }
-
-                finalDocumentIds = new ArrayList<>(expandedIds);
                 log.info("Query expansion enabled: original {} chunks expanded to {} chunks for query: '{}'",
-                        documentIds.size(), finalDocumentIds.size(), question);
+                        documentIds.size(), sortedResults.size(), question);
             }
 
-            // 查询所有文档（包括扩展的）
-            List<DocumentUnitEntity> allDocuments = documentUnitRepository.selectList(
-                    Wrappers.lambdaQuery(DocumentUnitEntity.class).in(DocumentUnitEntity::getId, finalDocumentIds));
-
-            // 按照检索相关性顺序重新排列结果，并设置相似度分数
-            List<DocumentUnitEntity> sortedResults = finalDocumentIds.stream().map(id -> {
-                DocumentUnitEntity doc = allDocuments.stream().filter(d -> id.equals(d.getId())).findFirst()
-                        .orElse(null);
-                if (doc != null) {
-                    // 设置相似度分数：原始匹配使用向量搜索分数，扩展片段使用默认分数
-                    Double score = documentScores.get(id);
-                    if (score != null) {
-                        doc.setSimilarityScore(score);
-                    } else {
-                        // 扩展片段设置较低的默认分数
-                        doc.setSimilarityScore(finalMinScore * 0.8);
-                    }
-                }
-                return doc;
-            }).filter(java.util.Objects::nonNull).toList();
-
             // 记录搜索性能统计
             long totalTime = System.currentTimeMillis() - startTime;
             double avgScore = embeddingMatches.stream().mapToDouble(EmbeddingMatch::score).average().orElse(0.0);
@@ -238,6 +257,411 @@ public class EmbeddingDomainService implements MetadataConstant {
         }
     }
 
+    /** 混合检索：向量检索与字面匹配并发执行，按分片ID做 RRF 融合
+     *
+     * 问题里提取不到关键词时只做向量检索。只被字面匹配召回的分片没有向量相似度，分数记为 minScore；
+     * 字面匹配失败时退回纯向量结果。
+     *
+     * @return 融合后的候选池，最多 searchLimit 条 */
+    private EmbeddingSearchResult<TextSegment> hybridSearch(List<String> dataSetId, String question,
+            Embedding queryEmbedding, int searchLimit, double minScore) {
+        final Supplier<List<EmbeddingMatch<TextSegment>>> dense = () -> embeddingStore.search(EmbeddingSearchRequest
+                .builder().filter(new IsIn(DATA_SET_ID, dataSetId)).maxResults(searchLimit).minScore(minScore)
+                .queryEmbedding(queryEmbedding).build()).matches();
+        final List<String> terms = LexicalQueryParser.extractTerms(question,
+                embeddingProperties.getRetrieval().getLexicalMaxTerms());
+        if (terms.isEmpty()) {
+            return new EmbeddingSearchResult<>(dense.get());
+        }
+
+        final Supplier<List<EmbeddingMatch<TextSegment>>> lexical = () -> {
+            try {
+                return Steam.of(documentUnitRepository.selectByLexicalMatch(dataSetId,
+                        Steam.of(terms).map(LexicalQueryParser::toContainsPattern).toList(), searchLimit))
+                        .map(doc -> new EmbeddingMatch<>(minScore, doc.getId(), null,
+                                TextSegment.from(doc.getContent(), Metadata.from(DOCUMENT_ID, doc.getId()))))
+                        .toList();
+            } catch (Exception e) {
+                log.warn("Lexical search failed, using dense results only: {}", e.getMessage());
+                return List.of();
+            }
+        };
+        final List<List<EmbeddingMatch<TextSegment>>> rankings = retrievalFanOutExecutor
+                .invokeAll(List.of(dense, lexical));
+
+        // 向量与字面都召回的分片保留向量匹配，分数是真实的相似度
+        final Map<String, EmbeddingMatch<TextSegment>> matchesByDocument = new HashMap<>();
+        rankings.forEach(ranking -> ranking
+                .forEach(match -> matchesByDocument.putIfAbsent(documentIdOf(match), match)));
+        final Map<String, Double> fused = ReciprocalRankFusion.fuse(rankings, EmbeddingDomainService::documentIdOf,
+                embeddingProperties.getRetrieval().getRrfK());
+        log.debug("Hybrid search: {} dense, {} lexical ({} terms), {} fused", rankings.get(0).size(),
+                rankings.get(1).size(), terms.size(), fused.size());
+        return new EmbeddingSearchResult<>(
+                Steam.of(fused.keySet()).limit(searchLimit).map(matchesByDocument::get).toList());
+    }
+
+    private static String documentIdOf(EmbeddingMatch<TextSegment> match) {
+        return match.embedded() != null ? match.embedded().metadata().getString(DOCUMENT_ID) : null;
+    }
+
+    /** 按ID取回分片，保持给定顺序并写入分数 */
+    private List<DocumentUnitEntity> loadInOrder(List<String> documentIds, Map<String, Double> documentScores) {
+        Map<String, DocumentUnitEntity> byId = Steam.of(documentUnitRepository.selectList(
+                Wrappers.lambdaQuery(DocumentUnitEntity.class).in(DocumentUnitEntity::getId, documentIds)))
+                .toMap(DocumentUnitEntity::getId);
+        List<DocumentUnitEntity> results = new ArrayList<>(documentIds.size());
+        for (String id : documentIds) {
+            DocumentUnitEntity doc = byId.get(id);
+            if (doc != null) {
+                doc.setSimilarityScore(documentScores.get(id));
+                results.add(doc);
+            }
+        }
+        return results;
+    }
+
+    /** 一次查询取回命中分片和相邻片段
+     *
+     * 命中分片按检索顺序在前，相邻片段随后，按离命中页的距离由近到远补充；同一文件补充的相邻片段不超过上限。
+     *
+     * @param documentIds 命中分片ID，按相关性排序
+     * @param documentScores 命中分片的分数
+     * @param neighbourScore 相邻片段的默认分数
+     * @return 命中分片和相邻片段 */
+    private List<DocumentUnitEntity> loadWithNeighbours(List<String> documentIds, Map<String, Double> documentScores,
+            double neighbourScore) {
+        EmbeddingProperties.Retrieval retrieval = embeddingProperties.getRetrieval();
+        int window = Math.max(0, retrieval.getNeighbourWindow());
+        int maxPerFile = Math.max(0, retrieval.getNeighbourMaxPerFile());
+
+        List<DocumentUnitEntity> rows = documentUnitRepository.selectWithNeighbours(documentIds, window);
+        Map<String, DocumentUnitEntity> byId = Steam.of(rows).toMap(DocumentUnitEntity::getId);
+        Map<String, List<DocumentUnitEntity>> byFile = new HashMap<>();
+        rows.forEach(row -> byFile.computeIfAbsent(row.getFileId(), key -> new ArrayList<>()).add(row));
+
+        List<DocumentUnitEntity> results = new ArrayList<>();
+        Set<String> added = new LinkedHashSet<>();
+        for (String id : documentIds) {
+            DocumentUnitEntity doc = byId.get(id);
+            if (doc != null && added.add(id)) {
+                doc.setSimilarityScore(documentScores.get(id));
+                results.add(doc);
+            }
+        }
+
+        Map<String, Integer> neighboursPerFile = new HashMap<>();
+        for (String id : documentIds) {
+            DocumentUnitEntity hit = byId.get(id);
+            if (hit == null || hit.getPage() == null) {
+                continue;
+            }
+            List<DocumentUnitEntity> neighbours = Steam.of(byFile.getOrDefault(hit.getFileId(), List.of()))
+                    .filter(row -> row.getPage() != null && !added.contains(row.getId())
+                            && Math.abs(row.getPage() - hit.getPage()) <= window)
+                    .sorted(Comparator.<DocumentUnitEntity>comparingInt(row -> Math.abs(row.getPage() - hit.getPage()))
+                            .thenComparing(DocumentUnitEntity::getPage))
+                    .toList();
+            for (DocumentUnitEntity neighbour : neighbours) {
+                int count = neighboursPerFile.getOrDefault(hit.getFileId(), 0);
+                if (count >= maxPerFile) {
+                    break;
+                }
+                added.add(neighbour.getId());
+                neighbour.setSimilarityScore(neighbourScore);
+                results.add(neighbour);
+                neighboursPerFile.put(hit.getFileId(), count + 1);
+            }
+        }
+        return results;
+    }
+
+    /** 多查询RAG文档检索
+     *
+     * 原问题、改写和扩展查询一次批量向量化，各自的 ANN 检索并发执行，按 RRF 融合成一个候选池后只重排一次，
+     * 耗时取决于最慢的那条查询而不是所有查询之和。排序以融合（或重排）结果为准，
+     * similarityScore 记录分片在各查询中的最高向量相似度，供展示使用。
+     *
+     * @param dataSetId 知识库ids
+     * @param queries 查询列表，第一条为原问题，重排以它为准
+     * @param maxResults 最大返回结果数量
+     * @param minScore 最小相似度阈值
+     * @param enableRerank 是否启用重排序
+     * @param candidateMultiplier 候选结果倍数
+     * @param embeddingConfig 嵌入模型配置
+     * @return 按相关性排序的文档列表 */
+    public List<DocumentUnitEntity> ragDocMultiQuery(List<String> dataSetId, List<String> queries, Integer maxResults,
+            Double minScore, Boolean enableRerank, Integer candidateMultiplier,
+            EmbeddingModelFactory.EmbeddingConfig embeddingConfig) {
+        if (dataSetId == null || dataSetId.isEmpty() || queries == null || queries.isEmpty()
+                || embeddingConfig == null) {
+            return new ArrayList<>();
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            List<EmbeddingMatch<TextSegment>> matches = fanOutSearch(new IsIn(DATA_SET_ID, dataSetId), queries,
+                    maxResults, minScore, enableRerank, candidateMultiplier, embeddingConfig);
+
+            final Map<String, Double> documentScores = new LinkedHashMap<>();
+            for (EmbeddingMatch<TextSegment> match : matches) {
+                String documentId = match.embedded().metadata().getString(DOCUMENT_ID);
+                if (StrUtil.isNotBlank(documentId)) {
+                    documentScores.putIfAbsent(documentId, match.score());
+                }
+            }
+            if (documentScores.isEmpty()) {
+                log.info("No relevant documents found for {} queries on datasets {}", queries.size(), dataSetId);
+                return new ArrayList<>();
+            }
+
+            List<DocumentUnitEntity> results = loadInOrder(new ArrayList<>(documentScores.keySet()), documentScores);
+
+            log.info("Multi-query RAG search completed: {} queries, returned {} documents, totalTime: {}ms",
+                    queries.size(), results.size(), System.currentTimeMillis() - startTime);
+            return results;
+        } catch (Exception e) {
+            log.error("Error during multi-query RAG retrieval for {} queries, time: {}ms", queries.size(),
+                    System.currentTimeMillis() - startTime, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /** 在版本向量分区内做多查询检索，融合与重排方式同 {@link #ragDocMultiQuery}
+     *
+     * @param ragVersionId 版本ID
+     * @param queries 查询列表，第一条为原问题
+     * @param maxResults 最大返回结果数量
+     * @param minScore 最小相似度阈值
+     * @param enableRerank 是否启用重排序
+     * @param candidateMultiplier 候选结果倍数
+     * @param embeddingConfig 嵌入模型配置
+     * @return 按相关性排序的 向量ID -> 最高向量相似度 */
+    public Map<String, Double> searchVersionVectorsMultiQuery(String ragVersionId, List<String> queries,
+            Integer maxResults, Double minScore, Boolean enableRerank, Integer candidateMultiplier,
+            EmbeddingModelFactory.EmbeddingConfig embeddingConfig) {
+        final Map<String, Double> scores = new LinkedHashMap<>();
+        if (!StringUtils.hasText(ragVersionId) || queries == null || queries.isEmpty() || embeddingConfig == null) {
+            return scores;
+        }
+        fanOutSearch(new IsEqualTo(RAG_VERSION_ID, ragVersionId), queries, maxResults, minScore, enableRerank,
+                candidateMultiplier, embeddingConfig)
+                .forEach(match -> scores.putIfAbsent(match.embeddingId(), match.score()));
+        return scores;
+    }
+
+    /** 多查询并发检索并融合
+     *
+     * 1. 查询去重后一次批量向量化（已缓存的不再请求嵌入服务）；
+     * 2. 每条查询在执行器上并发做一次过滤 ANN 检索，无结果时降低阈值重试一次，与单查询检索一致；
+     * 3. 各查询的结果按 RRF 融合，取前 searchLimit 条作为候选池；
+     * 4. 启用重排时对候选池只重排一次，以原问题为查询。
+     *
+     * @return 排好序的匹配，最多 maxResults 条；分数为该向量在各查询中的最高相似度 */
+    private List<EmbeddingMatch<TextSegment>> fanOutSearch(Filter filter, List<String> queries, Integer maxResults,
+            Double minScore, Boolean enableRerank, Integer candidateMultiplier,
+            EmbeddingModelFactory.EmbeddingConfig embeddingConfig) {
+        final List<String> distinctQueries = Steam.of(queries).filter(StringUtils::hasText).distinct().toList();
+        if (distinctQueries.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        int finalMaxResults = maxResults != null ? Math.min(maxResults, 100) : 15;
+        double finalMinScore = minScore != null ? Math.max(0.0, Math.min(minScore, 1.0)) : 0.7;
+        boolean finalEnableRerank = enableRerank != null ? enableRerank : true;
+        int finalCandidateMultiplier = candidateMultiplier != null ? Math.max(1, Math.min(candidateMultiplier, 5)) : 2;
+        int searchLimit = finalEnableRerank
+                ? Math.max(finalMaxResults * finalCandidateMultiplier, 30)
+                : finalMaxResults;
+
+        final List<float[]> vectors = queryEmbeddingCache.embedAll(embeddingConfig, distinctQueries);
+        final List<Supplier<List<EmbeddingMatch<TextSegment>>>> searches = new ArrayList<>();
+        for (float[] vector : vectors) {
+            Embedding queryEmbedding = Embedding.from(vector);
+            searches.add(() -> searchWithFallback(filter, queryEmbedding, searchLimit, finalMinScore));
+        }
+        final List<List<EmbeddingMatch<TextSegment>>> rankings = retrievalFanOutExecutor.invokeAll(searches);
+
+        // 同一向量在不同查询里分数不同，保留最高分用于展示
+        final Map<String, EmbeddingMatch<TextSegment>> bestMatches = new HashMap<>();
+        rankings.forEach(ranking -> ranking.forEach(match -> bestMatches.merge(match.embeddingId(), match,
+                (existing, candidate) -> candidate.score() > existing.score() ? candidate : existing)));
+        final Map<String, Double> fused = ReciprocalRankFusion.fuse(rankings, EmbeddingMatch::embeddingId,
+                embeddingProperties.getRetrieval().getRrfK());
+        List<EmbeddingMatch<TextSegment>> pool = Steam.of(fused.keySet()).limit(searchLimit).map(bestMatches::get)
+                .toList();
+
+        if (finalEnableRerank && !pool.isEmpty()) {
+            long rerankStartTime = System.currentTimeMillis();
+            pool = rerankService.rerankDocument(new EmbeddingSearchResult<>(pool), distinctQueries.get(0));
+            log.debug("Reranked fused pool of {} candidates once, took {}ms", fused.size(),
+                    System.currentTimeMillis() - rerankStartTime);
+        }
+        log.debug("Fan-out search: {} queries, {} fused candidates, returning {}", distinctQueries.size(),
+                fused.size(), Math.min(pool.size(), finalMaxResults));
+        return pool.size() > finalMaxResults ? pool.subList(0, finalMaxResults) : pool;
+    }
+
+    /** 单条查询的过滤 ANN 检索，无结果时以 0.3 为阈值重试一次 */
+    private List<EmbeddingMatch<TextSegment>> searchWithFallback(Filter filter, Embedding queryEmbedding,
+            int searchLimit, double minScore) {
+        List<EmbeddingMatch<TextSegment>> matches = embeddingStore.search(EmbeddingSearchRequest.builder()
+                .filter(filter).maxResults(searchLimit).minScore(minScore).queryEmbedding(queryEmbedding).build())
+                .matches();
+        if (matches.isEmpty() && minScore > 0.3) {
+            matches = embeddingStore.search(EmbeddingSearchRequest.builder().filter(filter).maxResults(searchLimit)
+                    .minScore(0.3).queryEmbedding(queryEmbedding).build()).matches();
+        }
+        return matches;
+    }
+
+    /** 在版本向量分区内检索
+     *
+     * 发布版本时分片向量已复制为带 RAG_VERSION_ID 的行，快照检索只需在该分区内做一次过滤 ANN 查询。
+     * 阈值回退和重排序与 {@link #ragDoc} 保持一致。
+     *
+     * @param ragVersionId 版本ID
+     * @param question 查询问题
+     * @param maxResults 最大返回结果数量
+     * @param minScore 最小相似度阈值
+     * @param enableRerank 是否启用重排序
+     * @param candidateMultiplier 候选结果倍数
+     * @param embeddingConfig 嵌入模型配置
+     * @return 按相关性排序的 向量ID -> 分数 */
+    public Map<String, Double> searchVersionVectors(String ragVersionId, String question, Integer maxResults,
+            Double minScore, Boolean enableRerank, Integer candidateMultiplier,
+            EmbeddingModelFactory.EmbeddingConfig embeddingConfig) {
+        final Map<String, Double> scores = new LinkedHashMap<>();
+        if (!StringUtils.hasText(ragVersionId) || !StringUtils.hasText(question) || embeddingConfig == null) {
+            return scores;
+        }
+
+        int finalMaxResults = maxResults != null ? Math.min(maxResults, 100) : 15;
+        double finalMinScore = minScore != null ? Math.max(0.0, Math.min(minScore, 1.0)) : 0.7;
+        boolean finalEnableRerank = enableRerank != null ? enableRerank : true;
+        int finalCandidateMultiplier = candidateMultiplier != null ? Math.max(1, Math.min(candidateMultiplier, 5)) : 2;
+        int searchLimit = finalEnableRerank
+                ? Math.max(finalMaxResults * finalCandidateMultiplier, 30)
+                : finalMaxResults;
+
+        final Embedding queryEmbedding = Embedding.from(queryEmbeddingCache.embed(embeddingConfig, question));
+        final IsEqualTo versionFilter = new IsEqualTo(RAG_VERSION_ID, ragVersionId);
+
+        EmbeddingSearchResult<TextSegment> searchResult = embeddingStore.search(EmbeddingSearchRequest.builder()
+                .filter(versionFilter).maxResults(searchLimit).minScore(finalMinScore)
+                .queryEmbedding(queryEmbedding).build());
+        if (searchResult.matches().isEmpty() && finalMinScore > 0.3) {
+            log.info("No snapshot results for version {} with minScore: {}, retrying with lower threshold",
+                    ragVersionId, finalMinScore);
+            searchResult = embeddingStore.search(EmbeddingSearchRequest.builder().filter(versionFilter)
+                    .maxResults(searchLimit).minScore(0.3).queryEmbedding(queryEmbedding).build());
+        }
+
+        List<EmbeddingMatch<TextSegment>> matches = finalEnableRerank && !searchResult.matches().isEmpty()
+                ? rerankService.rerankDocument(searchResult, question)
+                : searchResult.matches();
+        matches.stream().limit(finalMaxResults).forEach(match -> scores.put(match.embeddingId(), match.score()));
+        return scores;
+    }
+
+    /** 把分片向量复制到版本向量分区
+     *
+     * 在向量库内整批复制，不重新向量化。新行只保留 FILE_NAME，原来的 DOCUMENT_ID 改记为 ORIGINAL_DOCUMENT_ID，
+     * 不带 DATA_SET_ID / FILE_ID，因此不会出现在实时检索里，原文件删除时也不会被连带删除。
+     *
+     * @param ragVersionId 版本ID
+     * @param vectorIdByDocumentId 原始分片ID -> 新行 embedding_id
+     * @param contentByDocumentId 原始分片ID -> 当前内容，只复制文本一致的向量，不会取到旧内容的向量
+     * @return 复制成功的 embedding_id；复制失败时为空集合，调用方按没有冻结向量处理 */
+    public Set<String> copyVectorsToVersion(String ragVersionId, Map<String, String> vectorIdByDocumentId,
+            Map<String, String> contentByDocumentId) {
+        try {
+            return storedEmbeddingCopier.copy(DOCUMENT_ID, vectorIdByDocumentId, contentByDocumentId,
+                    ORIGINAL_DOCUMENT_ID, List.of(FILE_NAME), Map.of(RAG_VERSION_ID, ragVersionId));
+        } catch (Exception e) {
+            log.error("复制版本 {} 的向量失败，快照检索将回退到进程内打分", ragVersionId, e);
+            return Set.of();
+        }
+    }
+
+    /** 删除版本向量分区
+     *
+     * @param ragVersionId 版本ID */
+    public void deleteVersionVectors(String ragVersionId) {
+        embeddingStore.removeAll(new IsEqualTo(RAG_VERSION_ID, ragVersionId));
+    }
+
+    /** 获取文档分片的向量，用于进程内打分
+     *
+     * 先用一次批量 SQL 读回入库时已存的向量：带 vectorId 的按 embedding_id 查，其余按 DOCUMENT_ID 查
+     * （快照分片用原始分片ID）。已存文本与当前内容不一致、维度与查询向量不同或根本没有入库的分片，
+     * 再按入库批大小调用 embedAll 补齐。
+     *
+     * @param documents 文档分片
+     * @param embeddingConfig 嵌入模型配置，用于补齐缺失的向量
+     * @param dimension 查询向量维度
+     * @return 分片ID -> 向量；内容为空或补齐失败的分片不在结果里 */
+    public Map<String, float[]> loadDocumentVectors(List<DocumentUnitEntity> documents,
+            EmbeddingModelFactory.EmbeddingConfig embeddingConfig, int dimension) {
+        final Map<String, float[]> vectors = new HashMap<>();
+        final List<DocumentUnitEntity> candidates = Steam.of(documents)
+                .filter(doc -> StringUtils.hasText(doc.getContent())).toList();
+        if (candidates.isEmpty()) {
+            return vectors;
+        }
+
+        if (storedEmbeddingLookup.isEnabled()) {
+            try {
+                Map<String, StoredEmbeddingLookup.StoredEmbedding> byVectorId = storedEmbeddingLookup
+                        .findByEmbeddingIds(Steam.of(candidates).map(DocumentUnitEntity::getVectorId)
+                                .filter(StringUtils::hasText).toList());
+                Map<String, StoredEmbeddingLookup.StoredEmbedding> byDocumentId = storedEmbeddingLookup
+                        .findByMetadata(DOCUMENT_ID, Steam.of(candidates)
+                                .filter(doc -> !StringUtils.hasText(doc.getVectorId()))
+                                .map(EmbeddingDomainService::storedDocumentId).toList());
+                for (DocumentUnitEntity doc : candidates) {
+                    StoredEmbeddingLookup.StoredEmbedding stored = StringUtils.hasText(doc.getVectorId())
+                            ? byVectorId.get(doc.getVectorId())
+                            : byDocumentId.get(storedDocumentId(doc));
+                    if (stored != null && stored.getVector().length == dimension
+                            && doc.getContent().equals(stored.getText())) {
+                        vectors.put(doc.getId(), stored.getVector());
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("读取已入库向量失败，改为重新向量化: {}", e.getMessage());
+            }
+        }
+
+        final List<DocumentUnitEntity> missing = Steam.of(candidates).filter(doc -> !vectors.containsKey(doc.getId()))
+                .toList();
+        if (!missing.isEmpty()) {
+            OpenAiEmbeddingModel embeddingModel = embeddingModelFactory.createEmbeddingModel(embeddingConfig);
+            int batchSize = Math.max(1, embeddingProperties.getIngestion().getBatchSize());
+            for (int from = 0; from < missing.size(); from += batchSize) {
+                List<DocumentUnitEntity> batch = missing.subList(from, Math.min(from + batchSize, missing.size()));
+                try {
+                    List<Embedding> embeddings = embeddingModel
+                            .embedAll(Steam.of(batch).map(doc -> TextSegment.from(doc.getContent())).toList())
+                            .content();
+                    for (int i = 0; i < batch.size(); i++) {
+                        vectors.put(batch.get(i).getId(), embeddings.get(i).vector());
+                    }
+                } catch (Exception e) {
+                    log.warn("补齐 {} 个分片的向量失败: {}", batch.size(), e.getMessage());
+                }
+            }
+        }
+        log.debug("Document vectors: {} requested, {} reused from store, {} embedded", candidates.size(),
+                candidates.size() - missing.size(), missing.size());
+        return vectors;
+    }
+
+    /** 分片在向量表中的 DOCUMENT_ID：快照分片是原始分片ID，实时分片就是自身ID */
+    private static String storedDocumentId(DocumentUnitEntity doc) {
+        return StringUtils.hasText(doc.getSourceDocumentId()) ? doc.getSourceDocumentId() : doc.getId();
+    }
+
     /** 批量删除向量数据
      *
      * @param fileIds 文件id集合 */
@@ -262,6 +686,166 @@ public class EmbeddingDomainService implements MetadataConstant {
 
     }
 
+    /** 投递文件的向量化任务
+     *
+     * 批量模式下按 batchSize 把同一文件的语料分组，每组一条MQ消息；关闭批量模式时退回每个分片一条消息。
+     * 同一文件的所有分片共用一套嵌入模型配置，因此按文件分组即等价于按（文件，嵌入配置）分组。
+     *
+     * @param fileEntity 文件实体
+     * @param datasetId 数据集ID
+     * @param documentUnits 待向量化的文档单元
+     * @param embeddingModelConfig 嵌入模型配置
+     * @param description 任务描述 */
+    public void publishVectorization(FileDetailEntity fileEntity, String datasetId,
+            List<DocumentUnitEntity> documentUnits, ModelConfig embeddingModelConfig, String description) {
+        EmbeddingProperties.Ingestion ingestion = embeddingProperties.getIngestion();
+
+        if (!ingestion.isBatchEnabled()) {
+            for (DocumentUnitEntity documentUnit : documentUnits) {
+                RagDocSyncStorageMessage storageMessage = buildStorageMessage(fileEntity, datasetId,
+                        embeddingModelConfig);
+                storageMessage.setId(documentUnit.getId());
+                storageMessage.setPage(documentUnit.getPage());
+                storageMessage.setContent(documentUnit.getContent());
+
+                RagDocSyncStorageEvent<RagDocSyncStorageMessage> storageEvent = new RagDocSyncStorageEvent<>(
+                        storageMessage, EventType.DOC_SYNC_RAG);
+                storageEvent.setDescription(description + " - 页面 " + documentUnit.getPage());
+                applicationContext.publishEvent(storageEvent);
+            }
+            return;
+        }
+
+        int batchSize = Math.max(1, ingestion.getBatchSize());
+        for (int from = 0; from < documentUnits.size(); from += batchSize) {
+            List<DocumentUnitEntity> batch = documentUnits.subList(from,
+                    Math.min(from + batchSize, documentUnits.size()));
+
+            RagDocSyncStorageMessage storageMessage = buildStorageMessage(fileEntity, datasetId,
+                    embeddingModelConfig);
+            storageMessage.setDocumentIds(Steam.of(batch).map(DocumentUnitEntity::getId).toList());
+
+            RagDocSyncStorageEvent<RagDocSyncStorageMessage> storageEvent = new RagDocSyncStorageEvent<>(
+                    storageMessage, EventType.DOC_SYNC_RAG);
+            storageEvent
+                    .setDescription(description + " - 批次 " + (from / batchSize + 1) + "，" + batch.size() + " 个分片");
+            applicationContext.publishEvent(storageEvent);
+        }
+    }
+
+    private RagDocSyncStorageMessage buildStorageMessage(FileDetailEntity fileEntity, String datasetId,
+            ModelConfig embeddingModelConfig) {
+        RagDocSyncStorageMessage storageMessage = new RagDocSyncStorageMessage();
+        storageMessage.setFileId(fileEntity.getId());
+        storageMessage.setFileName(fileEntity.getOriginalFilename());
+        storageMessage.setVector(true);
+        storageMessage.setDatasetId(datasetId);
+        storageMessage.setUserId(fileEntity.getUserId());
+        storageMessage.setEmbeddingModelConfig(embeddingModelConfig);
+        return storageMessage;
+    }
+
+    /** 批量文本向量化
+     *
+     * 一次 embedAll + 一次 addAll + 一次 is_vector 批量更新。已向量化的分片会被跳过，消息重投时不会重复入库。
+     * embedAll 或 addAll 失败时逐个分片重试，单个分片的失败不影响同批其它分片；向量写入后状态更新失败只重试更新，
+     * 仍失败时删掉刚写入的向量再抛出。
+     *
+     * @param ragDocSyncStorageMessage 批量向量化消息
+     * @return 本批成功向量化的分片数量 */
+    public int syncStorageBatch(RagDocSyncStorageMessage ragDocSyncStorageMessage) {
+
+        final List<DocumentUnitEntity> documentUnits = documentUnitRepository.selectList(Wrappers
+                .lambdaQuery(DocumentUnitEntity.class).in(DocumentUnitEntity::getId,
+                        ragDocSyncStorageMessage.getDocumentIds())
+                .eq(DocumentUnitEntity::getIsVector, false));
+        if (documentUnits.isEmpty()) {
+            return 0;
+        }
+
+        final List<DocumentUnitEntity> pending = reuseStoredEmbeddings(ragDocSyncStorageMessage, documentUnits);
+        final int reused = documentUnits.size() - pending.size();
+        if (pending.isEmpty()) {
+            return reused;
+        }
+
+        OpenAiEmbeddingModel embeddingModel = createEmbeddingModelFromMessage(ragDocSyncStorageMessage);
+
+        final List<TextSegment> textSegments = Steam.of(pending)
+                .map(documentUnit -> new TextSegment(documentUnit.getContent(),
+                        buildMetadata(ragDocSyncStorageMessage, documentUnit.getId(), documentUnit.getContent())))
+                .toList();
+
+        List<String> embeddingIds = null;
+        try {
+            List<Embedding> embeddings = embeddingModel.embedAll(textSegments).content();
+            embeddingIds = embeddingStore.addAll(embeddings, textSegments);
+        } catch (Exception e) {
+            log.warn("Batch vectorization failed for file {}, {} chunks, retrying chunk by chunk: {}",
+                    ragDocSyncStorageMessage.getFileId(), pending.size(), e.getMessage());
+        }
+        if (embeddingIds != null) {
+            // 新分片已可检索，基于旧内容的缓存答案失效；必须在写入之后，否则期间生成的答案会留在新代数下
+            ragAnswerCache.invalidateDataset(ragDocSyncStorageMessage.getDatasetId());
+            // 向量已写入，只重试状态更新；不能走逐个分片重试，否则整批向量会再写一遍
+            markVectorized(Steam.of(pending).map(DocumentUnitEntity::getId).toList(), embeddingIds);
+            return documentUnits.size();
+        }
+
+        int succeeded = reused;
+        for (DocumentUnitEntity documentUnit : pending) {
+            String embeddingId;
+            try {
+                TextSegment textSegment = new TextSegment(documentUnit.getContent(),
+                        buildMetadata(ragDocSyncStorageMessage, documentUnit.getId(), documentUnit.getContent()));
+                embeddingId = embeddingStore.add(embeddingModel.embed(textSegment).content(), textSegment);
+            } catch (Exception e) {
+                log.error("Vectorization failed for chunk {} of file {}", documentUnit.getId(),
+                        ragDocSyncStorageMessage.getFileId(), e);
+                continue;
+            }
+            try {
+                markVectorized(List.of(documentUnit.getId()), List.of(embeddingId));
+                succeeded++;
+            } catch (Exception e) {
+                log.error("Marking chunk {} of file {} as vectorized failed", documentUnit.getId(),
+                        ragDocSyncStorageMessage.getFileId(), e);
+            }
+        }
+        if (succeeded > reused) {
+            ragAnswerCache.invalidateDataset(ragDocSyncStorageMessage.getDatasetId());
+        }
+        return succeeded;
+    }
+
+    /** 把已写入向量的分片标记为已向量化，失败时重试一次
+     *
+     * 仍然失败时删掉刚写入的向量再抛出，分片保持未向量化，消息重投时重新写入，不会留下重复向量。
+     *
+     * @param documentIds 分片ID
+     * @param embeddingIds 这些分片刚写入的向量ID */
+    private void markVectorized(List<String> documentIds, List<String> embeddingIds) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                documentUnitRepository.update(Wrappers.lambdaUpdate(DocumentUnitEntity.class)
+                        .in(DocumentUnitEntity::getId, documentIds).set(DocumentUnitEntity::getIsVector, true));
+                return;
+            } catch (RuntimeException e) {
+                if (attempt < 2) {
+                    log.warn("Marking {} chunks as vectorized failed, retrying: {}", documentIds.size(),
+                            e.getMessage());
+                    continue;
+                }
+                try {
+                    embeddingStore.removeAll(embeddingIds);
+                } catch (Exception removeFailure) {
+                    e.addSuppressed(removeFailure);
+                }
+                throw e;
+            }
+        }
+    }
+
     /** 文本向量化 */
     public void syncStorage(RagDocSyncStorageMessage ragDocSyncStorageMessage) {
 
@@ -276,18 +860,22 @@ public class EmbeddingDomainService implements MetadataConstant {
 
         final String content = documentUnitEntity.getContent();
 
-        final Metadata documentMetadata = buildMetadata(ragDocSyncStorageMessage);
+        // 增量模式下内容和模型都没变时沿用已有向量，否则先删掉该分片的旧向量
+        if (!reuseStoredEmbeddings(ragDocSyncStorageMessage, List.of(documentUnitEntity)).isEmpty()) {
+            final Metadata documentMetadata = buildMetadata(ragDocSyncStorageMessage, docId, content);
 
-        final TextSegment textSegment = new TextSegment(content, documentMetadata);
+            final TextSegment textSegment = new TextSegment(content, documentMetadata);
 
-        // 使用消息中配置的嵌入模型生成向量
-        OpenAiEmbeddingModel embeddingModel = createEmbeddingModelFromMessage(ragDocSyncStorageMessage);
-        Embedding embeddings = embeddingModel.embed(textSegment).content();
+            // 使用消息中配置的嵌入模型生成向量
+            OpenAiEmbeddingModel embeddingModel = createEmbeddingModelFromMessage(ragDocSyncStorageMessage);
+            Embedding embeddings = embeddingModel.embed(textSegment).content();
 
-        embeddingStore.add(embeddings, textSegment);
+            embeddingStore.add(embeddings, textSegment);
+            ragAnswerCache.invalidateDataset(ragDocSyncStorageMessage.getDatasetId());
 
-        documentUnitRepository.update(Wrappers.lambdaUpdate(DocumentUnitEntity.class)
-                .eq(DocumentUnitEntity::getId, docId).set(DocumentUnitEntity::getIsVector, true));
+            documentUnitRepository.update(Wrappers.lambdaUpdate(DocumentUnitEntity.class)
+                    .eq(DocumentUnitEntity::getId, docId).set(DocumentUnitEntity::getIsVector, true));
+        }
 
         // 修改文件状态
         final Integer pageSize = fileDetailEntity.getFilePageSize();
@@ -307,16 +895,151 @@ public class EmbeddingDomainService implements MetadataConstant {
 
     }
 
-    private Metadata buildMetadata(RagDocSyncStorageMessage ragDocSyncStorageMessage) {
+    private Metadata buildMetadata(RagDocSyncStorageMessage ragDocSyncStorageMessage, String documentId,
+            String content) {
 
         final Metadata metadata = new Metadata();
         metadata.put(FILE_ID, ragDocSyncStorageMessage.getFileId());
         metadata.put(FILE_NAME, ragDocSyncStorageMessage.getFileName());
-        metadata.put(DOCUMENT_ID, ragDocSyncStorageMessage.getId());
+        metadata.put(DOCUMENT_ID, documentId);
         metadata.put(DATA_SET_ID, ragDocSyncStorageMessage.getDatasetId());
+        metadata.put(CONTENT_HASH, StoredEmbeddingReuse.fingerprint(modelIdOf(ragDocSyncStorageMessage), content));
         return metadata;
     }
 
+    private static String modelIdOf(RagDocSyncStorageMessage ragDocSyncStorageMessage) {
+        ModelConfig modelConfig = ragDocSyncStorageMessage.getEmbeddingModelConfig();
+        return modelConfig == null ? null : modelConfig.getModelId();
+    }
+
+    /** 是否启用增量入库 */
+    public boolean isIncrementalIngestion() {
+        return embeddingProperties.getIngestion().isIncremental();
+    }
+
+    /** 增量入库：按分片指纹复用已入库向量
+     *
+     * 对每个分片，先看自己名下是否已有指纹一致的向量；没有则在同一文件里找指纹一致、且原语料已不存在的旧向量改挂过来。
+     * 分片名下指纹不一致的旧向量会被删除。复用成功的分片直接置位 is_vector。
+     *
+     * @param ragDocSyncStorageMessage 向量化消息
+     * @param documentUnits 待向量化的分片
+     * @return 仍需调用嵌入服务的分片；未启用增量入库或查询失败时原样返回 */
+    private List<DocumentUnitEntity> reuseStoredEmbeddings(RagDocSyncStorageMessage ragDocSyncStorageMessage,
+            List<DocumentUnitEntity> documentUnits) {
+        final String modelId = modelIdOf(ragDocSyncStorageMessage);
+        if (!isIncrementalIngestion() || modelId == null || documentUnits.isEmpty()) {
+            return documentUnits;
+        }
+
+        final Map<String, String> fingerprints = new HashMap<>();
+        documentUnits.forEach(documentUnit -> fingerprints.put(documentUnit.getId(),
+                StoredEmbeddingReuse.fingerprint(modelId, documentUnit.getContent())));
+        final List<StoredEmbeddingReuse.StoredChunk> stored;
+        try {
+            stored = storedEmbeddingReuse.find(FILE_ID, ragDocSyncStorageMessage.getFileId(), CONTENT_HASH,
+                    new LinkedHashSet<>(fingerprints.values()), DOCUMENT_ID, fingerprints.keySet());
+        } catch (Exception e) {
+            log.warn("Failed to look up reusable embeddings for file {}: {}", ragDocSyncStorageMessage.getFileId(),
+                    e.getMessage());
+            return documentUnits;
+        }
+        if (stored.isEmpty()) {
+            return documentUnits;
+        }
+
+        // 挂在其他语料上的向量，只有原语料已被删除的才能改挂
+        final Set<String> foreignDocumentIds = Steam.of(stored).map(StoredEmbeddingReuse.StoredChunk::getDocumentId)
+                .filter(documentId -> documentId != null && !fingerprints.containsKey(documentId)).toSet();
+        final Set<String> liveDocumentIds = foreignDocumentIds.isEmpty() ? Set.of()
+                : Steam.of(documentUnitRepository.selectList(Wrappers.lambdaQuery(DocumentUnitEntity.class)
+                        .in(DocumentUnitEntity::getId, foreignDocumentIds).select(DocumentUnitEntity::getId)))
+                        .map(DocumentUnitEntity::getId).toSet();
+
+        final Map<String, List<StoredEmbeddingReuse.StoredChunk>> ownByDocument = new HashMap<>();
+        final Map<String, List<StoredEmbeddingReuse.StoredChunk>> orphansByFingerprint = new HashMap<>();
+        for (StoredEmbeddingReuse.StoredChunk chunk : stored) {
+            if (fingerprints.containsKey(chunk.getDocumentId())) {
+                ownByDocument.computeIfAbsent(chunk.getDocumentId(), key -> new ArrayList<>()).add(chunk);
+            } else if (chunk.getFingerprint() != null && !liveDocumentIds.contains(chunk.getDocumentId())) {
+                orphansByFingerprint.computeIfAbsent(chunk.getFingerprint(), key -> new ArrayList<>()).add(chunk);
+            }
+        }
+
+        final List<DocumentUnitEntity> pending = new ArrayList<>();
+        final List<String> reusedIds = new ArrayList<>();
+        final List<String> staleEmbeddingIds = new ArrayList<>();
+        final Set<String> claimed = new HashSet<>();
+        boolean reassigned = false;
+        for (DocumentUnitEntity documentUnit : documentUnits) {
+            final String fingerprint = fingerprints.get(documentUnit.getId());
+            boolean reused = false;
+            for (StoredEmbeddingReuse.StoredChunk own : ownByDocument.getOrDefault(documentUnit.getId(), List.of())) {
+                if (!reused && fingerprint.equals(own.getFingerprint())) {
+                    reused = true;
+                } else {
+                    staleEmbeddingIds.add(own.getEmbeddingId());
+                }
+            }
+            if (!reused) {
+                final TextSegment textSegment = new TextSegment(documentUnit.getContent(),
+                        buildMetadata(ragDocSyncStorageMessage, documentUnit.getId(), documentUnit.getContent()));
+                for (StoredEmbeddingReuse.StoredChunk orphan : orphansByFingerprint.getOrDefault(fingerprint,
+                        List.of())) {
+                    if (claimed.add(orphan.getEmbeddingId())
+                            && storedEmbeddingReuse.reassign(DOCUMENT_ID, orphan, textSegment)) {
+                        reused = true;
+                        reassigned = true;
+                        break;
+                    }
+                }
+            }
+            if (reused) {
+                reusedIds.add(documentUnit.getId());
+            } else {
+                pending.add(documentUnit);
+            }
+        }
+
+        if (!staleEmbeddingIds.isEmpty()) {
+            embeddingStore.removeAll(staleEmbeddingIds);
+        }
+        if (!reusedIds.isEmpty()) {
+            documentUnitRepository.update(Wrappers.lambdaUpdate(DocumentUnitEntity.class)
+                    .in(DocumentUnitEntity::getId, reusedIds).set(DocumentUnitEntity::getIsVector, true));
+        }
+        if (reassigned || !staleEmbeddingIds.isEmpty()) {
+            ragAnswerCache.invalidateDataset(ragDocSyncStorageMessage.getDatasetId());
+        }
+        log.info("Incremental ingestion for file {}: {} chunks reused, {} to embed, {} stale vectors removed",
+                ragDocSyncStorageMessage.getFileId(), reusedIds.size(), pending.size(), staleEmbeddingIds.size());
+        return pending;
+    }
+
+    /** 增量入库：删除文件下没有分片认领的旧向量
+     *
+     * 重新处理时旧向量被保留下来供复用，文件向量化完成后，内容已删除或已修改的分片留下的向量在这里清理。
+     *
+     * @param fileId 文件ID
+     * @return 删除的向量数 */
+    public int removeOrphanEmbeddings(String fileId) {
+        if (!isIncrementalIngestion()) {
+            return 0;
+        }
+        final Set<String> liveDocumentIds = Steam.of(documentUnitRepository.selectList(Wrappers
+                .lambdaQuery(DocumentUnitEntity.class).eq(DocumentUnitEntity::getFileId, fileId)
+                .select(DocumentUnitEntity::getId))).map(DocumentUnitEntity::getId).toSet();
+        final List<String> orphanIds = Steam.of(storedEmbeddingReuse.listByFile(FILE_ID, fileId, DOCUMENT_ID))
+                .filter(chunk -> !liveDocumentIds.contains(chunk.getDocumentId()))
+                .map(StoredEmbeddingReuse.StoredChunk::getEmbeddingId).toList();
+        if (orphanIds.isEmpty()) {
+            return 0;
+        }
+        embeddingStore.removeAll(orphanIds);
+        log.info("Removed {} orphan embeddings for file {}", orphanIds.size(), fileId);
+        return orphanIds.size();
+    }
+
     /** 从消息中创建嵌入模型
      * 
      * @param ragDocSyncStorageMessage 存储消息
@@ -2,12 +2,17 @@ package org.lucas.domain.rag.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.springframework.stereotype.Service;
 import org.lucas.domain.rag.constant.InstallType;
 import org.lucas.domain.rag.model.*;
 import org.lucas.domain.rag.repository.*;
 import org.lucas.infrastructure.exception.BusinessException;
+import org.lucas.infrastructure.rag.factory.EmbeddingModelFactory;
 
 /** RAG数据访问服务 - 支持动态引用和快照数据获取
  * @author xhy
@@ -21,15 +26,17 @@ public class RagDataAccessDomainService {
     private final DocumentUnitRepository documentUnitRepository;
     private final UserRagFileRepository userRagFileRepository;
     private final UserRagDocumentRepository userRagDocumentRepository;
+    private final EmbeddingDomainService embeddingDomainService;
 
     public RagDataAccessDomainService(UserRagRepository userRagRepository, FileDetailRepository fileDetailRepository,
             DocumentUnitRepository documentUnitRepository, UserRagFileRepository userRagFileRepository,
-            UserRagDocumentRepository userRagDocumentRepository) {
+            UserRagDocumentRepository userRagDocumentRepository, EmbeddingDomainService embeddingDomainService) {
         this.userRagRepository = userRagRepository;
         this.fileDetailRepository = fileDetailRepository;
         this.documentUnitRepository = documentUnitRepository;
         this.userRagFileRepository = userRagFileRepository;
         this.userRagDocumentRepository = userRagDocumentRepository;
+        this.embeddingDomainService = embeddingDomainService;
     }
 
     /** 获取用户可用的RAG文件列表
@@ -49,6 +56,80 @@ public class RagDataAccessDomainService {
         }
     }
 
+    /** 快照是否带有版本向量分区
+     *
+     * 发布时复制过向量的版本，其快照分片带 vectorId；更早发布的版本没有，只能把快照分片读进内存打分。
+     *
+     * @param userRagId 用户RAG安装记录ID
+     * @return 是否可以在版本向量分区内检索 */
+    public boolean hasSnapshotVectors(String userRagId) {
+        return userRagDocumentRepository.exists(Wrappers.<UserRagDocumentEntity>lambdaQuery()
+                .eq(UserRagDocumentEntity::getUserRagId, userRagId).isNotNull(UserRagDocumentEntity::getVectorId));
+    }
+
+    /** 在快照所属版本的向量分区内检索，返回用户快照分片
+     *
+     * @param userRagId 用户RAG安装记录ID
+     * @param ragVersionId 快照对应的版本ID
+     * @param question 查询问题
+     * @param maxResults 最大返回结果数量
+     * @param minScore 最小相似度阈值
+     * @param enableRerank 是否启用重排序
+     * @param candidateMultiplier 候选结果倍数
+     * @param embeddingConfig 嵌入模型配置
+     * @return 按相关性排序的快照分片，分数写在 similarityScore 中 */
+    public List<DocumentUnitEntity> searchUserSnapshot(String userRagId, String ragVersionId, String question,
+            Integer maxResults, Double minScore, Boolean enableRerank, Integer candidateMultiplier,
+            EmbeddingModelFactory.EmbeddingConfig embeddingConfig) {
+        Map<String, Double> scores = embeddingDomainService.searchVersionVectors(ragVersionId, question, maxResults,
+                minScore, enableRerank, candidateMultiplier, embeddingConfig);
+        return toSnapshotDocuments(userRagId, scores);
+    }
+
+    /** 在快照所属版本的向量分区内做多查询检索，各查询并发检索后按 RRF 融合，只重排一次
+     *
+     * @param userRagId 用户RAG安装记录ID
+     * @param ragVersionId 快照对应的版本ID
+     * @param queries 查询列表，第一条为原问题
+     * @param maxResults 最大返回结果数量
+     * @param minScore 最小相似度阈值
+     * @param enableRerank 是否启用重排序
+     * @param candidateMultiplier 候选结果倍数
+     * @param embeddingConfig 嵌入模型配置
+     * @return 按融合后相关性排序的快照分片，similarityScore 为各查询中的最高相似度 */
+    public List<DocumentUnitEntity> searchUserSnapshot(String userRagId, String ragVersionId, List<String> queries,
+            Integer maxResults, Double minScore, Boolean enableRerank, Integer candidateMultiplier,
+            EmbeddingModelFactory.EmbeddingConfig embeddingConfig) {
+        Map<String, Double> scores = embeddingDomainService.searchVersionVectorsMultiQuery(ragVersionId, queries,
+                maxResults, minScore, enableRerank, candidateMultiplier, embeddingConfig);
+        return toSnapshotDocuments(userRagId, scores);
+    }
+
+    /** 把版本向量的检索结果换成用户快照分片，保持检索顺序 */
+    private List<DocumentUnitEntity> toSnapshotDocuments(String userRagId, Map<String, Double> scores) {
+        if (scores.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, UserRagDocumentEntity> byVectorId = userRagDocumentRepository
+                .selectList(Wrappers.<UserRagDocumentEntity>lambdaQuery()
+                        .eq(UserRagDocumentEntity::getUserRagId, userRagId)
+                        .in(UserRagDocumentEntity::getVectorId, scores.keySet()))
+                .stream().collect(Collectors.toMap(UserRagDocumentEntity::getVectorId, Function.identity(),
+                        (first, second) -> first));
+
+        List<DocumentUnitEntity> results = new ArrayList<>();
+        scores.forEach((vectorId, score) -> {
+            UserRagDocumentEntity userDoc = byVectorId.get(vectorId);
+            if (userDoc != null) {
+                DocumentUnitEntity doc = convertToDocumentUnitEntity(userDoc);
+                doc.setSimilarityScore(score);
+                results.add(doc);
+            }
+        });
+        return results;
+    }
+
     /** 获取用户可用的RAG文档单元列表
      * 
      * @param userId 用户ID
@@ -317,6 +398,8 @@ public class RagDataAccessDomainService {
         doc.setFileId(userDoc.getUserRagFileId()); // 设置为用户文件快照ID
         doc.setContent(userDoc.getContent());
         doc.setPage(userDoc.getPage());
+        doc.setSourceDocumentId(userDoc.getOriginalDocumentId()); // 用于读取已入库的向量
+        doc.setVectorId(userDoc.getVectorId());
         doc.setCreatedAt(userDoc.getCreatedAt());
         doc.setUpdatedAt(userDoc.getUpdatedAt());
         return doc;
@@ -6,15 +6,25 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.lucas.application.rag.dto.RagContentPreviewDTO;
 import org.lucas.application.rag.dto.RagStatisticsDTO;
 import org.lucas.application.rag.dto.RagVersionDocumentDTO;
 import org.lucas.application.rag.dto.RagVersionFileDTO;
+import org.lucas.domain.rag.constant.InstallType;
 import org.lucas.domain.rag.constant.RagPublishStatus;
 import org.lucas.domain.rag.model.DocumentUnitEntity;
 import org.lucas.domain.rag.model.FileDetailEntity;
@@ -22,11 +32,13 @@ import org.lucas.domain.rag.model.RagQaDatasetEntity;
 import org.lucas.domain.rag.model.RagVersionDocumentEntity;
 import org.lucas.domain.rag.model.RagVersionEntity;
 import org.lucas.domain.rag.model.RagVersionFileEntity;
+import org.lucas.domain.rag.model.UserRagEntity;
 import org.lucas.domain.rag.repository.DocumentUnitRepository;
 import org.lucas.domain.rag.repository.FileDetailRepository;
 import org.lucas.domain.rag.repository.RagVersionDocumentRepository;
 import org.lucas.domain.rag.repository.RagVersionFileRepository;
 import org.lucas.domain.rag.repository.RagVersionRepository;
+import org.lucas.domain.rag.repository.UserRagRepository;
 import org.lucas.infrastructure.exception.BusinessException;
 
 /** RAG版本领域服务
@@ -36,24 +48,31 @@ import org.lucas.infrastructure.exception.BusinessException;
 @Service
 public class RagVersionDomainService {
 
+    private static final Logger log = LoggerFactory.getLogger(RagVersionDomainService.class);
+
     private final RagVersionRepository ragVersionRepository;
     private final RagVersionFileRepository ragVersionFileRepository;
     private final RagVersionDocumentRepository ragVersionDocumentRepository;
     private final RagQaDatasetDomainService ragQaDatasetDomainService;
     private final FileDetailRepository fileDetailRepository;
     private final DocumentUnitRepository documentUnitRepository;
+    private final EmbeddingDomainService embeddingDomainService;
+    private final UserRagRepository userRagRepository;
 
     public RagVersionDomainService(RagVersionRepository ragVersionRepository,
             RagVersionFileRepository ragVersionFileRepository,
             RagVersionDocumentRepository ragVersionDocumentRepository,
             RagQaDatasetDomainService ragQaDatasetDomainService, FileDetailRepository fileDetailRepository,
-            DocumentUnitRepository documentUnitRepository) {
+            DocumentUnitRepository documentUnitRepository, EmbeddingDomainService embeddingDomainService,
+            UserRagRepository userRagRepository) {
         this.ragVersionRepository = ragVersionRepository;
         this.ragVersionFileRepository = ragVersionFileRepository;
         this.ragVersionDocumentRepository = ragVersionDocumentRepository;
         this.ragQaDatasetDomainService = ragQaDatasetDomainService;
         this.fileDetailRepository = fileDetailRepository;
         this.documentUnitRepository = documentUnitRepository;
+        this.embeddingDomainService = embeddingDomainService;
+        this.userRagRepository = userRagRepository;
     }
 
     /** 创建RAG版本快照
@@ -85,15 +104,43 @@ public class RagVersionDomainService {
         ragVersion.setPublishedAt(LocalDateTime.now());
         ragVersionRepository.insert(ragVersion);
 
-        // 复制文件和文档数据
-        copyFilesAndDocuments(ragId, ragVersion.getId());
-
-        // 更新统计信息
-        updateVersionStatistics(ragVersion.getId());
+        // 复制文件和文档数据；向量复制走向量库连接，不在发布事务内，发布失败时需单独清理
+        String ragVersionId = ragVersion.getId();
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (inTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        discardVersionVectors(ragVersionId);
+                    }
+                }
+            });
+        }
+        try {
+            copyFilesAndDocuments(ragId, ragVersionId);
+
+            // 更新统计信息
+            updateVersionStatistics(ragVersionId);
+        } catch (RuntimeException e) {
+            if (!inTransaction) {
+                discardVersionVectors(ragVersionId);
+            }
+            throw e;
+        }
 
         return ragVersion;
     }
 
+    /** 发布失败时清理已复制到版本分区的向量，清理失败只记录日志，不覆盖原始异常 */
+    private void discardVersionVectors(String ragVersionId) {
+        try {
+            embeddingDomainService.deleteVersionVectors(ragVersionId);
+        } catch (Exception e) {
+            log.error("清理发布失败版本 {} 的向量失败", ragVersionId, e);
+        }
+    }
+
     /** 复制文件和文档数据到版本快照
      * 
      * @param ragId 原始RAG数据集ID
@@ -104,6 +151,9 @@ public class RagVersionDomainService {
                 .eq(FileDetailEntity::getDataSetId, ragId);
         List<FileDetailEntity> originalFiles = fileDetailRepository.selectList(fileWrapper);
 
+        // 原始分片ID -> 版本向量ID，全部文件复制完后一次性复制向量
+        Map<String, String> vectorIdByDocumentId = new HashMap<>();
+        Map<String, String> contentByDocumentId = new HashMap<>();
         for (FileDetailEntity originalFile : originalFiles) {
             // 创建文件快照
             RagVersionFileEntity versionFile = new RagVersionFileEntity();
@@ -119,7 +169,37 @@ public class RagVersionDomainService {
             ragVersionFileRepository.insert(versionFile);
 
             // 复制文档单元
-            copyDocumentUnits(originalFile.getId(), ragVersionId, versionFile.getId());
+            copyDocumentUnits(originalFile.getId(), ragVersionId, versionFile.getId(), vectorIdByDocumentId,
+                    contentByDocumentId);
+        }
+
+        copyVersionVectors(ragVersionId, vectorIdByDocumentId, contentByDocumentId);
+    }
+
+    /** 把分片向量复制到版本向量分区，复制不到向量的文档清空 vectorId
+     *
+     * @param ragVersionId RAG版本ID
+     * @param vectorIdByDocumentId 原始分片ID -> 版本向量ID
+     * @param contentByDocumentId 原始分片ID -> 分片内容 */
+    private void copyVersionVectors(String ragVersionId, Map<String, String> vectorIdByDocumentId,
+            Map<String, String> contentByDocumentId) {
+        if (vectorIdByDocumentId.isEmpty()) {
+            return;
+        }
+        Set<String> copied = embeddingDomainService.copyVectorsToVersion(ragVersionId, vectorIdByDocumentId,
+                contentByDocumentId);
+
+        List<String> missing = new ArrayList<>();
+        for (String vectorId : vectorIdByDocumentId.values()) {
+            if (!copied.contains(vectorId)) {
+                missing.add(vectorId);
+            }
+        }
+        for (int from = 0; from < missing.size(); from += 1000) {
+            List<String> slice = missing.subList(from, Math.min(from + 1000, missing.size()));
+            ragVersionDocumentRepository.update(Wrappers.<RagVersionDocumentEntity>lambdaUpdate()
+                    .eq(RagVersionDocumentEntity::getRagVersionId, ragVersionId)
+                    .in(RagVersionDocumentEntity::getVectorId, slice).set(RagVersionDocumentEntity::getVectorId, null));
         }
     }
 
@@ -127,8 +207,11 @@ public class RagVersionDomainService {
      * 
      * @param originalFileId 原始文件ID
      * @param ragVersionId RAG版本ID
-     * @param ragVersionFileId RAG版本文件ID */
-    private void copyDocumentUnits(String originalFileId, String ragVersionId, String ragVersionFileId) {
+     * @param ragVersionFileId RAG版本文件ID
+     * @param vectorIdByDocumentId 收集已向量化分片的 原始分片ID -> 版本向量ID
+     * @param contentByDocumentId 收集已向量化分片的 原始分片ID -> 分片内容 */
+    private void copyDocumentUnits(String originalFileId, String ragVersionId, String ragVersionFileId,
+            Map<String, String> vectorIdByDocumentId, Map<String, String> contentByDocumentId) {
         LambdaQueryWrapper<DocumentUnitEntity> docWrapper = Wrappers.<DocumentUnitEntity>lambdaQuery()
                 .eq(DocumentUnitEntity::getFileId, originalFileId).orderByAsc(DocumentUnitEntity::getPage)
                 .orderByAsc(DocumentUnitEntity::getCreatedAt);
@@ -141,7 +224,13 @@ public class RagVersionDomainService {
             versionDoc.setOriginalDocumentId(doc.getId());
             versionDoc.setContent(doc.getContent());
             versionDoc.setPage(doc.getPage());
-            // vectorId 将在向量复制时设置
+            // 预先分配版本向量ID，向量复制失败的会在 copyVersionVectors 中清空
+            if (Boolean.TRUE.equals(doc.getIsVector())) {
+                String vectorId = UUID.randomUUID().toString();
+                versionDoc.setVectorId(vectorId);
+                vectorIdByDocumentId.put(doc.getId(), vectorId);
+                contentByDocumentId.put(doc.getId(), doc.getContent());
+            }
             ragVersionDocumentRepository.insert(versionDoc);
         }
     }
@@ -196,6 +285,14 @@ public class RagVersionDomainService {
         return version;
     }
 
+    /** 查找RAG版本
+     *
+     * @param versionId 版本ID
+     * @return RAG版本实体，不存在时为 null */
+    public RagVersionEntity findRagVersion(String versionId) {
+        return ragVersionRepository.selectById(versionId);
+    }
+
     /** 更新审核状态
      * 
      * @param versionId 版本ID
@@ -527,6 +624,49 @@ public class RagVersionDomainService {
         LambdaQueryWrapper<RagVersionEntity> versionWrapper = Wrappers.<RagVersionEntity>lambdaQuery()
                 .eq(RagVersionEntity::getId, versionId).eq(RagVersionEntity::getUserId, userId);
         ragVersionRepository.checkedDelete(versionWrapper);
+
+        // 版本向量分区只被快照安装引用：还有其他用户的快照安装时保留，由最后一个卸载的用户清理
+        if (countSnapshotInstalls(versionId, userId) == 0) {
+            deleteVersionVectorsAfterCommit(versionId);
+        }
+    }
+
+    /** 已删除版本的快照安装被卸载后，没有快照安装再引用时清理版本向量分区
+     *
+     * @param versionId 版本ID */
+    public void releaseDeletedVersionVectors(String versionId) {
+        if (ragVersionRepository.selectById(versionId) == null && countSnapshotInstalls(versionId, null) == 0) {
+            deleteVersionVectorsAfterCommit(versionId);
+        }
+    }
+
+    /** 引用该版本的快照安装数
+     *
+     * @param versionId 版本ID
+     * @param excludeUserId 不计入的用户，为 null 时统计全部 */
+    private long countSnapshotInstalls(String versionId, String excludeUserId) {
+        return userRagRepository.selectCount(Wrappers.<UserRagEntity>lambdaQuery()
+                .eq(UserRagEntity::getRagVersionId, versionId)
+                .eq(UserRagEntity::getInstallType, InstallType.SNAPSHOT)
+                .ne(excludeUserId != null, UserRagEntity::getUserId, excludeUserId));
+    }
+
+    /** 向量分区走向量库连接，不在当前事务内：事务提交后再删，回滚时保留 */
+    private void deleteVersionVectorsAfterCommit(String versionId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            embeddingDomainService.deleteVersionVectors(versionId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    embeddingDomainService.deleteVersionVectors(versionId);
+                } catch (Exception e) {
+                    log.error("删除版本 {} 的向量分区失败", versionId, e);
+                }
+            }
+        });
     }
 
     /** 获取原始RAG的版本列表（根据用户权限显示不同范围的版本）
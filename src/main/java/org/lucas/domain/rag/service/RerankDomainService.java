@@ -7,10 +7,7 @@ import jakarta.annotation.Resource;
 import java.util.ArrayList;
 import java.util.List;
 import org.springframework.stereotype.Service;
-import org.lucas.domain.rag.dto.req.RerankRequest;
-import org.lucas.domain.rag.dto.resp.RerankResponse;
-import org.lucas.infrastructure.rag.api.RerankForestApi;
-import org.lucas.infrastructure.rag.config.RerankProperties;
+import org.lucas.infrastructure.rag.service.RerankClient;
 
 /** @author shilong.zang
  * @date 16:11 <br/>
@@ -19,48 +16,40 @@ import org.lucas.infrastructure.rag.config.RerankProperties;
 public class RerankDomainService {
 
     @Resource
-    private RerankProperties rerankProperties;
-
-    @Resource
-    private RerankForestApi rerankForestApi;
-
+    private RerankClient rerankClient;
+
+    /** 对检索结果重排
+     *
+     * 缓存、截断、子批并发和耗时预算由 {@link RerankClient} 负责；重排失败、超时或没有结果时沿用向量检索顺序。
+     *
+     * @param textSegmentEmbeddingSearchResult 向量检索结果
+     * @param question 查询
+     * @return 重排后的匹配 */
     public List<EmbeddingMatch<TextSegment>> rerankDocument(
             EmbeddingSearchResult<TextSegment> textSegmentEmbeddingSearchResult, String question) {
 
-        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
-
-        final List<String> list = textSegmentEmbeddingSearchResult.matches().stream()
-                .map(text -> text.embedded().text()).toList();
+        final List<EmbeddingMatch<TextSegment>> candidates = textSegmentEmbeddingSearchResult.matches();
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
 
-        final RerankRequest rerankRequest = new RerankRequest();
-        rerankRequest.setModel(rerankProperties.getModel());
-        rerankRequest.setQuery(question);
-        rerankRequest.setDocuments(list);
+        final List<String> candidateIds = candidates.stream().map(EmbeddingMatch::embeddingId).toList();
+        final List<String> documents = candidates.stream().map(match -> match.embedded().text()).toList();
 
+        final List<Integer> ranked;
         try {
-            // 使用Forest接口调用Rerank API
-            final RerankResponse rerankResponse = rerankForestApi.rerank(rerankProperties.getApiUrl(),
-                    rerankProperties.getApiKey(), rerankRequest);
-
-            final List<RerankResponse.SearchResult> results = rerankResponse != null ? rerankResponse.getResults() : null;
-            if (results == null || results.isEmpty()) {
-                return textSegmentEmbeddingSearchResult.matches();
-            }
-
-            results.forEach(result -> {
-                final Integer index = result.getIndex();
-                if (index != null && index >= 0 && index < textSegmentEmbeddingSearchResult.matches().size()) {
-                    matches.add(textSegmentEmbeddingSearchResult.matches().get(index));
-                }
-            });
-            return matches.isEmpty() ? textSegmentEmbeddingSearchResult.matches() : matches;
+            ranked = rerankClient.rerank(question, candidateIds, documents);
         } catch (Exception e) {
             // Rerank失败时回退到向量检索结果，避免整体查询失败
-            return textSegmentEmbeddingSearchResult.matches();
+            return candidates;
+        }
+        if (ranked == null || ranked.isEmpty()) {
+            return candidates;
         }
 
-        
-
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(ranked.size());
+        ranked.forEach(index -> matches.add(candidates.get(index)));
+        return matches;
     }
 
 }
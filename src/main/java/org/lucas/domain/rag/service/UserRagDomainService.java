@@ -192,11 +192,11 @@ public class UserRagDomainService {
         // 获取安装记录
         UserRagEntity userRag = getInstalledRag(userId, ragVersionId);
 
-        // 检查是否为用户自己的知识库
-        RagVersionEntity ragVersion = ragVersionDomainService.getRagVersion(ragVersionId);
+        // 检查是否为用户自己的知识库；版本已被发布者删除时直接卸载
+        RagVersionEntity ragVersion = ragVersionDomainService.findRagVersion(ragVersionId);
 
         // 如果是用户自己创建的知识库且源知识库还存在，则不允许卸载
-        if (ragVersion.getUserId().equals(userId)) {
+        if (ragVersion != null && ragVersion.getUserId().equals(userId)) {
             throw new BusinessException("无法卸载自己创建的知识库，请先删除原知识库");
         }
 
@@ -209,6 +209,10 @@ public class UserRagDomainService {
                 .eq(UserRagEntity::getUserId, userId).eq(UserRagEntity::getRagVersionId, ragVersionId);
 
         userRagRepository.delete(wrapper);
+
+        if (ragVersion == null && userRag.isSnapshotType()) {
+            ragVersionDomainService.releaseDeletedVersionVectors(ragVersionId);
+        }
     }
 
     /** 检查RAG版本是否已安装（兼容性方法）
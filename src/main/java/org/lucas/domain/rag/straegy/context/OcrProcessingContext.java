@@ -0,0 +1,71 @@
+package org.lucas.domain.rag.straegy.context;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.lucas.domain.rag.message.RagDocSyncOcrMessage;
+
+/** 单次OCR处理上下文
+ *
+ * 策略实现都是 Spring 单例，而 OCR 消费者多线程并发消费；一次处理过程中的文件ID、页数、进度都放在这里，
+ * 随调用链传递，策略实例本身不保存任何处理状态。
+ *
+ * @author shilong.zang */
+public class OcrProcessingContext {
+
+    private final RagDocSyncOcrMessage message;
+
+    private final String strategy;
+
+    private final String fileId;
+
+    /** 文件总页数（TXT/Word 为分段数），由 pushPageSize 写入 */
+    private volatile Integer pageSize;
+
+    /** 已完成页数，页面并发识别时由工作线程累加 */
+    private final AtomicInteger completedPages = new AtomicInteger();
+
+    public OcrProcessingContext(RagDocSyncOcrMessage message, String strategy) {
+        this.message = message;
+        this.strategy = strategy;
+        this.fileId = message.getFileId();
+        this.pageSize = message.getPageSize();
+    }
+
+    public RagDocSyncOcrMessage getMessage() {
+        return message;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public String getUserId() {
+        return message.getUserId();
+    }
+
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /** 已完成页数 */
+    public int getCompletedPages() {
+        return completedPages.get();
+    }
+
+    /** 初始化已完成页数（断点续跑时为已落库的页数） */
+    public void resetCompletedPages(int completed) {
+        completedPages.set(completed);
+    }
+
+    /** 完成一页，返回累计完成页数 */
+    public int pageCompleted() {
+        return completedPages.incrementAndGet();
+    }
+}
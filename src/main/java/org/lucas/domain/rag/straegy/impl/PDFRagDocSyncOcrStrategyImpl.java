@@ -9,9 +9,18 @@ import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import jakarta.annotation.Resource;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.dromara.x.file.storage.core.FileStorageService;
@@ -24,11 +33,14 @@ import org.lucas.domain.rag.model.DocumentUnitEntity;
 import org.lucas.domain.rag.model.FileDetailEntity;
 import org.lucas.domain.rag.repository.DocumentUnitRepository;
 import org.lucas.domain.rag.repository.FileDetailRepository;
+import org.lucas.domain.rag.straegy.context.OcrProcessingContext;
 import org.lucas.infrastructure.exception.BusinessException;
 import org.lucas.infrastructure.llm.LLMProviderService;
 import org.lucas.infrastructure.llm.config.ProviderConfig;
 import org.lucas.infrastructure.llm.protocol.enums.ProviderProtocol;
 import org.lucas.infrastructure.rag.detector.TikaFileTypeDetector;
+import org.lucas.infrastructure.rag.service.OcrPageExecutor;
+import org.lucas.infrastructure.rag.utils.PdfPageSource;
 import org.lucas.infrastructure.rag.utils.PdfToBase64Converter;
 
 /** @author shilong.zang
@@ -43,142 +55,237 @@ public class PDFRagDocSyncOcrStrategyImpl extends RagDocSyncOcrStrategyImpl impl
 
     private final FileDetailRepository fileDetailRepository;
 
+    private final OcrPageExecutor ocrPageExecutor;
+
     @Resource
     private FileStorageService fileStorageService;
 
-    // 用于存储当前处理的文件ID，以便更新进度
-    private String currentProcessingFileId;
+    /** 页面渲染格式 */
+    private static final String IMAGE_FORMAT = "jpg";
 
     public PDFRagDocSyncOcrStrategyImpl(DocumentUnitRepository documentUnitRepository,
-            FileDetailRepository fileDetailRepository) {
+            FileDetailRepository fileDetailRepository, OcrPageExecutor ocrPageExecutor) {
         this.documentUnitRepository = documentUnitRepository;
         this.fileDetailRepository = fileDetailRepository;
+        this.ocrPageExecutor = ocrPageExecutor;
     }
 
     /** 处理消息，增加进度更新功能
-     * @param ragDocSyncOcrMessage 消息数据
-     * @param strategy 当前策略 */
+     *
+     * PDF 先下载到临时文件再打开，文档只解析一次：页数和所有页面渲染都来自同一个 {@link PdfPageSource}，
+     * 整个文件不会以字节数组的形式常驻堆内存。
+     *
+     * @param context 本次处理上下文 */
     @Override
-    public void handle(RagDocSyncOcrMessage ragDocSyncOcrMessage, String strategy) throws Exception {
-        // 设置当前处理的文件ID，用于进度更新
-        this.currentProcessingFileId = ragDocSyncOcrMessage.getFileId();
+    protected void process(OcrProcessingContext context) throws Exception {
+        final File pdfFile = downloadToTempFile(context);
+        try (PdfPageSource pages = PdfPageSource.open(pdfFile, IMAGE_FORMAT)) {
+            pushPageSize(pages.getPageCount(), context);
+            final Map<Integer, String> ocrData = processPages(pages, context.getPageSize(), context);
+
+            log.info("Successfully retrieved {} pages of data from the current file", ocrData.size());
 
-        // 调用父类处理逻辑
-        super.handle(ragDocSyncOcrMessage, strategy);
+            insertData(context, ocrData);
+        } finally {
+            Files.deleteIfExists(pdfFile.toPath());
+        }
     }
 
     /** 获取文件页数 */
     @Override
-    public void pushPageSize(byte[] bytes, RagDocSyncOcrMessage ragDocSyncOcrMessage) {
+    public void pushPageSize(byte[] bytes, OcrProcessingContext context) {
 
         try {
-            final int pdfPageCount = PdfToBase64Converter.getPdfPageCount(bytes);
-            ragDocSyncOcrMessage.setPageSize(pdfPageCount);
-
-            // 更新数据库中的总页数
-            if (currentProcessingFileId != null) {
-                LambdaUpdateWrapper<FileDetailEntity> wrapper = Wrappers.<FileDetailEntity>lambdaUpdate()
-                        .eq(FileDetailEntity::getId, currentProcessingFileId)
-                        .set(FileDetailEntity::getFilePageSize, pdfPageCount);
-                fileDetailRepository.update(wrapper);
-
-                log.info("Updated total pages for file {}: {} pages", currentProcessingFileId, pdfPageCount);
-            }
+            pushPageSize(PdfToBase64Converter.getPdfPageCount(bytes), context);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
     }
 
+    /** 记录文件页数并更新数据库中的总页数 */
+    private void pushPageSize(int pdfPageCount, OcrProcessingContext context) {
+        context.setPageSize(pdfPageCount);
+
+        // 更新数据库中的总页数
+        LambdaUpdateWrapper<FileDetailEntity> wrapper = Wrappers.<FileDetailEntity>lambdaUpdate()
+                .eq(FileDetailEntity::getId, context.getFileId())
+                .set(FileDetailEntity::getFilePageSize, pdfPageCount);
+        fileDetailRepository.update(wrapper);
+
+        log.info("Updated total pages for file {}: {} pages", context.getFileId(), pdfPageCount);
+    }
+
+    /** 将文件下载到临时文件，调用方负责删除 */
+    private File downloadToTempFile(OcrProcessingContext context) throws IOException {
+        final FileDetailEntity fileDetailEntity = fileDetailRepository.selectById(context.getFileId());
+        final File pdfFile = File.createTempFile("rag-ocr-", ".pdf");
+        try {
+            fileStorageService.download(fileDetailEntity.getUrl()).file(pdfFile);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(pdfFile.toPath());
+            throw e;
+        }
+        return pdfFile;
+    }
+
     /** 获取文件
      *
-     * @param ragDocSyncOcrMessage 消息数据
-     * @param strategy 当前策略 */
+     * @param context 本次处理上下文 */
     @Override
-    public byte[] getFileData(RagDocSyncOcrMessage ragDocSyncOcrMessage, String strategy) {
+    public byte[] getFileData(OcrProcessingContext context) {
 
-        final FileDetailEntity fileDetailEntity = fileDetailRepository.selectById(ragDocSyncOcrMessage.getFileId());
+        final FileDetailEntity fileDetailEntity = fileDetailRepository.selectById(context.getFileId());
 
         return fileStorageService.download(fileDetailEntity.getUrl()).bytes();
     }
 
     /** 处理PDF文件 - 按页处理逻辑 */
     @Override
-    public Map<Integer, String> processFile(byte[] fileBytes, int totalPages) {
-        return processFile(fileBytes, totalPages, null);
+    public Map<Integer, String> processFile(byte[] fileBytes, int totalPages, OcrProcessingContext context) {
+        try (PdfPageSource pages = PdfPageSource.open(fileBytes, IMAGE_FORMAT)) {
+            return processPages(pages, totalPages, context);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
-    /** 处理PDF文件 - 按页处理逻辑（带消息参数） */
-    @Override
-    public Map<Integer, String> processFile(byte[] fileBytes, int totalPages,
-            RagDocSyncOcrMessage ragDocSyncOcrMessage) {
-
-        final HashMap<Integer, String> ocrData = new HashMap<>();
-        for (int pageIndex = 0; pageIndex < totalPages; pageIndex++) {
-            try {
-                // 单独处理每一页以减少内存使用
-                String base64 = PdfToBase64Converter.processPdfPageToBase64(fileBytes, pageIndex, "jpg");
+    /** 逐页识别
+     *
+     * 渲染在当前线程逐页进行（PDDocument 不是线程安全的），识别请求交给 {@link OcrPageExecutor} 并发执行，
+     * 单文件在途页数由信号量限制，同时也限制了内存中待识别的页面图片数量。
+     * 每页识别完成立即写入 document_unit 作为检查点；消息重投时已完成的页直接跳过，也不会再渲染。
+     * 工作线程只通过 context 上报进度，不同文件之间互不影响。 */
+    private Map<Integer, String> processPages(PdfPageSource pages, int totalPages, OcrProcessingContext context) {
+
+        final String fileId = context.getFileId();
+        final Map<Integer, String> ocrData = new ConcurrentSkipListMap<>(loadCompletedPages(fileId));
+        if (!ocrData.isEmpty()) {
+            log.info("Resuming OCR for file {}: {}/{} pages already completed", fileId, ocrData.size(), totalPages);
+        }
+        context.resetCompletedPages(ocrData.size());
 
-                final UserMessage userMessage = UserMessage.userMessage(
-                        ImageContent.from(base64, TikaFileTypeDetector.detectFileType(Base64.decode(base64))),
-                        TextContent.from(OCR_PROMPT));
+        /** 创建OCR处理的模型配置 - 从消息中获取用户配置的OCR模型 */
+        final ChatModel ocrModel = createOcrModel(context);
+        final var modelConfig = context.getMessage().getOcrModelConfig();
+        final String providerKey = modelConfig.getBaseUrl() + "#" + modelConfig.getModelId();
 
-                /** 创建OCR处理的模型配置 - 从消息中获取用户配置的OCR模型 */
-                ChatModel ocrModel = createOcrModelFromMessage(ragDocSyncOcrMessage);
+        final Semaphore inFlight = new Semaphore(ocrPageExecutor.perFileConcurrency());
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
 
-                final ChatResponse chat = ocrModel.chat(userMessage);
+        for (int pageIndex = 0; pageIndex < totalPages; pageIndex++) {
+            if (ocrData.containsKey(pageIndex)) {
+                continue;
+            }
+            final int page = pageIndex;
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("OCR for file {} interrupted at page {}", fileId, page + 1);
+                break;
+            }
 
-                ocrData.put(pageIndex, processText(chat.aiMessage().text()));
+            final String base64;
+            try {
+                base64 = pages.renderPageToBase64(page);
+            } catch (Exception e) {
+                inFlight.release();
+                log.error("Error rendering PDF page {}: {}", (page + 1), e.getMessage());
+                continue;
+            }
 
-                // 实时更新处理进度
-                updateProcessProgress(pageIndex + 1, totalPages);
+            futures.add(ocrPageExecutor.submit(providerKey, () -> recognizePage(ocrModel, base64)).handle(
+                    (text, e) -> {
+                        inFlight.release();
+                        if (e != null) {
+                            // 继续处理其他页，不中断整个流程
+                            log.error("Error processing PDF page {}: {}", (page + 1), e.getMessage());
+                            return null;
+                        }
+                        ocrData.put(page, text);
+                        checkpointPage(fileId, page, text);
+                        updateProcessProgress(fileId, context.pageCompleted(), totalPages);
+                        log.info("Page {}/{} processing completed", (page + 1), totalPages);
+                        return null;
+                    }));
+        }
 
-                log.info("Processing request page {}/{}, current memory usage: {} MB", (pageIndex + 1), totalPages,
-                        (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        return ocrData;
 
-                if ((pageIndex + 1) % 10 == 0) {
-                    System.gc();
-                }
+    }
 
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+    /** 识别单页图片 */
+    private String recognizePage(ChatModel ocrModel, String base64) {
+        final UserMessage userMessage = UserMessage.userMessage(
+                ImageContent.from(base64, TikaFileTypeDetector.detectFileType(Base64.decode(base64))),
+                TextContent.from(OCR_PROMPT));
+        final ChatResponse chat = ocrModel.chat(userMessage);
+        return processText(chat.aiMessage().text());
+    }
 
-                log.info("Page {} processing completed", (pageIndex + 1));
-            } catch (Exception e) {
-                log.error("Error processing PDF page {}: {}", (pageIndex + 1), e.getMessage());
-                // 继续处理下一页，不中断整个流程
-            }
+    /** 读取已识别完成的页（检查点） */
+    private Map<Integer, String> loadCompletedPages(String fileId) {
+        final Map<Integer, String> completedPages = new HashMap<>();
+        if (fileId == null) {
+            return completedPages;
         }
+        documentUnitRepository.selectList(Wrappers.<DocumentUnitEntity>lambdaQuery()
+                .eq(DocumentUnitEntity::getFileId, fileId).eq(DocumentUnitEntity::getIsOcr, true)
+                .select(DocumentUnitEntity::getPage, DocumentUnitEntity::getContent))
+                .forEach(unit -> completedPages.put(unit.getPage(), unit.getContent()));
+        return completedPages;
+    }
 
-        return ocrData;
-
+    /** 单页识别完成后立即落库，进程崩溃后可从这里续跑
+     *
+     * 上次识别失败时该页已由 {@link #insertData} 写入一条 isOcr=false 的记录，重投后识别成功时改写这一条，
+     * 不再插入第二条，否则同一页会多出一个分片和一份向量。 */
+    private void checkpointPage(String fileId, int pageIndex, String content) {
+        final int replaced = documentUnitRepository.update(Wrappers.lambdaUpdate(DocumentUnitEntity.class)
+                .eq(DocumentUnitEntity::getFileId, fileId).eq(DocumentUnitEntity::getPage, pageIndex)
+                .eq(DocumentUnitEntity::getIsOcr, false).set(DocumentUnitEntity::getContent, content)
+                .set(DocumentUnitEntity::getIsOcr, true).set(DocumentUnitEntity::getIsVector, false));
+        if (replaced > 0) {
+            return;
+        }
+        final DocumentUnitEntity documentUnitDO = new DocumentUnitEntity();
+        documentUnitDO.setContent(content);
+        documentUnitDO.setPage(pageIndex);
+        documentUnitDO.setFileId(fileId);
+        documentUnitDO.setIsVector(false);
+        documentUnitDO.setIsOcr(true);
+        documentUnitRepository.checkInsert(documentUnitDO);
     }
 
     /** 保存数据
      *
-     * @param ragDocSyncOcrMessage 消息数据
+     * 识别成功的页已在 {@link #checkpointPage} 中写入，这里只补写识别失败的页（isOcr=false）。
+     *
+     * @param context 本次处理上下文
      * @param ocrData ocr数据 */
     @Override
-    public void insertData(RagDocSyncOcrMessage ragDocSyncOcrMessage, Map<Integer, String> ocrData) {
+    public void insertData(OcrProcessingContext context, Map<Integer, String> ocrData) {
 
-        for (int pageIndex = 0; pageIndex < ragDocSyncOcrMessage.getPageSize(); pageIndex++) {
+        final Set<Integer> storedPages = new HashSet<>();
+        documentUnitRepository.selectList(Wrappers.<DocumentUnitEntity>lambdaQuery()
+                .eq(DocumentUnitEntity::getFileId, context.getFileId())
+                .select(DocumentUnitEntity::getPage)).forEach(unit -> storedPages.add(unit.getPage()));
 
-            String content = ocrData.getOrDefault(pageIndex, null);
+        for (int pageIndex = 0; pageIndex < context.getPageSize(); pageIndex++) {
+
+            if (storedPages.contains(pageIndex)) {
+                continue;
+            }
 
             final DocumentUnitEntity documentUnitDO = new DocumentUnitEntity();
 
-            documentUnitDO.setContent(content);
+            documentUnitDO.setContent(ocrData.get(pageIndex));
             documentUnitDO.setPage(pageIndex);
-            documentUnitDO.setFileId(ragDocSyncOcrMessage.getFileId());
+            documentUnitDO.setFileId(context.getFileId());
             documentUnitDO.setIsVector(false);
-            documentUnitDO.setIsOcr(true);
-
-            if (content == null) {
-                documentUnitDO.setIsOcr(false);
-            }
+            documentUnitDO.setIsOcr(false);
 
             documentUnitRepository.checkInsert(documentUnitDO);
 
@@ -202,37 +309,44 @@ public class PDFRagDocSyncOcrStrategyImpl extends RagDocSyncOcrStrategyImpl impl
     }
 
     /** 更新处理进度
-     * @param currentPage 当前页数
+     *
+     * 页面并发完成，多个工作线程可能乱序上报；只在页数变大时更新，保证进度不回退。
+     *
+     * @param fileId 文件ID
+     * @param completedPages 已完成页数
      * @param totalPages 总页数 */
-    private void updateProcessProgress(int currentPage, int totalPages) {
-        if (currentProcessingFileId == null) {
+    private void updateProcessProgress(String fileId, int completedPages, int totalPages) {
+        if (fileId == null) {
             return;
         }
 
         try {
-            double progress = (double) currentPage / totalPages * 100.0;
+            double progress = (double) completedPages / totalPages * 100.0;
 
             // 使用新的OCR专用进度字段
             LambdaUpdateWrapper<FileDetailEntity> wrapper = Wrappers.<FileDetailEntity>lambdaUpdate()
-                    .eq(FileDetailEntity::getId, currentProcessingFileId)
-                    .set(FileDetailEntity::getCurrentOcrPageNumber, currentPage)
+                    .eq(FileDetailEntity::getId, fileId)
+                    .and(w -> w.isNull(FileDetailEntity::getCurrentOcrPageNumber).or()
+                            .lt(FileDetailEntity::getCurrentOcrPageNumber, completedPages))
+                    .set(FileDetailEntity::getCurrentOcrPageNumber, completedPages)
                     .set(FileDetailEntity::getOcrProcessProgress, progress);
 
             fileDetailRepository.update(wrapper);
 
-            log.debug("Updated OCR progress for file {}: {}/{} pages ({}%)", currentProcessingFileId, currentPage,
-                    totalPages, String.format("%.1f", progress));
+            log.debug("Updated OCR progress for file {}: {}/{} pages ({}%)", fileId, completedPages, totalPages,
+                    String.format("%.1f", progress));
         } catch (Exception e) {
-            log.warn("Failed to update OCR progress for file {}: {}", currentProcessingFileId, e.getMessage());
+            log.warn("Failed to update OCR progress for file {}: {}", fileId, e.getMessage());
         }
     }
 
-    /** 从消息中创建OCR模型
+    /** 从消息中创建OCR模型，包内可见以便测试替换
      * 
-     * @param ragDocSyncOcrMessage OCR消息
+     * @param context 本次处理上下文
      * @return ChatModel实例
      * @throws RuntimeException 如果没有配置OCR模型或创建失败 */
-    private ChatModel createOcrModelFromMessage(RagDocSyncOcrMessage ragDocSyncOcrMessage) {
+    ChatModel createOcrModel(OcrProcessingContext context) {
+        final RagDocSyncOcrMessage ragDocSyncOcrMessage = context.getMessage();
         // 检查消息和模型配置是否存在
         if (ragDocSyncOcrMessage == null || ragDocSyncOcrMessage.getOcrModelConfig() == null) {
             String errorMsg = String.format("用户 %s 未配置OCR模型，无法进行文档OCR处理",
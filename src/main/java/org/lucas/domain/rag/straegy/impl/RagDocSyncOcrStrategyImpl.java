@@ -5,8 +5,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.lucas.domain.rag.message.RagDocSyncOcrMessage;
 import org.lucas.domain.rag.straegy.RagDocSyncOcrStrategy;
+import org.lucas.domain.rag.straegy.context.OcrProcessingContext;
 
-/** @author shilong.zang
+/** 策略实例是单例且被多个消费线程共享，不能保存处理状态；每次处理的状态都在 {@link OcrProcessingContext} 中。
+ *
+ * @author shilong.zang
  * @date 17:32 <br/>
  */
 public abstract class RagDocSyncOcrStrategyImpl implements RagDocSyncOcrStrategy {
@@ -18,45 +21,43 @@ public abstract class RagDocSyncOcrStrategyImpl implements RagDocSyncOcrStrategy
      * @param strategy 当前策略 */
     @Override
     public void handle(RagDocSyncOcrMessage ragDocSyncOcrMessage, String strategy) throws Exception {
+        process(new OcrProcessingContext(ragDocSyncOcrMessage, strategy));
+    }
+
+    /** 按处理上下文执行一次完整的OCR流程，子类可整体重写
+     * @param context 本次处理上下文 */
+    protected void process(OcrProcessingContext context) throws Exception {
 
-        final byte[] fileData = getFileData(ragDocSyncOcrMessage, strategy);
-        pushPageSize(fileData, ragDocSyncOcrMessage);
+        final byte[] fileData = getFileData(context);
         if (fileData == null) {
             LOG.error("File data is empty");
             return;
         }
+        pushPageSize(fileData, context);
 
-        Integer pageSize = ragDocSyncOcrMessage.getPageSize();
+        Integer pageSize = context.getPageSize();
         if (pageSize == null) {
             LOG.warn("Page size is null, using default value 1 for txt/word files");
             pageSize = 1;
         }
-        final Map<Integer, String> ocrData = processFile(fileData, pageSize, ragDocSyncOcrMessage);
+        final Map<Integer, String> ocrData = processFile(fileData, pageSize, context);
 
         LOG.info("Successfully retrieved {} pages of data from the current file", ocrData.size());
 
-        insertData(ragDocSyncOcrMessage, ocrData);
+        insertData(context, ocrData);
 
     };
 
     /** 获取文件页数 */
-    abstract public void pushPageSize(byte[] bytes, RagDocSyncOcrMessage ragDocSyncOcrMessage);
+    abstract public void pushPageSize(byte[] bytes, OcrProcessingContext context);
 
     /** 获取文件
-     * @param ragDocSyncOcrMessage 消息数据
-     * @param strategy 当前策略 */
-    abstract public byte[] getFileData(RagDocSyncOcrMessage ragDocSyncOcrMessage, String strategy);
+     * @param context 本次处理上下文 */
+    abstract public byte[] getFileData(OcrProcessingContext context);
 
     /** ocr数据 */
-    abstract public Map<Integer, String> processFile(byte[] fileBytes, int totalPages);
-
-    /** ocr数据 (带消息参数，子类可选择性重写此方法) */
-    public Map<Integer, String> processFile(byte[] fileBytes, int totalPages,
-            RagDocSyncOcrMessage ragDocSyncOcrMessage) {
-        return processFile(fileBytes, totalPages);
-    }
+    abstract public Map<Integer, String> processFile(byte[] fileBytes, int totalPages, OcrProcessingContext context);
 
     /** 保存数据 */
-    abstract public void insertData(RagDocSyncOcrMessage ragDocSyncOcrMessage, Map<Integer, String> ocrData)
-            throws Exception;
+    abstract public void insertData(OcrProcessingContext context, Map<Integer, String> ocrData) throws Exception;
 }
@@ -0,0 +1,165 @@
+package org.lucas.domain.rag.straegy.impl;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentParser;
+import dev.langchain4j.data.document.splitter.DocumentBySentenceSplitter;
+import dev.langchain4j.data.segment.TextSegment;
+import jakarta.annotation.Resource;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.dromara.x.file.storage.core.FileStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.lucas.domain.rag.message.RagDocSyncOcrMessage;
+import org.lucas.domain.rag.model.DocumentUnitEntity;
+import org.lucas.domain.rag.model.FileDetailEntity;
+import org.lucas.domain.rag.repository.DocumentUnitRepository;
+import org.lucas.domain.rag.repository.FileDetailRepository;
+import org.lucas.domain.rag.straegy.RagDocSyncOcrStrategy;
+import org.lucas.domain.rag.straegy.context.OcrProcessingContext;
+
+/** 按分段入库的文本类文档策略（TXT、Word）
+ *
+ * 这类文档没有页的概念，按句子切成不超过 500 字的分段，分段序号即页码。
+ * 文件从存储直接以流的方式交给解析器，只解析、切分一次；分段数同时作为总页数，
+ * 分段按批写入 document_unit，一批一次 JDBC 批量插入。不走 {@link RagDocSyncOcrStrategyImpl} 的整文件读入模板。
+ *
+ * @author shilong.zang */
+public abstract class SegmentRagDocSyncOcrStrategyImpl implements RagDocSyncOcrStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentRagDocSyncOcrStrategyImpl.class);
+
+    /** 分段最大字符数 */
+    private static final int MAX_SEGMENT_SIZE = 500;
+
+    /** 每批插入的分段数 */
+    private static final int INSERT_BATCH_SIZE = 200;
+
+    protected final DocumentUnitRepository documentUnitRepository;
+
+    protected final FileDetailRepository fileDetailRepository;
+
+    @Resource
+    private FileStorageService fileStorageService;
+
+    protected SegmentRagDocSyncOcrStrategyImpl(DocumentUnitRepository documentUnitRepository,
+            FileDetailRepository fileDetailRepository) {
+        this.documentUnitRepository = documentUnitRepository;
+        this.fileDetailRepository = fileDetailRepository;
+    }
+
+    /** 文档解析器 */
+    protected abstract DocumentParser createParser();
+
+    /** 文档类型名称，用于日志 */
+    protected abstract String documentType();
+
+    /** 处理消息
+     * @param ragDocSyncOcrMessage 消息数据
+     * @param strategy 当前策略 */
+    @Override
+    public void handle(RagDocSyncOcrMessage ragDocSyncOcrMessage, String strategy) throws Exception {
+        process(new OcrProcessingContext(ragDocSyncOcrMessage, strategy));
+    }
+
+    /** 单遍处理：下载流 -> 解析 -> 切分 -> 记录分段数 -> 分批写入
+     *
+     * @param context 本次处理上下文 */
+    protected void process(OcrProcessingContext context) {
+        final FileDetailEntity fileDetailEntity = fileDetailRepository.selectById(context.getFileId());
+        if (fileDetailEntity == null) {
+            log.error("File does not exist: {}", context.getFileId());
+            return;
+        }
+
+        log.info("Preparing to download {} document: {}", documentType(), fileDetailEntity.getFilename());
+        final AtomicInteger segmentCount = new AtomicInteger();
+        fileStorageService.download(fileDetailEntity.getUrl())
+                .inputStream(inputStream -> segmentCount.set(ingest(inputStream, context)));
+
+        log.info("{} document content saved successfully, {} segments", documentType(), segmentCount.get());
+    }
+
+    /** 解析并写入分段，返回分段数 */
+    private int ingest(InputStream inputStream, OcrProcessingContext context) {
+        final List<TextSegment> segments;
+        try {
+            segments = split(inputStream);
+        } catch (Exception e) {
+            log.error("Failed to parse {} document {}", documentType(), context.getFileId(), e);
+            updatePageSize(context, 0);
+            return 0;
+        }
+
+        updatePageSize(context, segments.size());
+
+        final Set<Integer> storedPages = loadStoredPages(context.getFileId());
+        final List<DocumentUnitEntity> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int pageIndex = 0; pageIndex < segments.size(); pageIndex++) {
+            // 消息重投时跳过已写入的分段
+            if (storedPages.contains(pageIndex)) {
+                continue;
+            }
+            batch.add(newUnit(context, pageIndex, segments.get(pageIndex).text()));
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                flush(batch);
+            }
+        }
+        flush(batch);
+        return segments.size();
+    }
+
+    private List<TextSegment> split(InputStream inputStream) {
+        final Document document = createParser().parse(inputStream);
+        return new DocumentBySentenceSplitter(MAX_SEGMENT_SIZE, 0).split(document);
+    }
+
+    private DocumentUnitEntity newUnit(OcrProcessingContext context, int pageIndex, String content) {
+        final DocumentUnitEntity documentUnitEntity = new DocumentUnitEntity();
+        documentUnitEntity.setContent(content);
+        documentUnitEntity.setPage(pageIndex);
+        documentUnitEntity.setFileId(context.getFileId());
+        documentUnitEntity.setIsVector(false);
+        documentUnitEntity.setIsOcr(content != null);
+        if (content == null) {
+            log.warn("Page {} is empty", pageIndex + 1);
+        }
+        return documentUnitEntity;
+    }
+
+    /** 批量写入并清空缓冲 */
+    private void flush(List<DocumentUnitEntity> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        documentUnitRepository.insert(batch, INSERT_BATCH_SIZE);
+        log.debug("Saved {} segments", batch.size());
+        batch.clear();
+    }
+
+    private Set<Integer> loadStoredPages(String fileId) {
+        final Set<Integer> storedPages = new HashSet<>();
+        documentUnitRepository.selectList(Wrappers.<DocumentUnitEntity>lambdaQuery()
+                .eq(DocumentUnitEntity::getFileId, fileId).select(DocumentUnitEntity::getPage))
+                .forEach(unit -> storedPages.add(unit.getPage()));
+        return storedPages;
+    }
+
+    /** 记录总页数并更新到数据库 */
+    private void updatePageSize(OcrProcessingContext context, int segmentCount) {
+        context.setPageSize(segmentCount);
+        final LambdaUpdateWrapper<FileDetailEntity> wrapper = Wrappers.<FileDetailEntity>lambdaUpdate()
+                .eq(FileDetailEntity::getId, context.getFileId())
+                .set(FileDetailEntity::getFilePageSize, segmentCount);
+        fileDetailRepository.update(wrapper);
+
+        log.info("Updated total pages for {} file {}: {} segments", documentType(), context.getFileId(),
+                segmentCount);
+    }
+}
@@ -0,0 +1,167 @@
+package org.lucas.domain.trace.model;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/** Agent执行统计日汇总实体 按用户、Agent、日期累计执行汇总记录的计数，统计查询读它而不是逐条汇总记录 */
+@TableName("agent_execution_daily_stats")
+public class AgentExecutionDailyStatsEntity {
+
+    /** 用户ID */
+    @TableField("user_id")
+    private String userId;
+
+    /** Agent ID */
+    @TableField("agent_id")
+    private String agentId;
+
+    /** 统计日期，按汇总记录的执行开始时间归日；按 Agent 聚合的查询结果中为空 */
+    @TableField("stat_date")
+    private LocalDate statDate;
+
+    /** 执行次数（汇总记录数） */
+    @TableField("execution_count")
+    private Integer executionCount;
+
+    /** 成功次数 */
+    @TableField("success_count")
+    private Integer successCount;
+
+    /** 输入Token数 */
+    @TableField("total_input_tokens")
+    private Long totalInputTokens;
+
+    /** 输出Token数 */
+    @TableField("total_output_tokens")
+    private Long totalOutputTokens;
+
+    /** 总Token数 */
+    @TableField("total_tokens")
+    private Long totalTokens;
+
+    /** 工具调用次数 */
+    @TableField("tool_call_count")
+    private Long toolCallCount;
+
+    /** 总执行时间(毫秒) */
+    @TableField("total_execution_time")
+    private Long totalExecutionTime;
+
+    /** 最后一次执行的开始时间 */
+    @TableField("last_execution_time")
+    private LocalDateTime lastExecutionTime;
+
+    /** 最后一次执行是否成功 */
+    @TableField("last_execution_success")
+    private Boolean lastExecutionSuccess;
+
+    /** 更新时间 */
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public void setAgentId(String agentId) {
+        this.agentId = agentId;
+    }
+
+    public LocalDate getStatDate() {
+        return statDate;
+    }
+
+    public void setStatDate(LocalDate statDate) {
+        this.statDate = statDate;
+    }
+
+    public Integer getExecutionCount() {
+        return executionCount;
+    }
+
+    public void setExecutionCount(Integer executionCount) {
+        this.executionCount = executionCount;
+    }
+
+    public Integer getSuccessCount() {
+        return successCount;
+    }
+
+    public void setSuccessCount(Integer successCount) {
+        this.successCount = successCount;
+    }
+
+    public Long getTotalInputTokens() {
+        return totalInputTokens;
+    }
+
+    public void setTotalInputTokens(Long totalInputTokens) {
+        this.totalInputTokens = totalInputTokens;
+    }
+
+    public Long getTotalOutputTokens() {
+        return totalOutputTokens;
+    }
+
+    public void setTotalOutputTokens(Long totalOutputTokens) {
+        this.totalOutputTokens = totalOutputTokens;
+    }
+
+    public Long getTotalTokens() {
+        return totalTokens;
+    }
+
+    public void setTotalTokens(Long totalTokens) {
+        this.totalTokens = totalTokens;
+    }
+
+    public Long getToolCallCount() {
+        return toolCallCount;
+    }
+
+    public void setToolCallCount(Long toolCallCount) {
+        this.toolCallCount = toolCallCount;
+    }
+
+    public Long getTotalExecutionTime() {
+        return totalExecutionTime;
+    }
+
+    public void setTotalExecutionTime(Long totalExecutionTime) {
+        this.totalExecutionTime = totalExecutionTime;
+    }
+
+    public LocalDateTime getLastExecutionTime() {
+        return lastExecutionTime;
+    }
+
+    public void setLastExecutionTime(LocalDateTime lastExecutionTime) {
+        this.lastExecutionTime = lastExecutionTime;
+    }
+
+    public Boolean getLastExecutionSuccess() {
+        return lastExecutionSuccess;
+    }
+
+    public void setLastExecutionSuccess(Boolean lastExecutionSuccess) {
+        this.lastExecutionSuccess = lastExecutionSuccess;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
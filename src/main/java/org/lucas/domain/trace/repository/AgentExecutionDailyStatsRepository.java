@@ -0,0 +1,109 @@
+package org.lucas.domain.trace.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.lucas.domain.trace.model.AgentExecutionDailyStatsEntity;
+import org.lucas.infrastructure.repository.MyBatisPlusExtRepository;
+
+/** Agent执行统计日汇总仓库接口
+ *
+ * 汇总记录新建时由 {@link #incrementExecution} 计数，Token、工具、完成状态的变化由
+ * {@link AgentExecutionSummaryRepository} 的增量语句顺带累加到这里。 */
+@Mapper
+public interface AgentExecutionDailyStatsRepository extends MyBatisPlusExtRepository<AgentExecutionDailyStatsEntity> {
+
+    /** 新建一条汇总记录后累加当日执行次数
+     *
+     * @param userId 用户ID
+     * @param agentId Agent ID
+     * @param startTime 汇总记录的执行开始时间
+     * @return 影响行数 */
+    @Insert({"INSERT INTO agent_execution_daily_stats AS d",
+            "(user_id, agent_id, stat_date, execution_count, last_execution_time, last_execution_success)",
+            "VALUES (#{userId}, #{agentId}, CAST(#{startTime} AS date), 1, #{startTime}, false)",
+            "ON CONFLICT (user_id, agent_id, stat_date) DO UPDATE SET execution_count = d.execution_count + 1,",
+            "last_execution_success = CASE WHEN d.last_execution_time IS NULL",
+            "  OR EXCLUDED.last_execution_time >= d.last_execution_time",
+            "  THEN EXCLUDED.last_execution_success ELSE d.last_execution_success END,",
+            "last_execution_time = GREATEST(d.last_execution_time, EXCLUDED.last_execution_time),",
+            "updated_at = CURRENT_TIMESTAMP"})
+    int incrementExecution(@Param("userId") String userId, @Param("agentId") String agentId,
+            @Param("startTime") LocalDateTime startTime);
+
+    /** 用户在日期范围内的总计
+     *
+     * @param userId 用户ID
+     * @param from 起始日期（含），为空不限
+     * @param to 结束日期（含），为空不限
+     * @return 总计，statDate 和 agentId 为空 */
+    @Select({"<script>", "SELECT COALESCE(SUM(execution_count), 0) AS execution_count,",
+            "COALESCE(SUM(success_count), 0) AS success_count, COALESCE(SUM(total_tokens), 0) AS total_tokens",
+            "FROM agent_execution_daily_stats WHERE user_id = #{userId}",
+            "<if test='from != null'>AND stat_date &gt;= #{from}</if>",
+            "<if test='to != null'>AND stat_date &lt;= #{to}</if>", "</script>"})
+    AgentExecutionDailyStatsEntity sumByUser(@Param("userId") String userId, @Param("from") LocalDate from,
+            @Param("to") LocalDate to);
+
+    /** 用户在日期范围内按 Agent 的总计，最近执行的 Agent 在前
+     *
+     * @param userId 用户ID
+     * @param from 起始日期（含），为空不限
+     * @param to 结束日期（含），为空不限
+     * @return 每个 Agent 一行，statDate 为空 */
+    @Select({"<script>", "SELECT agent_id, SUM(execution_count) AS execution_count,",
+            "SUM(success_count) AS success_count, SUM(total_input_tokens) AS total_input_tokens,",
+            "SUM(total_output_tokens) AS total_output_tokens, SUM(total_tokens) AS total_tokens,",
+            "SUM(tool_call_count) AS tool_call_count, SUM(total_execution_time) AS total_execution_time,",
+            "MAX(last_execution_time) AS last_execution_time,",
+            "(array_agg(last_execution_success ORDER BY last_execution_time DESC NULLS LAST))[1]",
+            "  AS last_execution_success",
+            "FROM agent_execution_daily_stats WHERE user_id = #{userId}",
+            "<if test='from != null'>AND stat_date &gt;= #{from}</if>",
+            "<if test='to != null'>AND stat_date &lt;= #{to}</if>",
+            "GROUP BY agent_id HAVING SUM(execution_count) &gt; 0",
+            "ORDER BY MAX(last_execution_time) DESC NULLS LAST", "</script>"})
+    List<AgentExecutionDailyStatsEntity> sumByUserGroupByAgent(@Param("userId") String userId,
+            @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /** 按汇总记录重算一段时间内的日汇总，已有的行整行覆盖
+     *
+     * @param from 执行开始时间下界（含）
+     * @param to 执行开始时间上界（不含）
+     * @return 影响行数 */
+    @Insert({"INSERT INTO agent_execution_daily_stats AS d (user_id, agent_id, stat_date, execution_count,",
+            "success_count, total_input_tokens, total_output_tokens, total_tokens, tool_call_count,",
+            "total_execution_time, last_execution_time, last_execution_success, updated_at)",
+            "SELECT user_id, agent_id, CAST(execution_start_time AS date), COUNT(*),",
+            "COUNT(*) FILTER (WHERE execution_success), COALESCE(SUM(total_input_tokens), 0),",
+            "COALESCE(SUM(total_output_tokens), 0), COALESCE(SUM(total_tokens), 0),",
+            "COALESCE(SUM(tool_call_count), 0), COALESCE(SUM(total_execution_time), 0), MAX(execution_start_time),",
+            "(array_agg(execution_success ORDER BY execution_start_time DESC))[1], CURRENT_TIMESTAMP",
+            "FROM agent_execution_summary WHERE deleted_at IS NULL",
+            "AND execution_start_time >= #{from} AND execution_start_time < #{to}",
+            "GROUP BY user_id, agent_id, CAST(execution_start_time AS date)",
+            "ON CONFLICT (user_id, agent_id, stat_date) DO UPDATE SET",
+            "execution_count = EXCLUDED.execution_count, success_count = EXCLUDED.success_count,",
+            "total_input_tokens = EXCLUDED.total_input_tokens, total_output_tokens = EXCLUDED.total_output_tokens,",
+            "total_tokens = EXCLUDED.total_tokens, tool_call_count = EXCLUDED.tool_call_count,",
+            "total_execution_time = EXCLUDED.total_execution_time,",
+            "last_execution_time = EXCLUDED.last_execution_time,",
+            "last_execution_success = EXCLUDED.last_execution_success, updated_at = EXCLUDED.updated_at"})
+    int rebuild(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /** 删除一段时间内已没有汇总记录对应的日汇总
+     *
+     * @param from 起始日期（含）
+     * @param to 结束日期（不含）
+     * @return 删除行数 */
+    @Delete({"DELETE FROM agent_execution_daily_stats d WHERE d.stat_date >= #{from} AND d.stat_date < #{to}",
+            "AND NOT EXISTS (SELECT 1 FROM agent_execution_summary s WHERE s.deleted_at IS NULL",
+            "AND s.user_id = d.user_id AND s.agent_id = d.agent_id",
+            "AND s.execution_start_time >= d.stat_date AND s.execution_start_time < d.stat_date + 1)"})
+    int deleteOrphans(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -1,10 +1,82 @@
 package org.lucas.domain.trace.repository;
 
+import java.time.LocalDateTime;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.lucas.domain.trace.model.AgentExecutionSummaryEntity;
 import org.lucas.infrastructure.repository.MyBatisPlusExtRepository;
 
 /** Agent执行链路汇总仓库接口 */
 @Mapper
 public interface AgentExecutionSummaryRepository extends MyBatisPlusExtRepository<AgentExecutionSummaryEntity> {
-}
\ No newline at end of file
+
+    /** 累加会话汇总的Token和工具计数，并把同样的增量记入所属的日汇总
+     *
+     * @param sessionId 会话ID
+     * @param inputTokens 输入Token增量
+     * @param outputTokens 输出Token增量
+     * @param toolCalls 工具调用次数增量
+     * @param toolExecutionTime 工具执行耗时增量
+     * @return 影响的日汇总行数，汇总记录不存在时为 0 */
+    @Update({"WITH s AS (UPDATE agent_execution_summary SET",
+            "total_input_tokens = total_input_tokens + #{inputTokens},",
+            "total_output_tokens = total_output_tokens + #{outputTokens},",
+            "total_tokens = total_input_tokens + total_output_tokens + #{inputTokens} + #{outputTokens},",
+            "tool_call_count = tool_call_count + #{toolCalls},",
+            "total_tool_execution_time = total_tool_execution_time + #{toolExecutionTime},",
+            "updated_at = CURRENT_TIMESTAMP",
+            "WHERE session_id = #{sessionId} AND deleted_at IS NULL",
+            "RETURNING user_id, agent_id, execution_start_time)",
+            "INSERT INTO agent_execution_daily_stats AS d (user_id, agent_id, stat_date, total_input_tokens,",
+            "total_output_tokens, total_tokens, tool_call_count)",
+            "SELECT user_id, agent_id, CAST(execution_start_time AS date), #{inputTokens}, #{outputTokens},",
+            "#{inputTokens} + #{outputTokens}, #{toolCalls} FROM s",
+            "ON CONFLICT (user_id, agent_id, stat_date) DO UPDATE SET",
+            "total_input_tokens = d.total_input_tokens + EXCLUDED.total_input_tokens,",
+            "total_output_tokens = d.total_output_tokens + EXCLUDED.total_output_tokens,",
+            "total_tokens = d.total_tokens + EXCLUDED.total_tokens,",
+            "tool_call_count = d.tool_call_count + EXCLUDED.tool_call_count, updated_at = CURRENT_TIMESTAMP"})
+    int incrementCounters(@Param("sessionId") String sessionId, @Param("inputTokens") int inputTokens,
+            @Param("outputTokens") int outputTokens, @Param("toolCalls") int toolCalls,
+            @Param("toolExecutionTime") int toolExecutionTime);
+
+    /** 写入会话汇总的完成状态，并把成功次数、执行时间的变化记入所属的日汇总
+     *
+     * @param sessionId 会话ID
+     * @param completedAt 完成时间
+     * @param success 是否成功
+     * @param errorPhase 错误阶段编码
+     * @param errorMessage 错误信息
+     * @return 影响的日汇总行数，汇总记录不存在时为 0 */
+    @Update({"WITH o AS (SELECT id, execution_success AS old_success,",
+            "COALESCE(total_execution_time, 0) AS old_time FROM agent_execution_summary",
+            "WHERE session_id = #{sessionId} AND deleted_at IS NULL FOR UPDATE),",
+            "s AS (UPDATE agent_execution_summary t SET execution_end_time = #{completedAt},",
+            "execution_success = #{success}, error_phase = #{errorPhase}, error_message = #{errorMessage},",
+            "total_execution_time = CAST(EXTRACT(EPOCH FROM (CAST(#{completedAt} AS timestamp)",
+            "- t.execution_start_time)) * 1000 AS INTEGER), updated_at = CURRENT_TIMESTAMP FROM o WHERE t.id = o.id",
+            "RETURNING t.user_id, t.agent_id, t.execution_start_time, t.execution_success,",
+            "t.total_execution_time, o.old_success, o.old_time)",
+            "INSERT INTO agent_execution_daily_stats AS d (user_id, agent_id, stat_date, success_count,",
+            "total_execution_time, last_execution_time, last_execution_success)",
+            "SELECT user_id, agent_id, CAST(execution_start_time AS date),",
+            "CAST(execution_success AS integer) - CAST(old_success AS integer),",
+            "COALESCE(total_execution_time, 0) - old_time, execution_start_time, execution_success FROM s",
+            "ON CONFLICT (user_id, agent_id, stat_date) DO UPDATE SET",
+            "success_count = d.success_count + EXCLUDED.success_count,",
+            "total_execution_time = d.total_execution_time + EXCLUDED.total_execution_time,",
+            "last_execution_success = CASE WHEN d.last_execution_time IS NULL",
+            "  OR EXCLUDED.last_execution_time >= d.last_execution_time",
+            "  THEN EXCLUDED.last_execution_success ELSE d.last_execution_success END,",
+            "last_execution_time = GREATEST(d.last_execution_time, EXCLUDED.last_execution_time),",
+            "updated_at = CURRENT_TIMESTAMP"})
+    int markCompleted(@Param("sessionId") String sessionId, @Param("completedAt") LocalDateTime completedAt,
+            @Param("success") boolean success, @Param("errorPhase") String errorPhase,
+            @Param("errorMessage") String errorMessage);
+
+    /** 最早一条汇总记录的执行开始时间，没有记录时为 null */
+    @Select("SELECT MIN(execution_start_time) FROM agent_execution_summary WHERE deleted_at IS NULL")
+    LocalDateTime selectEarliestStartTime();
+}
@@ -3,6 +3,7 @@ package org.lucas.domain.trace.service;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import org.slf4j.Logger;
@@ -10,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.lucas.domain.trace.constant.ExecutionPhase;
 import org.lucas.domain.trace.model.*;
+import org.lucas.domain.trace.repository.AgentExecutionDailyStatsRepository;
 import org.lucas.domain.trace.repository.AgentExecutionDetailRepository;
 import org.lucas.domain.trace.repository.AgentExecutionSummaryRepository;
 import org.lucas.infrastructure.exception.BusinessException;
@@ -22,11 +24,16 @@ public class AgentExecutionTraceDomainService {
 
     private final AgentExecutionSummaryRepository summaryRepository;
     private final AgentExecutionDetailRepository detailRepository;
+    private final AgentExecutionDailyStatsRepository dailyStatsRepository;
+    private final AgentExecutionTraceWriter traceWriter;
 
     public AgentExecutionTraceDomainService(AgentExecutionSummaryRepository summaryRepository,
-            AgentExecutionDetailRepository detailRepository) {
+            AgentExecutionDetailRepository detailRepository, AgentExecutionDailyStatsRepository dailyStatsRepository,
+            AgentExecutionTraceWriter traceWriter) {
         this.summaryRepository = summaryRepository;
         this.detailRepository = detailRepository;
+        this.dailyStatsRepository = dailyStatsRepository;
+        this.traceWriter = traceWriter;
     }
 
     /** 创建或获取会话追踪上下文
@@ -47,6 +54,7 @@ public class AgentExecutionTraceDomainService {
             // 创建新的汇总记录
             AgentExecutionSummaryEntity summary = AgentExecutionSummaryEntity.create(userId, sessionId, agentId);
             summaryRepository.insert(summary);
+            dailyStatsRepository.incrementExecution(userId, agentId, summary.getExecutionStartTime());
         }
 
         return TraceContext.create(userId, sessionId, agentId);
@@ -89,7 +97,7 @@ public class AgentExecutionTraceDomainService {
                 traceContext.getSessionId(), traceContext.nextSequence(), userMessage, messageType, messageTokens,
                 eventTime);
 
-        detailRepository.insert(detail);
+        traceWriter.appendDetail(detail, null, null);
     }
 
     /** 记录AI响应（带时间戳）
@@ -121,11 +129,8 @@ public class AgentExecutionTraceDomainService {
             detail.markStepFailed(modelCallInfo.getErrorMessage());
         }
 
-        detailRepository.insert(detail);
-
-        // 更新汇总统计
-        updateSummaryTokens(traceContext.getSessionId(), modelCallInfo.getInputTokens(),
-                modelCallInfo.getOutputTokens());
+        // 明细和汇总Token计数交给后台线程批量落库
+        traceWriter.appendDetail(detail, modelCallInfo.getInputTokens(), modelCallInfo.getOutputTokens());
     }
 
     /** 记录工具调用（带时间戳）
@@ -147,10 +152,8 @@ public class AgentExecutionTraceDomainService {
             detail.markStepFailed(toolCallInfo.getErrorMessage());
         }
 
-        detailRepository.insert(detail);
-
-        // 更新汇总统计
-        updateSummaryToolExecution(traceContext.getSessionId(), toolCallInfo.getExecutionTime());
+        // 明细和汇总工具计数交给后台线程批量落库
+        traceWriter.appendToolCall(detail, toolCallInfo.getExecutionTime());
     }
 
     /** 完成追踪记录
@@ -165,17 +168,8 @@ public class AgentExecutionTraceDomainService {
             return;
         }
 
-        LambdaQueryWrapper<AgentExecutionSummaryEntity> wrapper = Wrappers.<AgentExecutionSummaryEntity>lambdaQuery()
-                .eq(AgentExecutionSummaryEntity::getSessionId, traceContext.getSessionId());
-        AgentExecutionSummaryEntity summary = summaryRepository.selectOne(wrapper);
-
-        if (summary == null) {
-            throw new BusinessException("追踪记录不存在: " + traceContext.getSessionId());
-        }
-
         String errorPhaseCode = errorPhase != null ? errorPhase.getCode() : null;
-        summary.markCompleted(success, errorPhaseCode, errorMessage);
-        summaryRepository.updateById(summary);
+        traceWriter.complete(traceContext.getSessionId(), success, errorPhaseCode, errorMessage);
     }
 
     /** 根据会话ID获取完整的执行信息
@@ -316,23 +310,24 @@ public class AgentExecutionTraceDomainService {
      * @param userId 用户ID
      * @return 执行统计信息 */
     public ExecutionStatistics getUserExecutionStatistics(String userId) {
-        // 统计总执行次数
-        LambdaQueryWrapper<AgentExecutionSummaryEntity> totalWrapper = Wrappers
-                .<AgentExecutionSummaryEntity>lambdaQuery().eq(AgentExecutionSummaryEntity::getUserId, userId);
-        int totalExecutions = Math.toIntExact(summaryRepository.selectCount(totalWrapper));
-
-        // 统计成功执行次数
-        LambdaQueryWrapper<AgentExecutionSummaryEntity> successWrapper = Wrappers
-                .<AgentExecutionSummaryEntity>lambdaQuery().eq(AgentExecutionSummaryEntity::getUserId, userId)
-                .eq(AgentExecutionSummaryEntity::getExecutionSuccess, true);
-        int successfulExecutions = Math.toIntExact(summaryRepository.selectCount(successWrapper));
-
-        // 统计Token使用量
-        List<AgentExecutionSummaryEntity> executions = summaryRepository.selectList(totalWrapper);
-        long totalTokens = executions.stream().mapToLong(e -> e.getTotalTokens() != null ? e.getTotalTokens() : 0L)
-                .sum();
-
-        return new ExecutionStatistics(totalExecutions, successfulExecutions, totalTokens);
+        return getUserExecutionStatistics(userId, null, null);
+    }
+
+    /** 获取用户在时间范围内的执行统计信息，读日汇总表，按天对齐
+     * 
+     * @param userId 用户ID
+     * @param startTime 开始时间，为空不限
+     * @param endTime 结束时间，为空不限
+     * @return 执行统计信息 */
+    public ExecutionStatistics getUserExecutionStatistics(String userId, LocalDateTime startTime,
+            LocalDateTime endTime) {
+        AgentExecutionDailyStatsEntity total = dailyStatsRepository.sumByUser(userId, toDate(startTime),
+                toDate(endTime));
+        if (total == null) {
+            return new ExecutionStatistics(0, 0, 0L);
+        }
+        return new ExecutionStatistics(toInt(total.getExecutionCount()), toInt(total.getSuccessCount()),
+                total.getTotalTokens() != null ? total.getTotalTokens() : 0L);
     }
 
     /** 获取用户按Agent分组的执行统计数据
@@ -340,56 +335,30 @@ public class AgentExecutionTraceDomainService {
      * @param userId 用户ID
      * @return Agent统计数据列表 */
     public List<AgentStatistics> getUserAgentStatistics(String userId) {
-        LambdaQueryWrapper<AgentExecutionSummaryEntity> wrapper = Wrappers.<AgentExecutionSummaryEntity>lambdaQuery()
-                .eq(AgentExecutionSummaryEntity::getUserId, userId)
-                .orderByDesc(AgentExecutionSummaryEntity::getExecutionStartTime);
-
-        List<AgentExecutionSummaryEntity> executions = summaryRepository.selectList(wrapper);
-
-        // 按agentId分组统计
-        return executions.stream()
-                .collect(java.util.stream.Collectors.groupingBy(AgentExecutionSummaryEntity::getAgentId)).entrySet()
-                .stream().map(entry -> {
-                    String agentId = entry.getKey();
-                    List<AgentExecutionSummaryEntity> agentExecutions = entry.getValue();
+        return getUserAgentStatistics(userId, null, null);
+    }
 
-                    // 计算统计信息
-                    int totalExecutions = agentExecutions.size();
-                    int successfulExecutions = (int) agentExecutions.stream()
-                            .filter(e -> Boolean.TRUE.equals(e.getExecutionSuccess())).count();
-                    int failedExecutions = totalExecutions - successfulExecutions;
+    /** 获取用户在时间范围内按Agent分组的执行统计数据，读日汇总表，按天对齐
+     *
+     * 一个会话只有一条汇总记录，会话数即执行次数。
+     * 
+     * @param userId 用户ID
+     * @param startTime 开始时间，为空不限
+     * @param endTime 结束时间，为空不限
+     * @return Agent统计数据列表，最近执行的在前 */
+    public List<AgentStatistics> getUserAgentStatistics(String userId, LocalDateTime startTime,
+            LocalDateTime endTime) {
+        return dailyStatsRepository.sumByUserGroupByAgent(userId, toDate(startTime), toDate(endTime)).stream()
+                .map(row -> {
+                    int totalExecutions = toInt(row.getExecutionCount());
+                    int successfulExecutions = toInt(row.getSuccessCount());
                     double successRate = totalExecutions > 0 ? (double) successfulExecutions / totalExecutions : 0.0;
-
-                    // Token统计
-                    int totalTokens = agentExecutions.stream()
-                            .mapToInt(e -> e.getTotalTokens() != null ? e.getTotalTokens() : 0).sum();
-                    int totalInputTokens = agentExecutions.stream()
-                            .mapToInt(e -> e.getTotalInputTokens() != null ? e.getTotalInputTokens() : 0).sum();
-                    int totalOutputTokens = agentExecutions.stream()
-                            .mapToInt(e -> e.getTotalOutputTokens() != null ? e.getTotalOutputTokens() : 0).sum();
-
-                    // 工具调用统计
-                    int totalToolCalls = agentExecutions.stream()
-                            .mapToInt(e -> e.getToolCallCount() != null ? e.getToolCallCount() : 0).sum();
-
-                    // 会话数统计（去重）
-                    int totalSessions = (int) agentExecutions.stream().map(AgentExecutionSummaryEntity::getSessionId)
-                            .distinct().count();
-
-                    // 最后执行时间和状态
-                    LocalDateTime lastExecutionTime = agentExecutions.stream()
-                            .map(AgentExecutionSummaryEntity::getExecutionStartTime).max(LocalDateTime::compareTo)
-                            .orElse(null);
-
-                    Boolean lastExecutionSuccess = agentExecutions.stream()
-                            .filter(e -> e.getExecutionStartTime().equals(lastExecutionTime)).findFirst()
-                            .map(AgentExecutionSummaryEntity::getExecutionSuccess).orElse(null);
-
-                    return new AgentStatistics(agentId, totalExecutions, successfulExecutions, failedExecutions,
-                            successRate, totalTokens, totalInputTokens, totalOutputTokens, totalToolCalls,
-                            totalSessions, lastExecutionTime, lastExecutionSuccess);
-                }).sorted((a, b) -> b.getLastExecutionTime().compareTo(a.getLastExecutionTime()))
-                .collect(java.util.stream.Collectors.toList());
+                    return new AgentStatistics(row.getAgentId(), totalExecutions, successfulExecutions,
+                            totalExecutions - successfulExecutions, successRate, toInt(row.getTotalTokens()),
+                            toInt(row.getTotalInputTokens()), toInt(row.getTotalOutputTokens()),
+                            toInt(row.getToolCallCount()), totalExecutions, row.getLastExecutionTime(),
+                            row.getLastExecutionSuccess());
+                }).collect(java.util.stream.Collectors.toList());
     }
 
     /** 获取指定Agent下按Session分组的执行统计数据
@@ -398,8 +367,31 @@ public class AgentExecutionTraceDomainService {
      * @param userId 用户ID
      * @return Session统计数据列表 */
     public List<SessionStatistics> getAgentSessionStatistics(String agentId, String userId) {
+        return getAgentSessionStatistics(agentId, userId, null, null);
+    }
+
+    /** 获取指定Agent下在时间范围内按Session分组的执行统计数据
+     *
+     * 一个会话只有一条汇总记录，汇总表本身就是会话级的汇总：这里按 (user_id, agent_id, execution_start_time)
+     * 索引做范围读取，只取统计用到的列。
+     * 
+     * @param agentId Agent ID
+     * @param userId 用户ID
+     * @param startTime 开始时间，为空不限
+     * @param endTime 结束时间，为空不限
+     * @return Session统计数据列表 */
+    public List<SessionStatistics> getAgentSessionStatistics(String agentId, String userId, LocalDateTime startTime,
+            LocalDateTime endTime) {
         LambdaQueryWrapper<AgentExecutionSummaryEntity> wrapper = Wrappers.<AgentExecutionSummaryEntity>lambdaQuery()
-                .eq(AgentExecutionSummaryEntity::getAgentId, agentId).eq(AgentExecutionSummaryEntity::getUserId, userId)
+                .select(AgentExecutionSummaryEntity::getSessionId, AgentExecutionSummaryEntity::getExecutionStartTime,
+                        AgentExecutionSummaryEntity::getExecutionSuccess, AgentExecutionSummaryEntity::getTotalTokens,
+                        AgentExecutionSummaryEntity::getTotalInputTokens,
+                        AgentExecutionSummaryEntity::getTotalOutputTokens,
+                        AgentExecutionSummaryEntity::getToolCallCount,
+                        AgentExecutionSummaryEntity::getTotalExecutionTime)
+                .eq(AgentExecutionSummaryEntity::getUserId, userId).eq(AgentExecutionSummaryEntity::getAgentId, agentId)
+                .ge(startTime != null, AgentExecutionSummaryEntity::getExecutionStartTime, startTime)
+                .le(endTime != null, AgentExecutionSummaryEntity::getExecutionStartTime, endTime)
                 .orderByDesc(AgentExecutionSummaryEntity::getExecutionStartTime);
 
         List<AgentExecutionSummaryEntity> executions = summaryRepository.selectList(wrapper);
@@ -450,30 +442,6 @@ public class AgentExecutionTraceDomainService {
                 .collect(java.util.stream.Collectors.toList());
     }
 
-    /** 更新汇总的Token统计 */
-    private void updateSummaryTokens(String sessionId, Integer inputTokens, Integer outputTokens) {
-        LambdaQueryWrapper<AgentExecutionSummaryEntity> wrapper = Wrappers.<AgentExecutionSummaryEntity>lambdaQuery()
-                .eq(AgentExecutionSummaryEntity::getSessionId, sessionId);
-        AgentExecutionSummaryEntity summary = summaryRepository.selectOne(wrapper);
-
-        if (summary != null) {
-            summary.addTokens(inputTokens, outputTokens);
-            summaryRepository.updateById(summary);
-        }
-    }
-
-    /** 更新汇总的工具执行统计 */
-    private void updateSummaryToolExecution(String sessionId, Integer executionTime) {
-        LambdaQueryWrapper<AgentExecutionSummaryEntity> wrapper = Wrappers.<AgentExecutionSummaryEntity>lambdaQuery()
-                .eq(AgentExecutionSummaryEntity::getSessionId, sessionId);
-        AgentExecutionSummaryEntity summary = summaryRepository.selectOne(wrapper);
-
-        if (summary != null) {
-            summary.addToolExecution(executionTime);
-            summaryRepository.updateById(summary);
-        }
-    }
-
     /** 更新用户消息的Token数量
      * 
      * @param recordId 记录ID
@@ -490,6 +458,38 @@ public class AgentExecutionTraceDomainService {
         }
     }
 
+    /** 按汇总记录重建日汇总表
+     *
+     * 用于上线日汇总表时回填历史数据，也可在怀疑计数漂移时重跑：按 {@code chunkDays} 天一段依次重算，
+     * 已有的行整行覆盖，不再有汇总记录的日期行删除。重算期间仍在写入的会话可能有少量偏差，再跑一次即可。
+     *
+     * @param chunkDays 每段天数
+     * @return 写入的日汇总行数 */
+    public int rebuildDailyStatistics(int chunkDays) {
+        LocalDateTime earliest = summaryRepository.selectEarliestStartTime();
+        if (earliest == null) {
+            return 0;
+        }
+        int step = Math.max(1, chunkDays);
+        LocalDate end = LocalDate.now().plusDays(1);
+        int rows = 0;
+        for (LocalDate from = earliest.toLocalDate(); from.isBefore(end); from = from.plusDays(step)) {
+            LocalDate to = from.plusDays(step);
+            rows += dailyStatsRepository.rebuild(from.atStartOfDay(), to.atStartOfDay());
+            dailyStatsRepository.deleteOrphans(from, to);
+            logger.info("执行统计日汇总已重建至 {}", to.isBefore(end) ? to : end);
+        }
+        return rows;
+    }
+
+    private static LocalDate toDate(LocalDateTime time) {
+        return time != null ? time.toLocalDate() : null;
+    }
+
+    private static int toInt(Number value) {
+        return value != null ? (int) Math.min(value.longValue(), Integer.MAX_VALUE) : 0;
+    }
+
     /** 执行统计信息 */
     public static class ExecutionStatistics {
         private final int totalExecutions;
@@ -609,7 +609,7 @@ public class AgentExecutionTraceDomainService {
             AgentExecutionDetailEntity errorEntity = AgentExecutionDetailEntity
                     .createErrorMessageStep(traceContext.getSessionId(), errorMessage, eventTime);
 
-            detailRepository.insert(errorEntity);
+            traceWriter.appendDetail(errorEntity, null, null);
 
             logger.debug("记录异常消息成功: SessionId={}, ErrorMessage={}", traceContext.getSessionId(), errorMessage);
         } catch (Exception e) {
@@ -0,0 +1,289 @@
+package org.lucas.domain.trace.service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.lucas.domain.trace.model.AgentExecutionDetailEntity;
+import org.lucas.domain.trace.repository.AgentExecutionDetailRepository;
+import org.lucas.domain.trace.repository.AgentExecutionSummaryRepository;
+import org.lucas.infrastructure.config.TraceProperties;
+import org.lucas.infrastructure.utils.JsonUtils;
+
+/** 追踪数据异步写入器
+ *
+ * 模型、工具调用的明细和汇总计数原本在对话线程上逐条插入、再对汇总做一次查改写。这里改为进有界队列，
+ * 由单个后台线程批量落库：明细走 MyBatis 批量插入，计数按会话合并成一条增量 UPDATE，完成状态同一会话只写最后一次。
+ * 计数用 SQL 自增，完成状态只改自己的列，彼此不会互相覆盖；同一条语句顺带维护日汇总表。
+ *
+ * 三步互相独立：明细批量插入失败重试一次，仍失败时逐条插入，只丢写不进去的那条；每个会话的计数和完成状态
+ * 各自更新，一个会话失败不影响其他会话，也不影响明细。
+ *
+ * 用户消息不经过这里：调用方要拿它的主键回填 Token 数，仍然同步插入。 */
+@Component
+public class AgentExecutionTraceWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentExecutionTraceWriter.class);
+
+    /** 丢弃告警的间隔条数 */
+    private static final long DROP_LOG_INTERVAL = 1000;
+
+    private final AgentExecutionSummaryRepository summaryRepository;
+
+    private final AgentExecutionDetailRepository detailRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TraceProperties.Writer properties;
+
+    private final BlockingQueue<TraceWrite> queue;
+
+    private final Thread worker;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public AgentExecutionTraceWriter(AgentExecutionSummaryRepository summaryRepository,
+            AgentExecutionDetailRepository detailRepository, TransactionTemplate transactionTemplate,
+            TraceProperties traceProperties) {
+        this.summaryRepository = summaryRepository;
+        this.detailRepository = detailRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = traceProperties.getWriter();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getCapacity()));
+        this.worker = new Thread(this::drainLoop, "trace-writer");
+        this.worker.setDaemon(true);
+        if (properties.isEnabled()) {
+            this.worker.start();
+        }
+    }
+
+    /** 写入一条明细，并累加会话汇总的Token计数
+     *
+     * @param detail 明细
+     * @param inputTokens 输入Token数，可为 null
+     * @param outputTokens 输出Token数，可为 null */
+    public void appendDetail(AgentExecutionDetailEntity detail, Integer inputTokens, Integer outputTokens) {
+        TraceWrite write = new TraceWrite(detail.getSessionId());
+        write.detail = detail;
+        write.inputTokens = inputTokens != null ? inputTokens : 0;
+        write.outputTokens = outputTokens != null ? outputTokens : 0;
+        enqueue(write);
+    }
+
+    /** 写入一条工具调用明细，并累加会话汇总的工具调用计数
+     *
+     * @param detail 明细
+     * @param executionTime 工具执行耗时，可为 null */
+    public void appendToolCall(AgentExecutionDetailEntity detail, Integer executionTime) {
+        TraceWrite write = new TraceWrite(detail.getSessionId());
+        write.detail = detail;
+        write.toolCalls = 1;
+        write.toolExecutionTime = executionTime != null ? executionTime : 0;
+        enqueue(write);
+    }
+
+    /** 标记会话执行完成
+     *
+     * @param sessionId 会话ID
+     * @param success 是否成功
+     * @param errorPhase 错误阶段编码
+     * @param errorMessage 错误信息 */
+    public void complete(String sessionId, boolean success, String errorPhase, String errorMessage) {
+        TraceWrite write = new TraceWrite(sessionId);
+        write.completion = new Completion(LocalDateTime.now(), success, errorPhase, errorMessage);
+        enqueue(write);
+    }
+
+    private void enqueue(TraceWrite write) {
+        if (!properties.isEnabled() || !running) {
+            flush(List.of(write));
+            return;
+        }
+        boolean accepted;
+        if (properties.getOverflowPolicy() == TraceProperties.OverflowPolicy.BLOCK) {
+            try {
+                accepted = queue.offer(write, properties.getBlockTimeoutMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(write);
+        }
+        if (!accepted) {
+            long count = dropped.incrementAndGet();
+            if (count % DROP_LOG_INTERVAL == 1) {
+                logger.warn("追踪写入队列已满，丢弃追踪数据 - SessionId: {}, 累计丢弃: {}", write.sessionId, count);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<TraceWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                TraceWrite first = queue.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /** 一批写入：先插明细，再按会话合并计数，最后写完成状态 */
+    private void flush(List<TraceWrite> batch) {
+        List<AgentExecutionDetailEntity> details = new ArrayList<>();
+        Map<String, TraceWrite> counters = new LinkedHashMap<>();
+        Map<String, Completion> completions = new LinkedHashMap<>();
+        for (TraceWrite write : batch) {
+            if (write.detail != null) {
+                details.add(write.detail);
+            }
+            if (write.hasCounters()) {
+                counters.computeIfAbsent(write.sessionId, TraceWrite::new).merge(write);
+            }
+            if (write.completion != null) {
+                completions.put(write.sessionId, write.completion);
+            }
+        }
+        if (!details.isEmpty()) {
+            insertDetails(details);
+        }
+        counters.values().forEach(this::updateCounters);
+        completions.forEach(this::updateCompletion);
+    }
+
+    /** 插入明细：批量插入在事务内进行，失败重试一次，仍失败时逐条插入，写不进去的那条丢弃并记录 */
+    private void insertDetails(List<AgentExecutionDetailEntity> details) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            try {
+                details.forEach(detail -> detail.setId(null));
+                transactionTemplate.executeWithoutResult(status -> detailRepository.insert(details, batchSize));
+                return;
+            } catch (Exception e) {
+                logger.warn("追踪明细批量写入失败，第 {} 次，共 {} 条: {}", attempt, details.size(), e.getMessage());
+            }
+        }
+        for (AgentExecutionDetailEntity detail : details) {
+            try {
+                detail.setId(null);
+                detailRepository.insert(detail);
+            } catch (Exception e) {
+                logger.error("追踪明细写入失败，丢弃: {}", JsonUtils.toJsonString(detail), e);
+            }
+        }
+    }
+
+    private void updateCounters(TraceWrite counter) {
+        try {
+            int updated = summaryRepository.incrementCounters(counter.sessionId, counter.inputTokens,
+                    counter.outputTokens, counter.toolCalls, counter.toolExecutionTime);
+            if (updated == 0) {
+                logger.debug("追踪汇总不存在，跳过计数 - SessionId: {}", counter.sessionId);
+            }
+        } catch (Exception e) {
+            logger.error("追踪汇总计数失败，丢弃 - SessionId: {}, inputTokens: {}, outputTokens: {}, toolCalls: {}",
+                    counter.sessionId, counter.inputTokens, counter.outputTokens, counter.toolCalls, e);
+        }
+    }
+
+    private void updateCompletion(String sessionId, Completion completion) {
+        try {
+            int updated = summaryRepository.markCompleted(sessionId, completion.completedAt, completion.success,
+                    completion.errorPhase, completion.errorMessage);
+            if (updated == 0) {
+                logger.warn("追踪记录不存在: {}", sessionId);
+            }
+        } catch (Exception e) {
+            logger.error("追踪完成状态写入失败 - SessionId: {}", sessionId, e);
+        }
+    }
+
+    /** 停机时停止接收新数据，等待后台线程写完队列；超时未写完的由当前线程补写 */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (!worker.isAlive()) {
+            return;
+        }
+        try {
+            worker.join(Math.max(0, properties.getShutdownTimeoutMs()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            logger.warn("追踪写入线程未在 {}ms 内结束，剩余 {} 条由停机线程写入", properties.getShutdownTimeoutMs(),
+                    queue.size());
+            worker.interrupt();
+        }
+        List<TraceWrite> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+
+    /** 队列中的一条写入；计数部分在批内按会话合并 */
+    private static final class TraceWrite {
+        private final String sessionId;
+        private AgentExecutionDetailEntity detail;
+        private int inputTokens;
+        private int outputTokens;
+        private int toolCalls;
+        private int toolExecutionTime;
+        private Completion completion;
+
+        private TraceWrite(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        private boolean hasCounters() {
+            return inputTokens != 0 || outputTokens != 0 || toolCalls != 0 || toolExecutionTime != 0;
+        }
+
+        private TraceWrite merge(TraceWrite other) {
+            inputTokens += other.inputTokens;
+            outputTokens += other.outputTokens;
+            toolCalls += other.toolCalls;
+            toolExecutionTime += other.toolExecutionTime;
+            return this;
+        }
+    }
+
+    /** 会话执行完成状态 */
+    private static final class Completion {
+        private final LocalDateTime completedAt;
+        private final boolean success;
+        private final String errorPhase;
+        private final String errorMessage;
+
+        private Completion(LocalDateTime completedAt, boolean success, String errorPhase, String errorMessage) {
+            this.completedAt = completedAt;
+            this.success = success;
+            this.errorPhase = errorPhase;
+            this.errorMessage = errorMessage;
+        }
+    }
+}
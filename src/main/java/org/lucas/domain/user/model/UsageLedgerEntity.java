@@ -0,0 +1,145 @@
+package org.lucas.domain.user.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/** 用量流水实体 每次模型调用追加一条，记录Token用量、费用以及是否已从账户扣除 */
+@TableName("account_usage_ledger")
+public class UsageLedgerEntity {
+
+    /** 流水ID */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /** 用户ID */
+    @TableField("user_id")
+    private String userId;
+
+    /** Agent ID */
+    @TableField("agent_id")
+    private String agentId;
+
+    /** 会话ID */
+    @TableField("session_id")
+    private String sessionId;
+
+    /** 模型标识（调用端点） */
+    @TableField("model_id")
+    private String modelId;
+
+    /** 输入Token数 */
+    @TableField("input_tokens")
+    private Integer inputTokens;
+
+    /** 输出Token数 */
+    @TableField("output_tokens")
+    private Integer outputTokens;
+
+    /** 本次调用费用 */
+    @TableField("cost")
+    private BigDecimal cost;
+
+    /** 是否已从账户扣除 */
+    @TableField("charged")
+    private Boolean charged;
+
+    /** 扣除时间 */
+    @TableField("charged_at")
+    private LocalDateTime chargedAt;
+
+    /** 创建时间 */
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public void setAgentId(String agentId) {
+        this.agentId = agentId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getModelId() {
+        return modelId;
+    }
+
+    public void setModelId(String modelId) {
+        this.modelId = modelId;
+    }
+
+    public Integer getInputTokens() {
+        return inputTokens;
+    }
+
+    public void setInputTokens(Integer inputTokens) {
+        this.inputTokens = inputTokens;
+    }
+
+    public Integer getOutputTokens() {
+        return outputTokens;
+    }
+
+    public void setOutputTokens(Integer outputTokens) {
+        this.outputTokens = outputTokens;
+    }
+
+    public BigDecimal getCost() {
+        return cost;
+    }
+
+    public void setCost(BigDecimal cost) {
+        this.cost = cost;
+    }
+
+    public Boolean getCharged() {
+        return charged;
+    }
+
+    public void setCharged(Boolean charged) {
+        this.charged = charged;
+    }
+
+    public LocalDateTime getChargedAt() {
+        return chargedAt;
+    }
+
+    public void setChargedAt(LocalDateTime chargedAt) {
+        this.chargedAt = chargedAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -1,10 +1,62 @@
 package org.lucas.domain.user.repository;
 
+import java.math.BigDecimal;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 import org.lucas.domain.user.model.AccountEntity;
 import org.lucas.infrastructure.repository.MyBatisPlusExtRepository;
 
-/** 账户仓储接口 */
+/** 账户仓储接口
+ *
+ * 余额变动都是单条条件 UPDATE，由数据库行锁保证并发安全，多实例部署下同样成立。 */
 @Mapper
 public interface AccountRepository extends MyBatisPlusExtRepository<AccountEntity> {
+
+    /** 账户不存在时创建，已存在时什么也不做
+     *
+     * 依赖 user_id 的唯一索引；冲突时不报错，不会中断调用方所在的事务。
+     *
+     * @param account 新账户
+     * @return 影响行数，0 表示账户已存在 */
+    @Insert({"INSERT INTO accounts (id, user_id, balance, credit, total_consumed, created_at, updated_at)",
+            "VALUES (#{id}, #{userId}, #{balance}, #{credit}, #{totalConsumed}, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)",
+            "ON CONFLICT (user_id) WHERE deleted_at IS NULL DO NOTHING"})
+    int insertIfAbsent(AccountEntity account);
+
+    /** 扣费，先扣余额，不足部分扣信用额度；余额加信用额度不足时不扣
+     *
+     * SET 中引用的都是更新前的值，信用额度按原余额计算不足部分。
+     *
+     * @param userId 用户ID
+     * @param amount 扣费金额
+     * @return 影响行数，0 表示账户不存在或余额不足 */
+    @Update({"UPDATE accounts SET",
+            "credit = credit - GREATEST(#{amount} - balance, 0),",
+            "balance = GREATEST(balance - #{amount}, 0),",
+            "total_consumed = total_consumed + #{amount},",
+            "last_transaction_at = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP",
+            "WHERE user_id = #{userId} AND deleted_at IS NULL AND balance + credit >= #{amount}"})
+    int deductBalance(@Param("userId") String userId, @Param("amount") BigDecimal amount);
+
+    /** 充值
+     *
+     * @param userId 用户ID
+     * @param amount 充值金额
+     * @return 影响行数，0 表示账户不存在 */
+    @Update({"UPDATE accounts SET balance = balance + #{amount},",
+            "last_transaction_at = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP",
+            "WHERE user_id = #{userId} AND deleted_at IS NULL"})
+    int addBalance(@Param("userId") String userId, @Param("amount") BigDecimal amount);
+
+    /** 增加信用额度
+     *
+     * @param userId 用户ID
+     * @param amount 增加的信用额度
+     * @return 影响行数，0 表示账户不存在 */
+    @Update({"UPDATE accounts SET credit = credit + #{amount},",
+            "last_transaction_at = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP",
+            "WHERE user_id = #{userId} AND deleted_at IS NULL"})
+    int addCredit(@Param("userId") String userId, @Param("amount") BigDecimal amount);
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package org.lucas.domain.user.repository;
+
+import java.util.List;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.lucas.domain.user.model.UsageLedgerEntity;
+import org.lucas.infrastructure.repository.MyBatisPlusExtRepository;
+
+/** 用量流水仓储接口
+ *
+ * 流水只追加；唯一的更新是扣费成功后把流水标记为已扣费。 */
+@Mapper
+public interface UsageLedgerRepository extends MyBatisPlusExtRepository<UsageLedgerEntity> {
+
+    /** 有未扣费流水的用户，按用户ID排在游标之后
+     *
+     * 对账按用户ID翻页，一直扣不动的用户不会总排在最前面占满每一轮。
+     *
+     * @param afterUserId 游标，从头开始传空字符串
+     * @param limit 最多返回的用户数
+     * @return 用户ID列表 */
+    @Select({"SELECT DISTINCT user_id FROM account_usage_ledger WHERE charged = false AND cost > 0",
+            "AND user_id > #{afterUserId} ORDER BY user_id LIMIT #{limit}"})
+    List<String> selectUnchargedUserIds(@Param("afterUserId") String afterUserId, @Param("limit") int limit);
+
+    /** 锁定用户的未扣费流水，按 id 顺序
+     *
+     * 需在事务中调用；SKIP LOCKED 让写入线程和多个节点的对账同时进行时不会锁到同一批流水。
+     *
+     * @param userId 用户ID
+     * @param limit 最多锁定的条数
+     * @return 流水（只含 id 和费用） */
+    @Select({"SELECT id, cost FROM account_usage_ledger",
+            "WHERE user_id = #{userId} AND charged = false AND cost > 0",
+            "ORDER BY id LIMIT #{limit} FOR UPDATE SKIP LOCKED"})
+    @Options(flushCache = Options.FlushCachePolicy.TRUE, useCache = false)
+    List<UsageLedgerEntity> lockUncharged(@Param("userId") String userId, @Param("limit") int limit);
+
+    /** 把流水标记为已扣费
+     *
+     * @param ids 流水ID
+     * @return 影响行数 */
+    @Update({"<script>", "UPDATE account_usage_ledger SET charged = true, charged_at = CURRENT_TIMESTAMP WHERE id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>", "</script>"})
+    int markCharged(@Param("ids") List<Long> ids);
+}
@@ -1,35 +1,28 @@
 package org.lucas.domain.user.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import java.math.BigDecimal;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.lucas.domain.user.model.AccountEntity;
 import org.lucas.domain.user.repository.AccountRepository;
 import org.lucas.infrastructure.exception.BusinessException;
 
-/** 账户领域服务 处理用户账户相关的核心业务逻辑，使用JVM锁确保并发安全 */
+/** 账户领域服务 处理用户账户相关的核心业务逻辑
+ *
+ * 余额变动走 {@link AccountRepository} 的条件 UPDATE，账户创建靠 user_id 唯一索引去重，不依赖进程内的锁，
+ * 多实例部署下同样安全。 */
 @Service
 public class AccountDomainService {
 
     private final AccountRepository accountRepository;
 
-    /** 用户级别的锁，确保同一用户的账户操作串行化 */
-    private final ConcurrentHashMap<String, ReentrantLock> userLocks = new ConcurrentHashMap<>();
-
     public AccountDomainService(AccountRepository accountRepository) {
         this.accountRepository = accountRepository;
     }
 
-    /** 获取用户的锁对象
-     * @param userId 用户ID
-     * @return 锁对象 */
-    private ReentrantLock getUserLock(String userId) {
-        return userLocks.computeIfAbsent(userId, k -> new ReentrantLock());
-    }
-
     /** 根据用户ID查找账户（私有方法）
      * @param userId 用户ID
      * @return 账户实体，如果不存在则返回null */
@@ -54,19 +47,11 @@ public class AccountDomainService {
 
         AccountEntity account = findAccountByUserId(userId);
         if (account == null) {
-            // 使用锁确保同一用户只创建一个账户
-            ReentrantLock lock = getUserLock(userId);
-            lock.lock();
-            try {
-                // 双重检查
-                account = findAccountByUserId(userId);
-                if (account == null) {
-                    account = AccountEntity.createNew(userId);
-                    accountRepository.insert(account);
-                }
-            } finally {
-                lock.unlock();
-            }
+            // 并发创建时唯一索引只让一个插入成功，其余读回已存在的账户
+            AccountEntity created = AccountEntity.createNew(userId);
+            created.setId(IdWorker.get32UUID());
+            accountRepository.insertIfAbsent(created);
+            account = findAccountByUserId(userId);
         }
         return account;
     }
@@ -78,30 +63,34 @@ public class AccountDomainService {
         return findAccountByUserId(userId);
     }
 
-    /** 扣除账户余额（带锁保护）
+    /** 扣除账户余额
      * @param userId 用户ID
      * @param amount 扣除金额
      * @throws BusinessException 余额不足或其他业务异常 */
     public void deductBalance(String userId, BigDecimal amount) {
+        if (!tryDeductBalance(userId, amount)) {
+            throw new BusinessException("账户余额不足");
+        }
+    }
+
+    /** 尝试扣除账户余额，余额加信用额度不足时不扣
+     * @param userId 用户ID
+     * @param amount 扣除金额
+     * @return 是否扣除成功 */
+    public boolean tryDeductBalance(String userId, BigDecimal amount) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new BusinessException("扣费金额必须大于0");
         }
 
-        ReentrantLock lock = getUserLock(userId);
-        lock.lock();
-        try {
-            // 获取最新的账户信息
-            AccountEntity account = getOrCreateAccount(userId);
-
-            // 扣除余额
-            account.deduct(amount);
-
-            // 更新数据库
-            accountRepository.checkedUpdateById(account);
-
-        } finally {
-            lock.unlock();
+        if (accountRepository.deductBalance(userId, amount) > 0) {
+            return true;
+        }
+        // 账户可能还不存在，创建后再试一次
+        if (findAccountByUserId(userId) != null) {
+            return false;
         }
+        getOrCreateAccount(userId);
+        return accountRepository.deductBalance(userId, amount) > 0;
     }
 
     /** 账户扣费（deductBalance的别名）
@@ -111,7 +100,7 @@ public class AccountDomainService {
         deductBalance(userId, amount);
     }
 
-    /** 账户充值（带锁保护）
+    /** 账户充值
      * @param userId 用户ID
      * @param amount 充值金额 */
     public void rechargeBalance(String userId, BigDecimal amount) {
@@ -119,24 +108,13 @@ public class AccountDomainService {
             throw new BusinessException("充值金额必须大于0");
         }
 
-        ReentrantLock lock = getUserLock(userId);
-        lock.lock();
-        try {
-            // 获取或创建账户
-            AccountEntity account = getOrCreateAccount(userId);
-
-            // 充值
-            account.recharge(amount);
-
-            // 更新数据库
-            accountRepository.checkedUpdateById(account);
-
-        } finally {
-            lock.unlock();
+        getOrCreateAccount(userId);
+        if (accountRepository.addBalance(userId, amount) == 0) {
+            throw new BusinessException("账户不存在");
         }
     }
 
-    /** 增加信用额度（带锁保护）
+    /** 增加信用额度
      * @param userId 用户ID
      * @param amount 增加的信用额度 */
     public void addCredit(String userId, BigDecimal amount) {
@@ -144,20 +122,9 @@ public class AccountDomainService {
             throw new BusinessException("信用额度必须大于0");
         }
 
-        ReentrantLock lock = getUserLock(userId);
-        lock.lock();
-        try {
-            // 获取或创建账户
-            AccountEntity account = getOrCreateAccount(userId);
-
-            // 增加信用额度
-            account.addCredit(amount);
-
-            // 更新数据库
-            accountRepository.checkedUpdateById(account);
-
-        } finally {
-            lock.unlock();
+        getOrCreateAccount(userId);
+        if (accountRepository.addCredit(userId, amount) == 0) {
+            throw new BusinessException("账户不存在");
         }
     }
 
@@ -216,14 +183,8 @@ public class AccountDomainService {
 
         account.validate();
 
-        ReentrantLock lock = getUserLock(account.getUserId());
-        lock.lock();
-        try {
-            accountRepository.checkedUpdateById(account);
-            return account;
-        } finally {
-            lock.unlock();
-        }
+        accountRepository.checkedUpdateById(account);
+        return account;
     }
 
     /** 创建账户（用于测试）
@@ -236,19 +197,17 @@ public class AccountDomainService {
 
         account.validate();
 
-        ReentrantLock lock = getUserLock(account.getUserId());
-        lock.lock();
-        try {
-            // 检查是否已存在
-            AccountEntity existing = findAccountByUserId(account.getUserId());
-            if (existing != null) {
-                throw new BusinessException("用户账户已存在");
-            }
+        // 检查是否已存在；并发创建时由唯一索引兜底
+        AccountEntity existing = findAccountByUserId(account.getUserId());
+        if (existing != null) {
+            throw new BusinessException("用户账户已存在");
+        }
 
+        try {
             accountRepository.insert(account);
-            return account;
-        } finally {
-            lock.unlock();
+        } catch (DuplicateKeyException e) {
+            throw new BusinessException("用户账户已存在");
         }
+        return account;
     }
 }
\ No newline at end of file
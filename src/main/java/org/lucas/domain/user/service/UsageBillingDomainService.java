@@ -0,0 +1,103 @@
+package org.lucas.domain.user.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.lucas.domain.user.model.UsageLedgerEntity;
+import org.lucas.domain.user.repository.UsageLedgerRepository;
+import org.lucas.infrastructure.config.BillingProperties;
+
+/** 用量计费领域服务 按模型价格计算每次调用的费用，写入用量流水并从账户扣除；对账时补扣余额不足时欠下的费用 */
+@Service
+public class UsageBillingDomainService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageBillingDomainService.class);
+
+    private static final BigDecimal ONE_THOUSAND = BigDecimal.valueOf(1000);
+
+    private final UsageLedgerWriter ledgerWriter;
+
+    private final UsageLedgerRepository ledgerRepository;
+
+    private final BillingProperties properties;
+
+    /** 对账游标：上一轮处理到的最后一个用户ID，一轮取不满时回到开头 */
+    private volatile String reconcileCursor = "";
+
+    public UsageBillingDomainService(UsageLedgerWriter ledgerWriter, UsageLedgerRepository ledgerRepository,
+            BillingProperties properties) {
+        this.ledgerWriter = ledgerWriter;
+        this.ledgerRepository = ledgerRepository;
+        this.properties = properties;
+    }
+
+    /** 记录一次模型调用的用量并计费
+     * @param userId 用户ID
+     * @param agentId Agent ID
+     * @param sessionId 会话ID
+     * @param modelId 模型标识（调用端点）
+     * @param inputTokens 输入Token数，可为 null
+     * @param outputTokens 输出Token数，可为 null */
+    public void recordModelUsage(String userId, String agentId, String sessionId, String modelId,
+            Integer inputTokens, Integer outputTokens) {
+        if (!properties.isEnabled() || userId == null) {
+            return;
+        }
+        int input = inputTokens != null ? inputTokens : 0;
+        int output = outputTokens != null ? outputTokens : 0;
+
+        UsageLedgerEntity record = new UsageLedgerEntity();
+        record.setUserId(userId);
+        record.setAgentId(agentId);
+        record.setSessionId(sessionId);
+        record.setModelId(modelId);
+        record.setInputTokens(input);
+        record.setOutputTokens(output);
+        record.setCost(calculateCost(modelId, input, output));
+        record.setCharged(false);
+        record.setCreatedAt(LocalDateTime.now());
+        ledgerWriter.append(record);
+    }
+
+    /** 按模型价格计算费用
+     * @param modelId 模型标识
+     * @param inputTokens 输入Token数
+     * @param outputTokens 输出Token数
+     * @return 费用，保留 8 位小数 */
+    public BigDecimal calculateCost(String modelId, int inputTokens, int outputTokens) {
+        BillingProperties.ModelPrice price = modelId != null ? properties.getModels().get(modelId) : null;
+        if (price == null) {
+            price = properties.getDefaultPrice();
+        }
+        BigDecimal cost = price.getInputPer1k().multiply(BigDecimal.valueOf(inputTokens))
+                .add(price.getOutputPer1k().multiply(BigDecimal.valueOf(outputTokens)));
+        return cost.divide(ONE_THOUSAND, 8, RoundingMode.HALF_UP);
+    }
+
+    /** 对账：补扣未扣费流水
+     *
+     * 按用户ID从游标处往后取一页用户，每个用户一个事务，按 id 顺序扣到余额不够为止；扣不动的用户下一轮被翻过去，
+     * 不会挡住后面的用户。
+     * @return 本轮结清的流水条数 */
+    public int reconcile() {
+        int maxUsers = Math.max(1, properties.getReconciliation().getMaxUsers());
+        List<String> userIds = ledgerRepository.selectUnchargedUserIds(reconcileCursor, maxUsers);
+        reconcileCursor = userIds.size() < maxUsers ? "" : userIds.get(userIds.size() - 1);
+        int settled = 0;
+        for (String userId : userIds) {
+            try {
+                settled += ledgerWriter.settle(userId);
+            } catch (Exception e) {
+                logger.error("用量对账失败 - userId: {}", userId, e);
+            }
+        }
+        if (settled > 0) {
+            logger.info("用量对账完成，补扣 {} 条流水，涉及 {} 个用户", settled, userIds.size());
+        }
+        return settled;
+    }
+}
@@ -0,0 +1,214 @@
+package org.lucas.domain.user.service;
+
+import jakarta.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.lucas.domain.user.model.UsageLedgerEntity;
+import org.lucas.domain.user.repository.UsageLedgerRepository;
+import org.lucas.infrastructure.config.BillingProperties;
+import org.lucas.infrastructure.utils.JsonUtils;
+
+/** 用量流水写入器
+ *
+ * 模型调用的用量进有界队列，由单个后台线程成批落库。先把一批流水记为未扣费批量插入，失败重试一次，仍失败时逐条插入，
+ * 只有写不进去的那条记死信日志；随后按用户ID顺序逐个用户扣费，每个用户一个小事务：锁定该用户的未扣费流水，
+ * 合计扣得动就一次扣掉，扣不动就按 id 顺序逐条扣到余额不够为止，扣掉的标记为已扣费，剩下的留给对账。
+ * 扣费和标记在同一事务里，不会出现扣了钱流水仍是未扣费；一个事务只改一个账户，不会相互等锁。
+ *
+ * 队列满时在调用线程上同步写入，计费数据不丢弃。 */
+@Component
+public class UsageLedgerWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageLedgerWriter.class);
+
+    private final UsageLedgerRepository ledgerRepository;
+
+    private final AccountDomainService accountDomainService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BillingProperties.Ledger properties;
+
+    /** 每个用户一次最多扣费的流水条数 */
+    private final int maxRecordsPerUser;
+
+    private final BlockingQueue<UsageLedgerEntity> queue;
+
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    public UsageLedgerWriter(UsageLedgerRepository ledgerRepository, AccountDomainService accountDomainService,
+            TransactionTemplate transactionTemplate, BillingProperties billingProperties) {
+        this.ledgerRepository = ledgerRepository;
+        this.accountDomainService = accountDomainService;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = billingProperties.getLedger();
+        this.maxRecordsPerUser = Math.max(1, billingProperties.getReconciliation().getMaxRecordsPerUser());
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getCapacity()));
+        this.worker = new Thread(this::drainLoop, "usage-ledger-writer");
+        this.worker.setDaemon(true);
+        if (billingProperties.isEnabled()) {
+            this.worker.start();
+        }
+    }
+
+    /** 追加一条用量流水
+     *
+     * @param record 流水，费用已计算 */
+    public void append(UsageLedgerEntity record) {
+        if (!running || !worker.isAlive() || !queue.offer(record)) {
+            flush(List.of(record));
+        }
+    }
+
+    private void drainLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<UsageLedgerEntity> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                UsageLedgerEntity first = queue.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /** 一批写入：先插入流水，再按用户ID顺序逐个用户扣费 */
+    void flush(List<UsageLedgerEntity> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        for (UsageLedgerEntity record : batch) {
+            // 没有费用的视为已结清，其余先记为未扣费
+            boolean free = record.getCost().signum() <= 0;
+            record.setCharged(free);
+            record.setChargedAt(free ? now : null);
+        }
+        Set<String> userIds = new TreeSet<>();
+        for (UsageLedgerEntity record : write(batch)) {
+            if (!record.getCharged()) {
+                userIds.add(record.getUserId());
+            }
+        }
+        for (String userId : userIds) {
+            try {
+                settle(userId);
+            } catch (Exception e) {
+                logger.warn("用量扣费失败，留给对账 - userId: {}", userId, e);
+            }
+        }
+    }
+
+    /** 插入流水：批量插入失败重试一次，仍失败时逐条插入，写不进去的记死信日志
+     *
+     * @return 写入成功的流水 */
+    private List<UsageLedgerEntity> write(List<UsageLedgerEntity> batch) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            try {
+                batch.forEach(record -> record.setId(null));
+                transactionTemplate.executeWithoutResult(status -> ledgerRepository.insert(batch, batchSize));
+                return batch;
+            } catch (Exception e) {
+                logger.warn("用量流水批量写入失败，第 {} 次，共 {} 条: {}", attempt, batch.size(), e.getMessage());
+            }
+        }
+        List<UsageLedgerEntity> written = new ArrayList<>(batch.size());
+        for (UsageLedgerEntity record : batch) {
+            try {
+                record.setId(null);
+                ledgerRepository.insert(record);
+                written.add(record);
+            } catch (Exception e) {
+                logger.error("用量流水写入失败，记入死信: {}", JsonUtils.toJsonString(record), e);
+            }
+        }
+        return written;
+    }
+
+    /** 扣除用户的未扣费流水，每个用户一个事务
+     *
+     * 写入后和对账都走这里。锁定的流水合计扣得动就一次扣掉，否则按 id 顺序逐条扣到余额不够为止，
+     * 扣掉的部分先结清，剩下的留到下一轮。
+     *
+     * @param userId 用户ID
+     * @return 本次结清的流水条数 */
+    int settle(String userId) {
+        Integer count = transactionTemplate.execute(status -> {
+            List<UsageLedgerEntity> records = ledgerRepository.lockUncharged(userId, maxRecordsPerUser);
+            if (records.isEmpty()) {
+                return 0;
+            }
+            List<Long> chargedIds = charge(userId, records);
+            if (!chargedIds.isEmpty()) {
+                ledgerRepository.markCharged(chargedIds);
+            }
+            return chargedIds.size();
+        });
+        return count != null ? count : 0;
+    }
+
+    private List<Long> charge(String userId, List<UsageLedgerEntity> records) {
+        List<Long> chargedIds = new ArrayList<>(records.size());
+        BigDecimal total = BigDecimal.ZERO;
+        for (UsageLedgerEntity record : records) {
+            total = total.add(record.getCost());
+            chargedIds.add(record.getId());
+        }
+        if (accountDomainService.tryDeductBalance(userId, total)) {
+            return chargedIds;
+        }
+        chargedIds.clear();
+        for (UsageLedgerEntity record : records) {
+            if (!accountDomainService.tryDeductBalance(userId, record.getCost())) {
+                logger.info("账户余额不足，{} 条用量留给对账 - userId: {}", records.size() - chargedIds.size(), userId);
+                break;
+            }
+            chargedIds.add(record.getId());
+        }
+        return chargedIds;
+    }
+
+    /** 停机时停止接收新数据，等待后台线程写完队列；超时未写完的由当前线程补写 */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (!worker.isAlive()) {
+            return;
+        }
+        try {
+            worker.join(Math.max(0, properties.getShutdownTimeoutMs()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            logger.warn("用量流水写入线程未在 {}ms 内结束，剩余 {} 条由停机线程写入", properties.getShutdownTimeoutMs(),
+                    queue.size());
+            worker.interrupt();
+        }
+        List<UsageLedgerEntity> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.lucas.infrastructure.config;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** 用量计费配置属性类 */
+@Configuration
+@ConfigurationProperties(prefix = "billing")
+public class BillingProperties {
+
+    /** 是否按模型调用记录用量并扣费 */
+    private boolean enabled = false;
+
+    /** 未单独配置价格的模型使用的价格 */
+    private ModelPrice defaultPrice = new ModelPrice();
+
+    /** 按模型标识（调用端点，即模型的 modelId）配置的价格 */
+    private Map<String, ModelPrice> models = new HashMap<>();
+
+    /** 流水写入配置 */
+    private Ledger ledger = new Ledger();
+
+    /** 对账配置 */
+    private Reconciliation reconciliation = new Reconciliation();
+
+    /** 模型价格内部类，单位为每千 Token */
+    public static class ModelPrice {
+        /** 输入每千 Token 价格 */
+        private BigDecimal inputPer1k = BigDecimal.ZERO;
+
+        /** 输出每千 Token 价格 */
+        private BigDecimal outputPer1k = BigDecimal.ZERO;
+
+        public BigDecimal getInputPer1k() {
+            return inputPer1k;
+        }
+
+        public void setInputPer1k(BigDecimal inputPer1k) {
+            this.inputPer1k = inputPer1k;
+        }
+
+        public BigDecimal getOutputPer1k() {
+            return outputPer1k;
+        }
+
+        public void setOutputPer1k(BigDecimal outputPer1k) {
+            this.outputPer1k = outputPer1k;
+        }
+    }
+
+    /** 流水写入配置内部类
+     *
+     * 用量先进有界队列，后台线程每批先批量插入流水（记为未扣费），再按用户ID顺序每个用户一个小事务扣费。
+     * 队列满时在调用线程上同步写入，不丢弃计费数据。 */
+    public static class Ledger {
+        /** 队列容量 */
+        private int capacity = 10000;
+
+        /** 每批最多写入的条数 */
+        private int batchSize = 500;
+
+        /** 队列为空时后台线程的等待间隔(毫秒) */
+        private int flushIntervalMs = 500;
+
+        /** 停机时等待后台线程写完队列的最长时间(毫秒) */
+        private int shutdownTimeoutMs = 10000;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(int flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getShutdownTimeoutMs() {
+            return shutdownTimeoutMs;
+        }
+
+        public void setShutdownTimeoutMs(int shutdownTimeoutMs) {
+            this.shutdownTimeoutMs = shutdownTimeoutMs;
+        }
+    }
+
+    /** 对账配置内部类
+     *
+     * 余额不足时流水记为未扣费，对账任务定时按用户ID翻页补扣，按 id 顺序扣到余额不够为止，剩下的留到下一轮。 */
+    public static class Reconciliation {
+        /** 是否启用对账 */
+        private boolean enabled = true;
+
+        /** 对账间隔(毫秒) */
+        private long intervalMs = 300000;
+
+        /** 每轮最多处理的用户数 */
+        private int maxUsers = 200;
+
+        /** 每个用户一次最多扣费的流水条数，写入后扣费和对账共用 */
+        private int maxRecordsPerUser = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public void setIntervalMs(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        public int getMaxUsers() {
+            return maxUsers;
+        }
+
+        public void setMaxUsers(int maxUsers) {
+            this.maxUsers = maxUsers;
+        }
+
+        public int getMaxRecordsPerUser() {
+            return maxRecordsPerUser;
+        }
+
+        public void setMaxRecordsPerUser(int maxRecordsPerUser) {
+            this.maxRecordsPerUser = maxRecordsPerUser;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public ModelPrice getDefaultPrice() {
+        return defaultPrice;
+    }
+
+    public void setDefaultPrice(ModelPrice defaultPrice) {
+        this.defaultPrice = defaultPrice;
+    }
+
+    public Map<String, ModelPrice> getModels() {
+        return models;
+    }
+
+    public void setModels(Map<String, ModelPrice> models) {
+        this.models = models;
+    }
+
+    public Ledger getLedger() {
+        return ledger;
+    }
+
+    public void setLedger(Ledger ledger) {
+        this.ledger = ledger;
+    }
+
+    public Reconciliation getReconciliation() {
+        return reconciliation;
+    }
+
+    public void setReconciliation(Reconciliation reconciliation) {
+        this.reconciliation = reconciliation;
+    }
+}
@@ -26,6 +26,231 @@ public class HighAvailabilityProperties {
     /** 读取超时时间(毫秒)，默认60秒 */
     private int readTimeout = 60000;
 
+    /** 本地路由配置 */
+    private Routing routing = new Routing();
+
+    /** 连接池配置 */
+    private Pool pool = new Pool();
+
+    /** 调用结果上报配置 */
+    private Report report = new Report();
+
+    /** 连接池配置内部类
+     *
+     * 网关客户端共用一个连接池，空闲连接保留 keepAliveSeconds 后回收；connectTimeout / readTimeout 同时作用于池内连接。 */
+    public static class Pool {
+        /** 最大连接数 */
+        private int maxTotal = 50;
+
+        /** 每个网关地址的最大连接数 */
+        private int maxPerRoute = 20;
+
+        /** 空闲连接保留时间(秒)，网关未声明 Keep-Alive 时也按此回收 */
+        private int keepAliveSeconds = 30;
+
+        /** 从连接池获取连接的最长等待时间(毫秒) */
+        private int connectionRequestTimeout = 5000;
+
+        public int getMaxTotal() {
+            return maxTotal;
+        }
+
+        public void setMaxTotal(int maxTotal) {
+            this.maxTotal = maxTotal;
+        }
+
+        public int getMaxPerRoute() {
+            return maxPerRoute;
+        }
+
+        public void setMaxPerRoute(int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+        }
+
+        public int getKeepAliveSeconds() {
+            return keepAliveSeconds;
+        }
+
+        public void setKeepAliveSeconds(int keepAliveSeconds) {
+            this.keepAliveSeconds = keepAliveSeconds;
+        }
+
+        public int getConnectionRequestTimeout() {
+            return connectionRequestTimeout;
+        }
+
+        public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+            this.connectionRequestTimeout = connectionRequestTimeout;
+        }
+    }
+
+    /** 调用结果上报配置内部类
+     *
+     * 调用结果先进有界队列，由后台线程每 flushIntervalMs 或攒够 batchSize 条取出一批，交给发送线程池并发发送，
+     * 线程数取 pool.maxPerRoute。队列满时丢弃并计数。 */
+    public static class Report {
+        /** 队列容量 */
+        private int capacity = 10000;
+
+        /** 每批最多上报的条数 */
+        private int batchSize = 200;
+
+        /** 队列为空时后台线程的等待间隔(毫秒) */
+        private int flushIntervalMs = 1000;
+
+        /** 调用结束后超过该时间(毫秒)才发出的上报计为迟到 */
+        private int lateThresholdMs = 10000;
+
+        /** 停机时等待后台线程发完队列的最长时间(毫秒) */
+        private int shutdownTimeoutMs = 5000;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(int flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getLateThresholdMs() {
+            return lateThresholdMs;
+        }
+
+        public void setLateThresholdMs(int lateThresholdMs) {
+            this.lateThresholdMs = lateThresholdMs;
+        }
+
+        public int getShutdownTimeoutMs() {
+            return shutdownTimeoutMs;
+        }
+
+        public void setShutdownTimeoutMs(int shutdownTimeoutMs) {
+            this.shutdownTimeoutMs = shutdownTimeoutMs;
+        }
+    }
+
+    /** 本地路由配置内部类
+     *
+     * 开启后网关的选择结果按路由（用户 + 模型 + 降级链）缓存 cacheTtlSeconds，期间在本地已知的实例里按调用结果的
+     * 延迟/错误率 EWMA 加权挑选并保持会话亲和；缓存过期或本地实例都不健康时才回到网关。
+     * 网关调用失败后 gatewayBackoffSeconds 内不再请求网关，继续使用不超过 staleTtlSeconds 的旧路由。 */
+    public static class Routing {
+        /** 是否启用本地路由 */
+        private boolean enabled = false;
+
+        /** 路由缓存有效期(秒) */
+        private int cacheTtlSeconds = 30;
+
+        /** 网关不可用时旧路由的最长可用时间(秒) */
+        private int staleTtlSeconds = 600;
+
+        /** 网关调用失败后暂停请求网关的时间(秒) */
+        private int gatewayBackoffSeconds = 10;
+
+        /** EWMA 平滑系数，越大越看重最近的调用 */
+        private double ewmaAlpha = 0.3;
+
+        /** 错误率 EWMA 超过该值的实例视为不健康 */
+        private double errorRateThreshold = 0.5;
+
+        /** 错误率 EWMA 的半衰期(秒)，不健康的实例没有新调用时按此恢复 */
+        private int errorHalfLifeSeconds = 30;
+
+        /** 会话亲和保持时间(分钟) */
+        private int affinityTtlMinutes = 30;
+
+        /** 最多缓存的路由数 */
+        private int maxRoutes = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCacheTtlSeconds() {
+            return cacheTtlSeconds;
+        }
+
+        public void setCacheTtlSeconds(int cacheTtlSeconds) {
+            this.cacheTtlSeconds = cacheTtlSeconds;
+        }
+
+        public int getStaleTtlSeconds() {
+            return staleTtlSeconds;
+        }
+
+        public void setStaleTtlSeconds(int staleTtlSeconds) {
+            this.staleTtlSeconds = staleTtlSeconds;
+        }
+
+        public int getGatewayBackoffSeconds() {
+            return gatewayBackoffSeconds;
+        }
+
+        public void setGatewayBackoffSeconds(int gatewayBackoffSeconds) {
+            this.gatewayBackoffSeconds = gatewayBackoffSeconds;
+        }
+
+        public double getEwmaAlpha() {
+            return ewmaAlpha;
+        }
+
+        public void setEwmaAlpha(double ewmaAlpha) {
+            this.ewmaAlpha = ewmaAlpha;
+        }
+
+        public double getErrorRateThreshold() {
+            return errorRateThreshold;
+        }
+
+        public void setErrorRateThreshold(double errorRateThreshold) {
+            this.errorRateThreshold = errorRateThreshold;
+        }
+
+        public int getErrorHalfLifeSeconds() {
+            return errorHalfLifeSeconds;
+        }
+
+        public void setErrorHalfLifeSeconds(int errorHalfLifeSeconds) {
+            this.errorHalfLifeSeconds = errorHalfLifeSeconds;
+        }
+
+        public int getAffinityTtlMinutes() {
+            return affinityTtlMinutes;
+        }
+
+        public void setAffinityTtlMinutes(int affinityTtlMinutes) {
+            this.affinityTtlMinutes = affinityTtlMinutes;
+        }
+
+        public int getMaxRoutes() {
+            return maxRoutes;
+        }
+
+        public void setMaxRoutes(int maxRoutes) {
+            this.maxRoutes = maxRoutes;
+        }
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -65,4 +290,28 @@ public class HighAvailabilityProperties {
     public void setReadTimeout(int readTimeout) {
         this.readTimeout = readTimeout;
     }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public void setRouting(Routing routing) {
+        this.routing = routing;
+    }
+
+    public Pool getPool() {
+        return pool;
+    }
+
+    public void setPool(Pool pool) {
+        this.pool = pool;
+    }
+
+    public Report getReport() {
+        return report;
+    }
+
+    public void setReport(Report report) {
+        this.report = report;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package org.lucas.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** SSE 传输配置属性类 */
+@Configuration
+@ConfigurationProperties(prefix = "sse")
+public class SseProperties {
+
+    /** 流式片段合并配置 */
+    private Coalescing coalescing = new Coalescing();
+
+    /** 流式片段合并配置内部类
+     *
+     * 每个连接缓冲连续的同类型进度片段（正文、思考过程），攒够 maxBufferChars 个字符或距第一个片段超过
+     * flushIntervalMs 时合并成一条事件发送，其他类型的事件发送前先把缓冲冲掉，保证顺序不变。 */
+    public static class Coalescing {
+        /** 是否启用片段合并 */
+        private boolean enabled = false;
+
+        /** 缓冲最长停留时间(毫秒) */
+        private int flushIntervalMs = 30;
+
+        /** 缓冲字符数达到该值立即发送 */
+        private int maxBufferChars = 256;
+
+        /** 定时发送线程数：生产线程停顿时由它们发出到期缓冲，慢连接最多占住其中一个 */
+        private int flushThreads = 4;
+
+        /** 定时发送排队上限，排满时放弃这次定时发送，缓冲留给下一个片段 */
+        private int flushQueueCapacity = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(int flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getMaxBufferChars() {
+            return maxBufferChars;
+        }
+
+        public void setMaxBufferChars(int maxBufferChars) {
+            this.maxBufferChars = maxBufferChars;
+        }
+
+        public int getFlushThreads() {
+            return flushThreads;
+        }
+
+        public void setFlushThreads(int flushThreads) {
+            this.flushThreads = flushThreads;
+        }
+
+        public int getFlushQueueCapacity() {
+            return flushQueueCapacity;
+        }
+
+        public void setFlushQueueCapacity(int flushQueueCapacity) {
+            this.flushQueueCapacity = flushQueueCapacity;
+        }
+    }
+
+    public Coalescing getCoalescing() {
+        return coalescing;
+    }
+
+    public void setCoalescing(Coalescing coalescing) {
+        this.coalescing = coalescing;
+    }
+}
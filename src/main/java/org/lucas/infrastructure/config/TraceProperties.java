@@ -0,0 +1,148 @@
+package org.lucas.infrastructure.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** 执行链路追踪配置属性类 */
+@Configuration
+@ConfigurationProperties(prefix = "trace")
+public class TraceProperties {
+
+    /** 异步写入配置 */
+    private Writer writer = new Writer();
+
+    /** 执行统计配置 */
+    private Statistics statistics = new Statistics();
+
+    /** 队列满时的处理方式 */
+    public enum OverflowPolicy {
+        /** 调用线程最多等待 blockTimeoutMs，仍然放不进去则丢弃 */
+        BLOCK,
+        /** 立即丢弃 */
+        DROP
+    }
+
+    /** 异步写入配置内部类
+     *
+     * 模型、工具调用明细和汇总计数先进有界队列，由后台线程批量落库：明细批量插入，同一会话的计数每批合并成一条 UPDATE。
+     * 关闭后在调用线程上逐条同步写入。 */
+    public static class Writer {
+        /** 是否异步写入 */
+        private boolean enabled = true;
+
+        /** 队列容量 */
+        private int capacity = 10000;
+
+        /** 每批最多写入的条数 */
+        private int batchSize = 500;
+
+        /** 队列为空时后台线程的等待间隔(毫秒) */
+        private int flushIntervalMs = 200;
+
+        /** 队列满时的处理方式 */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+        /** BLOCK 策略下的最长等待时间(毫秒) */
+        private int blockTimeoutMs = 1000;
+
+        /** 停机时等待后台线程写完队列的最长时间(毫秒) */
+        private int shutdownTimeoutMs = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(int flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public int getBlockTimeoutMs() {
+            return blockTimeoutMs;
+        }
+
+        public void setBlockTimeoutMs(int blockTimeoutMs) {
+            this.blockTimeoutMs = blockTimeoutMs;
+        }
+
+        public int getShutdownTimeoutMs() {
+            return shutdownTimeoutMs;
+        }
+
+        public void setShutdownTimeoutMs(int shutdownTimeoutMs) {
+            this.shutdownTimeoutMs = shutdownTimeoutMs;
+        }
+    }
+
+    /** 执行统计配置内部类 */
+    public static class Statistics {
+        /** 启动时按汇总记录重建日汇总表，上线日汇总表后开一次即可 */
+        private boolean backfillOnStartup = false;
+
+        /** 重建时每段的天数 */
+        private int backfillChunkDays = 31;
+
+        public boolean isBackfillOnStartup() {
+            return backfillOnStartup;
+        }
+
+        public void setBackfillOnStartup(boolean backfillOnStartup) {
+            this.backfillOnStartup = backfillOnStartup;
+        }
+
+        public int getBackfillChunkDays() {
+            return backfillChunkDays;
+        }
+
+        public void setBackfillChunkDays(int backfillChunkDays) {
+            this.backfillChunkDays = backfillChunkDays;
+        }
+    }
+
+    public Writer getWriter() {
+        return writer;
+    }
+
+    public void setWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(Statistics statistics) {
+        this.statistics = statistics;
+    }
+}
@@ -0,0 +1,196 @@
+package org.lucas.infrastructure.highavailability.client;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.lucas.infrastructure.config.HighAvailabilityProperties;
+import org.lucas.infrastructure.highavailability.dto.request.ReportResultRequest;
+
+/** 调用结果上报器
+ *
+ * 每次模型调用结束都要向网关上报一次结果，原来在调用线程上逐条同步 POST。这里改为进有界队列，由单个后台线程定时取出
+ * 一批，交给发送线程池并发发送，线程数与网关连接池的单路由连接数一致，都走网关客户端的连接池。发送线程池排满时由
+ * 后台线程自己发送，不再继续取队列；上报队列满时直接丢弃，不阻塞对话。
+ *
+ * 丢弃、迟到（调用结束后超过 lateThresholdMs 才发出）、发送失败的条数都有累计计数，可通过 getter 读取。 */
+@Component
+public class GatewayResultReporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GatewayResultReporter.class);
+
+    /** 丢弃告警的间隔条数 */
+    private static final long DROP_LOG_INTERVAL = 1000;
+
+    private final HighAvailabilityGatewayClient gatewayClient;
+
+    private final HighAvailabilityProperties.Report properties;
+
+    private final BlockingQueue<ReportResultRequest> queue;
+
+    private final Thread worker;
+
+    /** 发送线程池，线程数与网关连接池的单路由连接数一致 */
+    private final ThreadPoolExecutor senders;
+
+    private final AtomicLong reported = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong late = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public GatewayResultReporter(HighAvailabilityGatewayClient gatewayClient,
+            HighAvailabilityProperties highAvailabilityProperties) {
+        this.gatewayClient = gatewayClient;
+        this.properties = highAvailabilityProperties.getReport();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getCapacity()));
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, highAvailabilityProperties.getPool().getMaxPerRoute());
+        this.senders = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), runnable -> {
+                    Thread thread = new Thread(runnable, "ha-result-sender-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.worker = new Thread(this::drainLoop, "ha-result-reporter");
+        this.worker.setDaemon(true);
+        if (highAvailabilityProperties.isEnabled()) {
+            this.worker.start();
+        }
+    }
+
+    /** 提交一条调用结果，队列满或已停机时丢弃
+     *
+     * @param request 结果上报请求 */
+    public void submit(ReportResultRequest request) {
+        if (!running || !worker.isAlive()) {
+            drop(request);
+            return;
+        }
+        if (!queue.offer(request)) {
+            drop(request);
+        }
+    }
+
+    private void drop(ReportResultRequest request) {
+        long count = dropped.incrementAndGet();
+        if (count % DROP_LOG_INTERVAL == 1) {
+            logger.warn("调用结果上报队列已满或已停止，丢弃上报 - instanceId: {}, 累计丢弃: {}", request.getInstanceId(), count);
+        }
+    }
+
+    private void drainLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<ReportResultRequest> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ReportResultRequest first = queue.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<ReportResultRequest> batch) {
+        long now = System.currentTimeMillis();
+        for (ReportResultRequest request : batch) {
+            Long callTimestamp = request.getCallTimestamp();
+            if (callTimestamp != null && now - callTimestamp > properties.getLateThresholdMs()) {
+                late.incrementAndGet();
+            }
+        }
+        for (ReportResultRequest request : batch) {
+            senders.execute(() -> sendOne(request));
+        }
+    }
+
+    private void sendOne(ReportResultRequest request) {
+        // 客户端内部已记录失败日志，这里只计数
+        if (gatewayClient.reportResult(request)) {
+            reported.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+    }
+
+    /** 停机时停止接收新的上报，等待后台线程和发送线程池发完队列；超时未发出的丢弃 */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (!worker.isAlive()) {
+            senders.shutdownNow();
+            return;
+        }
+        long deadline = System.currentTimeMillis() + Math.max(0, properties.getShutdownTimeoutMs());
+        try {
+            worker.join(Math.max(0, properties.getShutdownTimeoutMs()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            worker.interrupt();
+            dropped.addAndGet(queue.size());
+            logger.warn("调用结果上报线程未在 {}ms 内结束，丢弃剩余 {} 条", properties.getShutdownTimeoutMs(), queue.size());
+            queue.clear();
+        }
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                int pending = senders.shutdownNow().size();
+                dropped.addAndGet(pending);
+                logger.warn("调用结果发送线程未在 {}ms 内结束，丢弃剩余 {} 条", properties.getShutdownTimeoutMs(), pending);
+            }
+        } catch (InterruptedException e) {
+            senders.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        logger.info("调用结果上报器已停止 - 已上报: {}, 丢弃: {}, 迟到: {}, 失败: {}", reported.get(), dropped.get(),
+                late.get(), failed.get());
+    }
+
+    /** 已成功上报的条数 */
+    public long getReportedCount() {
+        return reported.get();
+    }
+
+    /** 因队列满或停机丢弃的条数 */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** 迟到的条数 */
+    public long getLateCount() {
+        return late.get();
+    }
+
+    /** 发送失败的条数 */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /** 当前排队的条数，含已交给发送线程池尚未发出的 */
+    public int getQueueSize() {
+        return queue.size() + senders.getQueue().size();
+    }
+}
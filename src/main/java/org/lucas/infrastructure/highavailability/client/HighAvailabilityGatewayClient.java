@@ -1,8 +1,12 @@
 package org.lucas.infrastructure.highavailability.client;
 
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
@@ -10,7 +14,9 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,7 +48,38 @@ public class HighAvailabilityGatewayClient {
 
     public HighAvailabilityGatewayClient(HighAvailabilityProperties properties) {
         this.properties = properties;
-        this.httpClient = HttpClients.createDefault();
+        this.httpClient = createHttpClient(properties);
+    }
+
+    /** 创建带连接池的客户端：连接复用、空闲回收，连接/读取超时取自配置 */
+    private static CloseableHttpClient createHttpClient(HighAvailabilityProperties properties) {
+        HighAvailabilityProperties.Pool pool = properties.getPool();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                pool.getKeepAliveSeconds(), TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(pool.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(pool.getMaxPerRoute());
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(properties.getConnectTimeout())
+                .setSocketTimeout(properties.getReadTimeout())
+                .setConnectionRequestTimeout(pool.getConnectionRequestTimeout()).build();
+
+        long keepAliveMs = TimeUnit.SECONDS.toMillis(pool.getKeepAliveSeconds());
+        return HttpClients.custom().setConnectionManager(connectionManager).setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    long declared = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return declared > 0 ? Math.min(declared, keepAliveMs) : keepAliveMs;
+                }).evictExpiredConnections().evictIdleConnections(pool.getKeepAliveSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.warn("关闭高可用网关客户端失败", e);
+        }
     }
 
     /** 选择最佳API实例 */
@@ -98,10 +135,12 @@ public class HighAvailabilityGatewayClient {
         }
     }
 
-    /** 上报调用结果 */
-    public void reportResult(ReportResultRequest request) {
+    /** 上报调用结果
+     *
+     * @return 是否上报成功 */
+    public boolean reportResult(ReportResultRequest request) {
         if (!properties.isEnabled()) {
-            return;
+            return false;
         }
 
         try {
@@ -115,15 +154,19 @@ public class HighAvailabilityGatewayClient {
             httpPost.setEntity(new StringEntity(jsonRequest, StandardCharsets.UTF_8));
 
             try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+                // 读完响应体，连接才能放回连接池复用
+                String responseBody = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
                 if (response.getStatusLine().getStatusCode() != 200) {
-                    String responseBody = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
                     logger.warn("上报调用结果失败，响应码: {}, 响应体: {}", response.getStatusLine().getStatusCode(), responseBody);
+                    return false;
                 }
+                return true;
             }
 
         } catch (Exception e) {
             logger.error("上报调用结果失败", e);
             // 上报失败不抛异常，避免影响主流程
+            return false;
         }
     }
 
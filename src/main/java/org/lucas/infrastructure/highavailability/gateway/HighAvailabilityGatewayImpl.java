@@ -3,6 +3,7 @@ package org.lucas.infrastructure.highavailability.gateway;
 import java.util.List;
 import org.springframework.stereotype.Component;
 import org.lucas.domain.highavailability.gateway.HighAvailabilityGateway;
+import org.lucas.infrastructure.highavailability.client.GatewayResultReporter;
 import org.lucas.infrastructure.highavailability.client.HighAvailabilityGatewayClient;
 import org.lucas.infrastructure.highavailability.dto.request.ApiInstanceBatchDeleteRequest;
 import org.lucas.infrastructure.highavailability.dto.request.ApiInstanceCreateRequest;
@@ -20,9 +21,12 @@ import org.lucas.infrastructure.highavailability.dto.response.ApiInstanceDTO;
 public class HighAvailabilityGatewayImpl implements HighAvailabilityGateway {
 
     private final HighAvailabilityGatewayClient gatewayClient;
+    private final GatewayResultReporter resultReporter;
 
-    public HighAvailabilityGatewayImpl(HighAvailabilityGatewayClient gatewayClient) {
+    public HighAvailabilityGatewayImpl(HighAvailabilityGatewayClient gatewayClient,
+            GatewayResultReporter resultReporter) {
         this.gatewayClient = gatewayClient;
+        this.resultReporter = resultReporter;
     }
 
     @Override
@@ -47,7 +51,8 @@ public class HighAvailabilityGatewayImpl implements HighAvailabilityGateway {
 
     @Override
     public void reportResult(ReportResultRequest request) {
-        gatewayClient.reportResult(request);
+        // 进上报队列，由后台线程批量发送
+        resultReporter.submit(request);
     }
 
     @Override
@@ -41,9 +41,33 @@ public class LLMProviderFactory {
     }
 
     /** 获取对应的服务商 不使用工厂模式，因为 OpenAiChatModel 没有无参构造器，并且其他类型的模型不能适配
+     *
+     * 相同配置复用同一个客户端实例（见 {@link ModelClientRegistry}），避免每次调用都新建连接池。
      * @param protocol 协议
      * @param providerConfig 服务商信息 */
     public static ChatModel getLLMProvider(ProviderProtocol protocol, ProviderConfig providerConfig) {
+        if (protocol != ProviderProtocol.OPENAI && protocol != ProviderProtocol.ANTHROPIC) {
+            return null;
+        }
+        return ModelClientRegistry.getOrCreate(clientKey("chat", protocol, providerConfig, BLOCKING_TIMEOUT),
+                () -> createLLMProvider(protocol, providerConfig));
+    }
+
+    public static StreamingChatModel getLLMProviderByStream(ProviderProtocol protocol, ProviderConfig providerConfig) {
+        if (protocol != ProviderProtocol.OPENAI && protocol != ProviderProtocol.ANTHROPIC) {
+            return null;
+        }
+        return ModelClientRegistry.getOrCreate(clientKey("stream", protocol, providerConfig, STREAMING_TIMEOUT),
+                () -> createLLMProviderByStream(protocol, providerConfig));
+    }
+
+    private static ModelClientRegistry.ClientKey clientKey(String kind, ProviderProtocol protocol,
+            ProviderConfig providerConfig, Duration timeout) {
+        return ModelClientRegistry.key(kind, protocol.name(), providerConfig.getBaseUrl(), providerConfig.getApiKey(),
+                providerConfig.getModel(), timeout, providerConfig.getCustomHeaders());
+    }
+
+    private static ChatModel createLLMProvider(ProviderProtocol protocol, ProviderConfig providerConfig) {
         ChatModel model = null;
         if (protocol == ProviderProtocol.OPENAI) {
             OpenAiChatModel.OpenAiChatModelBuilder openAiChatModelBuilder = new OpenAiChatModel.OpenAiChatModelBuilder();
@@ -60,7 +84,8 @@ public class LLMProviderFactory {
         return model;
     }
 
-    public static StreamingChatModel getLLMProviderByStream(ProviderProtocol protocol, ProviderConfig providerConfig) {
+    private static StreamingChatModel createLLMProviderByStream(ProviderProtocol protocol,
+            ProviderConfig providerConfig) {
         StreamingChatModel model = null;
         if (protocol == ProviderProtocol.OPENAI) {
             model = new OpenAiStreamingChatModel.OpenAiStreamingChatModelBuilder().apiKey(providerConfig.getApiKey())
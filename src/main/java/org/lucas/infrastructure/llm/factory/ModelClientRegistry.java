@@ -0,0 +1,180 @@
+package org.lucas.infrastructure.llm.factory;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** 模型客户端注册表
+ *
+ * langchain4j 的 OpenAiChatModel / OpenAiStreamingChatModel / AnthropicChatModel / OpenAiEmbeddingModel
+ * 都是线程安全的，每个实例内部持有自己的 HTTP 客户端和连接池。以前每次对话、每次意图识别、每页 OCR、
+ * 每个分片向量化都新建一个实例，连接池随实例一起被丢弃，每次调用都要重新握手 TLS。
+ *
+ * 这里按（客户端类型，协议，baseUrl，apiKey 摘要，模型，超时，自定义请求头）缓存实例，让连接保持温热。
+ * 容量有上限，空闲超时后淘汰；命中、未命中、淘汰次数见 {@link #stats()}，每 {@value #STATS_LOG_INTERVAL} 次获取
+ * 打印一次汇总日志。
+ *
+ * 容量和空闲时长读取环境变量 LLM_CLIENT_CACHE_MAX_SIZE / LLM_CLIENT_CACHE_IDLE_MINUTES，与
+ * {@link LLMProviderFactory} 的超时配置方式保持一致。 */
+public final class ModelClientRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelClientRegistry.class);
+
+    /** 汇总日志的间隔次数 */
+    private static final int STATS_LOG_INTERVAL = 1000;
+
+    private static final AtomicLong LOOKUPS = new AtomicLong();
+
+    private static final long MAX_SIZE = longFromEnv("LLM_CLIENT_CACHE_MAX_SIZE", 256);
+
+    private static final Duration IDLE_TIMEOUT = Duration
+            .ofMinutes(longFromEnv("LLM_CLIENT_CACHE_IDLE_MINUTES", 30));
+
+    private static final Cache<ClientKey, Object> CLIENTS = CacheBuilder.newBuilder().maximumSize(MAX_SIZE)
+            .expireAfterAccess(IDLE_TIMEOUT).recordStats().removalListener(notification -> {
+                if (notification.wasEvicted()) {
+                    log.debug("Evicted model client {} ({})", notification.getKey(), notification.getCause());
+                }
+            }).build();
+
+    private ModelClientRegistry() {
+    }
+
+    private static long longFromEnv(String name, long defaultValue) {
+        String raw = System.getenv(name);
+        if (raw != null && !raw.isBlank()) {
+            try {
+                long value = Long.parseLong(raw.trim());
+                if (value > 0) {
+                    return value;
+                }
+                log.warn("{} 必须为正数，收到 '{}'，回落到默认值 {}", name, raw, defaultValue);
+            } catch (NumberFormatException e) {
+                log.warn("{} 不是合法的整数：'{}'，回落到默认值 {}", name, raw, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /** 获取已缓存的客户端，不存在时用 factory 创建并缓存
+     *
+     * @param key 客户端键
+     * @param factory 客户端构造方法
+     * @return 客户端实例 */
+    @SuppressWarnings("unchecked")
+    public static <T> T getOrCreate(ClientKey key, Supplier<T> factory) {
+        if (LOOKUPS.incrementAndGet() % STATS_LOG_INTERVAL == 0) {
+            CacheStats stats = CLIENTS.stats();
+            log.info("Model client registry: size={}, hitRate={}, hits={}, misses={}, evictions={}", CLIENTS.size(),
+                    String.format("%.3f", stats.hitRate()), stats.hitCount(), stats.missCount(),
+                    stats.evictionCount());
+        }
+        try {
+            return (T) CLIENTS.get(key, () -> {
+                log.debug("Creating model client {}", key);
+                return factory.get();
+            });
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("创建模型客户端失败: " + key, cause);
+        }
+    }
+
+    /** 命中/未命中/淘汰统计 */
+    public static CacheStats stats() {
+        return CLIENTS.stats();
+    }
+
+    /** 当前缓存的客户端数量 */
+    public static long size() {
+        return CLIENTS.size();
+    }
+
+    /** 清空所有缓存的客户端（例如服务商密钥轮换后） */
+    public static void invalidateAll() {
+        CLIENTS.invalidateAll();
+    }
+
+    /** 构造客户端键，apiKey 只保留摘要
+     *
+     * @param kind 客户端类型（chat / stream / embedding）
+     * @param protocol 协议
+     * @param baseUrl 基础URL
+     * @param apiKey API密钥
+     * @param model 模型名称
+     * @param timeout 超时时间，可为空
+     * @param customHeaders 自定义请求头，可为空 */
+    public static ClientKey key(String kind, String protocol, String baseUrl, String apiKey, String model,
+            Duration timeout, Map<String, String> customHeaders) {
+        String headers = customHeaders == null || customHeaders.isEmpty()
+                ? ""
+                : DigestUtil.sha256Hex(new TreeMap<>(customHeaders).toString());
+        return new ClientKey(kind, protocol, baseUrl, apiKey == null ? "" : DigestUtil.sha256Hex(apiKey), model,
+                timeout, headers);
+    }
+
+    /** 客户端缓存键 */
+    public static final class ClientKey {
+        private final String kind;
+        private final String protocol;
+        private final String baseUrl;
+        private final String apiKeyHash;
+        private final String model;
+        private final Duration timeout;
+        private final String headersHash;
+
+        private ClientKey(String kind, String protocol, String baseUrl, String apiKeyHash, String model,
+                Duration timeout, String headersHash) {
+            this.kind = kind;
+            this.protocol = protocol;
+            this.baseUrl = baseUrl;
+            this.apiKeyHash = apiKeyHash;
+            this.model = model;
+            this.timeout = timeout;
+            this.headersHash = headersHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClientKey that)) {
+                return false;
+            }
+            return Objects.equals(kind, that.kind) && Objects.equals(protocol, that.protocol)
+                    && Objects.equals(baseUrl, that.baseUrl) && Objects.equals(apiKeyHash, that.apiKeyHash)
+                    && Objects.equals(model, that.model) && Objects.equals(timeout, that.timeout)
+                    && Objects.equals(headersHash, that.headersHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, protocol, baseUrl, apiKeyHash, model, timeout, headersHash);
+        }
+
+        @Override
+        public String toString() {
+            // 不输出 apiKey 摘要，避免日志里出现可关联的密钥指纹
+            return kind + ":" + protocol + ":" + baseUrl + ":" + model;
+        }
+    }
+}
@@ -3,9 +3,19 @@ package org.lucas.infrastructure.rag.config;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.lucas.infrastructure.rag.service.HotDatasetCache;
+import org.lucas.infrastructure.rag.service.HotDatasetEmbeddingStore;
+import org.lucas.infrastructure.rag.service.VectorStoreJdbc;
 
 /** 嵌入式配置
  * @author shilong.zang
@@ -15,6 +25,11 @@ import org.springframework.context.annotation.Configuration;
 @EnableConfigurationProperties(EmbeddingProperties.class)
 public class EmbeddingConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingConfig.class);
+
+    /** 迭代扫描模式拼进连接参数，只允许 off / relaxed_order / strict_order 这类取值 */
+    private static final Pattern ITERATIVE_SCAN = Pattern.compile("[a-z_]+");
+
     private final EmbeddingProperties embeddingProperties;
 
     /** 构造方法，注入配置属性
@@ -24,16 +39,77 @@ public class EmbeddingConfig {
     }
 
     /** 向量化存储配置
-     * @return PgVectorEmbeddingStore实例 */
+     *
+     * 建表时不让 PgVectorEmbeddingStore 建索引，ANN 与元数据索引由
+     * {@link org.lucas.infrastructure.rag.service.VectorIndexManager} 按配置管理。
+     * 检索参数（hnsw.ef_search、ivfflat.probes 等）作为连接启动参数下发，不额外增加往返。
+     * 迭代扫描需要 pgvector 0.8+，启动时查一次扩展版本，低版本不下发并告警。
+     * 启用热点数据集内存索引时，外面包一层 {@link HotDatasetEmbeddingStore}。
+     * @param hotDatasetCache 热点数据集内存索引
+     * @return 向量存储实例 */
     @Bean
-    public EmbeddingStore<TextSegment> initEmbeddingStore() {
+    public EmbeddingStore<TextSegment> initEmbeddingStore(HotDatasetCache hotDatasetCache) {
         EmbeddingProperties.VectorStore vectorStoreConfig = embeddingProperties.getVectorStore();
 
-        return PgVectorEmbeddingStore.builder().table(vectorStoreConfig.getTable())
-                .dropTableFirst(vectorStoreConfig.isDropTableFirst()).createTable(vectorStoreConfig.isCreateTable())
-                .host(vectorStoreConfig.getHost()).port(vectorStoreConfig.getPort()).user(vectorStoreConfig.getUser())
-                .password(vectorStoreConfig.getPassword()).dimension(vectorStoreConfig.getDimension())
-                .database(vectorStoreConfig.getDatabase()).build();
+        PGSimpleDataSource dataSource = VectorStoreJdbc.createDataSource(vectorStoreConfig);
+        String options = sessionOptions(vectorStoreConfig.getIndex(),
+                supportsIterativeScan(dataSource, vectorStoreConfig.getIndex()));
+        if (!options.isEmpty()) {
+            dataSource.setOptions(options);
+        }
+
+        EmbeddingStore<TextSegment> store = PgVectorEmbeddingStore.datasourceBuilder().datasource(dataSource)
+                .table(vectorStoreConfig.getTable()).dropTableFirst(vectorStoreConfig.isDropTableFirst())
+                .createTable(vectorStoreConfig.isCreateTable()).dimension(vectorStoreConfig.getDimension())
+                .useIndex(false).build();
+        return hotDatasetCache.isEnabled() ? new HotDatasetEmbeddingStore(store, hotDatasetCache) : store;
+    }
+
+    /** 配置了迭代扫描时检查 pgvector 版本，0.8 以下或查询失败时不下发 */
+    private static boolean supportsIterativeScan(PGSimpleDataSource dataSource, EmbeddingProperties.VectorIndex index) {
+        String iterativeScan = index.getIterativeScan();
+        if (iterativeScan == null || iterativeScan.isBlank() || "off".equals(iterativeScan)) {
+            return false;
+        }
+        try {
+            String version = VectorStoreJdbc.pgvectorVersion(dataSource);
+            if (VectorStoreJdbc.isPgvectorAtLeast(version, 0, 8)) {
+                return true;
+            }
+            log.warn("pgvector 版本 {} 不支持迭代扫描，忽略 iterative-scan={}；带过滤条件的 HNSW 检索可能凑不满 LIMIT",
+                    version, iterativeScan);
+        } catch (SQLException e) {
+            log.warn("查询 pgvector 版本失败，忽略 iterative-scan={}", iterativeScan, e);
+        }
+        return false;
+    }
+
+    /** 检索会话参数，只下发当前索引类型的参数，拼成 libpq options 形式（-c name=value） */
+    static String sessionOptions(EmbeddingProperties.VectorIndex index, boolean iterativeScanSupported) {
+        String prefix;
+        List<String> options = new ArrayList<>();
+        if ("hnsw".equalsIgnoreCase(index.getType())) {
+            prefix = "hnsw";
+            if (index.getEfSearch() > 0) {
+                options.add("-c hnsw.ef_search=" + index.getEfSearch());
+            }
+        } else if ("ivfflat".equalsIgnoreCase(index.getType())) {
+            prefix = "ivfflat";
+            if (index.getProbes() > 0) {
+                options.add("-c ivfflat.probes=" + index.getProbes());
+            }
+        } else {
+            return "";
+        }
+
+        String iterativeScan = index.getIterativeScan();
+        if (iterativeScanSupported && iterativeScan != null && !iterativeScan.isBlank()) {
+            if (!ITERATIVE_SCAN.matcher(iterativeScan).matches()) {
+                throw new IllegalStateException("非法的迭代扫描模式: " + iterativeScan);
+            }
+            options.add("-c " + prefix + ".iterative_scan=" + iterativeScan);
+        }
+        return String.join(" ", options);
     }
 
 }
@@ -1,5 +1,7 @@
 package org.lucas.infrastructure.rag.config;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
@@ -27,6 +29,317 @@ public class EmbeddingProperties {
     /** 向量存储配置 */
     private VectorStore vectorStore = new VectorStore();
 
+    /** 向量化入库配置 */
+    private Ingestion ingestion = new Ingestion();
+
+    /** 查询向量缓存配置 */
+    private QueryCache queryCache = new QueryCache();
+
+    /** 多查询检索配置 */
+    private Retrieval retrieval = new Retrieval();
+
+    /** 语义答案缓存配置 */
+    private AnswerCache answerCache = new AnswerCache();
+
+    /** 热点数据集内存索引配置 */
+    private HotDataset hotDataset = new HotDataset();
+
+    /** 多查询检索配置内部类
+     *
+     * 原问题、改写和扩展查询一次批量向量化，各自的 ANN 检索在有界线程池里并发执行，
+     * 结果按倒数排名融合（RRF）成一个候选池，只重排一次。相邻片段扩展的窗口也在这里配置。 */
+    public static class Retrieval {
+        /** 并发检索线程数，即整个实例同时在途的多查询 ANN 检索上限 */
+        private int fanOutConcurrency = 8;
+
+        /** RRF 平滑常数 k，融合分数为 Σ 1/(k + rank) */
+        private int rrfK = 60;
+
+        /** 相邻片段扩展时命中分片前后各取的页数 */
+        private int neighbourWindow = 1;
+
+        /** 相邻片段扩展时每个文件最多补充的分片数，不含命中分片本身 */
+        private int neighbourMaxPerFile = 4;
+
+        /** 混合检索时从问题里提取的关键词上限 */
+        private int lexicalMaxTerms = 8;
+
+        public int getFanOutConcurrency() {
+            return fanOutConcurrency;
+        }
+
+        public void setFanOutConcurrency(int fanOutConcurrency) {
+            this.fanOutConcurrency = fanOutConcurrency;
+        }
+
+        public int getRrfK() {
+            return rrfK;
+        }
+
+        public void setRrfK(int rrfK) {
+            this.rrfK = rrfK;
+        }
+
+        public int getNeighbourWindow() {
+            return neighbourWindow;
+        }
+
+        public void setNeighbourWindow(int neighbourWindow) {
+            this.neighbourWindow = neighbourWindow;
+        }
+
+        public int getNeighbourMaxPerFile() {
+            return neighbourMaxPerFile;
+        }
+
+        public void setNeighbourMaxPerFile(int neighbourMaxPerFile) {
+            this.neighbourMaxPerFile = neighbourMaxPerFile;
+        }
+
+        public int getLexicalMaxTerms() {
+            return lexicalMaxTerms;
+        }
+
+        public void setLexicalMaxTerms(int lexicalMaxTerms) {
+            this.lexicalMaxTerms = lexicalMaxTerms;
+        }
+    }
+
+    /** 查询向量缓存配置内部类
+     *
+     * 以（嵌入模型，归一化文本）为键缓存向量。按内存预算而不是条目数限制容量，因为不同模型的向量维度不同。 */
+    public static class QueryCache {
+        /** 是否启用查询向量缓存 */
+        private boolean enabled = true;
+
+        /** 缓存内存预算(MB) */
+        private int maxMemoryMb = 64;
+
+        /** 缓存条目存活时间(分钟) */
+        private int ttlMinutes = 30;
+
+        /** 超过该长度的文本不进缓存，避免长文档挤占查询的空间 */
+        private int maxTextLength = 2000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxMemoryMb() {
+            return maxMemoryMb;
+        }
+
+        public void setMaxMemoryMb(int maxMemoryMb) {
+            this.maxMemoryMb = maxMemoryMb;
+        }
+
+        public int getTtlMinutes() {
+            return ttlMinutes;
+        }
+
+        public void setTtlMinutes(int ttlMinutes) {
+            this.ttlMinutes = ttlMinutes;
+        }
+
+        public int getMaxTextLength() {
+            return maxTextLength;
+        }
+
+        public void setMaxTextLength(int maxTextLength) {
+            this.maxTextLength = maxTextLength;
+        }
+    }
+
+    /** 语义答案缓存配置内部类
+     *
+     * 以（检索范围及其内容版本，检索与生成参数）分区，分区内按问题向量的余弦相似度查找。
+     * 命中时直接回放检索结果和答案，不再走意图识别、检索、重排和生成。默认关闭。 */
+    public static class AnswerCache {
+        /** 是否启用语义答案缓存 */
+        private boolean enabled = false;
+
+        /** 命中阈值：问题向量余弦相似度不低于该值才回放 */
+        private double similarityThreshold = 0.95;
+
+        /** 缓存分区数上限 */
+        private int maxPartitions = 1000;
+
+        /** 单个分区内的答案数上限，超出时淘汰最早写入的 */
+        private int maxEntriesPerPartition = 50;
+
+        /** 答案存活时间(分钟) */
+        private int ttlMinutes = 60;
+
+        /** 超过该长度的答案不缓存 */
+        private int maxAnswerLength = 20000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSimilarityThreshold() {
+            return similarityThreshold;
+        }
+
+        public void setSimilarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+        }
+
+        public int getMaxPartitions() {
+            return maxPartitions;
+        }
+
+        public void setMaxPartitions(int maxPartitions) {
+            this.maxPartitions = maxPartitions;
+        }
+
+        public int getMaxEntriesPerPartition() {
+            return maxEntriesPerPartition;
+        }
+
+        public void setMaxEntriesPerPartition(int maxEntriesPerPartition) {
+            this.maxEntriesPerPartition = maxEntriesPerPartition;
+        }
+
+        public int getTtlMinutes() {
+            return ttlMinutes;
+        }
+
+        public void setTtlMinutes(int ttlMinutes) {
+            this.ttlMinutes = ttlMinutes;
+        }
+
+        public int getMaxAnswerLength() {
+            return maxAnswerLength;
+        }
+
+        public void setMaxAnswerLength(int maxAnswerLength) {
+            this.maxAnswerLength = maxAnswerLength;
+        }
+    }
+
+    /** 热点数据集内存索引配置内部类
+     *
+     * 频繁检索的小数据集从 pgvector 整体读入内存，向量按 int8 量化，检索在进程内顺序扫描，不再走 JDBC。
+     * 一段时间内检索次数达到 promoteAfterQueries 的数据集在后台加载；常驻数据集按内存预算 LRU 淘汰。 */
+    public static class HotDataset {
+        /** 是否启用热点数据集内存索引 */
+        private boolean enabled = false;
+
+        /** 常驻数据集的内存预算(MB)，含量化向量、分片文本和元数据 */
+        private int maxMemoryMb = 256;
+
+        /** 统计窗口内检索次数达到该值的数据集加载进内存 */
+        private int promoteAfterQueries = 20;
+
+        /** 检索次数统计窗口(分钟) */
+        private int promoteWindowMinutes = 10;
+
+        /** 分片数超过该值的数据集不加载，仍走 pgvector */
+        private int maxChunksPerDataset = 20000;
+
+        /** 常驻时长上限(分钟)，到期后下次检索回到 pgvector 并重新计数加载；限制多实例部署时其他实例写入造成的不一致 */
+        private int maxResidentMinutes = 30;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxMemoryMb() {
+            return maxMemoryMb;
+        }
+
+        public void setMaxMemoryMb(int maxMemoryMb) {
+            this.maxMemoryMb = maxMemoryMb;
+        }
+
+        public int getPromoteAfterQueries() {
+            return promoteAfterQueries;
+        }
+
+        public void setPromoteAfterQueries(int promoteAfterQueries) {
+            this.promoteAfterQueries = promoteAfterQueries;
+        }
+
+        public int getPromoteWindowMinutes() {
+            return promoteWindowMinutes;
+        }
+
+        public void setPromoteWindowMinutes(int promoteWindowMinutes) {
+            this.promoteWindowMinutes = promoteWindowMinutes;
+        }
+
+        public int getMaxChunksPerDataset() {
+            return maxChunksPerDataset;
+        }
+
+        public void setMaxChunksPerDataset(int maxChunksPerDataset) {
+            this.maxChunksPerDataset = maxChunksPerDataset;
+        }
+
+        public int getMaxResidentMinutes() {
+            return maxResidentMinutes;
+        }
+
+        public void setMaxResidentMinutes(int maxResidentMinutes) {
+            this.maxResidentMinutes = maxResidentMinutes;
+        }
+    }
+
+    /** 向量化入库配置内部类
+     *
+     * 批量模式下，同一文件的语料按 batchSize 分组投递：一条MQ消息对应一次 embedAll、一次 addAll、
+     * 一次 is_vector 批量更新和一次进度更新，而不是每个分片各走一遍。
+     *
+     * 增量模式下，重新处理文件只删除语料不删除向量；向量化时按分片指纹（嵌入模型ID + 内容哈希）复用已有向量，
+     * 只有新增或修改过的分片才调用嵌入服务，文件向量化完成后再删除没有分片认领的旧向量。 */
+    public static class Ingestion {
+        /** 是否启用批量向量化 */
+        private boolean batchEnabled = true;
+
+        /** 每批分片数量 */
+        private int batchSize = 32;
+
+        /** 是否启用增量入库 */
+        private boolean incremental = false;
+
+        public boolean isBatchEnabled() {
+            return batchEnabled;
+        }
+
+        public void setBatchEnabled(boolean batchEnabled) {
+            this.batchEnabled = batchEnabled;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public boolean isIncremental() {
+            return incremental;
+        }
+
+        public void setIncremental(boolean incremental) {
+            this.incremental = incremental;
+        }
+    }
+
     /** 向量存储配置内部类 */
     public static class VectorStore {
         /** 数据库主机地址 */
@@ -56,6 +369,12 @@ public class EmbeddingProperties {
         /** 是否创建表 */
         private boolean createTable = false;
 
+        /** 检索打分时是否复用向量表里已入库的分片向量，关闭后回到逐条调用嵌入服务 */
+        private boolean reuseStoredVectors = true;
+
+        /** 向量表索引配置 */
+        private VectorIndex index = new VectorIndex();
+
         public String getHost() {
             return host;
         }
@@ -127,6 +446,141 @@ public class EmbeddingProperties {
         public void setCreateTable(boolean createTable) {
             this.createTable = createTable;
         }
+
+        public boolean isReuseStoredVectors() {
+            return reuseStoredVectors;
+        }
+
+        public void setReuseStoredVectors(boolean reuseStoredVectors) {
+            this.reuseStoredVectors = reuseStoredVectors;
+        }
+
+        public VectorIndex getIndex() {
+            return index;
+        }
+
+        public void setIndex(VectorIndex index) {
+            this.index = index;
+        }
+    }
+
+    /** 向量表索引配置内部类
+     *
+     * 向量表由 PgVectorEmbeddingStore 在运行时建出，不在初始化脚本里，索引由启动检查统一管理：
+     * 一个 ANN 索引（HNSW 或 IVFFlat）加上常用过滤元数据的表达式索引。
+     * efSearch / probes 在向量库连接建立时作为会话参数下发，每次检索都生效。 */
+    public static class VectorIndex {
+        /** 启动时是否自动创建缺失的索引；关闭后只检查并告警 */
+        private boolean manage = true;
+
+        /** ANN 索引类型：hnsw、ivfflat 或 none */
+        private String type = "hnsw";
+
+        /** HNSW 每个节点的最大连接数 */
+        private int hnswM = 16;
+
+        /** HNSW 建索引时的候选列表大小 */
+        private int hnswEfConstruction = 64;
+
+        /** IVFFlat 聚类数，建议约为 行数/1000（百万行以上取 sqrt(行数)） */
+        private int ivfflatLists = 100;
+
+        /** HNSW 检索候选列表大小，需不小于单次检索的 LIMIT；<=0 使用服务端默认值 */
+        private int efSearch = 100;
+
+        /** IVFFlat 检索探查的聚类数；<=0 使用服务端默认值 */
+        private int probes = 10;
+
+        /** 过滤检索的迭代扫描模式（pgvector 0.8+）：relaxed_order 在过滤后不足 LIMIT 时继续扫描，结果可能略微乱序；
+         * strict_order 保持距离顺序；off 或为空不设置。低版本 pgvector 启动时自动忽略 */
+        private String iterativeScan = "relaxed_order";
+
+        /** 需要表达式索引的元数据键 */
+        private List<String> metadataKeys = new ArrayList<>(
+                List.of("DATA_SET_ID", "FILE_ID", "DOCUMENT_ID", "RAG_VERSION_ID"));
+
+        /** 建索引时的 maintenance_work_mem(MB)，<=0 使用服务端默认值 */
+        private int maintenanceWorkMemMb = 0;
+
+        public boolean isManage() {
+            return manage;
+        }
+
+        public void setManage(boolean manage) {
+            this.manage = manage;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public int getHnswM() {
+            return hnswM;
+        }
+
+        public void setHnswM(int hnswM) {
+            this.hnswM = hnswM;
+        }
+
+        public int getHnswEfConstruction() {
+            return hnswEfConstruction;
+        }
+
+        public void setHnswEfConstruction(int hnswEfConstruction) {
+            this.hnswEfConstruction = hnswEfConstruction;
+        }
+
+        public int getIvfflatLists() {
+            return ivfflatLists;
+        }
+
+        public void setIvfflatLists(int ivfflatLists) {
+            this.ivfflatLists = ivfflatLists;
+        }
+
+        public int getEfSearch() {
+            return efSearch;
+        }
+
+        public void setEfSearch(int efSearch) {
+            this.efSearch = efSearch;
+        }
+
+        public int getProbes() {
+            return probes;
+        }
+
+        public void setProbes(int probes) {
+            this.probes = probes;
+        }
+
+        public String getIterativeScan() {
+            return iterativeScan;
+        }
+
+        public void setIterativeScan(String iterativeScan) {
+            this.iterativeScan = iterativeScan;
+        }
+
+        public List<String> getMetadataKeys() {
+            return metadataKeys;
+        }
+
+        public void setMetadataKeys(List<String> metadataKeys) {
+            this.metadataKeys = metadataKeys;
+        }
+
+        public int getMaintenanceWorkMemMb() {
+            return maintenanceWorkMemMb;
+        }
+
+        public void setMaintenanceWorkMemMb(int maintenanceWorkMemMb) {
+            this.maintenanceWorkMemMb = maintenanceWorkMemMb;
+        }
     }
 
     /** 获取嵌入服务名称
@@ -200,4 +654,64 @@ public class EmbeddingProperties {
     public void setVectorStore(VectorStore vectorStore) {
         this.vectorStore = vectorStore;
     }
+
+    /** 获取向量化入库配置
+     * @return 向量化入库配置 */
+    public Ingestion getIngestion() {
+        return ingestion;
+    }
+
+    /** 设置向量化入库配置
+     * @param ingestion 向量化入库配置 */
+    public void setIngestion(Ingestion ingestion) {
+        this.ingestion = ingestion;
+    }
+
+    /** 获取查询向量缓存配置
+     * @return 查询向量缓存配置 */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /** 设置查询向量缓存配置
+     * @param queryCache 查询向量缓存配置 */
+    public void setQueryCache(QueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
+    /** 获取多查询检索配置
+     * @return 多查询检索配置 */
+    public Retrieval getRetrieval() {
+        return retrieval;
+    }
+
+    /** 设置多查询检索配置
+     * @param retrieval 多查询检索配置 */
+    public void setRetrieval(Retrieval retrieval) {
+        this.retrieval = retrieval;
+    }
+
+    /** 获取语义答案缓存配置
+     * @return 语义答案缓存配置 */
+    public AnswerCache getAnswerCache() {
+        return answerCache;
+    }
+
+    /** 设置语义答案缓存配置
+     * @param answerCache 语义答案缓存配置 */
+    public void setAnswerCache(AnswerCache answerCache) {
+        this.answerCache = answerCache;
+    }
+
+    /** 获取热点数据集内存索引配置
+     * @return 热点数据集内存索引配置 */
+    public HotDataset getHotDataset() {
+        return hotDataset;
+    }
+
+    /** 设置热点数据集内存索引配置
+     * @param hotDataset 热点数据集内存索引配置 */
+    public void setHotDataset(HotDataset hotDataset) {
+        this.hotDataset = hotDataset;
+    }
 }
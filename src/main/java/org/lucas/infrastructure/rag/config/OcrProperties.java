@@ -0,0 +1,59 @@
+package org.lucas.infrastructure.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** OCR处理配置属性类 用于绑定application.yml中的ocr配置
+ *
+ * PDF 按页调用视觉模型识别。并发受两层限制：全局工作线程数限制整个实例同时在途的 OCR 请求，
+ * 单文件并发数保证一个大文件不会占满全部线程；同一服务商（baseUrl + 模型）的请求再按速率限流。
+ *
+ * @author shilong.zang */
+@Configuration
+@ConfigurationProperties(prefix = "ocr")
+public class OcrProperties {
+
+    /** 是否并发识别页面，关闭后逐页识别 */
+    private boolean concurrentEnabled = true;
+
+    /** 全局OCR工作线程数 */
+    private int globalConcurrency = 8;
+
+    /** 单个文件同时在途的页数 */
+    private int perFileConcurrency = 4;
+
+    /** 每个服务商每秒最多发起的OCR请求数，小于等于0表示不限流 */
+    private double providerRequestsPerSecond = 2.0;
+
+    public boolean isConcurrentEnabled() {
+        return concurrentEnabled;
+    }
+
+    public void setConcurrentEnabled(boolean concurrentEnabled) {
+        this.concurrentEnabled = concurrentEnabled;
+    }
+
+    public int getGlobalConcurrency() {
+        return globalConcurrency;
+    }
+
+    public void setGlobalConcurrency(int globalConcurrency) {
+        this.globalConcurrency = globalConcurrency;
+    }
+
+    public int getPerFileConcurrency() {
+        return perFileConcurrency;
+    }
+
+    public void setPerFileConcurrency(int perFileConcurrency) {
+        this.perFileConcurrency = perFileConcurrency;
+    }
+
+    public double getProviderRequestsPerSecond() {
+        return providerRequestsPerSecond;
+    }
+
+    public void setProviderRequestsPerSecond(double providerRequestsPerSecond) {
+        this.providerRequestsPerSecond = providerRequestsPerSecond;
+    }
+}
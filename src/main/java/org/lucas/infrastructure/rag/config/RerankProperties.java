@@ -25,6 +25,59 @@ public class RerankProperties {
     /** 请求超时时间(毫秒) */
     private int timeout;
 
+    /** 每个候选文本送给重排模型的 token 上限，超出部分截断；<=0 不截断 */
+    private int maxDocumentTokens = 512;
+
+    /** 候选数超过该值时拆成多个子批并发请求；<=0 不拆分 */
+    private int batchSize = 16;
+
+    /** 子批并发请求的线程数，整个实例共用 */
+    private int concurrency = 8;
+
+    /** 单次重排的耗时预算(毫秒)，超时放弃重排、沿用向量检索顺序；<=0 不限制 */
+    private long deadlineMs = 3000;
+
+    /** 重排结果缓存配置 */
+    private Cache cache = new Cache();
+
+    /** 重排结果缓存配置内部类
+     *
+     * 以（模型，查询摘要，候选ID集合）为键缓存排序结果，同一问题在多轮对话、多查询检索里重复出现时不再请求重排服务。 */
+    public static class Cache {
+        /** 是否启用缓存 */
+        private boolean enabled = true;
+
+        /** 最大条目数 */
+        private int maxEntries = 5000;
+
+        /** 条目存活时间(分钟) */
+        private int ttlMinutes = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public int getTtlMinutes() {
+            return ttlMinutes;
+        }
+
+        public void setTtlMinutes(int ttlMinutes) {
+            this.ttlMinutes = ttlMinutes;
+        }
+    }
+
     public String getName() {
         return name;
     }
@@ -64,4 +117,44 @@ public class RerankProperties {
     public void setTimeout(int timeout) {
         this.timeout = timeout;
     }
+
+    public int getMaxDocumentTokens() {
+        return maxDocumentTokens;
+    }
+
+    public void setMaxDocumentTokens(int maxDocumentTokens) {
+        this.maxDocumentTokens = maxDocumentTokens;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    public void setDeadlineMs(long deadlineMs) {
+        this.deadlineMs = deadlineMs;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
 }
@@ -2,6 +2,7 @@ package org.lucas.infrastructure.rag.factory;
 
 import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
 import org.springframework.stereotype.Component;
+import org.lucas.infrastructure.llm.factory.ModelClientRegistry;
 
 /** 嵌入模型工厂类 根据用户配置动态创建嵌入模型实例
  * 
@@ -51,12 +52,16 @@ public class EmbeddingModelFactory {
     }
 
     /** 根据配置创建OpenAI嵌入模型实例
+     * 
+     * 相同配置复用同一个实例（见 {@link ModelClientRegistry}），连接池在多次向量化/检索之间保持温热。
      * 
      * @param config 嵌入模型配置
      * @return OpenAiEmbeddingModel实例 */
     public OpenAiEmbeddingModel createEmbeddingModel(EmbeddingConfig config) {
-        return OpenAiEmbeddingModel.builder().apiKey(config.getApiKey()).baseUrl(config.getBaseUrl())
-                .modelName(config.getModelName()).build();
+        ModelClientRegistry.ClientKey key = ModelClientRegistry.key("embedding", "OPENAI", config.getBaseUrl(),
+                config.getApiKey(), config.getModelName(), null, null);
+        return ModelClientRegistry.getOrCreate(key, () -> OpenAiEmbeddingModel.builder().apiKey(config.getApiKey())
+                .baseUrl(config.getBaseUrl()).modelName(config.getModelName()).build());
     }
 
     /** 根据参数创建OpenAI嵌入模型实例
@@ -0,0 +1,429 @@
+package org.lucas.infrastructure.rag.service;
+
+import static org.lucas.domain.rag.constant.MetadataConstant.DATA_SET_ID;
+import static org.lucas.domain.rag.constant.MetadataConstant.FILE_ID;
+import static org.lucas.domain.rag.constant.MetadataConstant.RAG_VERSION_ID;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.pgvector.PGvector;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.lucas.infrastructure.rag.config.EmbeddingProperties;
+
+/** 热点数据集内存索引
+ *
+ * 统计窗口内检索次数达到阈值的数据集，由后台线程从 pgvector 整体读入一个 {@link QuantizedVectorIndex}；
+ * 之后按 DATA_SET_ID 过滤、且涉及的数据集全部常驻的检索直接在内存里完成。常驻数据集按估算内存加权 LRU 淘汰，
+ * 分片数超过上限的数据集不加载。
+ *
+ * 写入和删除经 {@link HotDatasetEmbeddingStore} 先落 pgvector，再同步到常驻索引；加载期间发生的变更使本次加载作废，
+ * 等下次计数达标重新加载。同步只在本实例内生效，常驻时长上限保证其他实例的写入最终可见。
+ *
+ * @author shilong.zang */
+@Component
+public class HotDatasetCache {
+
+    private static final Logger log = LoggerFactory.getLogger(HotDatasetCache.class);
+
+    /** 加载时单次拉取的行数 */
+    private static final int FETCH_SIZE = 500;
+
+    private final EmbeddingProperties.HotDataset properties;
+
+    private final VectorStoreJdbc vectorStoreJdbc;
+
+    private final int dimension;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** 数据集ID -> 常驻索引，权重为估算内存(KB) */
+    private final Cache<String, Resident> residents;
+
+    /** 数据集ID -> 统计窗口内未命中内存索引的检索次数 */
+    private final Cache<String, AtomicInteger> queryCounts;
+
+    /** 分片数超过上限的数据集，常驻时长内不再尝试加载 */
+    private final Cache<String, Boolean> oversized;
+
+    /** 正在加载的数据集ID -> 加载期间是否发生过变更 */
+    private final Map<String, AtomicBoolean> loading = new ConcurrentHashMap<>();
+
+    private final ExecutorService loader;
+
+    private final AtomicLong lookups = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    public HotDatasetCache(EmbeddingProperties embeddingProperties, VectorStoreJdbc vectorStoreJdbc) {
+        this.properties = embeddingProperties.getHotDataset();
+        this.vectorStoreJdbc = vectorStoreJdbc;
+        this.dimension = embeddingProperties.getVectorStore().getDimension();
+        // 按段划分权重预算会让单个大数据集进不来，这里只用一个段
+        this.residents = CacheBuilder.newBuilder().concurrencyLevel(1)
+                .maximumWeight(Math.max(1L, properties.getMaxMemoryMb()) * 1024L)
+                .weigher((String datasetId, Resident resident) -> resident.weightKb()).build();
+        this.queryCounts = CacheBuilder.newBuilder().maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMinutes(Math.max(1, properties.getPromoteWindowMinutes()))).build();
+        this.oversized = CacheBuilder.newBuilder().maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMinutes(Math.max(1, properties.getMaxResidentMinutes()))).build();
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hot-dataset-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /** 在常驻索引上检索
+     *
+     * @param request 检索请求
+     * @return 检索结果；过滤条件不是按数据集、或有数据集未常驻时返回 null，由调用方回到 pgvector */
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Collection<String> datasetIds = datasetIdsOf(request.filter());
+        if (datasetIds == null || datasetIds.isEmpty()) {
+            return null;
+        }
+        long count = lookups.incrementAndGet();
+        if (count % 1000 == 0) {
+            log.info("Hot dataset index: lookups={}, hits={}, resident={}, loading={}", count, hits.get(),
+                    residents.size(), loading.size());
+        }
+
+        long residentSince = System.currentTimeMillis() - maxResidentMillis();
+        List<QuantizedVectorIndex> indexes = new ArrayList<>(datasetIds.size());
+        List<String> absent = new ArrayList<>();
+        for (String datasetId : datasetIds) {
+            Resident resident = residents.getIfPresent(datasetId);
+            if (resident != null && resident.loadedAt < residentSince) {
+                residents.invalidate(datasetId);
+                resident = null;
+            }
+            if (resident == null) {
+                absent.add(datasetId);
+            } else {
+                indexes.add(resident.index);
+            }
+        }
+        if (!absent.isEmpty()) {
+            absent.forEach(this::recordQuery);
+            return null;
+        }
+        hits.incrementAndGet();
+
+        float[] query = request.queryEmbedding().vector();
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        for (QuantizedVectorIndex index : indexes) {
+            matches.addAll(index.search(query, request.maxResults(), request.minScore(), null));
+        }
+        if (indexes.size() > 1) {
+            matches.sort(Comparator.comparingDouble((EmbeddingMatch<TextSegment> match) -> match.score()).reversed());
+            if (matches.size() > request.maxResults()) {
+                matches = new ArrayList<>(matches.subList(0, request.maxResults()));
+            }
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /** pgvector 写入成功后同步到常驻索引，只处理带 DATA_SET_ID 的分片
+     *
+     * @param ids 向量ID
+     * @param embeddings 向量
+     * @param segments 分片 */
+    public synchronized void onAdded(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        if (!isEnabled() || ids == null || segments == null) {
+            return;
+        }
+        Map<String, List<Integer>> byDataset = new HashMap<>();
+        for (int i = 0; i < ids.size() && i < segments.size(); i++) {
+            TextSegment segment = segments.get(i);
+            String datasetId = segment == null ? null : segment.metadata().getString(DATA_SET_ID);
+            if (datasetId != null) {
+                byDataset.computeIfAbsent(datasetId, key -> new ArrayList<>()).add(i);
+            }
+        }
+        byDataset.forEach((datasetId, positions) -> {
+            markDirty(datasetId);
+            Resident resident = residents.getIfPresent(datasetId);
+            if (resident == null) {
+                return;
+            }
+            try {
+                Set<String> added = new HashSet<>();
+                positions.forEach(i -> added.add(ids.get(i)));
+                // 指定ID写入在 pgvector 是覆盖，这里先删旧条目
+                resident.index.removeIf((id, segment) -> added.contains(id));
+                for (int i : positions) {
+                    resident.index.add(ids.get(i), embeddings.get(i).vector(), segments.get(i));
+                }
+                // 重新放入以按新大小计算权重
+                residents.put(datasetId, resident);
+            } catch (Exception e) {
+                log.warn("同步热点数据集 {} 写入失败，移出内存: {}", datasetId, e.getMessage());
+                residents.invalidate(datasetId);
+            }
+        });
+    }
+
+    /** pgvector 按条件删除成功后同步到常驻索引
+     *
+     * @param filter 删除条件 */
+    public synchronized void onRemoved(Filter filter) {
+        if (!isEnabled()) {
+            return;
+        }
+        String key = keyOf(filter);
+        if (RAG_VERSION_ID.equals(key)) {
+            // 版本向量不带 DATA_SET_ID，不会进入常驻索引
+            return;
+        }
+        if (DATA_SET_ID.equals(key)) {
+            Collection<String> datasetIds = datasetIdsOf(filter);
+            datasetIds.forEach(this::markDirty);
+            residents.invalidateAll(datasetIds);
+            return;
+        }
+        if (!FILE_ID.equals(key)) {
+            clear();
+            return;
+        }
+        loading.values().forEach(dirty -> dirty.set(true));
+        residents.asMap().forEach((datasetId, resident) -> {
+            try {
+                if (resident.index.removeIf((id, segment) -> filter.test(segment.metadata())) > 0) {
+                    residents.put(datasetId, resident);
+                }
+            } catch (Exception e) {
+                log.warn("同步热点数据集 {} 删除失败，移出内存: {}", datasetId, e.getMessage());
+                residents.invalidate(datasetId);
+            }
+        });
+    }
+
+    /** pgvector 按ID删除成功后同步到常驻索引
+     *
+     * @param ids 向量ID */
+    public synchronized void onRemovedIds(Collection<String> ids) {
+        if (!isEnabled() || ids == null || ids.isEmpty()) {
+            return;
+        }
+        Set<String> removed = new HashSet<>(ids);
+        loading.values().forEach(dirty -> dirty.set(true));
+        residents.asMap().forEach((datasetId, resident) -> {
+            if (resident.index.removeIf((id, segment) -> removed.contains(id)) > 0) {
+                residents.put(datasetId, resident);
+            }
+        });
+    }
+
+    /** 清空全部常驻索引，进行中的加载作废 */
+    public synchronized void clear() {
+        loading.values().forEach(dirty -> dirty.set(true));
+        residents.invalidateAll();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private void recordQuery(String datasetId) {
+        if (loading.containsKey(datasetId) || oversized.getIfPresent(datasetId) != null) {
+            return;
+        }
+        AtomicInteger counter;
+        try {
+            counter = queryCounts.get(datasetId, AtomicInteger::new);
+        } catch (Exception e) {
+            return;
+        }
+        if (counter.incrementAndGet() < Math.max(1, properties.getPromoteAfterQueries())) {
+            return;
+        }
+        AtomicBoolean dirty = new AtomicBoolean();
+        if (loading.putIfAbsent(datasetId, dirty) != null) {
+            return;
+        }
+        queryCounts.invalidate(datasetId);
+        try {
+            loader.execute(() -> load(datasetId, dirty));
+        } catch (RejectedExecutionException e) {
+            loading.remove(datasetId);
+        }
+    }
+
+    private void load(String datasetId, AtomicBoolean dirty) {
+        long start = System.currentTimeMillis();
+        try {
+            QuantizedVectorIndex index = read(datasetId);
+            if (index == null) {
+                oversized.put(datasetId, Boolean.TRUE);
+                log.info("数据集 {} 分片数超过 {}，不加载进内存", datasetId, properties.getMaxChunksPerDataset());
+                return;
+            }
+            synchronized (this) {
+                if (dirty.get()) {
+                    log.info("数据集 {} 加载期间发生变更，本次加载作废", datasetId);
+                    return;
+                }
+                residents.put(datasetId, new Resident(index, System.currentTimeMillis()));
+            }
+            log.info("数据集 {} 已加载进内存: chunks={}, memoryKb={}, cost={}ms", datasetId, index.size(),
+                    index.memoryBytes() / 1024, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("加载热点数据集 {} 失败: {}", datasetId, e.getMessage());
+        } finally {
+            loading.remove(datasetId);
+        }
+    }
+
+    /** 读取一个数据集的全部分片；超过分片数上限时返回 null */
+    private QuantizedVectorIndex read(String datasetId) throws SQLException {
+        int maxChunks = Math.max(1, properties.getMaxChunksPerDataset());
+        String sql = "SELECT embedding_id::text AS embedding_id, embedding::text AS embedding, text, "
+                + "metadata::text AS metadata FROM " + vectorStoreJdbc.table() + " WHERE metadata->>'"
+                + VectorStoreJdbc.metadataKey(DATA_SET_ID) + "' = ? LIMIT ?";
+        QuantizedVectorIndex index = new QuantizedVectorIndex(dimension, 256);
+        try (Connection connection = vectorStoreJdbc.getConnection()) {
+            // 关闭自动提交后 fetchSize 才生效，按批拉取，不把整个结果集读进驱动
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(FETCH_SIZE);
+                statement.setString(1, datasetId);
+                statement.setInt(2, maxChunks + 1);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        if (index.size() >= maxChunks) {
+                            return null;
+                        }
+                        String text = rs.getString("text");
+                        String embedding = rs.getString("embedding");
+                        if (text == null || embedding == null) {
+                            continue;
+                        }
+                        float[] vector = new PGvector(embedding).toArray();
+                        if (vector.length != dimension) {
+                            throw new IllegalStateException("向量维度 " + vector.length + " 与配置维度 " + dimension + " 不一致");
+                        }
+                        index.add(rs.getString("embedding_id"), vector,
+                                TextSegment.from(text, parseMetadata(rs.getString("metadata"))));
+                    }
+                }
+            } finally {
+                connection.rollback();
+            }
+        }
+        return index;
+    }
+
+    private Metadata parseMetadata(String json) {
+        if (json == null || json.isBlank()) {
+            return new Metadata();
+        }
+        try {
+            Map<String, Object> values = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {
+            });
+            Map<String, Object> supported = new HashMap<>();
+            values.forEach((key, value) -> {
+                if (value instanceof String || value instanceof Integer || value instanceof Long
+                        || value instanceof Double) {
+                    supported.put(key, value);
+                } else if (value != null) {
+                    supported.put(key, String.valueOf(value));
+                }
+            });
+            return Metadata.from(supported);
+        } catch (Exception e) {
+            throw new IllegalStateException("解析分片元数据失败: " + e.getMessage(), e);
+        }
+    }
+
+    private void markDirty(String datasetId) {
+        AtomicBoolean dirty = loading.get(datasetId);
+        if (dirty != null) {
+            dirty.set(true);
+        }
+    }
+
+    private long maxResidentMillis() {
+        return Duration.ofMinutes(Math.max(1, properties.getMaxResidentMinutes())).toMillis();
+    }
+
+    /** 按数据集过滤时的数据集ID；其他条件返回 null */
+    private static Collection<String> datasetIdsOf(Filter filter) {
+        if (filter instanceof IsIn isIn && DATA_SET_ID.equals(isIn.key())) {
+            List<String> datasetIds = new ArrayList<>();
+            isIn.comparisonValues().forEach(value -> datasetIds.add(String.valueOf(value)));
+            return datasetIds;
+        }
+        if (filter instanceof IsEqualTo isEqualTo && DATA_SET_ID.equals(isEqualTo.key())) {
+            return List.of(String.valueOf(isEqualTo.comparisonValue()));
+        }
+        return null;
+    }
+
+    /** 单键过滤条件的元数据键；其他条件返回 null */
+    private static String keyOf(Filter filter) {
+        if (filter instanceof IsIn isIn) {
+            return isIn.key();
+        }
+        if (filter instanceof IsEqualTo isEqualTo) {
+            return isEqualTo.key();
+        }
+        return null;
+    }
+
+    /** 一个常驻数据集 */
+    private static final class Resident {
+        private final QuantizedVectorIndex index;
+        private final long loadedAt;
+
+        private Resident(QuantizedVectorIndex index, long loadedAt) {
+            this.index = index;
+            this.loadedAt = loadedAt;
+        }
+
+        private int weightKb() {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(1L, index.memoryBytes() / 1024));
+        }
+    }
+}
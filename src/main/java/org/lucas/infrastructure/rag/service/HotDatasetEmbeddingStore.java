@@ -0,0 +1,93 @@
+package org.lucas.infrastructure.rag.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.util.Collection;
+import java.util.List;
+
+/** 带热点数据集内存索引的向量存储
+ *
+ * 包装 PgVectorEmbeddingStore：写入和删除先落 pgvector，成功后同步到 {@link HotDatasetCache}；
+ * 检索先查内存索引，数据集未常驻时回到 pgvector。
+ *
+ * @author shilong.zang */
+public class HotDatasetEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private final EmbeddingStore<TextSegment> delegate;
+
+    private final HotDatasetCache hotDatasetCache;
+
+    public HotDatasetEmbeddingStore(EmbeddingStore<TextSegment> delegate, HotDatasetCache hotDatasetCache) {
+        this.delegate = delegate;
+        this.hotDatasetCache = hotDatasetCache;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return delegate.add(embedding);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        delegate.add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = delegate.add(embedding, textSegment);
+        hotDatasetCache.onAdded(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return delegate.addAll(embeddings);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = delegate.addAll(embeddings, embedded);
+        hotDatasetCache.onAdded(ids, embeddings, embedded);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        delegate.addAll(ids, embeddings, embedded);
+        hotDatasetCache.onAdded(ids, embeddings, embedded);
+    }
+
+    @Override
+    public void remove(String id) {
+        delegate.remove(id);
+        hotDatasetCache.onRemovedIds(List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        delegate.removeAll(ids);
+        hotDatasetCache.onRemovedIds(ids);
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        delegate.removeAll(filter);
+        hotDatasetCache.onRemoved(filter);
+    }
+
+    @Override
+    public void removeAll() {
+        delegate.removeAll();
+        hotDatasetCache.clear();
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        EmbeddingSearchResult<TextSegment> result = hotDatasetCache.search(request);
+        return result != null ? result : delegate.search(request);
+    }
+}
@@ -0,0 +1,72 @@
+package org.lucas.infrastructure.rag.service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import org.lucas.infrastructure.rag.config.OcrProperties;
+
+/** OCR页面执行器
+ *
+ * 所有文件共用一个有界线程池，线程数即全局 OCR 并发上限；单文件并发由调用方自己控制。
+ * 每个服务商（baseUrl + 模型）一个令牌桶，任务在工作线程里先取令牌再发请求，避免突发并发触发服务商 429。
+ *
+ * @author shilong.zang */
+@Component
+public class OcrPageExecutor {
+
+    private final OcrProperties properties;
+
+    private final ExecutorService executor;
+
+    private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    public OcrPageExecutor(OcrProperties properties) {
+        this.properties = properties;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getGlobalConcurrency()), runnable -> {
+            Thread thread = new Thread(runnable, "rag-ocr-page-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** 提交一页OCR任务
+     *
+     * @param providerKey 服务商标识，用于限流
+     * @param task OCR调用
+     * @return 任务结果 */
+    public <T> CompletableFuture<T> submit(String providerKey, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            RateLimiter rateLimiter = rateLimiter(providerKey);
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
+            }
+            return task.get();
+        }, executor);
+    }
+
+    /** 单文件同时在途的页数 */
+    public int perFileConcurrency() {
+        return properties.isConcurrentEnabled() ? Math.max(1, properties.getPerFileConcurrency()) : 1;
+    }
+
+    private RateLimiter rateLimiter(String providerKey) {
+        double permitsPerSecond = properties.getProviderRequestsPerSecond();
+        if (permitsPerSecond <= 0 || providerKey == null) {
+            return null;
+        }
+        return rateLimiters.computeIfAbsent(providerKey, key -> RateLimiter.create(permitsPerSecond));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,253 @@
+package org.lucas.infrastructure.rag.service;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/** 单个数据集的 int8 量化向量索引
+ *
+ * 每个向量按自身最大绝对值对称量化到 [-127, 127]，连续存放在一个 byte 数组里，另存缩放系数和原始 L2 范数。
+ * 检索时查询向量按同样方式量化，逐条做整数点积（4 路展开，便于 JIT 向量化），换算成余弦相似度后取 top-k。
+ * 分数与 PgVectorEmbeddingStore 一致，为 (1 + cos) / 2；量化带来的余弦误差通常在 0.01 以内。
+ *
+ * 读多写少：检索读取不可变快照，不加锁；写入串行，追加时复用数组的空余容量，删除时整体压缩成新快照。
+ *
+ * @author shilong.zang */
+public final class QuantizedVectorIndex {
+
+    /** 每条向量除量化码外的固定开销：缩放系数、范数、ID 和分片对象的引用与对象头 */
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final int dimension;
+
+    private volatile Snapshot snapshot;
+
+    public QuantizedVectorIndex(int dimension, int initialCapacity) {
+        this.dimension = dimension;
+        this.snapshot = new Snapshot(0, Math.max(16, initialCapacity), dimension);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return snapshot.size;
+    }
+
+    /** 追加一条向量
+     *
+     * @param id 向量ID（embedding_id）
+     * @param vector 原始向量
+     * @param segment 分片文本与元数据 */
+    public synchronized void add(String id, float[] vector, TextSegment segment) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度 " + vector.length + " 与索引维度 " + dimension + " 不一致");
+        }
+        Snapshot current = snapshot;
+        Snapshot target = current.size < current.ids.length ? current : current.grow(dimension);
+        int slot = current.size;
+        float scale = quantize(vector, target.codes, slot * dimension);
+        target.scales[slot] = scale;
+        target.norms[slot] = norm(vector);
+        target.ids[slot] = id;
+        target.segments[slot] = segment;
+        // 新快照发布前，读线程只会看到 size 以内的槽位
+        snapshot = target.withSize(slot + 1);
+    }
+
+    /** 删除满足条件的向量
+     *
+     * @param condition 判断条件，参数为向量ID和分片
+     * @return 删除的条数 */
+    public synchronized int removeIf(EntryPredicate condition) {
+        Snapshot current = snapshot;
+        List<Integer> kept = new ArrayList<>(current.size);
+        for (int i = 0; i < current.size; i++) {
+            if (!condition.test(current.ids[i], current.segments[i])) {
+                kept.add(i);
+            }
+        }
+        int removed = current.size - kept.size();
+        if (removed == 0) {
+            return 0;
+        }
+        Snapshot compacted = new Snapshot(0, Math.max(16, kept.size()), dimension);
+        for (int target = 0; target < kept.size(); target++) {
+            int source = kept.get(target);
+            System.arraycopy(current.codes, source * dimension, compacted.codes, target * dimension, dimension);
+            compacted.scales[target] = current.scales[source];
+            compacted.norms[target] = current.norms[source];
+            compacted.ids[target] = current.ids[source];
+            compacted.segments[target] = current.segments[source];
+        }
+        snapshot = compacted.withSize(kept.size());
+        return removed;
+    }
+
+    /** 检索
+     *
+     * @param query 查询向量
+     * @param maxResults 最多返回条数
+     * @param minScore 最低分数，口径为 (1 + cos) / 2
+     * @param filter 分片过滤条件，可为 null
+     * @return 按分数从高到低的匹配 */
+    public List<EmbeddingMatch<TextSegment>> search(float[] query, int maxResults, double minScore,
+            Predicate<TextSegment> filter) {
+        Snapshot current = snapshot;
+        if (query.length != dimension || current.size == 0 || maxResults <= 0) {
+            return List.of();
+        }
+        byte[] queryCodes = new byte[dimension];
+        float queryScale = quantize(query, queryCodes, 0);
+        float queryNorm = norm(query);
+        if (queryNorm == 0f) {
+            return List.of();
+        }
+
+        PriorityQueue<ScoredSlot> top = new PriorityQueue<>(maxResults + 1,
+                (a, b) -> Double.compare(a.score, b.score));
+        byte[] codes = current.codes;
+        for (int slot = 0; slot < current.size; slot++) {
+            if (current.norms[slot] == 0f) {
+                continue;
+            }
+            long dot = dot(queryCodes, codes, slot * dimension, dimension);
+            double cosine = dot * (double) queryScale * current.scales[slot] / (queryNorm * current.norms[slot]);
+            double score = RelevanceScore.fromCosineSimilarity(Math.max(-1.0, Math.min(1.0, cosine)));
+            if (score < minScore || (top.size() >= maxResults && score <= top.peek().score)) {
+                continue;
+            }
+            if (filter != null && !filter.test(current.segments[slot])) {
+                continue;
+            }
+            top.add(new ScoredSlot(slot, score));
+            if (top.size() > maxResults) {
+                top.poll();
+            }
+        }
+
+        List<ScoredSlot> ordered = new ArrayList<>(top);
+        ordered.sort((a, b) -> Double.compare(b.score, a.score));
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(ordered.size());
+        for (ScoredSlot scored : ordered) {
+            matches.add(new EmbeddingMatch<>(scored.score, current.ids[scored.slot], null,
+                    current.segments[scored.slot]));
+        }
+        return matches;
+    }
+
+    /** 估算占用内存(字节)，用于按预算淘汰 */
+    public long memoryBytes() {
+        Snapshot current = snapshot;
+        long bytes = (long) current.ids.length * dimension;
+        for (int i = 0; i < current.size; i++) {
+            TextSegment segment = current.segments[i];
+            bytes += ENTRY_OVERHEAD_BYTES + (segment != null && segment.text() != null ? segment.text().length() * 2L
+                    : 0) + (segment != null ? segment.metadata().toMap().size() * 96L : 0);
+        }
+        return bytes;
+    }
+
+    /** 对称量化，返回缩放系数：原始值 ≈ 量化码 × 缩放系数 */
+    private static float quantize(float[] vector, byte[] codes, int offset) {
+        float maxAbs = 0f;
+        for (float value : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        if (maxAbs == 0f) {
+            Arrays.fill(codes, offset, offset + vector.length, (byte) 0);
+            return 0f;
+        }
+        float scale = maxAbs / 127f;
+        for (int i = 0; i < vector.length; i++) {
+            codes[offset + i] = (byte) Math.round(vector[i] / scale);
+        }
+        return scale;
+    }
+
+    private static float norm(float[] vector) {
+        double sum = 0.0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    /** 整数点积，4 个独立累加器打断依赖链；int8 × int8 累加 4096 维也不会溢出 int */
+    private static long dot(byte[] query, byte[] codes, int offset, int length) {
+        int s0 = 0;
+        int s1 = 0;
+        int s2 = 0;
+        int s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += query[i] * codes[offset + i];
+            s1 += query[i + 1] * codes[offset + i + 1];
+            s2 += query[i + 2] * codes[offset + i + 2];
+            s3 += query[i + 3] * codes[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += query[i] * codes[offset + i];
+        }
+        return (long) s0 + s1 + s2 + s3;
+    }
+
+    /** 删除条件 */
+    @FunctionalInterface
+    public interface EntryPredicate {
+        boolean test(String id, TextSegment segment);
+    }
+
+    /** 不可变快照：size 以内的槽位对读线程可见，之后的容量留给追加 */
+    private static final class Snapshot {
+        private final int size;
+        private final byte[] codes;
+        private final float[] scales;
+        private final float[] norms;
+        private final String[] ids;
+        private final TextSegment[] segments;
+
+        private Snapshot(int size, int capacity, int dimension) {
+            this(size, new byte[capacity * dimension], new float[capacity], new float[capacity], new String[capacity],
+                    new TextSegment[capacity]);
+        }
+
+        private Snapshot(int size, byte[] codes, float[] scales, float[] norms, String[] ids,
+                TextSegment[] segments) {
+            this.size = size;
+            this.codes = codes;
+            this.scales = scales;
+            this.norms = norms;
+            this.ids = ids;
+            this.segments = segments;
+        }
+
+        private Snapshot withSize(int newSize) {
+            return new Snapshot(newSize, codes, scales, norms, ids, segments);
+        }
+
+        /** 容量翻倍，复制已有槽位 */
+        private Snapshot grow(int dimension) {
+            int capacity = ids.length * 2;
+            return new Snapshot(size, Arrays.copyOf(codes, capacity * dimension), Arrays.copyOf(scales, capacity),
+                    Arrays.copyOf(norms, capacity), Arrays.copyOf(ids, capacity),
+                    Arrays.copyOf(segments, capacity));
+        }
+    }
+
+    private static final class ScoredSlot {
+        private final int slot;
+        private final double score;
+
+        private ScoredSlot(int slot, double score) {
+            this.slot = slot;
+            this.score = score;
+        }
+    }
+}
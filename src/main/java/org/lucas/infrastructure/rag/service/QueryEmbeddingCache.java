@@ -0,0 +1,214 @@
+package org.lucas.infrastructure.rag.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.lucas.infrastructure.rag.config.EmbeddingProperties;
+import org.lucas.infrastructure.rag.factory.EmbeddingModelFactory;
+
+/** 查询向量缓存
+ *
+ * 一次 RAG 问答里同一段文本会被反复向量化：ragDoc 的回退检索再算一遍问题向量，多查询检索、
+ * 相关性判断、RAG 工具调用之间的查询也大量重叠。向量化是检索链路里最主要的外部耗时，
+ * 这里按（嵌入模型，归一化文本）缓存结果，所有检索入口共用。
+ *
+ * 容量按内存预算计算（向量维度 × 4 字节 + 文本长度 × 2 字节），写入后按 TTL 过期；命中率、淘汰次数见 {@link #stats()}，
+ * 每 {@value #STATS_LOG_INTERVAL} 次查找打印一次汇总日志。
+ * 返回的数组是共享的，调用方不能修改。
+ *
+ * @author shilong.zang */
+@Service
+public class QueryEmbeddingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryEmbeddingCache.class);
+
+    /** 每个条目的固定开销估算（键对象、数组头、缓存节点） */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    /** 汇总日志的间隔查找次数 */
+    private static final int STATS_LOG_INTERVAL = 1000;
+
+    private final AtomicLong lookups = new AtomicLong();
+
+    private final EmbeddingModelFactory embeddingModelFactory;
+
+    private final EmbeddingProperties.QueryCache properties;
+
+    private final Cache<CacheKey, float[]> cache;
+
+    public QueryEmbeddingCache(EmbeddingModelFactory embeddingModelFactory, EmbeddingProperties embeddingProperties) {
+        this.embeddingModelFactory = embeddingModelFactory;
+        this.properties = embeddingProperties.getQueryCache();
+        this.cache = CacheBuilder.newBuilder().maximumWeight(properties.getMaxMemoryMb() * 1024L * 1024L)
+                .weigher((CacheKey key, float[] vector) -> ENTRY_OVERHEAD_BYTES + vector.length * 4
+                        + key.text.length() * 2)
+                .expireAfterWrite(Duration.ofMinutes(properties.getTtlMinutes())).recordStats().build();
+    }
+
+    /** 获取文本向量，命中缓存时不再调用嵌入服务
+     *
+     * @param embeddingConfig 嵌入模型配置
+     * @param text 文本
+     * @return 向量（共享数组，只读） */
+    public float[] embed(EmbeddingModelFactory.EmbeddingConfig embeddingConfig, String text) {
+        EmbeddingModel embeddingModel = embeddingModelFactory.createEmbeddingModel(embeddingConfig);
+        String normalized = normalize(text);
+
+        if (!properties.isEnabled() || normalized.length() > properties.getMaxTextLength()) {
+            return embeddingModel.embed(normalized).content().vector();
+        }
+
+        CacheKey key = new CacheKey(embeddingConfig.getBaseUrl() + "#" + embeddingConfig.getModelName(),
+                normalized);
+        recordLookups(1);
+        try {
+            return cache.get(key, () -> embeddingModel.embed(normalized).content().vector());
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("文本向量化失败", e.getCause());
+        }
+    }
+
+    /** 批量获取文本向量：已缓存的直接返回，其余去重后一次 embedAll
+     *
+     * @param embeddingConfig 嵌入模型配置
+     * @param texts 文本
+     * @return 与 texts 一一对应的向量（共享数组，只读） */
+    public List<float[]> embedAll(EmbeddingModelFactory.EmbeddingConfig embeddingConfig, List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        String model = embeddingConfig.getBaseUrl() + "#" + embeddingConfig.getModelName();
+        List<String> normalized = texts.stream().map(QueryEmbeddingCache::normalize).toList();
+
+        Map<String, float[]> vectors = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        int looked = 0;
+        for (String text : normalized) {
+            if (vectors.containsKey(text) || missing.contains(text)) {
+                continue;
+            }
+            float[] cached = null;
+            if (cacheable(text)) {
+                cached = cache.getIfPresent(new CacheKey(model, text));
+                looked++;
+            }
+            if (cached != null) {
+                vectors.put(text, cached);
+            } else {
+                missing.add(text);
+            }
+        }
+        recordLookups(looked);
+
+        if (!missing.isEmpty()) {
+            EmbeddingModel embeddingModel = embeddingModelFactory.createEmbeddingModel(embeddingConfig);
+            List<Embedding> embeddings = embeddingModel.embedAll(missing.stream().map(TextSegment::from).toList())
+                    .content();
+            for (int i = 0; i < missing.size(); i++) {
+                String text = missing.get(i);
+                float[] vector = embeddings.get(i).vector();
+                vectors.put(text, vector);
+                if (cacheable(text)) {
+                    cache.put(new CacheKey(model, text), vector);
+                }
+            }
+        }
+        return normalized.stream().map(vectors::get).toList();
+    }
+
+    /** 批量向量化但不经过缓存，用于只算一次的文本（如回答里的句子），避免挤掉真正的查询条目
+     *
+     * @param embeddingConfig 嵌入模型配置
+     * @param texts 文本
+     * @return 与 texts 一一对应的向量 */
+    public List<float[]> embedAllUncached(EmbeddingModelFactory.EmbeddingConfig embeddingConfig, List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        EmbeddingModel embeddingModel = embeddingModelFactory.createEmbeddingModel(embeddingConfig);
+        List<Embedding> embeddings = embeddingModel
+                .embedAll(texts.stream().map(QueryEmbeddingCache::normalize).map(TextSegment::from).toList())
+                .content();
+        return embeddings.stream().map(Embedding::vector).toList();
+    }
+
+    /** 累计查找次数，每跨过 {@value #STATS_LOG_INTERVAL} 次打印一次命中率和淘汰次数 */
+    private void recordLookups(int count) {
+        if (count == 0) {
+            return;
+        }
+        long total = lookups.addAndGet(count);
+        if ((total - count) / STATS_LOG_INTERVAL != total / STATS_LOG_INTERVAL) {
+            CacheStats stats = cache.stats();
+            log.info("Query embedding cache: size={}, hitRate={}, hits={}, misses={}, evictions={}", cache.size(),
+                    String.format("%.3f", stats.hitRate()), stats.hitCount(), stats.missCount(),
+                    stats.evictionCount());
+        }
+    }
+
+    private boolean cacheable(String normalized) {
+        return properties.isEnabled() && normalized.length() <= properties.getMaxTextLength();
+    }
+
+    /** 命中率等统计 */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /** 当前缓存条目数 */
+    public long size() {
+        return cache.size();
+    }
+
+    /** 归一化：去掉首尾空白并把连续空白压成一个空格，让仅有空白差异的查询共用一个条目 */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ");
+    }
+
+    private static final class CacheKey {
+        private final String model;
+        private final String text;
+
+        private CacheKey(String model, String text) {
+            this.model = model;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey that)) {
+                return false;
+            }
+            return model.equals(that.model) && text.equals(that.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(model, text);
+        }
+    }
+}
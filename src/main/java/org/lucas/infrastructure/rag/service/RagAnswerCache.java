@@ -0,0 +1,189 @@
+package org.lucas.infrastructure.rag.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.lucas.infrastructure.rag.config.EmbeddingProperties;
+import org.lucas.infrastructure.rag.utils.VectorSimilarity;
+
+/** RAG 语义答案缓存
+ *
+ * 缓存分区键由（检索范围，数据集及其内容版本，检索与生成参数签名）组成，分区内保存问题向量、检索结果、最终答案
+ * 和证据覆盖，查找时取余弦相似度最高且不低于阈值的一条。分区键不含用户：访问权限在查找前已校验，
+ * 同一数据集上的相似问题跨用户共用答案。
+ *
+ * 内容版本是每个数据集的代数：文件删除、重新处理、向量入库时调用 {@link #invalidateDataset(String)} 递增代数，
+ * 旧分区的键不会再被算出，随 LRU 和 TTL 自然淘汰。代数在查找前取定，生成期间数据集发生变化时答案写入旧分区，
+ * 不会被之后的请求命中。代数只在本实例内递增，多实例部署时其他实例依赖 TTL 失效。
+ *
+ * @author shilong.zang */
+@Component
+public class RagAnswerCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RagAnswerCache.class);
+
+    private final EmbeddingProperties.AnswerCache properties;
+
+    private final Cache<String, Partition> partitions;
+
+    /** 数据集ID -> 内容代数；只在失效时写入，条目数不超过发生过变化的数据集数 */
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong generationSequence = new AtomicLong();
+
+    private final AtomicLong lookups = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    public RagAnswerCache(EmbeddingProperties embeddingProperties) {
+        this.properties = embeddingProperties.getAnswerCache();
+        this.partitions = CacheBuilder.newBuilder().maximumSize(Math.max(1, properties.getMaxPartitions()))
+                .expireAfterAccess(Duration.ofMinutes(properties.getTtlMinutes())).build();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /** 计算缓存分区键，包含各数据集当前的内容代数
+     *
+     * @param scope 检索范围，如 file:文件ID、datasets、snapshot:安装ID@版本ID；内容不可变的范围由调用方带上版本
+     * @param datasetIds 检索的数据集，内容随代数失效；不可变范围传空列表
+     * @param signature 影响检索和生成结果的参数（嵌入模型、对话模型、maxResults、minScore、是否重排等）
+     * @return 分区键 */
+    public String partitionKey(String scope, List<String> datasetIds, String signature) {
+        StringBuilder key = new StringBuilder(scope).append('|');
+        datasetIds.stream().distinct().sorted().forEach(
+                datasetId -> key.append(datasetId).append('@').append(generations.getOrDefault(datasetId, 0L))
+                        .append(','));
+        return key.append('|').append(signature).toString();
+    }
+
+    /** 查找相似问题的答案
+     *
+     * @param partitionKey {@link #partitionKey} 算出的分区键
+     * @param questionVector 问题向量
+     * @return 命中的答案；未启用或未命中时为 null */
+    public CachedAnswer lookup(String partitionKey, float[] questionVector) {
+        if (!isEnabled() || questionVector == null) {
+            return null;
+        }
+        long count = lookups.incrementAndGet();
+        Partition partition = partitions.getIfPresent(partitionKey);
+        CachedAnswer hit = partition == null ? null : partition.nearest(questionVector,
+                properties.getSimilarityThreshold(), System.currentTimeMillis() - ttlMillis());
+        if (hit != null) {
+            hits.incrementAndGet();
+        }
+        if (count % 100 == 0) {
+            log.info("RAG answer cache: lookups={}, hits={}, partitions={}", count, hits.get(), partitions.size());
+        }
+        return hit;
+    }
+
+    /** 写入答案
+     *
+     * @param partitionKey 查找时使用的分区键
+     * @param questionVector 问题向量
+     * @param documentIds 检索到的文档ID
+     * @param retrievalPayload 检索结果事件的载荷，命中时原样回放
+     * @param answer 最终答案
+     * @param coverage 证据覆盖摘要，可为 null */
+    public void put(String partitionKey, float[] questionVector, List<String> documentIds, String retrievalPayload,
+            String answer, String coverage) {
+        if (!isEnabled() || questionVector == null || answer == null || answer.isBlank()
+                || answer.length() > properties.getMaxAnswerLength()) {
+            return;
+        }
+        try {
+            partitions.get(partitionKey, Partition::new).add(
+                    new CachedAnswer(questionVector, List.copyOf(documentIds), retrievalPayload, answer, coverage),
+                    Math.max(1, properties.getMaxEntriesPerPartition()));
+        } catch (Exception e) {
+            log.warn("写入语义答案缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /** 数据集内容发生变化（文件删除、重新处理、向量入库），使该数据集相关的缓存答案失效
+     *
+     * @param datasetId 数据集ID */
+    public void invalidateDataset(String datasetId) {
+        if (datasetId != null) {
+            generations.put(datasetId, generationSequence.incrementAndGet());
+        }
+    }
+
+    private long ttlMillis() {
+        return Duration.ofMinutes(properties.getTtlMinutes()).toMillis();
+    }
+
+    /** 一个分区内的答案，按写入顺序保存，超出上限时淘汰最早的 */
+    private static final class Partition {
+        private final Deque<CachedAnswer> answers = new ArrayDeque<>();
+
+        private synchronized void add(CachedAnswer answer, int maxEntries) {
+            answers.addLast(answer);
+            while (answers.size() > maxEntries) {
+                answers.removeFirst();
+            }
+        }
+
+        private synchronized CachedAnswer nearest(float[] questionVector, double threshold, long notBefore) {
+            answers.removeIf(answer -> answer.createdAt < notBefore);
+            CachedAnswer best = null;
+            double bestScore = threshold;
+            for (CachedAnswer answer : answers) {
+                double score = VectorSimilarity.cosine(questionVector, answer.questionVector);
+                if (score >= bestScore) {
+                    best = answer;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+    }
+
+    /** 缓存的答案 */
+    public static final class CachedAnswer {
+        private final float[] questionVector;
+        private final List<String> documentIds;
+        private final String retrievalPayload;
+        private final String answer;
+        private final String coverage;
+        private final long createdAt = System.currentTimeMillis();
+
+        private CachedAnswer(float[] questionVector, List<String> documentIds, String retrievalPayload,
+                String answer, String coverage) {
+            this.questionVector = questionVector;
+            this.documentIds = documentIds;
+            this.retrievalPayload = retrievalPayload;
+            this.answer = answer;
+            this.coverage = coverage;
+        }
+
+        public List<String> getDocumentIds() {
+            return documentIds;
+        }
+
+        public String getRetrievalPayload() {
+            return retrievalPayload;
+        }
+
+        public String getAnswer() {
+            return answer;
+        }
+
+        public String getCoverage() {
+            return coverage;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package org.lucas.infrastructure.rag.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.lucas.domain.rag.dto.req.RerankRequest;
+import org.lucas.domain.rag.dto.resp.RerankResponse;
+import org.lucas.infrastructure.rag.api.RerankForestApi;
+import org.lucas.infrastructure.rag.config.RerankProperties;
+
+/** 重排服务客户端
+ *
+ * 重排常常是检索链路里最慢的一步，这里在调用重排 API 之外做四件事：
+ * 1. 按（模型，查询摘要，候选ID集合）缓存排序结果；
+ * 2. 候选文本按 token 预算截断，控制请求体大小；
+ * 3. 候选较多时拆成子批并发请求，按相关性分数合并；
+ * 4. 整次重排有耗时预算，超时或失败时返回 null，由调用方沿用向量检索顺序。
+ *
+ * 请求数、缓存命中、超时、失败和耗时见 {@link #stats()}，每 {@value #STATS_LOG_INTERVAL} 次请求打印一次汇总日志。
+ *
+ * @author shilong.zang */
+@Component
+public class RerankClient {
+
+    private static final Logger log = LoggerFactory.getLogger(RerankClient.class);
+
+    /** 每多少次请求打印一次统计 */
+    private static final int STATS_LOG_INTERVAL = 100;
+
+    private final RerankForestApi rerankForestApi;
+
+    private final RerankProperties properties;
+
+    private final ExecutorService executor;
+
+    private final Cache<String, List<String>> cache;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    public RerankClient(RerankForestApi rerankForestApi, RerankProperties properties) {
+        this.rerankForestApi = rerankForestApi;
+        this.properties = properties;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getConcurrency()), runnable -> {
+            Thread thread = new Thread(runnable, "rag-rerank-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        RerankProperties.Cache cacheProperties = properties.getCache();
+        this.cache = CacheBuilder.newBuilder().maximumSize(Math.max(1, cacheProperties.getMaxEntries()))
+                .expireAfterWrite(Duration.ofMinutes(cacheProperties.getTtlMinutes())).build();
+    }
+
+    /** 重排候选
+     *
+     * @param query 查询
+     * @param candidateIds 候选ID，与 documents 一一对应，用于缓存；含空值或重复时不走缓存
+     * @param documents 候选文本
+     * @return 按相关性从高到低的候选下标（重排服务未返回的候选不在其中）；超时或失败时为 null */
+    public List<Integer> rerank(String query, List<String> candidateIds, List<String> documents) {
+        long start = System.nanoTime();
+        long count = requests.incrementAndGet();
+        try {
+            String cacheKey = cacheKey(query, candidateIds);
+            if (cacheKey != null) {
+                List<String> cached = cache.getIfPresent(cacheKey);
+                if (cached != null) {
+                    cacheHits.incrementAndGet();
+                    return toIndexes(cached, candidateIds);
+                }
+            }
+
+            List<Integer> ranked = rerankWithDeadline(query, documents);
+            if (ranked != null && cacheKey != null) {
+                cache.put(cacheKey, ranked.stream().map(candidateIds::get).toList());
+            }
+            return ranked;
+        } finally {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            totalLatencyMillis.addAndGet(elapsed);
+            maxLatencyMillis.accumulateAndGet(elapsed, Math::max);
+            log.debug("Rerank of {} candidates took {}ms", documents.size(), elapsed);
+            if (count % STATS_LOG_INTERVAL == 0) {
+                log.info("Rerank stats: {}", stats());
+            }
+        }
+    }
+
+    /** 累计统计 */
+    public RerankStats stats() {
+        long total = requests.get();
+        return new RerankStats(total, cacheHits.get(), timeouts.get(), failures.get(),
+                total == 0 ? 0 : totalLatencyMillis.get() / total, maxLatencyMillis.get());
+    }
+
+    private List<Integer> rerankWithDeadline(String query, List<String> documents) {
+        List<String> truncated = documents.stream().map(this::truncate).toList();
+        int batchSize = properties.getBatchSize() > 0 ? properties.getBatchSize() : truncated.size();
+        long deadlineMs = properties.getDeadlineMs();
+
+        List<CompletableFuture<List<ScoredIndex>>> batches = new ArrayList<>();
+        for (int from = 0; from < truncated.size(); from += batchSize) {
+            int offset = from;
+            List<String> batch = truncated.subList(from, Math.min(from + batchSize, truncated.size()));
+            // 没有预算、也不拆分时直接在调用线程请求
+            boolean inline = deadlineMs <= 0 && truncated.size() <= batchSize;
+            batches.add(CompletableFuture.supplyAsync(() -> callRerank(query, batch, offset),
+                    inline ? Runnable::run : executor));
+        }
+
+        try {
+            CompletableFuture<Void> all = CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]));
+            if (deadlineMs > 0) {
+                all.get(deadlineMs, TimeUnit.MILLISECONDS);
+            } else {
+                all.get();
+            }
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            batches.forEach(batch -> batch.cancel(true));
+            log.warn("Rerank exceeded {}ms budget for {} candidates, keeping vector order", deadlineMs,
+                    documents.size());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batches.forEach(batch -> batch.cancel(true));
+            return null;
+        } catch (ExecutionException e) {
+            failures.incrementAndGet();
+            log.warn("Rerank failed, keeping vector order: {}", e.getCause() != null ? e.getCause().getMessage()
+                    : e.getMessage());
+            return null;
+        }
+
+        List<ScoredIndex> merged = new ArrayList<>();
+        batches.forEach(batch -> merged.addAll(batch.join()));
+        if (merged.isEmpty()) {
+            return null;
+        }
+        // 各子批的相关性分数是同一查询下的绝对分数，可直接合并；有缺分数的结果时按批内名次交错合并
+        boolean scored = merged.stream().allMatch(item -> item.score != null);
+        merged.sort(scored
+                ? Comparator.comparingDouble((ScoredIndex item) -> item.score).reversed()
+                : Comparator.comparingInt((ScoredIndex item) -> item.rank).thenComparingInt(item -> item.index));
+        return merged.stream().map(item -> item.index).toList();
+    }
+
+    /** 请求一个子批，下标换算为全局下标 */
+    private List<ScoredIndex> callRerank(String query, List<String> documents, int offset) {
+        RerankRequest rerankRequest = new RerankRequest();
+        rerankRequest.setModel(properties.getModel());
+        rerankRequest.setQuery(query);
+        rerankRequest.setDocuments(documents);
+
+        RerankResponse response = rerankForestApi.rerank(properties.getApiUrl(), properties.getApiKey(),
+                rerankRequest);
+        List<ScoredIndex> results = new ArrayList<>();
+        if (response == null || response.getResults() == null) {
+            return results;
+        }
+        int rank = 0;
+        for (RerankResponse.SearchResult result : response.getResults()) {
+            Integer index = result.getIndex();
+            if (index != null && index >= 0 && index < documents.size()) {
+                results.add(new ScoredIndex(offset + index, result.getRelevanceScore(), rank++));
+            }
+        }
+        return results;
+    }
+
+    /** 按 token 预算截断：ASCII 字符约 4 个一个 token，其余字符（中文等）按 1 个 token 计 */
+    private String truncate(String text) {
+        int maxTokens = properties.getMaxDocumentTokens();
+        if (text == null || maxTokens <= 0 || text.length() <= maxTokens) {
+            return text;
+        }
+        double budget = maxTokens;
+        for (int i = 0; i < text.length(); i++) {
+            budget -= text.charAt(i) < 128 ? 0.25 : 1.0;
+            if (budget < 0) {
+                return text.substring(0, i);
+            }
+        }
+        return text;
+    }
+
+    private String cacheKey(String query, List<String> candidateIds) {
+        if (!properties.getCache().isEnabled() || query == null || candidateIds == null
+                || candidateIds.contains(null) || new HashSet<>(candidateIds).size() != candidateIds.size()) {
+            return null;
+        }
+        List<String> sortedIds = new ArrayList<>(candidateIds);
+        sortedIds.sort(null);
+        return properties.getModel() + "|" + Hashing.sha256().hashString(query.trim(), StandardCharsets.UTF_8) + "|"
+                + Hashing.sha256().hashString(String.join(",", sortedIds), StandardCharsets.UTF_8);
+    }
+
+    private static List<Integer> toIndexes(List<String> rankedIds, List<String> candidateIds) {
+        Map<String, Integer> indexById = new HashMap<>();
+        for (int i = 0; i < candidateIds.size(); i++) {
+            indexById.put(candidateIds.get(i), i);
+        }
+        return rankedIds.stream().map(indexById::get).toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class ScoredIndex {
+        private final int index;
+        private final Double score;
+        private final int rank;
+
+        private ScoredIndex(int index, Double score, int rank) {
+            this.index = index;
+            this.score = score;
+            this.rank = rank;
+        }
+    }
+
+    /** 重排统计快照 */
+    public static final class RerankStats {
+        private final long requests;
+        private final long cacheHits;
+        private final long timeouts;
+        private final long failures;
+        private final long averageLatencyMillis;
+        private final long maxLatencyMillis;
+
+        private RerankStats(long requests, long cacheHits, long timeouts, long failures, long averageLatencyMillis,
+                long maxLatencyMillis) {
+            this.requests = requests;
+            this.cacheHits = cacheHits;
+            this.timeouts = timeouts;
+            this.failures = failures;
+            this.averageLatencyMillis = averageLatencyMillis;
+            this.maxLatencyMillis = maxLatencyMillis;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        /** 缓存命中率 */
+        public double getCacheHitRate() {
+            return requests == 0 ? 0 : (double) cacheHits / requests;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getAverageLatencyMillis() {
+            return averageLatencyMillis;
+        }
+
+        public long getMaxLatencyMillis() {
+            return maxLatencyMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d, cacheHitRate=%.2f, timeouts=%d, failures=%d, avgMs=%d, maxMs=%d",
+                    requests, getCacheHitRate(), timeouts, failures, averageLatencyMillis, maxLatencyMillis);
+        }
+    }
+}
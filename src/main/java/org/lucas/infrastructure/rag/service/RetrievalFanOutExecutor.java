@@ -0,0 +1,68 @@
+package org.lucas.infrastructure.rag.service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import org.lucas.infrastructure.rag.config.EmbeddingProperties;
+
+/** 多查询检索执行器
+ *
+ * 一次问答的多条查询各自做一次 ANN 检索，这里把它们并发提交到一个有界线程池，整体耗时取决于最慢的那条查询。
+ * 线程数即整个实例同时在途的多查询检索上限，防止并发问答把数据库连接池打满。
+ * 任务内部不能再向本执行器提交任务，否则线程池占满时会互相等待。
+ *
+ * @author shilong.zang */
+@Component
+public class RetrievalFanOutExecutor {
+
+    private final ExecutorService executor;
+
+    public RetrievalFanOutExecutor(EmbeddingProperties embeddingProperties) {
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, embeddingProperties.getRetrieval().getFanOutConcurrency());
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "rag-retrieval-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** 并发执行全部任务，按提交顺序返回结果；只有一个任务时直接在调用线程执行
+     *
+     * @param tasks 检索任务
+     * @return 各任务结果 */
+    public <T> List<T> invokeAll(List<Supplier<T>> tasks) {
+        if (tasks.size() == 1) {
+            return List.of(tasks.get(0).get());
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        for (Supplier<T> task : tasks) {
+            futures.add(CompletableFuture.supplyAsync(task, executor));
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("并发检索失败", e.getCause());
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,109 @@
+package org.lucas.infrastructure.rag.service;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/** 已入库向量复制
+ *
+ * 发布版本时把分片向量在向量库内整批复制成新行，不经过 JVM、也不重新调用嵌入服务。
+ * 新行只保留指定的元数据键，并带上调用方给出的分区标记，之后可以按标记做过滤检索。
+ *
+ * 同一个键值可能对应多行（重试或非增量重新向量化留下的旧行），只复制文本与调用方给出的当前内容一致的行；
+ * 仍有多行时按 embedding_id 取第一行，结果可复现。
+ *
+ * @author shilong.zang */
+@Service
+public class StoredEmbeddingCopier {
+
+    private static final Logger log = LoggerFactory.getLogger(StoredEmbeddingCopier.class);
+
+    /** 单条 SQL 复制的行数上限 */
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final VectorStoreJdbc vectorStoreJdbc;
+
+    public StoredEmbeddingCopier(VectorStoreJdbc vectorStoreJdbc) {
+        this.vectorStoreJdbc = vectorStoreJdbc;
+    }
+
+    /** 按元数据键定位源行，复制为指定 embedding_id 的新行
+     *
+     * @param sourceKey 定位源行的元数据键，例如 DOCUMENT_ID
+     * @param targetIdBySourceId 源行的键值 -> 新行 embedding_id（UUID）
+     * @param textBySourceId 源行的键值 -> 当前内容，文本不一致的源行不复制
+     * @param sourceIdKey 新行中记录源键值的元数据键
+     * @param keptKeys 从源行保留的元数据键
+     * @param metadata 新行追加的元数据
+     * @return 实际写入的新行 embedding_id；找不到内容一致的源行的不在结果里 */
+    public Set<String> copy(String sourceKey, Map<String, String> targetIdBySourceId,
+            Map<String, String> textBySourceId, String sourceIdKey, Collection<String> keptKeys,
+            Map<String, String> metadata) {
+        Set<String> copied = new HashSet<>();
+        if (targetIdBySourceId == null || targetIdBySourceId.isEmpty()) {
+            return copied;
+        }
+        String table = vectorStoreJdbc.table();
+        String sql = "INSERT INTO " + table + " (embedding_id, embedding, text, metadata) "
+                + "SELECT DISTINCT ON (m.source_id) m.target_id::uuid, v.embedding, v.text, "
+                + "(COALESCE((SELECT jsonb_object_agg(e.key, e.value) FROM jsonb_each(v.metadata::jsonb) e "
+                + "WHERE e.key = ANY(?)), '{}'::jsonb) || jsonb_build_object(?::text, m.source_id) "
+                + "|| jsonb_object(?::text[], ?::text[]))::json "
+                + "FROM unnest(?::text[], ?::text[], ?::text[]) AS m(source_id, target_id, source_text) "
+                + "JOIN " + table + " v ON v.metadata->>'" + VectorStoreJdbc.metadataKey(sourceKey)
+                + "' = m.source_id AND v.text = m.source_text ORDER BY m.source_id, v.embedding_id "
+                + "ON CONFLICT (embedding_id) DO NOTHING RETURNING embedding_id::text";
+
+        List<Map.Entry<String, String>> pairs = new ArrayList<>(targetIdBySourceId.entrySet());
+        try (Connection connection = vectorStoreJdbc.getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            Array kept = connection.createArrayOf("text", keptKeys.toArray());
+            Array metadataKeys = connection.createArrayOf("text", metadata.keySet().toArray());
+            Array metadataValues = connection.createArrayOf("text", metadata.values().toArray());
+            statement.setArray(1, kept);
+            statement.setString(2, VectorStoreJdbc.metadataKey(sourceIdKey));
+            statement.setArray(3, metadataKeys);
+            statement.setArray(4, metadataValues);
+            for (int from = 0; from < pairs.size(); from += MAX_ROWS_PER_STATEMENT) {
+                List<Map.Entry<String, String>> slice = pairs.subList(from,
+                        Math.min(from + MAX_ROWS_PER_STATEMENT, pairs.size()));
+                Array sourceIds = connection.createArrayOf("text",
+                        slice.stream().map(Map.Entry::getKey).toArray());
+                Array targetIds = connection.createArrayOf("text",
+                        slice.stream().map(Map.Entry::getValue).toArray());
+                Array sourceTexts = connection.createArrayOf("text",
+                        slice.stream().map(pair -> textBySourceId.get(pair.getKey())).toArray());
+                statement.setArray(5, sourceIds);
+                statement.setArray(6, targetIds);
+                statement.setArray(7, sourceTexts);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        copied.add(rs.getString(1));
+                    }
+                } finally {
+                    sourceIds.free();
+                    targetIds.free();
+                    sourceTexts.free();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("复制已入库向量失败: " + e.getMessage(), e);
+        }
+        if (copied.size() < pairs.size()) {
+            log.info("Copied {} of {} stored embeddings, the rest have no row matching the current content",
+                    copied.size(), pairs.size());
+        }
+        return copied;
+    }
+}
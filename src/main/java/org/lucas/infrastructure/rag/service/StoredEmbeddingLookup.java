@@ -0,0 +1,119 @@
+package org.lucas.infrastructure.rag.service;
+
+import com.pgvector.PGvector;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.lucas.infrastructure.rag.config.EmbeddingProperties;
+
+/** 已入库向量查询
+ *
+ * 分片向量化后已经写进 pgvector 表，但快照检索和证据覆盖以前每次提问都把文档内容重新发给嵌入服务。
+ * 这里按 embedding_id 或元数据键批量读回已存的向量，一次 SQL 取一批，打分在进程内完成。
+ *
+ * @author shilong.zang */
+@Service
+public class StoredEmbeddingLookup {
+
+    private static final Logger log = LoggerFactory.getLogger(StoredEmbeddingLookup.class);
+
+    /** 单条 SQL 的 ID 数量上限 */
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final EmbeddingProperties.VectorStore properties;
+
+    private final VectorStoreJdbc vectorStoreJdbc;
+
+    public StoredEmbeddingLookup(EmbeddingProperties embeddingProperties, VectorStoreJdbc vectorStoreJdbc) {
+        this.properties = embeddingProperties.getVectorStore();
+        this.vectorStoreJdbc = vectorStoreJdbc;
+    }
+
+    /** 是否启用已入库向量复用 */
+    public boolean isEnabled() {
+        return properties.isReuseStoredVectors();
+    }
+
+    /** 按 embedding_id 批量读取向量
+     *
+     * @param embeddingIds 向量ID
+     * @return embedding_id -> 已存向量，不存在的ID不会出现在结果里 */
+    public Map<String, StoredEmbedding> findByEmbeddingIds(Collection<String> embeddingIds) {
+        return query("embedding_id::text", embeddingIds);
+    }
+
+    /** 按元数据键批量读取向量，同一个值对应多条时保留任意一条
+     *
+     * @param metadataKey 元数据键，例如 DOCUMENT_ID
+     * @param values 元数据值
+     * @return 元数据值 -> 已存向量 */
+    public Map<String, StoredEmbedding> findByMetadata(String metadataKey, Collection<String> values) {
+        return query("metadata->>'" + VectorStoreJdbc.metadataKey(metadataKey) + "'", values);
+    }
+
+    private Map<String, StoredEmbedding> query(String keyExpression, Collection<String> ids) {
+        Map<String, StoredEmbedding> result = new HashMap<>();
+        if (ids == null || ids.isEmpty()) {
+            return result;
+        }
+        String sql = "SELECT " + keyExpression + " AS lookup_key, embedding::text AS embedding, text FROM "
+                + vectorStoreJdbc.table() + " WHERE " + keyExpression + " = ANY(?)";
+
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        try (Connection connection = vectorStoreJdbc.getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int from = 0; from < distinct.size(); from += MAX_IDS_PER_QUERY) {
+                List<String> slice = distinct.subList(from, Math.min(from + MAX_IDS_PER_QUERY, distinct.size()));
+                Array array = connection.createArrayOf("text", slice.toArray());
+                statement.setArray(1, array);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        String embedding = rs.getString("embedding");
+                        if (embedding == null) {
+                            continue;
+                        }
+                        result.putIfAbsent(rs.getString("lookup_key"),
+                                new StoredEmbedding(new PGvector(embedding).toArray(), rs.getString("text")));
+                    }
+                } finally {
+                    array.free();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("读取已入库向量失败: " + e.getMessage(), e);
+        }
+        log.debug("Loaded {} stored embeddings for {} ids", result.size(), distinct.size());
+        return result;
+    }
+
+    /** 已入库的向量及其对应文本 */
+    public static final class StoredEmbedding {
+        private final float[] vector;
+        private final String text;
+
+        private StoredEmbedding(float[] vector, String text) {
+            this.vector = vector;
+            this.text = text;
+        }
+
+        public float[] getVector() {
+            return vector;
+        }
+
+        /** 入库时的分片文本，调用方用它判断向量是否仍对应当前内容 */
+        public String getText() {
+            return text;
+        }
+    }
+}
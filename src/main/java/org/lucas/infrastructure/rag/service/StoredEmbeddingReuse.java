@@ -0,0 +1,189 @@
+package org.lucas.infrastructure.rag.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.pgvector.PGvector;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/** 已入库向量复用
+ *
+ * 每个分片入库时在元数据里记录指纹（嵌入模型ID + 内容的 SHA-256）。重新处理文件时按指纹找回同一文件下已有的向量：
+ * 内容和模型都没变的分片直接把向量改挂到新的语料ID上，不再调用嵌入服务。
+ *
+ * 改挂是一条带条件的 UPDATE（原 DOCUMENT_ID 不变才生效），同一文件的多个批次并发时一条旧向量只会被一个分片认领。
+ * 改挂不经过 EmbeddingStore，这里自己同步热点数据集内存索引。
+ *
+ * @author shilong.zang */
+@Service
+public class StoredEmbeddingReuse {
+
+    private static final Logger log = LoggerFactory.getLogger(StoredEmbeddingReuse.class);
+
+    private final VectorStoreJdbc vectorStoreJdbc;
+
+    private final HotDatasetCache hotDatasetCache;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public StoredEmbeddingReuse(VectorStoreJdbc vectorStoreJdbc, HotDatasetCache hotDatasetCache) {
+        this.vectorStoreJdbc = vectorStoreJdbc;
+        this.hotDatasetCache = hotDatasetCache;
+    }
+
+    /** 分片指纹
+     *
+     * @param modelId 嵌入模型ID
+     * @param content 分片内容
+     * @return 十六进制 SHA-256 */
+    public static String fingerprint(String modelId, String content) {
+        return Hashing.sha256().hashString((modelId == null ? "" : modelId) + "\n" + (content == null ? "" : content),
+                StandardCharsets.UTF_8).toString();
+    }
+
+    /** 查询文件下指纹匹配、或挂在指定语料上的已入库向量
+     *
+     * @param fileIdKey 文件ID元数据键
+     * @param fileId 文件ID
+     * @param fingerprintKey 指纹元数据键
+     * @param fingerprints 指纹
+     * @param documentIdKey 语料ID元数据键
+     * @param documentIds 语料ID
+     * @return 匹配的向量 */
+    public List<StoredChunk> find(String fileIdKey, String fileId, String fingerprintKey,
+            Collection<String> fingerprints, String documentIdKey, Collection<String> documentIds) {
+        List<StoredChunk> result = new ArrayList<>();
+        String fingerprintExpression = "metadata->>'" + VectorStoreJdbc.metadataKey(fingerprintKey) + "'";
+        String documentIdExpression = "metadata->>'" + VectorStoreJdbc.metadataKey(documentIdKey) + "'";
+        String sql = "SELECT embedding_id::text AS embedding_id, embedding::text AS embedding, "
+                + documentIdExpression + " AS document_id, " + fingerprintExpression + " AS fingerprint FROM "
+                + vectorStoreJdbc.table() + " WHERE metadata->>'" + VectorStoreJdbc.metadataKey(fileIdKey)
+                + "' = ? AND (" + fingerprintExpression + " = ANY(?) OR " + documentIdExpression + " = ANY(?))";
+        try (Connection connection = vectorStoreJdbc.getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            Array fingerprintArray = connection.createArrayOf("text", fingerprints.toArray());
+            Array documentIdArray = connection.createArrayOf("text", documentIds.toArray());
+            statement.setString(1, fileId);
+            statement.setArray(2, fingerprintArray);
+            statement.setArray(3, documentIdArray);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    String embedding = rs.getString("embedding");
+                    result.add(new StoredChunk(rs.getString("embedding_id"),
+                            embedding == null ? null : new PGvector(embedding).toArray(), rs.getString("document_id"),
+                            rs.getString("fingerprint")));
+                }
+            } finally {
+                fingerprintArray.free();
+                documentIdArray.free();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("查询可复用向量失败: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /** 把一条已入库向量改挂到新的分片上
+     *
+     * @param documentIdKey 语料ID元数据键
+     * @param chunk 已入库向量，其 DOCUMENT_ID 仍为查询时的值才会改挂
+     * @param segment 新分片，元数据整体替换为它的元数据
+     * @return 是否改挂成功 */
+    public boolean reassign(String documentIdKey, StoredChunk chunk, TextSegment segment) {
+        if (chunk.getVector() == null) {
+            return false;
+        }
+        String sql = "UPDATE " + vectorStoreJdbc.table() + " SET metadata = ?::json, text = ? "
+                + "WHERE embedding_id = ?::uuid AND metadata->>'" + VectorStoreJdbc.metadataKey(documentIdKey)
+                + "' = ?";
+        int updated;
+        try (Connection connection = vectorStoreJdbc.getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, objectMapper.writeValueAsString(segment.metadata().toMap()));
+            statement.setString(2, segment.text());
+            statement.setString(3, chunk.getEmbeddingId());
+            statement.setString(4, chunk.getDocumentId());
+            updated = statement.executeUpdate();
+        } catch (SQLException | JsonProcessingException e) {
+            throw new IllegalStateException("改挂已入库向量失败: " + e.getMessage(), e);
+        }
+        if (updated == 0) {
+            log.debug("Stored embedding {} was claimed by another chunk", chunk.getEmbeddingId());
+            return false;
+        }
+        hotDatasetCache.onAdded(List.of(chunk.getEmbeddingId()), List.of(Embedding.from(chunk.getVector())),
+                List.of(segment));
+        return true;
+    }
+
+    /** 列出文件下所有向量的 embedding_id 和所挂的语料ID
+     *
+     * @param fileIdKey 文件ID元数据键
+     * @param fileId 文件ID
+     * @param documentIdKey 语料ID元数据键
+     * @return 向量，不含向量值 */
+    public List<StoredChunk> listByFile(String fileIdKey, String fileId, String documentIdKey) {
+        List<StoredChunk> result = new ArrayList<>();
+        String sql = "SELECT embedding_id::text AS embedding_id, metadata->>'"
+                + VectorStoreJdbc.metadataKey(documentIdKey) + "' AS document_id FROM " + vectorStoreJdbc.table()
+                + " WHERE metadata->>'" + VectorStoreJdbc.metadataKey(fileIdKey) + "' = ?";
+        try (Connection connection = vectorStoreJdbc.getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, fileId);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new StoredChunk(rs.getString("embedding_id"), null, rs.getString("document_id"),
+                            null));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("查询文件向量失败: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /** 已入库的分片向量 */
+    public static final class StoredChunk {
+        private final String embeddingId;
+        private final float[] vector;
+        private final String documentId;
+        private final String fingerprint;
+
+        private StoredChunk(String embeddingId, float[] vector, String documentId, String fingerprint) {
+            this.embeddingId = embeddingId;
+            this.vector = vector;
+            this.documentId = documentId;
+            this.fingerprint = fingerprint;
+        }
+
+        public String getEmbeddingId() {
+            return embeddingId;
+        }
+
+        public float[] getVector() {
+            return vector;
+        }
+
+        public String getDocumentId() {
+            return documentId;
+        }
+
+        /** 入库时记录的指纹；早于指纹记录入库的向量为 null */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+    }
+}
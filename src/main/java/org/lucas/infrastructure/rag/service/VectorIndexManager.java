@@ -0,0 +1,173 @@
+package org.lucas.infrastructure.rag.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.lucas.infrastructure.rag.config.EmbeddingProperties;
+
+/** 向量表索引管理
+ *
+ * 向量表由 PgVectorEmbeddingStore 在运行时建出，默认没有任何二级索引：ANN 检索退化为全表扫描，
+ * DATA_SET_ID / RAG_VERSION_ID 过滤要对每一行解析 JSON 元数据，检索耗时随所有租户的总语料线性增长。
+ *
+ * 启动时检查向量表上的索引：
+ * 1. 一个 ANN 索引（HNSW 或 IVFFlat，vector_cosine_ops，与检索 SQL 的 {@code <=>} 一致）；
+ * 2. 每个过滤元数据键一个表达式索引 {@code ((metadata->>'KEY'))}，与过滤条件生成的表达式一致，
+ *    小租户的过滤检索可以先走表达式索引再精确排序。
+ * 缺失的索引在后台线程里用 CREATE INDEX CONCURRENTLY 补建，不阻塞启动也不锁写入；关闭 manage 时只告警。
+ * 检查或建索引失败都不阻止应用启动。
+ *
+ * @author shilong.zang */
+@Component
+public class VectorIndexManager implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorIndexManager.class);
+
+    private final VectorStoreJdbc vectorStoreJdbc;
+
+    private final EmbeddingProperties.VectorIndex properties;
+
+    public VectorIndexManager(VectorStoreJdbc vectorStoreJdbc, EmbeddingProperties embeddingProperties) {
+        this.vectorStoreJdbc = vectorStoreJdbc;
+        this.properties = embeddingProperties.getVectorStore().getIndex();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        final List<IndexDefinition> missing;
+        try {
+            missing = findMissingIndexes();
+        } catch (Exception e) {
+            log.error("向量表索引检查失败", e);
+            return;
+        }
+
+        if (missing.isEmpty()) {
+            log.info("向量表索引检查通过: {}", vectorStoreJdbc.table());
+            return;
+        }
+        List<String> names = missing.stream().map(IndexDefinition::getName).toList();
+        if (!properties.isManage()) {
+            log.warn("向量表 {} 缺少索引 {}，检索会退化为全表扫描；开启 embedding.vector-store.index.manage 自动创建",
+                    vectorStoreJdbc.table(), names);
+            return;
+        }
+
+        log.warn("向量表 {} 缺少索引 {}，开始在后台创建", vectorStoreJdbc.table(), names);
+        Thread builder = new Thread(() -> createIndexes(missing), "vector-index-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /** 检查向量表上缺失的索引
+     *
+     * @return 缺失索引的定义；向量表不存在时为空 */
+    public List<IndexDefinition> findMissingIndexes() throws Exception {
+        String table = vectorStoreJdbc.table();
+        String schema = table.contains(".") ? table.substring(0, table.indexOf('.')) : "public";
+        String tableName = table.contains(".") ? table.substring(table.indexOf('.') + 1) : table;
+
+        List<String> existing = new ArrayList<>();
+        try (Connection connection = vectorStoreJdbc.getConnection();
+                PreparedStatement statement = connection
+                        .prepareStatement("SELECT indexdef FROM pg_indexes WHERE schemaname = ? AND tablename = ?")) {
+            statement.setString(1, schema);
+            statement.setString(2, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    existing.add(resultSet.getString(1).toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        if (existing.isEmpty()) {
+            // 至少有主键索引；一个都没有说明表还没建出来
+            log.info("向量表 {} 尚未创建，跳过索引检查", table);
+            return List.of();
+        }
+
+        List<IndexDefinition> missing = new ArrayList<>();
+        IndexDefinition annIndex = annIndex(table, tableName);
+        if (annIndex != null && existing.stream().noneMatch(def -> def.contains("using " + annIndex.getMethod()))) {
+            missing.add(annIndex);
+        }
+        for (String key : properties.getMetadataKeys()) {
+            VectorStoreJdbc.metadataKey(key);
+            String expression = "'" + key.toLowerCase(Locale.ROOT) + "'";
+            if (existing.stream().noneMatch(def -> def.contains("metadata ->> " + expression))) {
+                missing.add(new IndexDefinition(tableName + "_" + key.toLowerCase(Locale.ROOT) + "_idx", "btree",
+                        String.format("CREATE INDEX CONCURRENTLY IF NOT EXISTS %s_%s_idx ON %s ((metadata->>'%s'))",
+                                tableName, key.toLowerCase(Locale.ROOT), table, key)));
+            }
+        }
+        return missing;
+    }
+
+    private IndexDefinition annIndex(String table, String tableName) {
+        String type = properties.getType() == null ? "none" : properties.getType().toLowerCase(Locale.ROOT);
+        return switch (type) {
+            case "hnsw" -> new IndexDefinition(tableName + "_embedding_hnsw_idx", "hnsw", String.format(
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS %s_embedding_hnsw_idx ON %s "
+                            + "USING hnsw (embedding vector_cosine_ops) WITH (m = %d, ef_construction = %d)",
+                    tableName, table, properties.getHnswM(), properties.getHnswEfConstruction()));
+            case "ivfflat" -> new IndexDefinition(tableName + "_embedding_ivfflat_idx", "ivfflat", String.format(
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS %s_embedding_ivfflat_idx ON %s "
+                            + "USING ivfflat (embedding vector_cosine_ops) WITH (lists = %d)",
+                    tableName, table, properties.getIvfflatLists()));
+            case "none" -> null;
+            default -> throw new IllegalStateException("不支持的向量索引类型: " + properties.getType());
+        };
+    }
+
+    private void createIndexes(List<IndexDefinition> indexes) {
+        for (IndexDefinition index : indexes) {
+            long start = System.currentTimeMillis();
+            // CONCURRENTLY 不能在事务里执行，使用自动提交的独立连接
+            try (Connection connection = vectorStoreJdbc.getConnection();
+                    Statement statement = connection.createStatement()) {
+                if (properties.getMaintenanceWorkMemMb() > 0) {
+                    statement.execute("SET maintenance_work_mem = '" + properties.getMaintenanceWorkMemMb() + "MB'");
+                }
+                statement.execute(index.getDdl());
+                log.info("向量表索引 {} 创建完成，耗时 {}ms", index.getName(), System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                // 中断的 CONCURRENTLY 会留下 INVALID 索引，需要人工 DROP 后重建
+                log.error("向量表索引 {} 创建失败: {}", index.getName(), index.getDdl(), e);
+            }
+        }
+    }
+
+    /** 索引定义 */
+    public static final class IndexDefinition {
+        private final String name;
+        private final String method;
+        private final String ddl;
+
+        private IndexDefinition(String name, String method, String ddl) {
+            this.name = name;
+            this.method = method;
+            this.ddl = ddl;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** 索引方法：hnsw、ivfflat 或 btree */
+        public String getMethod() {
+            return method;
+        }
+
+        public String getDdl() {
+            return ddl;
+        }
+    }
+}
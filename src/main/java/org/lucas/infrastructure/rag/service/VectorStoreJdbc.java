@@ -0,0 +1,112 @@
+package org.lucas.infrastructure.rag.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.regex.Pattern;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.springframework.stereotype.Component;
+import org.lucas.infrastructure.rag.config.EmbeddingProperties;
+
+/** 向量库直连
+ *
+ * PgVectorEmbeddingStore 只提供增删和相似度检索，按 ID 批量读取、整批复制向量需要直接写 SQL。
+ * 连接参数与 {@link org.lucas.infrastructure.rag.config.EmbeddingConfig} 里的 PgVectorEmbeddingStore 相同，
+ * 向量库可以与业务库分开部署。这里自建 DataSource 而不注册为 Bean，避免影响 Spring Boot 对业务库的自动配置。
+ *
+ * @author shilong.zang */
+@Component
+public class VectorStoreJdbc {
+
+    /** 表名来自配置并直接拼进 SQL，只允许 [schema.]table 形式 */
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    /** 元数据键同样拼进 SQL */
+    private static final Pattern METADATA_KEY = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final EmbeddingProperties.VectorStore properties;
+
+    private volatile PGSimpleDataSource dataSource;
+
+    public VectorStoreJdbc(EmbeddingProperties embeddingProperties) {
+        this.properties = embeddingProperties.getVectorStore();
+    }
+
+    /** 获取向量库连接，调用方负责关闭 */
+    public Connection getConnection() throws SQLException {
+        return dataSource().getConnection();
+    }
+
+    /** 校验过的向量表名 */
+    public String table() {
+        String table = properties.getTable();
+        if (!TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalStateException("非法的向量表名: " + table);
+        }
+        return table;
+    }
+
+    /** 校验元数据键，返回原值 */
+    public static String metadataKey(String key) {
+        if (key == null || !METADATA_KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("非法的元数据键: " + key);
+        }
+        return key;
+    }
+
+    /** 按向量库配置新建连接源，不做连接池，与 PgVectorEmbeddingStore 自建的连接源一致
+     *
+     * @param properties 向量库配置 */
+    public static PGSimpleDataSource createDataSource(EmbeddingProperties.VectorStore properties) {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setServerNames(new String[]{properties.getHost()});
+        dataSource.setPortNumbers(new int[]{properties.getPort()});
+        dataSource.setDatabaseName(properties.getDatabase());
+        dataSource.setUser(properties.getUser());
+        dataSource.setPassword(properties.getPassword());
+        return dataSource;
+    }
+
+    /** 查询已安装的 pgvector 扩展版本
+     *
+     * @param dataSource 向量库连接源
+     * @return 扩展版本号，如 0.8.0；未安装时为 null */
+    public static String pgvectorVersion(PGSimpleDataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection
+                        .prepareStatement("SELECT extversion FROM pg_extension WHERE extname = 'vector'");
+                ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+
+    /** 判断 pgvector 版本是否不低于 major.minor，无法解析时返回 false */
+    public static boolean isPgvectorAtLeast(String version, int major, int minor) {
+        if (version == null) {
+            return false;
+        }
+        String[] parts = version.split("\\.");
+        try {
+            int actualMajor = Integer.parseInt(parts[0]);
+            int actualMinor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private PGSimpleDataSource dataSource() {
+        PGSimpleDataSource current = dataSource;
+        if (current == null) {
+            synchronized (this) {
+                current = dataSource;
+                if (current == null) {
+                    current = createDataSource(properties);
+                    dataSource = current;
+                }
+            }
+        }
+        return current;
+    }
+}
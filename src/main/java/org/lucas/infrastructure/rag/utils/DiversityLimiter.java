@@ -0,0 +1,49 @@
+package org.lucas.infrastructure.rag.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/** 检索结果多样性截断
+ *
+ * 同一文件的相邻分片往往一起命中，直接取前 N 条时上下文容易被一个文件占满。
+ * 按原有顺序遍历，每个分组（通常是文件）最多保留 maxPerKey 条，凑满 limit 条为止。
+ *
+ * @author shilong.zang */
+public final class DiversityLimiter {
+
+    private DiversityLimiter() {
+    }
+
+    /** 按分组限制条数
+     *
+     * @param items 按相关性从高到低排列的候选
+     * @param keyExtractor 分组标识
+     * @param limit 最多返回条数，为 null 时不限制
+     * @param maxPerKey 每个分组最多保留的条数
+     * @return 截断后的结果，保持原有顺序 */
+    public static <T> List<T> limitPerKey(List<T> items, Function<T, String> keyExtractor, Integer limit,
+            int maxPerKey) {
+        if (items == null || items.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Integer> perKeyCount = new HashMap<>();
+        List<T> result = new ArrayList<>();
+        int finalLimit = limit != null ? limit : items.size();
+        for (T item : items) {
+            if (result.size() >= finalLimit) {
+                break;
+            }
+            String key = keyExtractor.apply(item);
+            int count = perKeyCount.getOrDefault(key, 0);
+            if (count >= maxPerKey) {
+                continue;
+            }
+            result.add(item);
+            perKeyCount.put(key, count + 1);
+        }
+        return result;
+    }
+}
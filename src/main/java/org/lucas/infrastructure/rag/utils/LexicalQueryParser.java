@@ -0,0 +1,68 @@
+package org.lucas.infrastructure.rag.utils;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** 词法检索关键词提取
+ *
+ * 向量检索对编号、错误码、SKU、版本号这类精确串不敏感，混合检索用它们做一次字面匹配。
+ * 只提取两类词：引号里的短语，以及带数字或连接符的标识符（如 ERR_1024、SKU-889A、v2.3.1）。
+ * 普通中文、英文单词交给向量检索，避免字面匹配召回大量无关片段。
+ *
+ * @author shilong.zang */
+public final class LexicalQueryParser {
+
+    /** 引号短语：英文双引号、中文引号、直角引号 */
+    private static final Pattern QUOTED = Pattern.compile("[\"“「『]([^\"”」』]{2,64})[\"”」』]");
+
+    /** 标识符：字母数字开头，可含 _ - . / : #，末尾不带标点 */
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_\\-./:#]*[A-Za-z0-9]");
+
+    /** 标识符至少包含一个数字或连接符，纯字母单词不算 */
+    private static final Pattern IDENTIFIER_MARK = Pattern.compile("[0-9_\\-./:#]");
+
+    private static final int MIN_TERM_LENGTH = 3;
+
+    private LexicalQueryParser() {
+    }
+
+    /** 提取关键词
+     *
+     * @param question 用户问题
+     * @param maxTerms 最多返回的关键词数
+     * @return 去重后的关键词，按出现顺序 */
+    public static List<String> extractTerms(String question, int maxTerms) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (question == null || question.isBlank() || maxTerms <= 0) {
+            return List.of();
+        }
+
+        Matcher quoted = QUOTED.matcher(question);
+        while (quoted.find() && terms.size() < maxTerms) {
+            String phrase = quoted.group(1).trim();
+            if (phrase.length() >= MIN_TERM_LENGTH) {
+                terms.add(phrase);
+            }
+        }
+
+        Matcher identifier = IDENTIFIER.matcher(question);
+        while (identifier.find() && terms.size() < maxTerms) {
+            String token = identifier.group();
+            if (token.length() >= MIN_TERM_LENGTH && IDENTIFIER_MARK.matcher(token).find()) {
+                terms.add(token);
+            }
+        }
+        return List.copyOf(terms);
+    }
+
+    /** 转成 ILIKE 的包含匹配模式，转义 LIKE 通配符
+     *
+     * @param term 关键词
+     * @return %term% 形式的模式 */
+    public static String toContainsPattern(String term) {
+        return "%" + term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
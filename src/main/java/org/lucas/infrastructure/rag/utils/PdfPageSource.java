@@ -0,0 +1,133 @@
+package org.lucas.infrastructure.rag.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+/** PDF页面源
+ *
+ * 文档只解析一次：从本地文件打开时 PDFBox 按需随机读取，不把整个文件读进堆；解析过程中的临时流写入临时文件。
+ * 页面按需渲染，JPEG 编码写入同一个复用的缓冲区，再直接转成 base64，渲染完的图片立即释放。
+ * 实例不是线程安全的，渲染需在同一线程内顺序进行。
+ *
+ * @author shilong.zang */
+public class PdfPageSource implements AutoCloseable {
+
+    /** 渲染DPI，与 {@link PdfToBase64Converter} 保持一致 */
+    private static final float DEFAULT_DPI = 150;
+
+    /** JPEG压缩质量 */
+    private static final float DEFAULT_COMPRESSION_QUALITY = 0.7f;
+
+    private final PDDocument document;
+
+    private final PDFRenderer renderer;
+
+    private final ImageWriter writer;
+
+    private final ImageWriteParam writeParam;
+
+    private final ReusableOutputStream buffer = new ReusableOutputStream();
+
+    private PdfPageSource(PDDocument document, String imageFormat) {
+        this.document = document;
+        this.renderer = new PDFRenderer(document);
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(imageFormat);
+        if (!writers.hasNext()) {
+            throw new IllegalArgumentException("不支持的图像格式: " + imageFormat);
+        }
+        this.writer = writers.next();
+        this.writeParam = writer.getDefaultWriteParam();
+        if (writeParam.canWriteCompressed()) {
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionQuality(DEFAULT_COMPRESSION_QUALITY);
+        }
+    }
+
+    /** 从本地文件打开，推荐用于大文件
+     *
+     * @param pdfFile PDF文件
+     * @param imageFormat 输出图像格式（如"jpg"） */
+    public static PdfPageSource open(File pdfFile, String imageFormat) throws IOException {
+        return create(Loader.loadPDF(pdfFile, IOUtils.createTempFileOnlyStreamCache()), imageFormat);
+    }
+
+    /** 从内存数据打开
+     *
+     * @param pdfData PDF文件字节数组
+     * @param imageFormat 输出图像格式（如"jpg"） */
+    public static PdfPageSource open(byte[] pdfData, String imageFormat) throws IOException {
+        return create(Loader.loadPDF(pdfData, "", null, null, IOUtils.createTempFileOnlyStreamCache()),
+                imageFormat);
+    }
+
+    private static PdfPageSource create(PDDocument document, String imageFormat) throws IOException {
+        try {
+            return new PdfPageSource(document, imageFormat);
+        } catch (RuntimeException e) {
+            document.close();
+            throw e;
+        }
+    }
+
+    /** 总页数 */
+    public int getPageCount() {
+        return document.getNumberOfPages();
+    }
+
+    /** 渲染指定页并返回base64编码
+     *
+     * @param pageIndex 页码（从0开始） */
+    public String renderPageToBase64(int pageIndex) throws IOException {
+        if (pageIndex < 0 || pageIndex >= getPageCount()) {
+            throw new IllegalArgumentException("页码超出范围: " + pageIndex);
+        }
+        BufferedImage image = renderer.renderImageWithDPI(pageIndex, DEFAULT_DPI);
+        try {
+            buffer.reset();
+            try (ImageOutputStream ios = new MemoryCacheImageOutputStream(buffer)) {
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(image, null, null), writeParam);
+            } finally {
+                writer.setOutput(null);
+            }
+            return buffer.toBase64();
+        } finally {
+            image.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.dispose();
+        document.close();
+    }
+
+    /** 可复用的输出缓冲区，直接从内部数组编码，省去 toByteArray 的拷贝 */
+    private static final class ReusableOutputStream extends ByteArrayOutputStream {
+
+        private ReusableOutputStream() {
+            super(256 * 1024);
+        }
+
+        private String toBase64() {
+            ByteBuffer encoded = Base64.getEncoder().encode(ByteBuffer.wrap(buf, 0, count));
+            return new String(encoded.array(), 0, encoded.limit(), StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -61,30 +61,17 @@ public class PdfToBase64Converter {
         return base64Images;
     }
 
-    /** 流式处理PDF文件的单页并转换为base64 此方法每次只处理一页，大大减少内存占用
+    /** 处理PDF文件的单页并转换为base64
+     *
+     * 每次调用都会重新解析整个文档，逐页处理多页时应改用 {@link PdfPageSource}，文档只打开一次。
      *
      * @param pdfData PDF文件字节数组
      * @param pageIndex 要处理的页码（从0开始）
      * @param imageFormat 图像格式（如"jpg"）
      * @return 指定页面的base64编码字符串 */
     public static String processPdfPageToBase64(byte[] pdfData, int pageIndex, String imageFormat) throws IOException {
-        // 加载PDF文档
-        try (PDDocument document = Loader.loadPDF(pdfData)) {
-            if (pageIndex >= document.getNumberOfPages() || pageIndex < 0) {
-                throw new IllegalArgumentException("页码超出范围: " + pageIndex);
-            }
-
-            PDFRenderer renderer = new PDFRenderer(document);
-            // 使用较低的DPI以减少内存使用
-            BufferedImage image = renderer.renderImageWithDPI(pageIndex, DEFAULT_DPI);
-
-            // 将图片转换为base64字符串并压缩
-            String base64 = convertImageToBase64Compressed(image, imageFormat);
-
-            // 立即释放资源
-            image.flush();
-
-            return base64;
+        try (PdfPageSource pages = PdfPageSource.open(pdfData, imageFormat)) {
+            return pages.renderPageToBase64(pageIndex);
         }
     }
 
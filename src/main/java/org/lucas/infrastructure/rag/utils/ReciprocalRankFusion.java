@@ -0,0 +1,61 @@
+package org.lucas.infrastructure.rag.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/** 倒数排名融合（Reciprocal Rank Fusion）
+ *
+ * 不同查询的相似度分布不同，直接比较或取最大分会让"分数偏高"的那条查询主导结果。
+ * RRF 只看排名：条目在每个列表中的得分为 1/(k + rank)，rank 从 1 开始，跨列表求和。
+ * 在多个列表里都靠前的条目排在最前，单条查询偶然的高分不会压过其他查询的共识。
+ *
+ * @author shilong.zang */
+public final class ReciprocalRankFusion {
+
+    /** 常用的平滑常数 */
+    public static final int DEFAULT_K = 60;
+
+    private ReciprocalRankFusion() {
+    }
+
+    /** 融合多个有序列表
+     *
+     * @param rankings 各查询的结果，每个列表按相关性从高到低排列
+     * @param keyExtractor 条目标识，同一标识视为同一条目
+     * @param k 平滑常数，小于 1 时使用 {@link #DEFAULT_K}
+     * @return 条目标识 -> 融合分数，按分数从高到低排列；分数相同时先出现的在前 */
+    public static <T> LinkedHashMap<String, Double> fuse(List<? extends List<T>> rankings,
+            Function<T, String> keyExtractor, int k) {
+        int smoothing = k < 1 ? DEFAULT_K : k;
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Integer> firstSeen = new HashMap<>();
+        for (List<T> ranking : rankings) {
+            if (ranking == null) {
+                continue;
+            }
+            int rank = 0;
+            for (T item : ranking) {
+                String key = keyExtractor.apply(item);
+                if (key == null) {
+                    continue;
+                }
+                rank++;
+                scores.merge(key, 1.0 / (smoothing + rank), Double::sum);
+                firstSeen.putIfAbsent(key, firstSeen.size());
+            }
+        }
+
+        List<String> keys = new ArrayList<>(scores.keySet());
+        keys.sort((a, b) -> {
+            int byScore = Double.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : Integer.compare(firstSeen.get(a), firstSeen.get(b));
+        });
+        LinkedHashMap<String, Double> fused = new LinkedHashMap<>();
+        keys.forEach(key -> fused.put(key, scores.get(key)));
+        return fused;
+    }
+}
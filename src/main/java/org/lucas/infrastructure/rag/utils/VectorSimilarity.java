@@ -0,0 +1,41 @@
+package org.lucas.infrastructure.rag.utils;
+
+/** 向量相似度计算
+ *
+ * 问答链路里快照文档排序、证据覆盖评估、语义答案缓存都要在进程内算余弦相似度，统一放在这里，
+ * 基准测试也直接测这一份实现。
+ *
+ * @author shilong.zang */
+public final class VectorSimilarity {
+
+    private VectorSimilarity() {
+    }
+
+    /** 余弦相似度
+     *
+     * @param vectorA 向量A
+     * @param vectorB 向量B
+     * @return 余弦相似度；维度不一致或存在零向量时为 0 */
+    public static double cosine(float[] vectorA, float[] vectorB) {
+        if (vectorA.length != vectorB.length) {
+            return 0.0;
+        }
+
+        double dotProduct = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+
+        for (int i = 0; i < vectorA.length; i++) {
+            float a = vectorA[i];
+            float b = vectorB[i];
+            dotProduct += a * b;
+            normA += a * a;
+            normB += b * b;
+        }
+
+        if (normA == 0.0 || normB == 0.0) {
+            return 0.0;
+        }
+        return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
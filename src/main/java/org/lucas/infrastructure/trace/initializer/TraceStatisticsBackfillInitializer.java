@@ -0,0 +1,41 @@
+package org.lucas.infrastructure.trace.initializer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.lucas.domain.trace.service.AgentExecutionTraceDomainService;
+import org.lucas.infrastructure.config.TraceProperties;
+
+/** 执行统计日汇总回填 开启 trace.statistics.backfill-on-startup 时在应用启动后按汇总记录重建日汇总表 */
+@Component
+public class TraceStatisticsBackfillInitializer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(TraceStatisticsBackfillInitializer.class);
+
+    private final AgentExecutionTraceDomainService traceDomainService;
+
+    private final TraceProperties.Statistics properties;
+
+    public TraceStatisticsBackfillInitializer(AgentExecutionTraceDomainService traceDomainService,
+            TraceProperties traceProperties) {
+        this.traceDomainService = traceDomainService;
+        this.properties = traceProperties.getStatistics();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isBackfillOnStartup()) {
+            return;
+        }
+        logger.info("开始回填执行统计日汇总...");
+        try {
+            int rows = traceDomainService.rebuildDailyStatistics(properties.getBackfillChunkDays());
+            logger.info("执行统计日汇总回填完成，写入 {} 行", rows);
+        } catch (Exception e) {
+            // 回填失败不阻止应用启动，统计数据在下次回填前可能偏少
+            logger.error("执行统计日汇总回填失败", e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.lucas.infrastructure.transport;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.lucas.application.conversation.dto.AgentChatResponse;
+import org.lucas.domain.conversation.constant.MessageType;
+
+/** 合并流式片段的 SseEmitter
+ *
+ * 通过 {@link #sendResponse} 发送的连续同类型进度片段先进缓冲，字符数达到上限或停留超过刷新间隔时拼成一条事件发送；
+ * 其他事件、以及直接调用 send / complete 时都先把缓冲冲掉，事件顺序与逐条发送一致。
+ *
+ * 到期的缓冲优先由生产线程在下一个片段到来时顺手发出。生产线程停顿时由共享的定时线程兜底，但定时线程只负责到点
+ * 把发送任务转交给有界的发送线程池，自己不写连接；发送任务用 tryLock 取连接锁，连接正忙（生产线程正在写、
+ * 或慢客户端阻塞了上一次写）时跳过并稍后再查，一个慢连接不会拖住其他连接。发送线程池排满时放弃这次定时发送，
+ * 缓冲留给下一个片段或关闭连接时发出。 */
+public class CoalescingSseEmitter extends SseEmitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingSseEmitter.class);
+
+    /** 可以合并的进度片段类型 */
+    private static final Set<MessageType> COALESCIBLE = EnumSet.of(MessageType.TEXT, MessageType.THINKING_PROGRESS,
+            MessageType.RAG_ANSWER_PROGRESS, MessageType.RAG_THINKING_PROGRESS);
+
+    private final ScheduledExecutorService flushScheduler;
+
+    private final Executor flushExecutor;
+
+    private final long flushIntervalMs;
+
+    private final int maxBufferChars;
+
+    private final Encoder encoder;
+
+    /** 缓冲与发送的连接锁；定时发送用 tryLock，不在忙碌的连接上等待 */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    /** 缓冲中片段的类型，缓冲为空时为 null */
+    private MessageType bufferedType;
+
+    /** 缓冲中第一个片段的进入时间 */
+    private long bufferedSinceNanos;
+
+    /** 每次冲掉缓冲加一，定时任务据此判断自己对应的那批是否已被发送 */
+    private long generation;
+
+    /** 定时发送失败的异常，下一次发送时抛给调用方 */
+    private IOException flushFailure;
+
+    /** 事件编码方式：把响应转成 SSE 事件 */
+    @FunctionalInterface
+    public interface Encoder {
+        SseEventBuilder encode(AgentChatResponse response) throws IOException;
+    }
+
+    public CoalescingSseEmitter(long timeout, ScheduledExecutorService flushScheduler, Executor flushExecutor,
+            long flushIntervalMs, int maxBufferChars, Encoder encoder) {
+        super(timeout);
+        this.flushScheduler = flushScheduler;
+        this.flushExecutor = flushExecutor;
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.maxBufferChars = Math.max(1, maxBufferChars);
+        this.encoder = encoder;
+    }
+
+    /** 发送响应，进度片段进缓冲，其他响应先冲掉缓冲再立即发送
+     *
+     * @param response 响应 */
+    public void sendResponse(AgentChatResponse response) throws IOException {
+        lock.lock();
+        try {
+            throwFlushFailure();
+            if (!isCoalescible(response)) {
+                flush();
+                super.send(encoder.encode(response));
+                return;
+            }
+            if (bufferedType != null && bufferedType != response.getMessageType()) {
+                flush();
+            }
+            if (bufferedType == null) {
+                bufferedType = response.getMessageType();
+                bufferedSinceNanos = System.nanoTime();
+                scheduleFlush(generation);
+            }
+            buffer.append(response.getContent());
+            if (buffer.length() >= maxBufferChars
+                    || System.nanoTime() - bufferedSinceNanos >= TimeUnit.MILLISECONDS.toNanos(flushIntervalMs)) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 先冲掉缓冲，保证直接发送的事件排在已缓冲片段之后 */
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+        lock.lock();
+        try {
+            flush();
+            super.send(builder);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void complete() {
+        lock.lock();
+        try {
+            try {
+                flush();
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("SSE 关闭前发送缓冲片段失败，连接可能已关闭: {}", e.getMessage());
+            }
+            super.complete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void completeWithError(Throwable ex) {
+        lock.lock();
+        try {
+            discard();
+            super.completeWithError(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 缓冲拼成一条事件发送 */
+    private void flush() throws IOException {
+        if (bufferedType == null) {
+            return;
+        }
+        AgentChatResponse merged = AgentChatResponse.build(buffer.toString(), bufferedType);
+        discard();
+        super.send(encoder.encode(merged));
+    }
+
+    private void discard() {
+        buffer.setLength(0);
+        bufferedType = null;
+        generation++;
+    }
+
+    private void scheduleFlush(long scheduledGeneration) {
+        try {
+            flushScheduler.schedule(() -> dispatchFlush(scheduledGeneration), flushIntervalMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 调度器已关闭（应用停机），退化为下一次发送时再冲掉缓冲
+            logger.debug("SSE 片段定时发送被拒绝: {}", e.getMessage());
+        }
+    }
+
+    /** 在定时线程上执行：只把发送转交给发送线程池，不写连接 */
+    private void dispatchFlush(long scheduledGeneration) {
+        try {
+            flushExecutor.execute(() -> timedFlush(scheduledGeneration));
+        } catch (RejectedExecutionException e) {
+            // 发送线程都被慢连接占住，缓冲留给下一个片段或关闭连接时发出
+            logger.debug("SSE 片段定时发送排队已满: {}", e.getMessage());
+        }
+    }
+
+    private void timedFlush(long scheduledGeneration) {
+        if (!lock.tryLock()) {
+            // 连接正在发送，不在这里等；下一个片段会检查到期，没有下一个片段时再查一次
+            scheduleFlush(scheduledGeneration);
+            return;
+        }
+        try {
+            if (scheduledGeneration != generation) {
+                return;
+            }
+            flush();
+        } catch (IOException e) {
+            flushFailure = e;
+        } catch (IllegalStateException e) {
+            logger.debug("SSE 连接已关闭，丢弃缓冲片段: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void throwFlushFailure() throws IOException {
+        IOException failure = flushFailure;
+        if (failure != null) {
+            flushFailure = null;
+            throw failure;
+        }
+    }
+
+    private static boolean isCoalescible(AgentChatResponse response) {
+        return !response.isDone() && COALESCIBLE.contains(response.getMessageType()) && response.getContent() != null
+                && response.getPayload() == null && response.getTaskId() == null && response.getTasks() == null;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.lucas.infrastructure.config.SseProperties;
 
 /** 消息传输工厂，用于获取不同类型的消息传输实现 */
 @Component
@@ -13,12 +14,17 @@ public class MessageTransportFactory {
     public static final String TRANSPORT_TYPE_SSE = "sse";
     public static final String TRANSPORT_TYPE_WEBSOCKET = "websocket";
     public static final String TRANSPORT_TYPE_SYNC = "sync";
+    /** 合并流式片段的 SSE，开启 sse.coalescing.enabled 后 sse 类型也解析到它 */
+    public static final String TRANSPORT_TYPE_SSE_COALESCING = "sse-coalescing";
 
     private final Map<String, MessageTransport<?>> transports = new HashMap<>();
 
     @Autowired
-    public MessageTransportFactory(SseMessageTransport sseTransport, SyncMessageTransport syncTransport) {
-        transports.put(TRANSPORT_TYPE_SSE, sseTransport);
+    public MessageTransportFactory(SseMessageTransport sseTransport, CoalescingSseMessageTransport coalescingTransport,
+            SyncMessageTransport syncTransport, SseProperties sseProperties) {
+        transports.put(TRANSPORT_TYPE_SSE,
+                sseProperties.getCoalescing().isEnabled() ? coalescingTransport : sseTransport);
+        transports.put(TRANSPORT_TYPE_SSE_COALESCING, coalescingTransport);
         transports.put(TRANSPORT_TYPE_SYNC, syncTransport);
         // 将来可以添加WebSocket实现
         // transports.put(TRANSPORT_TYPE_WEBSOCKET, webSocketTransport);
@@ -21,8 +21,13 @@ public class SseMessageTransport implements MessageTransport<SseEmitter> {
 
     @Override
     public SseEmitter createConnection(long timeout) {
-        SseEmitter emitter = new SseEmitter(timeout);
+        return attachCallbacks(new SseEmitter(timeout));
+    }
 
+    /** 给连接挂上超时、错误回调：发送一条结束提示后关闭连接
+     * @param emitter SSE连接
+     * @return 同一个连接 */
+    SseEmitter attachCallbacks(SseEmitter emitter) {
         // 添加超时回调
         emitter.onTimeout(() -> {
             try {
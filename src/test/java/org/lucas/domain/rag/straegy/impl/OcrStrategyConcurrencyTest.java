@@ -0,0 +1,255 @@
+package org.lucas.domain.rag.straegy.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.dromara.x.file.storage.core.Downloader;
+import org.dromara.x.file.storage.core.FileStorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.lucas.domain.rag.message.RagDocSyncOcrMessage;
+import org.lucas.domain.rag.model.DocumentUnitEntity;
+import org.lucas.domain.rag.model.FileDetailEntity;
+import org.lucas.domain.rag.model.ModelConfig;
+import org.lucas.domain.rag.repository.DocumentUnitRepository;
+import org.lucas.domain.rag.repository.FileDetailRepository;
+import org.lucas.domain.rag.straegy.context.OcrProcessingContext;
+import org.lucas.infrastructure.rag.config.OcrProperties;
+import org.lucas.infrastructure.rag.service.OcrPageExecutor;
+
+/** 多个 OCR 消费线程共用同一个 PDF 策略单例时的进度隔离。
+ *
+ * <p>策略实现是 Spring 单例，而 OCR 队列由多个监听线程并发消费。以前当前文件ID放在实例字段里，
+ * 并发时一个文件的总页数和进度会写到另一个文件上。这里并发处理一批页数各不相同的 PDF，
+ * 断言每个文件收到的总页数、进度序列和检查点都只属于它自己。 */
+class OcrStrategyConcurrencyTest {
+
+    private static final int FILE_COUNT = 24;
+
+    private static final int CONSUMER_THREADS = 12;
+
+    /** 更新语句中按 ID 过滤的条件 */
+    private static final Pattern ID_CONDITION = Pattern.compile("\\bid = #\\{ew\\.paramNameValuePairs\\.(\\w+)}");
+
+    /** 更新语句中的 SET 片段 */
+    private static final Pattern SET_ITEM = Pattern.compile("(\\w+)=#\\{ew\\.paramNameValuePairs\\.(\\w+)}");
+
+    private final Map<String, Integer> pagesByFile = new HashMap<>();
+
+    private final Map<String, Queue<Integer>> pageSizeUpdates = new ConcurrentHashMap<>();
+
+    private final Map<String, Queue<Integer>> progressUpdates = new ConcurrentHashMap<>();
+
+    private final Queue<DocumentUnitEntity> insertedUnits = new ConcurrentLinkedQueue<>();
+
+    private final List<File> pdfFiles = new ArrayList<>();
+
+    private OcrPageExecutor ocrPageExecutor;
+
+    private PDFRagDocSyncOcrStrategyImpl strategy;
+
+    @BeforeAll
+    static void initTableInfo() {
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, FileDetailEntity.class);
+        TableInfoHelper.initTableInfo(assistant, DocumentUnitEntity.class);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DocumentUnitRepository documentUnitRepository = mock(DocumentUnitRepository.class);
+        FileDetailRepository fileDetailRepository = mock(FileDetailRepository.class);
+        FileStorageService fileStorageService = mock(FileStorageService.class);
+
+        Map<String, Downloader> downloaders = new HashMap<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            String fileId = "file-" + i;
+            int pages = 3 + i % 6;
+            pagesByFile.put(fileId, pages);
+            pageSizeUpdates.put(fileId, new ConcurrentLinkedQueue<>());
+            progressUpdates.put(fileId, new ConcurrentLinkedQueue<>());
+
+            File pdf = createPdf(pages);
+            pdfFiles.add(pdf);
+            Downloader downloader = mock(Downloader.class);
+            doAnswer(invocation -> {
+                Files.copy(pdf.toPath(), invocation.<File>getArgument(0).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return null;
+            }).when(downloader).file(any(File.class));
+            downloaders.put("url-" + fileId, downloader);
+        }
+
+        when(fileDetailRepository.selectById(anyString())).thenAnswer(invocation -> {
+            FileDetailEntity entity = new FileDetailEntity();
+            entity.setId(invocation.getArgument(0));
+            entity.setUrl("url-" + invocation.getArgument(0));
+            return entity;
+        });
+        when(fileDetailRepository.update(any(Wrapper.class))).thenAnswer(invocation -> {
+            recordUpdate(invocation.getArgument(0));
+            return 1;
+        });
+        when(fileStorageService.download(anyString())).thenAnswer(invocation -> downloaders
+                .get(invocation.<String>getArgument(0)));
+        when(documentUnitRepository.selectList(any())).thenReturn(Collections.emptyList());
+        doAnswer(invocation -> {
+            insertedUnits.add(invocation.getArgument(0));
+            return null;
+        }).when(documentUnitRepository).checkInsert(any());
+
+        OcrProperties properties = new OcrProperties();
+        properties.setProviderRequestsPerSecond(0);
+        ocrPageExecutor = new OcrPageExecutor(properties);
+
+        strategy = new PDFRagDocSyncOcrStrategyImpl(documentUnitRepository, fileDetailRepository, ocrPageExecutor) {
+            @Override
+            ChatModel createOcrModel(OcrProcessingContext context) {
+                // 识别结果带上文件ID，页面内容写错文件时可以被发现
+                return new ChatModel() {
+                    @Override
+                    public ChatResponse doChat(ChatRequest chatRequest) {
+                        return ChatResponse.builder().aiMessage(AiMessage.from("ocr of " + context.getFileId()))
+                                .build();
+                    }
+                };
+            }
+        };
+        Field field = PDFRagDocSyncOcrStrategyImpl.class.getDeclaredField("fileStorageService");
+        field.setAccessible(true);
+        field.set(strategy, fileStorageService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ocrPageExecutor.shutdown();
+        pdfFiles.forEach(File::delete);
+    }
+
+    @Test
+    @DisplayName("并发处理多个文件时，页数、进度和检查点都只写到各自的文件")
+    void concurrentFilesKeepProgressIsolated() throws Exception {
+        ExecutorService consumers = Executors.newFixedThreadPool(CONSUMER_THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (String fileId : pagesByFile.keySet()) {
+                results.add(consumers.submit(() -> {
+                    start.await();
+                    strategy.handle(message(fileId), "PDF");
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            consumers.shutdownNow();
+        }
+
+        // 仓储查询总是返回空，insertData 会把每页按未落库再补写一遍（isOcr=false），这里只看识别检查点
+        Map<String, List<DocumentUnitEntity>> checkpointsByFile = insertedUnits.stream()
+                .filter(DocumentUnitEntity::getIsOcr).collect(Collectors.groupingBy(DocumentUnitEntity::getFileId));
+        Map<String, List<DocumentUnitEntity>> unitsByFile = insertedUnits.stream()
+                .collect(Collectors.groupingBy(DocumentUnitEntity::getFileId));
+
+        pagesByFile.forEach((fileId, pages) -> {
+            assertThat(pageSizeUpdates.get(fileId)).as("total pages of %s", fileId).containsExactly(pages);
+
+            List<Integer> expectedProgress = IntStream.rangeClosed(1, pages).boxed().toList();
+            assertThat(progressUpdates.get(fileId)).as("progress of %s", fileId)
+                    .containsExactlyInAnyOrderElementsOf(expectedProgress);
+
+            List<DocumentUnitEntity> checkpoints = checkpointsByFile.get(fileId);
+            assertThat(checkpoints).as("checkpoints of %s", fileId).hasSize(pages);
+            assertThat(checkpoints).extracting(DocumentUnitEntity::getPage)
+                    .containsExactlyInAnyOrderElementsOf(IntStream.range(0, pages).boxed().toList());
+            assertThat(unitsByFile.get(fileId)).extracting(DocumentUnitEntity::getContent)
+                    .containsOnly("ocr of " + fileId);
+        });
+    }
+
+    private RagDocSyncOcrMessage message(String fileId) {
+        RagDocSyncOcrMessage message = new RagDocSyncOcrMessage();
+        message.setFileId(fileId);
+        message.setUserId("user-" + fileId);
+        message.setOcrModelConfig(new ModelConfig("ocr-model", "sk-test", "http://ocr.local", "CHAT"));
+        return message;
+    }
+
+    /** 从更新条件里解析出文件ID和 SET 的字段，按字段归类记录 */
+    private void recordUpdate(Wrapper<FileDetailEntity> wrapper) {
+        Map<String, Object> params = ((AbstractWrapper<?, ?, ?>) wrapper).getParamNameValuePairs();
+        Matcher idMatcher = ID_CONDITION.matcher(wrapper.getSqlSegment());
+        assertThat(idMatcher.find()).as("update without id condition: %s", wrapper.getSqlSegment()).isTrue();
+        String fileId = (String) params.get(idMatcher.group(1));
+
+        Matcher setMatcher = SET_ITEM.matcher(wrapper.getSqlSet());
+        while (setMatcher.find()) {
+            Object value = params.get(setMatcher.group(2));
+            switch (setMatcher.group(1)) {
+                case "file_page_size" -> pageSizeUpdates.get(fileId).add((Integer) value);
+                case "current_ocr_page_number" -> progressUpdates.get(fileId).add((Integer) value);
+                default -> {
+                }
+            }
+        }
+    }
+
+    private static File createPdf(int pages) {
+        try {
+            File file = File.createTempFile("ocr-stress-", ".pdf");
+            try (PDDocument document = new PDDocument()) {
+                for (int i = 0; i < pages; i++) {
+                    document.addPage(new PDPage(new PDRectangle(72, 72)));
+                }
+                document.save(file);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
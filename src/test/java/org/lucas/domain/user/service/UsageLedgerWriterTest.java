@@ -0,0 +1,192 @@
+package org.lucas.domain.user.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.lucas.domain.user.model.UsageLedgerEntity;
+import org.lucas.domain.user.repository.UsageLedgerRepository;
+import org.lucas.infrastructure.config.BillingProperties;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/** {@link UsageLedgerWriter} 的写入与扣费。
+ *
+ * <p>扣费只在这里发生，算错了要么少收钱，要么重复扣钱，而且都不会报错。这里守三件事：
+ *
+ * <ol>
+ * <li>锁定的未扣费流水合计扣得动时一次扣掉，全部标记为已扣费；
+ * <li>合计扣不动时按 id 顺序逐条扣，第一条扣不动就停下，只标记之前扣掉的；一条都扣不动时不标记；
+ * <li>批量插入失败重试一次，仍失败时逐条插入，写不进去的那条不影响同批其它流水的插入和扣费。
+ * </ol>
+ */
+class UsageLedgerWriterTest {
+
+    private static final String USER = "user-1";
+
+    private UsageLedgerRepository ledgerRepository;
+
+    private AccountDomainService accountDomainService;
+
+    private UsageLedgerWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        ledgerRepository = mock(UsageLedgerRepository.class);
+        accountDomainService = mock(AccountDomainService.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        writer = new UsageLedgerWriter(ledgerRepository, accountDomainService,
+                new TransactionTemplate(transactionManager), new BillingProperties());
+    }
+
+    private static UsageLedgerEntity locked(long id, String cost) {
+        UsageLedgerEntity record = new UsageLedgerEntity();
+        record.setId(id);
+        record.setCost(new BigDecimal(cost));
+        return record;
+    }
+
+    private static UsageLedgerEntity usage(String userId, String cost) {
+        UsageLedgerEntity record = new UsageLedgerEntity();
+        record.setUserId(userId);
+        record.setCost(new BigDecimal(cost));
+        record.setCharged(false);
+        return record;
+    }
+
+    private void givenLocked(UsageLedgerEntity... records) {
+        when(ledgerRepository.lockUncharged(eq(USER), anyInt())).thenReturn(List.of(records));
+    }
+
+    private void givenDeductable(String amount, boolean success) {
+        when(accountDomainService.tryDeductBalance(USER, new BigDecimal(amount))).thenReturn(success);
+    }
+
+    @Nested
+    @DisplayName("扣费")
+    class Settle {
+
+        @Test
+        @DisplayName("余额够扣全部：合计一次扣掉，全部标记")
+        void balanceCoversAll() {
+            givenLocked(locked(1, "1"), locked(2, "2"), locked(3, "3"));
+            givenDeductable("6", true);
+
+            assertThat(writer.settle(USER)).isEqualTo(3);
+
+            verify(ledgerRepository).markCharged(List.of(1L, 2L, 3L));
+            verify(accountDomainService, times(1)).tryDeductBalance(eq(USER), any());
+        }
+
+        @Test
+        @DisplayName("余额只够一部分：按 id 顺序扣到第一条扣不动为止")
+        void balanceCoversSome() {
+            givenLocked(locked(1, "1"), locked(2, "2"), locked(3, "0.5"));
+            givenDeductable("3.5", false);
+            givenDeductable("1", true);
+            givenDeductable("2", false);
+            // 第三条更便宜也不扣：扣费顺序与流水顺序一致，不跳过欠费
+            givenDeductable("0.5", true);
+
+            assertThat(writer.settle(USER)).isEqualTo(1);
+
+            verify(ledgerRepository).markCharged(List.of(1L));
+            verify(accountDomainService, never()).tryDeductBalance(USER, new BigDecimal("0.5"));
+        }
+
+        @Test
+        @DisplayName("余额一条都不够：不标记")
+        void balanceCoversNone() {
+            givenLocked(locked(1, "1"), locked(2, "2"));
+            givenDeductable("3", false);
+            givenDeductable("1", false);
+
+            assertThat(writer.settle(USER)).isZero();
+
+            verify(ledgerRepository, never()).markCharged(anyList());
+        }
+
+        @Test
+        @DisplayName("没有未扣费流水：不扣费")
+        void nothingLocked() {
+            givenLocked();
+
+            assertThat(writer.settle(USER)).isZero();
+
+            verify(accountDomainService, never()).tryDeductBalance(anyString(), any());
+            verify(ledgerRepository, never()).markCharged(anyList());
+        }
+    }
+
+    @Nested
+    @DisplayName("写入")
+    class Write {
+
+        @Test
+        @DisplayName("先记为未扣费插入，再扣费；没有费用的直接记为已扣费")
+        void insertsUnchargedThenSettles() {
+            UsageLedgerEntity paid = usage(USER, "1");
+            UsageLedgerEntity free = usage("user-2", "0");
+            List<Boolean> chargedWhenInserted = new ArrayList<>();
+            when(ledgerRepository.insert(anyCollection(), anyInt())).thenAnswer(invocation -> {
+                chargedWhenInserted.add(paid.getCharged());
+                chargedWhenInserted.add(free.getCharged());
+                return List.of();
+            });
+            givenLocked(locked(7, "1"));
+            givenDeductable("1", true);
+
+            writer.flush(new ArrayList<>(List.of(paid, free)));
+
+            assertThat(chargedWhenInserted).containsExactly(false, true);
+            verify(ledgerRepository).markCharged(List.of(7L));
+            verify(ledgerRepository, never()).lockUncharged(eq("user-2"), anyInt());
+        }
+
+        @Test
+        @DisplayName("批量插入两次失败后逐条插入，只有写不进去的那条被丢弃")
+        void fallsBackToPerRowInsert() {
+            UsageLedgerEntity good = usage(USER, "1");
+            UsageLedgerEntity poison = usage("user-2", "2");
+            when(ledgerRepository.insert(anyCollection(), anyInt())).thenThrow(new IllegalStateException("batch"));
+            AtomicLong ids = new AtomicLong();
+            when(ledgerRepository.insert(any(UsageLedgerEntity.class))).thenAnswer(invocation -> {
+                UsageLedgerEntity record = invocation.getArgument(0);
+                if (record == poison) {
+                    throw new IllegalStateException("poison row");
+                }
+                record.setId(ids.incrementAndGet());
+                return 1;
+            });
+            givenLocked(locked(1, "1"));
+            givenDeductable("1", true);
+
+            writer.flush(new ArrayList<>(List.of(good, poison)));
+
+            verify(ledgerRepository, times(2)).insert(anyCollection(), anyInt());
+            verify(ledgerRepository).insert(good);
+            verify(ledgerRepository).insert(poison);
+            verify(ledgerRepository).markCharged(List.of(1L));
+            verify(ledgerRepository, never()).lockUncharged(eq("user-2"), anyInt());
+        }
+    }
+}
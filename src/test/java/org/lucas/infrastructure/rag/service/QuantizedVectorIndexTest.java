@@ -0,0 +1,172 @@
+package org.lucas.infrastructure.rag.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.lucas.infrastructure.rag.utils.VectorSimilarity;
+
+/** {@link QuantizedVectorIndex} 的 int8 量化检索。
+ *
+ * <p>热点数据集命中后检索完全在这份索引里完成，不再回到 pgvector，分数一旦算偏，
+ * minScore 过滤和排序都会跟着错，而且没有任何报错。这里守两件事：
+ *
+ * <ol>
+ * <li>缩放系数按每条向量自身的最大绝对值计算：量级不同的向量分数仍与精确余弦一致；
+ * <li>零向量没有方向：存入的零向量不参与排序，零查询向量直接返回空结果，而不是算出 NaN。
+ * </ol>
+ */
+class QuantizedVectorIndexTest {
+
+    private static final int DIMENSION = 64;
+
+    private static TextSegment segment(String text) {
+        return TextSegment.from(text);
+    }
+
+    private static float[] randomVector(Random random, float magnitude) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian() * magnitude;
+        }
+        return vector;
+    }
+
+    private static float[] scaled(float[] vector, float factor) {
+        float[] result = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i] * factor;
+        }
+        return result;
+    }
+
+    @Nested
+    @DisplayName("int8 缩放")
+    class Scale {
+
+        @Test
+        @DisplayName("分数与精确余弦的误差在 0.01 以内")
+        void scoreTracksExactCosine() {
+            Random random = new Random(42);
+            QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION, 16);
+            float[] query = randomVector(random, 1f);
+            float[][] vectors = new float[20][];
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = randomVector(random, 1f);
+                index.add("v" + i, vectors[i], segment("doc " + i));
+            }
+
+            List<EmbeddingMatch<TextSegment>> matches = index.search(query, vectors.length, 0.0, null);
+
+            assertThat(matches).hasSize(vectors.length);
+            for (EmbeddingMatch<TextSegment> match : matches) {
+                int i = Integer.parseInt(match.embeddingId().substring(1));
+                double expected = RelevanceScore.fromCosineSimilarity(VectorSimilarity.cosine(query, vectors[i]));
+                assertThat(match.score()).isCloseTo(expected, within(0.01));
+            }
+        }
+
+        @Test
+        @DisplayName("缩放系数按条计算，量级相差很大的同向向量分数都接近 1")
+        void perVectorScaleIsMagnitudeInvariant() {
+            Random random = new Random(7);
+            float[] direction = randomVector(random, 1f);
+            QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION, 16);
+            index.add("tiny", scaled(direction, 1e-4f), segment("tiny"));
+            index.add("huge", scaled(direction, 1e4f), segment("huge"));
+
+            List<EmbeddingMatch<TextSegment>> matches = index.search(direction, 2, 0.0, null);
+
+            assertThat(matches).hasSize(2);
+            assertThat(matches).allSatisfy(match -> assertThat(match.score()).isCloseTo(1.0, within(0.001)));
+        }
+
+        @Test
+        @DisplayName("结果按分数从高到低，minScore 与 maxResults 生效")
+        void ordersAndLimits() {
+            float[] query = new float[DIMENSION];
+            query[0] = 1f;
+            float[] same = query.clone();
+            float[] orthogonal = new float[DIMENSION];
+            orthogonal[1] = 1f;
+            float[] opposite = scaled(query, -1f);
+            QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION, 16);
+            index.add("orthogonal", orthogonal, segment("orthogonal"));
+            index.add("opposite", opposite, segment("opposite"));
+            index.add("same", same, segment("same"));
+
+            assertThat(index.search(query, 3, 0.0, null)).extracting(EmbeddingMatch::embeddingId)
+                    .containsExactly("same", "orthogonal", "opposite");
+            assertThat(index.search(query, 3, 0.6, null)).extracting(EmbeddingMatch::embeddingId)
+                    .containsExactly("same");
+            assertThat(index.search(query, 1, 0.0, null)).extracting(EmbeddingMatch::embeddingId)
+                    .containsExactly("same");
+        }
+    }
+
+    @Nested
+    @DisplayName("零向量")
+    class ZeroVector {
+
+        @Test
+        @DisplayName("存入的零向量不参与检索")
+        void storedZeroVectorIsSkipped() {
+            float[] query = new float[DIMENSION];
+            query[0] = 1f;
+            QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION, 16);
+            index.add("zero", new float[DIMENSION], segment("zero"));
+            index.add("unit", query.clone(), segment("unit"));
+
+            List<EmbeddingMatch<TextSegment>> matches = index.search(query, 10, 0.0, null);
+
+            assertThat(matches).extracting(EmbeddingMatch::embeddingId).containsExactly("unit");
+            assertThat(index.size()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("零查询向量返回空结果")
+        void zeroQueryYieldsNoMatches() {
+            QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION, 16);
+            index.add("v", randomVector(new Random(1), 1f), segment("v"));
+
+            assertThat(index.search(new float[DIMENSION], 10, 0.0, null)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("写入")
+    class Write {
+
+        @Test
+        @DisplayName("维度不一致时拒绝写入")
+        void rejectsDimensionMismatch() {
+            QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION, 16);
+
+            assertThatThrownBy(() -> index.add("v", new float[DIMENSION + 1], segment("v")))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        @Test
+        @DisplayName("删除后压缩，剩余向量仍可检索")
+        void removeIfCompacts() {
+            Random random = new Random(3);
+            QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION, 16);
+            float[] kept = randomVector(random, 1f);
+            index.add("drop", randomVector(random, 1f), segment("drop"));
+            index.add("keep", kept, segment("keep"));
+
+            assertThat(index.removeIf((id, segment) -> "drop".equals(id))).isEqualTo(1);
+            assertThat(index.size()).isEqualTo(1);
+            assertThat(index.search(kept, 10, 0.0, null)).extracting(EmbeddingMatch::embeddingId)
+                    .containsExactly("keep");
+        }
+    }
+}
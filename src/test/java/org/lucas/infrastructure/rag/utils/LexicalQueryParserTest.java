@@ -0,0 +1,76 @@
+package org.lucas.infrastructure.rag.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/** {@link LexicalQueryParser} 的关键词提取。
+ *
+ * <p>混合检索只拿这些词做字面匹配，提取得太宽会用 ILIKE 召回大量无关片段，太窄则错误码、编号这类
+ * 向量检索不敏感的精确串会漏掉。这里覆盖两类会提取的词、不该提取的普通单词，以及空问题。 */
+class LexicalQueryParserTest {
+
+    @Nested
+    @DisplayName("分词")
+    class Tokenisation {
+
+        @Test
+        @DisplayName("带数字或连接符的标识符被提取，末尾标点不带入")
+        void extractsIdentifiers() {
+            assertThat(LexicalQueryParser.extractTerms("报错 ERR_1024，SKU-889A 升级到 v2.3.1。", 8))
+                    .containsExactly("ERR_1024", "SKU-889A", "v2.3.1");
+        }
+
+        @Test
+        @DisplayName("引号短语整体提取，排在标识符之前")
+        void extractsQuotedPhrases() {
+            assertThat(LexicalQueryParser.extractTerms("“连接池耗尽” 和 \"read timeout\" 出现在 node-3", 8))
+                    .containsExactly("连接池耗尽", "read timeout", "node-3");
+        }
+
+        @Test
+        @DisplayName("纯字母单词、普通中文和过短的串不提取")
+        void ignoresPlainWords() {
+            assertThat(LexicalQueryParser.extractTerms("how to configure 数据集 a1 检索", 8)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("重复词去重，并按 maxTerms 截断")
+        void deduplicatesAndLimits() {
+            assertThat(LexicalQueryParser.extractTerms("ERR_1 ERR_1 ERR_2 ERR_3", 2))
+                    .containsExactly("ERR_1", "ERR_2");
+        }
+    }
+
+    @Nested
+    @DisplayName("空问题")
+    class EmptyQuery {
+
+        @Test
+        @DisplayName("null、空串、空白返回空列表")
+        void blankQuestionYieldsNoTerms() {
+            assertThat(LexicalQueryParser.extractTerms(null, 8)).isEmpty();
+            assertThat(LexicalQueryParser.extractTerms("", 8)).isEmpty();
+            assertThat(LexicalQueryParser.extractTerms("   ", 8)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("maxTerms 不大于 0 时不提取")
+        void nonPositiveLimitYieldsNoTerms() {
+            assertThat(LexicalQueryParser.extractTerms("ERR_1024", 0)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("匹配模式")
+    class ContainsPattern {
+
+        @Test
+        @DisplayName("LIKE 通配符和转义符被转义")
+        void escapesWildcards() {
+            assertThat(LexicalQueryParser.toContainsPattern("a_b%c\\d")).isEqualTo("%a\\_b\\%c\\\\d%");
+        }
+    }
+}